@@ -1,5 +1,6 @@
 package fr.eseo.tauri;
 
+import fr.eseo.tauri.config.LdapPoolInitializer;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 
@@ -7,6 +8,7 @@ public class ServletInitializer extends SpringBootServletInitializer {
 
     @Override
     protected SpringApplicationBuilder configure(SpringApplicationBuilder application) {
-        return application.sources(TauriApplication.class);
+        return application.sources(TauriApplication.class)
+                .initializers(new LdapPoolInitializer());
     }
 }
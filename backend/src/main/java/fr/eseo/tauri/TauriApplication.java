@@ -1,7 +1,8 @@
 package fr.eseo.tauri;
 
-import org.springframework.boot.SpringApplication;
+import fr.eseo.tauri.config.LdapPoolInitializer;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 
@@ -11,7 +12,8 @@ public class TauriApplication {
 
 	public static void main(String[] args) {
 		// Run the application
-		SpringApplication.run(TauriApplication.class, args);
+		new SpringApplicationBuilder(TauriApplication.class)
+				.initializers(new LdapPoolInitializer())
+				.run(args);
 	}
 }
-
@@ -0,0 +1,23 @@
+package fr.eseo.tauri.config;
+
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+/**
+ * Sizes the JNDI pool of the LDAP manager connections from the app.ldap.pool.* properties, before any bean is created.
+ * The JNDI pool is shared by the whole JVM and reads its settings once, at its first connection:
+ * inside a shared Tomcat, these settings apply to every application of the server.
+ * Registered by TauriApplication for the jar and by ServletInitializer for the war.
+ */
+public class LdapPoolInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        ConfigurableEnvironment environment = context.getEnvironment();
+        System.setProperty("com.sun.jndi.ldap.connect.pool.maxsize", environment.getProperty("app.ldap.pool.max-size", "20"));
+        System.setProperty("com.sun.jndi.ldap.connect.pool.prefsize", environment.getProperty("app.ldap.pool.pref-size", "5"));
+        System.setProperty("com.sun.jndi.ldap.connect.pool.timeout", environment.getProperty("app.ldap.pool.timeout", "300000"));
+    }
+
+}
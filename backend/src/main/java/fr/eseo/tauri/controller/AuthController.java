@@ -3,6 +3,7 @@ package fr.eseo.tauri.controller;
 import fr.eseo.tauri.model.User;
 import fr.eseo.tauri.security.AuthRequest;
 import fr.eseo.tauri.security.AuthResponse;
+import fr.eseo.tauri.security.RefreshRequest;
 import fr.eseo.tauri.service.AuthService;
 import fr.eseo.tauri.util.CustomLogger;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -23,7 +24,17 @@ public class AuthController {
     @PostMapping("/login")
     public ResponseEntity<AuthResponse> login(@RequestBody AuthRequest request) {
         AuthResponse response = authService.login(request.login(), request.password());
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok()
+                .header("Server-Timing", "ldap;dur=" + response.ldapMs() + ", db;dur=" + response.databaseMs())
+                .body(response);
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@RequestBody RefreshRequest request) {
+        AuthResponse response = authService.refresh(request.refreshToken());
+        return ResponseEntity.ok()
+                .header("Server-Timing", "db;dur=" + response.databaseMs())
+                .body(response);
     }
 
     @PostMapping("/logon")
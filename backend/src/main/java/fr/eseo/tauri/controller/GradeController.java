@@ -1,23 +1,29 @@
 package fr.eseo.tauri.controller;
 
+import fr.eseo.tauri.model.AggregateRebuildResult;
+import fr.eseo.tauri.model.ConfirmationResult;
 import fr.eseo.tauri.model.Grade;
-import fr.eseo.tauri.model.GradeType;
-import fr.eseo.tauri.model.enumeration.RoleType;
-import fr.eseo.tauri.repository.GradeTypeRepository;
+import fr.eseo.tauri.model.GradeEventsTicket;
+import fr.eseo.tauri.model.RecomputeResult;
+import fr.eseo.tauri.security.TokenPermissions;
+import fr.eseo.tauri.service.GradeAggregateService;
+import fr.eseo.tauri.service.GradeEventService;
 import fr.eseo.tauri.service.GradeService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import fr.eseo.tauri.util.CustomLogger;
 import fr.eseo.tauri.util.ResponseMessage;
 import fr.eseo.tauri.util.valid.Create;
 import fr.eseo.tauri.util.valid.Update;
 import org.springframework.validation.annotation.Validated;
 
-import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -28,8 +34,9 @@ import java.util.Map;
 public class GradeController {
 
     private final GradeService gradeService;
+    private final GradeAggregateService gradeAggregateService;
+    private final GradeEventService gradeEventService;
     private final ResponseMessage responseMessage = new ResponseMessage("grade");
-    private final GradeTypeRepository gradeTypeRepository;
 
     @GetMapping("/{id}")
     public ResponseEntity<Grade> getGradeById(@PathVariable Integer id) {
@@ -56,6 +63,14 @@ public class GradeController {
         return ResponseEntity.ok(responseMessage.create());
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<String> createGrades(@RequestBody List<Grade> grades, @RequestParam(defaultValue = "false") Boolean overwrite) {
+        int savedGrades = gradeService.createGrades(grades, Boolean.TRUE.equals(overwrite));
+        String message = responseMessage.custom(savedGrades + " %ss have been saved");
+        CustomLogger.info(message);
+        return ResponseEntity.ok(message);
+    }
+
     @PatchMapping("/{id}")
     public ResponseEntity<String> updateGrade(@PathVariable Integer id, @Validated(Update.class) @RequestBody Grade updatedGrade) {
         gradeService.updateGrade(id, updatedGrade);
@@ -77,20 +92,16 @@ public class GradeController {
         return ResponseEntity.ok(responseMessage.deleteAllFromCurrentProject());
     }
 
+    @PostMapping("/imported/mean")
+    public ResponseEntity<RecomputeResult> recomputeImportedMeans(@RequestParam("projectId") Integer projectId) {
+        RecomputeResult result = gradeService.recomputeImportedMeans(projectId);
+        return ResponseEntity.ok(result);
+    }
+
     //@GetMapping("/unimported/averages") => On peut récup le user dans le token ?
     @GetMapping("/average-grades-by-grade-type-by-role/{userId}")
-    public ResponseEntity<List<List<Double>>> getAverageGradesByGradeTypeByRole(@PathVariable Integer userId) {
-        ArrayList<List<Double>> gradeByTypes = new ArrayList<>();
-        ArrayList<Double> gradeByRoles;
-
-        for (GradeType gradeType : gradeTypeRepository.findAllForGroup()) {
-            gradeByRoles = new ArrayList<>();
-            for (RoleType roleType : RoleType.values()) {
-                double grade = getAverageGradeByRoleType(userId, roleType, gradeType.name());
-                gradeByRoles.add(grade);
-            }
-            gradeByTypes.add(gradeByRoles);
-        }
+    public ResponseEntity<List<List<Double>>> getAverageGradesByGradeTypeByRole(@PathVariable Integer userId, @RequestParam("projectId") Integer projectId) {
+        List<List<Double>> gradeByTypes = gradeService.getAverageGradesByGradeTypeAndRoleType(userId, projectId);
 
         if (gradeByTypes.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -99,21 +110,37 @@ public class GradeController {
         return ResponseEntity.status(HttpStatus.OK).body(gradeByTypes);
     }
 
-    /**
-     * Helper method
-     */
-    private double getAverageGradeByRoleType(Integer userId, RoleType roleType, String gradeType) {
-        try {
-            return gradeService.getAverageGradesByGradeTypeByRoleType(userId, roleType, gradeType);
-        } catch (NullPointerException e) {
-            return -1.0;
-        }
+    @GetMapping("/aggregates/drift")
+    public ResponseEntity<Long> countAggregatesDrift() {
+        return ResponseEntity.ok(gradeAggregateService.countDrift());
+    }
+
+    @PostMapping("/aggregates/rebuild")
+    public ResponseEntity<AggregateRebuildResult> rebuildAggregates() {
+        return ResponseEntity.ok(gradeAggregateService.rebuild());
+    }
+
+    @PostMapping("/events/ticket")
+    public ResponseEntity<GradeEventsTicket> createGradeEventsTicket(@RequestParam("sprintId") Integer sprintId) {
+        TokenPermissions tokenPermissions = TokenPermissions.ofCurrentRequest();
+        if (tokenPermissions == null) throw new SecurityException("An access token is required to follow the grades");
+        return ResponseEntity.ok(gradeEventService.issueTicket(sprintId, tokenPermissions.expiresAt()));
+    }
+
+    // An EventSource cannot send the Authorization header, so the stream is opened with a single-use ticket from /events/ticket
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamGradeEvents(@RequestParam("ticket") String ticket) {
+        SseEmitter emitter = gradeEventService.subscribe(ticket);
+        CustomLogger.info("New subscriber to the grade events");
+        return emitter;
     }
 
     @GetMapping("/download")
-    public ResponseEntity<byte[]> downloadStudentGrades(@RequestParam("projectId") Integer projectId) throws IOException {
-        byte[] gradesCSV = gradeService.createStudentIndividualGradesCSVReport(projectId);
-        return ResponseEntity.ok(gradesCSV);
+    public ResponseEntity<StreamingResponseBody> downloadStudentGrades(@RequestParam("projectId") Integer projectId) {
+        StreamingResponseBody gradesCSV = outputStream -> gradeService.writeStudentIndividualGradesCSVReport(projectId, outputStream);
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(gradesCSV);
     }
 
     @GetMapping("/average/{id}")
@@ -143,7 +170,7 @@ public class GradeController {
     }
 
     @PostMapping("/confirmation/{sprintId}/team/{teamId}")
-    public ResponseEntity<Boolean> setGradesConfirmations(@PathVariable Integer sprintId, @PathVariable Integer teamId, @RequestParam("projectId") Integer projectId) {
+    public ResponseEntity<ConfirmationResult> setGradesConfirmations(@PathVariable Integer sprintId, @PathVariable Integer teamId, @RequestParam("projectId") Integer projectId) {
         return ResponseEntity.ok(gradeService.setGradesConfirmation(sprintId, teamId, projectId));
     }
 
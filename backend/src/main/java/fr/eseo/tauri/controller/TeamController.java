@@ -5,8 +5,11 @@ import fr.eseo.tauri.service.PresentationOrderService;
 import fr.eseo.tauri.service.TeamService;
 import fr.eseo.tauri.util.CustomLogger;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import fr.eseo.tauri.util.ResponseMessage;
 import fr.eseo.tauri.util.valid.Create;
@@ -67,6 +70,20 @@ public class TeamController {
         return ResponseEntity.ok(criteria);
     }
 
+    /**
+     * Get the criteria of every team of a project.
+     * The payload only changes when a student moves, so it is sent with an ETag and a 304 is returned while it is unchanged.
+     */
+    @GetMapping("/criteria")
+    public ResponseEntity<List<TeamCriteria>> getCriteriaByProject(@RequestParam("projectId") Integer projectId, WebRequest request) {
+        List<TeamCriteria> criteria = teamService.getCriteriaByProject(projectId);
+        String eTag = "\"" + Integer.toHexString(criteria.hashCode()) + "\"";
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(eTag).body(criteria);
+    }
+
     @GetMapping("/{id}/average")
     public ResponseEntity<Double> getTeamAvgGrade(@PathVariable Integer id) {
         var avgGrade = this.teamService.getTeamAvgGrade(id);
@@ -75,14 +92,42 @@ public class TeamController {
 
     /**
      * Create teams.
+     * With optimize, the greedy composition is improved by the optimizer during at most timeBudgetMs.
      *
-     * @return a response entity with a success message if the update was successful, otherwise an error message
+     * @return the score of the composition and the constraints it satisfies
      */
     @PostMapping
-    public ResponseEntity<String> generateTeams(@RequestParam("projectId") Integer projectId, @RequestParam("autoWomenRatio") Boolean autoWomenRatio, @Validated(Create.class) @RequestBody Project projectDetails) {
-        teamService.generateTeams(projectId, projectDetails, autoWomenRatio);
+    public ResponseEntity<TeamGenerationResult> generateTeams(@RequestParam("projectId") Integer projectId, @RequestParam("autoWomenRatio") Boolean autoWomenRatio,
+                                                              @RequestParam(defaultValue = "false") Boolean optimize, @RequestParam(defaultValue = "2000") Long timeBudgetMs,
+                                                              @Validated(Create.class) @RequestBody Project projectDetails) {
+        TeamGenerationResult result = teamService.generateTeams(projectId, projectDetails, autoWomenRatio, Boolean.TRUE.equals(optimize) ? timeBudgetMs : null);
+        CustomLogger.info(responseMessage.create());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Compute the teams that would be created, without saving anything.
+     *
+     * @return the proposed teams with their criteria, and the token to give to the commit call
+     */
+    @PostMapping("/preview")
+    public ResponseEntity<TeamPreview> previewTeams(@RequestParam("projectId") Integer projectId, @RequestParam("autoWomenRatio") Boolean autoWomenRatio,
+                                                    @RequestParam(defaultValue = "false") Boolean optimize, @RequestParam(defaultValue = "2000") Long timeBudgetMs,
+                                                    @Validated(Create.class) @RequestBody Project projectDetails) {
+        TeamPreview preview = teamService.previewTeams(projectId, projectDetails, autoWomenRatio, Boolean.TRUE.equals(optimize) ? timeBudgetMs : null);
+        return ResponseEntity.ok(preview);
+    }
+
+    /**
+     * Save the teams of a preview in place of the existing teams.
+     *
+     * @return the score of the saved teams
+     */
+    @PostMapping("/preview/{token}")
+    public ResponseEntity<TeamGenerationResult> commitTeamPreview(@RequestParam("projectId") Integer projectId, @PathVariable String token) {
+        TeamGenerationResult result = teamService.commitTeamPreview(projectId, token);
         CustomLogger.info(responseMessage.create());
-        return ResponseEntity.ok(responseMessage.create());
+        return ResponseEntity.ok(result);
     }
 
     @GetMapping("/{teamId}/sprints/{sprintId}/feedbacks")
@@ -110,8 +155,8 @@ public class TeamController {
     }
 
     @GetMapping("/sprint/{sprintId}/average")
-    public ResponseEntity<List<Double>> getAverageSprintGrades(@PathVariable Integer sprintId) {
-        List<Double> sprintGrade = teamService.getAverageSprintGrades(sprintId);
+    public ResponseEntity<List<Double>> getAverageSprintGrades(@PathVariable Integer sprintId, @RequestParam Integer projectId) {
+        List<Double> sprintGrade = teamService.getAverageSprintGrades(projectId, sprintId);
         return ResponseEntity.ok(sprintGrade);
     }
 
@@ -0,0 +1,21 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AggregateRebuildResult {
+
+    // Number of aggregates that differed from the grades before the rebuild
+    @JsonProperty
+    private Long driftedAggregates;
+
+    @JsonProperty
+    private Integer rebuiltAggregates;
+
+    @JsonProperty
+    private Long durationMs;
+
+}
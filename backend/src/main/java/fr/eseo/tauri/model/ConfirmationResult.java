@@ -0,0 +1,21 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ConfirmationResult {
+
+    @JsonProperty
+    private Integer sprintId;
+
+    @JsonProperty
+    private Integer teamId;
+
+    // Number of grades that were not confirmed yet
+    @JsonProperty
+    private Integer confirmedGrades;
+
+}
@@ -0,0 +1,50 @@
+package fr.eseo.tauri.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Sum and count of the grades given to a student or a team for a grade type during a sprint.
+ * The rows are kept up to date by GradeAggregateService whenever a sprint grade is written.
+ */
+@Entity
+@Table(name = "grade_aggregates", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"student_id", "sprint_id", "grade_type_id"}),
+        @UniqueConstraint(columnNames = {"team_id", "sprint_id", "grade_type_id"})
+})
+@Data
+public class GradeAggregate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "student_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Student student;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "team_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Team team;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "sprint_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Sprint sprint;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "grade_type_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private GradeType gradeType;
+
+    @Column(name = "value_sum", nullable = false)
+    private Double valueSum;
+
+    @Column(name = "value_count", nullable = false)
+    private Integer valueCount;
+
+}
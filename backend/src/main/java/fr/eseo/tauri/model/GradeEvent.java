@@ -0,0 +1,33 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.eseo.tauri.model.enumeration.GradeEventType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class GradeEvent {
+
+    @JsonProperty
+    private GradeEventType type;
+
+    @JsonProperty
+    private Integer sprintId;
+
+    @JsonProperty
+    private Integer teamId;
+
+    // Only set when the change concerns a single student
+    @JsonProperty
+    private Integer studentId;
+
+    // Results of the team after the change, filled in once before the event is sent to the subscribers
+    @JsonProperty
+    private TeamSprintGrades teamSprintGrades;
+
+    public GradeEvent(GradeEventType type, Integer sprintId, Integer teamId, Integer studentId) {
+        this(type, sprintId, teamId, studentId, null);
+    }
+
+}
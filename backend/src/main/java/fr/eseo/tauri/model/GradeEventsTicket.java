@@ -0,0 +1,22 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class GradeEventsTicket {
+
+    // Opens the stream of the grade events once, as the ticket parameter
+    @JsonProperty
+    private String ticket;
+
+    @JsonProperty
+    private Integer sprintId;
+
+    // Time in milliseconds before the ticket can no longer be used
+    @JsonProperty
+    private Long expiresInMs;
+
+}
@@ -0,0 +1,40 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import fr.eseo.tauri.model.enumeration.ImportJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ImportJob {
+
+    // Id to give to the status call to follow the import
+    @JsonProperty
+    private String jobId;
+
+    @JsonProperty
+    private Integer projectId;
+
+    @JsonProperty
+    private ImportJobStatus status;
+
+    // Number of student lines of the file read so far
+    @JsonProperty
+    private Integer processedRows;
+
+    // Why the import failed, nothing is saved in that case
+    @JsonProperty
+    private List<String> errors;
+
+    // Time since the file has been uploaded, or that the import took once it is over
+    @JsonProperty
+    private Long elapsedMs;
+
+    // Counts and timings of the import, once it has succeeded
+    @JsonProperty
+    private StudentImportResult result;
+
+}
@@ -0,0 +1,31 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ProjectTeardownResult {
+
+    @JsonProperty
+    private Integer projectId;
+
+    @JsonProperty
+    private Integer nbStudents;
+
+    @JsonProperty
+    private Integer nbTeams;
+
+    // Number of transactions the students were deleted in
+    @JsonProperty
+    private Integer nbChunks;
+
+    // Rows deleted in every table, students, users and teams included
+    @JsonProperty
+    private Integer deletedRows;
+
+    @JsonProperty
+    private Long durationMs;
+
+}
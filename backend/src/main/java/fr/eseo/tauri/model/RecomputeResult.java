@@ -0,0 +1,20 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RecomputeResult {
+
+    @JsonProperty
+    private Integer projectId;
+
+    @JsonProperty
+    private Integer updatedRows;
+
+    @JsonProperty
+    private Long durationMs;
+
+}
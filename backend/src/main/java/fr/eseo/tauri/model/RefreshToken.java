@@ -0,0 +1,38 @@
+package fr.eseo.tauri.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        // The expired tokens are purged by date
+        @Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at")
+})
+@Data
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    // Only the hash of the token is stored, the token itself is only known by the client
+    @Column(name = "token_hash", unique = true, nullable = false)
+    private String tokenHash;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    // The role types of the user when the token was issued, separated by commas, or null once they have changed
+    @Column(name = "roles")
+    private String roles;
+
+    @Column(name = "expires_at")
+    private Instant expiresAt;
+
+}
@@ -0,0 +1,27 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SprintCreationResult {
+
+    @JsonProperty
+    private Integer sprintId;
+
+    @JsonProperty
+    private Integer nbStudents;
+
+    @JsonProperty
+    private Integer nbPresentationOrders;
+
+    // Two bonuses per student, a limited one and an unlimited one
+    @JsonProperty
+    private Integer nbBonuses;
+
+    @JsonProperty
+    private Long durationMs;
+
+}
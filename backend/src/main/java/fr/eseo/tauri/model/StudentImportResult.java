@@ -0,0 +1,46 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class StudentImportResult {
+
+    @JsonProperty
+    private Integer projectId;
+
+    @JsonProperty
+    private Integer nbStudents;
+
+    @JsonProperty
+    private Integer nbGrades;
+
+    // Two bonuses per student and sprint, a limited one and an unlimited one
+    @JsonProperty
+    private Integer nbBonuses;
+
+    @JsonProperty
+    private Integer nbPresentationOrders;
+
+    // Time spent reading the file and building the entities
+    @JsonProperty
+    private Long parseMs;
+
+    // Time spent saving the students and their roles
+    @JsonProperty
+    private Long studentsMs;
+
+    // Time spent saving the grade types and the grades
+    @JsonProperty
+    private Long gradesMs;
+
+    // Time spent saving the bonuses and presentation orders of the existing sprints
+    @JsonProperty
+    private Long sprintsMs;
+
+    @JsonProperty
+    private Long durationMs;
+
+}
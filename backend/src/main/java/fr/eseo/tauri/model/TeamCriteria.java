@@ -0,0 +1,36 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TeamCriteria {
+
+    @JsonProperty
+    private Integer teamId;
+
+    @JsonProperty
+    private String name;
+
+    @JsonProperty
+    private Integer nbStudents;
+
+    @JsonProperty
+    private Integer nbWomens;
+
+    @JsonProperty
+    private Integer nbBachelors;
+
+    // Average imported grade of the students, null when none of them has one
+    @JsonProperty
+    private Double average;
+
+    @JsonProperty
+    private Boolean validCriteriaWoman;
+
+    @JsonProperty
+    private Boolean validCriteriaBachelor;
+
+}
@@ -0,0 +1,31 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TeamGenerationResult {
+
+    // True when the composition has been improved by the optimizer
+    @JsonProperty
+    private Boolean optimized;
+
+    // Variance of the average imported grades of the teams, lower is better
+    @JsonProperty
+    private Double score;
+
+    @JsonProperty
+    private Boolean constraintsSatisfied;
+
+    @JsonProperty
+    private Integer teamsMissingWomen;
+
+    @JsonProperty
+    private Integer teamsMissingBachelors;
+
+    @JsonProperty
+    private Long durationMs;
+
+}
@@ -0,0 +1,27 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TeamPreview {
+
+    // Token to give to the commit call to save this proposal
+    @JsonProperty
+    private String token;
+
+    @JsonProperty
+    private Instant expiresAt;
+
+    @JsonProperty
+    private TeamGenerationResult result;
+
+    @JsonProperty
+    private List<TeamProposal> teams;
+
+}
@@ -0,0 +1,35 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TeamProposal {
+
+    @JsonProperty
+    private String name;
+
+    @JsonProperty
+    private List<Integer> studentIds;
+
+    @JsonProperty
+    private Integer nbWomens;
+
+    @JsonProperty
+    private Integer nbBachelors;
+
+    // Average imported grade of the students, null when none of them has one
+    @JsonProperty
+    private Double average;
+
+    @JsonProperty
+    private Boolean validCriteriaWoman;
+
+    @JsonProperty
+    private Boolean validCriteriaBachelor;
+
+}
@@ -0,0 +1,29 @@
+package fr.eseo.tauri.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TeamSprintGrades {
+
+    @JsonProperty
+    private Integer teamId;
+
+    // Ids of the team's students, in the same order as the grades
+    @JsonProperty
+    private List<Integer> studentIds;
+
+    @JsonProperty
+    private Double teamGrade;
+
+    @JsonProperty
+    private List<Double> individualGrades;
+
+    @JsonProperty
+    private List<Double> sprintGrades;
+
+}
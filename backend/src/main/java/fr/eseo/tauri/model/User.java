@@ -11,11 +11,14 @@ import lombok.Data;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+		@Index(name = "idx_users_roles_changed_at", columnList = "roles_changed_at")
+})
 @Inheritance(strategy = InheritanceType.JOINED)
 @Data
 @NoArgsConstructor
@@ -55,6 +58,10 @@ public class User implements UserDetails {
 	@JsonProperty
 	private String privateKey;
 
+	// The last change of the roles of the user, the access tokens issued before are rejected
+	@Column(name = "roles_changed_at")
+	private Instant rolesChangedAt;
+
 	@Override
 	public Collection<? extends GrantedAuthority> getAuthorities() {
 		return Collections.emptyList();
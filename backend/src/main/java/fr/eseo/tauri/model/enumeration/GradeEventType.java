@@ -0,0 +1,9 @@
+package fr.eseo.tauri.model.enumeration;
+
+public enum GradeEventType {
+
+    GRADE,
+    BONUS,
+    CONFIRMATION;
+
+}
@@ -0,0 +1,16 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.Bonus;
+
+import java.util.List;
+
+public interface BonusBatchRepository {
+
+    /**
+     * Inserts the given bonuses with batched statements.
+     * The ids of the bonuses are not set back on the entities.
+     * @param bonuses the bonuses to insert, with their sprint and student resolved
+     */
+    void insertAll(List<Bonus> bonuses);
+
+}
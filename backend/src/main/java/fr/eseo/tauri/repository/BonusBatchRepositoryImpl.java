@@ -0,0 +1,29 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.Bonus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class BonusBatchRepositoryImpl implements BonusBatchRepository {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String INSERT_BONUS = "INSERT INTO bonuses (value, comment, limited, sprint_id, student_id) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<Bonus> bonuses) {
+        jdbcTemplate.batchUpdate(INSERT_BONUS, bonuses, BATCH_SIZE, (ps, bonus) -> {
+            ps.setFloat(1, bonus.value());
+            ps.setString(2, bonus.comment());
+            ps.setBoolean(3, bonus.limited());
+            ps.setInt(4, bonus.sprint().id());
+            ps.setInt(5, bonus.student().id());
+        });
+    }
+
+}
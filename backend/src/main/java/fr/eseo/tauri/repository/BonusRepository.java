@@ -8,7 +8,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
-public interface BonusRepository extends JpaRepository<Bonus, Integer> {
+public interface BonusRepository extends JpaRepository<Bonus, Integer>, BonusBatchRepository {
 
     @Query("SELECT b FROM Bonus b WHERE b.sprint.project.id = :projectId")
     List<Bonus> findAllByProject(Integer projectId);
@@ -21,6 +21,12 @@ public interface BonusRepository extends JpaRepository<Bonus, Integer> {
     @Query("SELECT b FROM Bonus b WHERE b.student.id = :studentId AND b.sprint.id = :sprintId ORDER BY b.limited ASC")
     List<Bonus> findAllStudentBonuses(Integer studentId, Integer sprintId);
 
+    @Query("SELECT b.student.id, SUM(b.value) FROM Bonus b WHERE b.student.team.id = :teamId AND b.sprint.id = :sprintId GROUP BY b.student.id")
+    List<Object[]> findBonusSumsByTeam(Integer teamId, Integer sprintId);
+
+    @Query("SELECT b.student.id, SUM(b.value) FROM Bonus b WHERE b.student.team.project.id = :projectId AND b.sprint.id = :sprintId GROUP BY b.student.id")
+    List<Object[]> findBonusSumsByProject(Integer projectId, Integer sprintId);
+
     @Query("SELECT b FROM Bonus b WHERE b.student.id = :studentId AND b.limited = :limited AND b.sprint.id = :sprintId")
     Bonus findStudentBonus(Integer studentId, Boolean limited, Integer sprintId);
 
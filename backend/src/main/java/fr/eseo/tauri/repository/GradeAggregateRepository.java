@@ -0,0 +1,74 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.GradeAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+public interface GradeAggregateRepository extends JpaRepository<GradeAggregate, Integer> {
+
+	// Grades of the store : sprint grades given either to a student or to a team
+	String AGGREGATED_GRADES = "SELECT student_id, team_id, sprint_id, grade_type_id, SUM(value) AS value_sum, COUNT(*) AS value_count " +
+			"FROM grades WHERE sprint_id IS NOT NULL AND value IS NOT NULL AND (student_id IS NULL) <> (team_id IS NULL) ";
+
+	String GROUP_AGGREGATED_GRADES = "GROUP BY student_id, team_id, sprint_id, grade_type_id";
+
+	String SAME_KEY = "a.sprint_id = r.sprint_id AND a.grade_type_id = r.grade_type_id AND a.student_id <=> r.student_id AND a.team_id <=> r.team_id";
+
+	@Query("SELECT SUM(a.valueSum) / NULLIF(SUM(a.valueCount), 0) FROM GradeAggregate a WHERE a.student.id = :studentId AND a.sprint.id = :sprintId AND a.gradeType.name = :gradeTypeName")
+	Double findAverageForStudent(Integer studentId, Integer sprintId, String gradeTypeName);
+
+	@Query("SELECT SUM(a.valueSum) / NULLIF(SUM(a.valueCount), 0) FROM GradeAggregate a WHERE a.team.id = :teamId AND a.sprint.id = :sprintId AND a.gradeType.name = :gradeTypeName")
+	Double findAverageForTeam(Integer teamId, Integer sprintId, String gradeTypeName);
+
+	@Modifying
+	@Transactional
+	@Query(value = "INSERT INTO grade_aggregates (student_id, team_id, sprint_id, grade_type_id, value_sum, value_count) " +
+			"VALUES (:studentId, :teamId, :sprintId, :gradeTypeId, :sumDelta, :countDelta) " +
+			"ON DUPLICATE KEY UPDATE value_sum = value_sum + VALUES(value_sum), value_count = value_count + VALUES(value_count)", nativeQuery = true)
+	void applyDelta(Integer studentId, Integer teamId, Integer sprintId, Integer gradeTypeId, Double sumDelta, Integer countDelta);
+
+	@Modifying
+	@Transactional
+	@Query(value = "INSERT INTO grade_aggregates (student_id, team_id, sprint_id, grade_type_id, value_sum, value_count) " +
+			AGGREGATED_GRADES + "AND student_id IN :studentIds AND sprint_id IN :sprintIds AND grade_type_id IN :gradeTypeIds " + GROUP_AGGREGATED_GRADES + " " +
+			"ON DUPLICATE KEY UPDATE value_sum = VALUES(value_sum), value_count = VALUES(value_count)", nativeQuery = true)
+	int refreshStudentAggregates(Collection<Integer> studentIds, Collection<Integer> sprintIds, Collection<Integer> gradeTypeIds);
+
+	@Modifying
+	@Transactional
+	@Query(value = "INSERT INTO grade_aggregates (student_id, team_id, sprint_id, grade_type_id, value_sum, value_count) " +
+			AGGREGATED_GRADES + "AND team_id IN :teamIds AND sprint_id IN :sprintIds AND grade_type_id IN :gradeTypeIds " + GROUP_AGGREGATED_GRADES + " " +
+			"ON DUPLICATE KEY UPDATE value_sum = VALUES(value_sum), value_count = VALUES(value_count)", nativeQuery = true)
+	int refreshTeamAggregates(Collection<Integer> teamIds, Collection<Integer> sprintIds, Collection<Integer> gradeTypeIds);
+
+	@Modifying
+	@Transactional
+	@Query(value = "DELETE FROM grade_aggregates", nativeQuery = true)
+	void deleteAllAggregates();
+
+	@Modifying
+	@Transactional
+	@Query(value = "INSERT INTO grade_aggregates (student_id, team_id, sprint_id, grade_type_id, value_sum, value_count) " +
+			AGGREGATED_GRADES + GROUP_AGGREGATED_GRADES, nativeQuery = true)
+	int insertAllAggregates();
+
+	@Modifying
+	@Transactional
+	@Query(value = "DELETE FROM grade_aggregates WHERE sprint_id IN (SELECT id FROM sprints WHERE project_id = :projectId)", nativeQuery = true)
+	void deleteAllByProject(Integer projectId);
+
+	/**
+	 * Counts the keys whose stored sum or count differs from the grades table, including missing and orphan rows.
+	 */
+	@Query(value = "SELECT " +
+			"(SELECT COUNT(*) FROM (" + AGGREGATED_GRADES + GROUP_AGGREGATED_GRADES + ") r LEFT JOIN grade_aggregates a ON " + SAME_KEY + " " +
+			"WHERE a.id IS NULL OR a.value_count <> r.value_count OR ABS(a.value_sum - r.value_sum) > 0.0001) + " +
+			"(SELECT COUNT(*) FROM grade_aggregates a LEFT JOIN (" + AGGREGATED_GRADES + GROUP_AGGREGATED_GRADES + ") r ON " + SAME_KEY + " " +
+			"WHERE r.value_count IS NULL AND a.value_count <> 0)", nativeQuery = true)
+	long countDrift();
+
+}
@@ -0,0 +1,17 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.Grade;
+
+import java.util.List;
+
+public interface GradeBatchRepository {
+
+    /**
+     * Inserts the given grades with batched statements.
+     * A grade that already exists for the same author, sprint, grade type and student or team is updated instead.
+     * The grades must have their relations resolved; imported grades have no author nor sprint.
+     * @param grades the grades to insert or update
+     */
+    void upsertAll(List<Grade> grades);
+
+}
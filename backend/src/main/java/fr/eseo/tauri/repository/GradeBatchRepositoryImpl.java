@@ -0,0 +1,45 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.Grade;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class GradeBatchRepositoryImpl implements GradeBatchRepository {
+
+    private static final int BATCH_SIZE = 100;
+
+    // The unique constraints of the grades table turn a second grade of the same cell into an update
+    private static final String UPSERT_GRADE = "INSERT INTO grades (value, comment, grade_type_id, author_id, student_id, team_id, sprint_id, confirmed) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, false) " +
+            "ON DUPLICATE KEY UPDATE value = VALUES(value), comment = VALUES(comment)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void upsertAll(List<Grade> grades) {
+        jdbcTemplate.batchUpdate(UPSERT_GRADE, grades, BATCH_SIZE, (ps, grade) -> {
+            ps.setFloat(1, grade.value());
+            ps.setString(2, grade.comment());
+            ps.setInt(3, grade.gradeType().id());
+            setId(ps, 4, grade.author() != null ? grade.author().id() : null);
+            setId(ps, 5, grade.student() != null ? grade.student().id() : null);
+            setId(ps, 6, grade.team() != null ? grade.team().id() : null);
+            setId(ps, 7, grade.sprint() != null ? grade.sprint().id() : null);
+        });
+    }
+
+    private static void setId(PreparedStatement ps, int index, Integer id) throws SQLException {
+        if (id == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, id);
+        }
+    }
+
+}
@@ -10,9 +10,10 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface GradeRepository extends JpaRepository<Grade, Integer> {
+public interface GradeRepository extends JpaRepository<Grade, Integer>, GradeBatchRepository {
 
 	@Query("SELECT g FROM Grade g WHERE g.gradeType.imported = true  AND g.student.project.id = :projectId")
 	List<Grade> findAllImportedByProject(Integer projectId);
@@ -28,12 +29,8 @@ public interface GradeRepository extends JpaRepository<Grade, Integer> {
 	@Query("SELECT g FROM Grade g WHERE g.team.id = :teamId")
 	List<Grade> findAllByTeamId(Long teamId);
 
-	@Query("SELECT AVG(gr.value) FROM Grade gr, GradeType gt, User u, Role r " +
-			"WHERE gr.gradeType.id = gt.id AND u.id = gr.author.id AND r.user.id = u.id " +
-			"AND gt.name = :gradeTypeName " +
-			"AND gr.team = :team " +
-			"AND r.type = :roleType")
-	Double findAverageGradesByGradeType(Team team, String gradeTypeName, RoleType roleType);
+	@Query("SELECT g.gradeType.id, r.type, AVG(g.value) FROM Grade g JOIN Role r ON g.author.id = r.user.id WHERE g.team.id = :teamId GROUP BY g.gradeType.id, r.type")
+	List<Object[]> findTeamAveragesByGradeTypeAndRoleType(Integer teamId);
 
 	@Query("SELECT AVG(g.value) FROM Grade g JOIN Role r ON g.author.id = r.user.id WHERE g.gradeType = :gradeType AND g.team = :team AND r.type = :roleType")
 	Double findAverageTeamGradeByGradeTypeAndRoleType(Team team, GradeType gradeType, RoleType roleType);
@@ -41,36 +38,85 @@ public interface GradeRepository extends JpaRepository<Grade, Integer> {
 	@Query("SELECT AVG(g.value) FROM Grade g JOIN Role r ON g.author.id = r.user.id WHERE g.gradeType = :gradeType AND g.student = :student AND r.type = :roleType")
 	Double findAverageStudentGradeByGradeTypeAndRoleType(Student student, GradeType gradeType, RoleType roleType);
 
-	@Query("SELECT AVG(g.value) FROM Grade g WHERE g.student.id = :studentId AND g.gradeType.name = :gradeTypeName AND g.sprint.id = :sprintId")
-	Double findAverageByGradeTypeForStudent(Integer studentId, Integer sprintId, String gradeTypeName);
+	@Query("SELECT g.gradeType.name, AVG(g.value) FROM Grade g WHERE g.team.id = :teamId AND g.sprint.id = :sprintId AND g.gradeType.forGroup = true AND g.gradeType.imported = false GROUP BY g.gradeType.name")
+	List<Object[]> findTeamAveragesByGradeType(Integer teamId, Integer sprintId);
 
-	@Query("SELECT AVG(g.value) FROM Grade g WHERE g.team.id = :teamId AND g.gradeType.name = :gradeTypeName AND g.sprint.id = :sprintId")
-	Double findAverageByGradeTypeForTeam(Integer teamId, Integer sprintId, String gradeTypeName);
+	@Query("SELECT g.student.id, AVG(g.value) FROM Grade g WHERE g.student.team.id = :teamId AND g.sprint.id = :sprintId AND g.gradeType.name = :gradeTypeName GROUP BY g.student.id")
+	List<Object[]> findStudentAveragesByTeam(Integer teamId, Integer sprintId, String gradeTypeName);
+
+	@Query("SELECT g.team.id, g.gradeType.name, AVG(g.value) FROM Grade g WHERE g.team.project.id = :projectId AND g.sprint.id = :sprintId AND g.gradeType.forGroup = true AND g.gradeType.imported = false GROUP BY g.team.id, g.gradeType.name")
+	List<Object[]> findTeamAveragesByGradeTypeForProject(Integer projectId, Integer sprintId);
+
+	@Query("SELECT g.student.id, AVG(g.value) FROM Grade g WHERE g.student.team.project.id = :projectId AND g.sprint.id = :sprintId AND g.gradeType.name = :gradeTypeName GROUP BY g.student.id")
+	List<Object[]> findStudentAveragesByProject(Integer projectId, Integer sprintId, String gradeTypeName);
 
 	@Modifying
 	@Transactional
 	@Query("UPDATE Grade g SET g.value = :value WHERE g.student.id = :studentId AND g.gradeType.imported AND g.gradeType.name = 'Moyenne'")
 	void updateImportedMeanByStudentId(Float value, Integer studentId);
 
-	@Query("SELECT g.value FROM Grade g WHERE g.student = :student AND g.gradeType = :gradeType")
-	Float findValueByStudentAndGradeType(Student student, GradeType gradeType);
+	/**
+	 * Recompute the imported "Moyenne" grade of every non bachelor student of a project in a single statement.
+	 * The mean is weighted by the factor of each imported grade type, and is 0 when there is no grade or all factors are 0.
+	 * @param projectId the id of the project
+	 * @return the number of updated grades
+	 */
+	@Query("SELECT COUNT(s) FROM Student s WHERE s.team.id = :teamId AND NOT EXISTS (" +
+			"SELECT g FROM Grade g WHERE g.student = s AND g.sprint.id = :sprintId AND g.gradeType.name = :gradeTypeName AND g.gradeType.project.id = :projectId)")
+	long countStudentsWithoutGradeByTeam(Integer sprintId, Integer teamId, String gradeTypeName, Integer projectId);
+
+	@Modifying
+	@Transactional
+	@Query(value = "UPDATE grades g " +
+			"JOIN grade_types gt ON gt.id = g.grade_type_id " +
+			"JOIN students s ON s.user_id = g.student_id " +
+			"LEFT JOIN (SELECT gr.student_id, SUM(gr.value * t.factor) / NULLIF(SUM(t.factor), 0) AS mean " +
+			"FROM grades gr JOIN grade_types t ON t.id = gr.grade_type_id JOIN students st ON st.user_id = gr.student_id " +
+			"WHERE t.imported = true AND t.name <> 'Moyenne' AND st.project_id = :projectId " +
+			"GROUP BY gr.student_id) m ON m.student_id = g.student_id " +
+			"SET g.value = COALESCE(m.mean, 0) " +
+			"WHERE gt.imported = true AND gt.name = 'Moyenne' AND s.project_id = :projectId " +
+			"AND (s.bachelor IS NULL OR s.bachelor = false)", nativeQuery = true)
+	int updateImportedMeansByProject(Integer projectId);
+
+	@Query("SELECT g.student.id, AVG(g.value) FROM Grade g WHERE g.student.project.id = :projectId AND g.gradeType.imported = true AND g.gradeType.name = 'Moyenne' GROUP BY g.student.id")
+	List<Object[]> findImportedAveragesByProject(Integer projectId);
+
+	/**
+	 * Get the imported grades of the students of a project.
+	 * @return rows of [studentId, gradeTypeId, value]
+	 */
+	@Query("SELECT g.student.id, g.gradeType.id, g.value FROM Grade g WHERE g.gradeType.imported = true AND g.student.project.id = :projectId")
+	List<Object[]> findImportedGradesByProject(Integer projectId);
 
 
 	@Query("SELECT g.gradeType FROM Grade g WHERE g.gradeType.imported = false and g.student.project.id = :projectId")
 	List<GradeType> findAllUnimportedGradeTypesByProjectId(int projectId);
 
+	/**
+	 * Average of the unimported grades of every student of a project, grouped by student and grade type.
+	 * @param projectId the id of the project
+	 * @return rows of [studentId, gradeTypeId, average]
+	 */
+	@Query("SELECT g.student.id, g.gradeType.id, AVG(g.value) FROM Grade g WHERE g.gradeType.imported = false AND g.student.project.id = :projectId GROUP BY g.student.id, g.gradeType.id")
+	List<Object[]> findUnimportedAveragesByProject(int projectId);
 
-	@Query("SELECT g FROM Grade g WHERE g.sprint.id = :sprintId AND g.student.id = :studentId AND g.gradeType.id = :gradeType")
-	Grade findIsConfirmedBySprindAndStudent(Integer sprintId, Integer studentId, Integer gradeType);
 
 	@Query("SELECT g FROM Grade g WHERE g.sprint.id = :sprintId AND g.student.id = :studentId AND g.gradeType.id = :gradeType")
-	List<Grade> findIsConfirmedBySprindAndStudents(Integer sprintId, Integer studentId, Integer gradeType);
+	Grade findIsConfirmedBySprindAndStudent(Integer sprintId, Integer studentId, Integer gradeType);
 
+	@Query("SELECT COUNT(g) FROM Grade g WHERE g.sprint.id = :sprintId AND g.student.team.id = :teamId AND g.gradeType.name = :gradeTypeName AND g.gradeType.project.id = :projectId AND g.confirmed = false")
+	long countUnconfirmedByTeam(Integer sprintId, Integer teamId, String gradeTypeName, Integer projectId);
 
-	@Transactional
 	@Modifying
-	@Query("UPDATE Grade g SET g.confirmed = true WHERE g.id = :gradeId")
-	void setConfirmedBySprintAndStudent(Integer gradeId);
+	@Transactional
+	@Query(value = "UPDATE grades g " +
+			"JOIN grade_types gt ON gt.id = g.grade_type_id " +
+			"JOIN students s ON s.user_id = g.student_id " +
+			"SET g.confirmed = true " +
+			"WHERE g.sprint_id = :sprintId AND s.team_id = :teamId AND gt.name = :gradeTypeName AND gt.project_id = :projectId " +
+			"AND g.confirmed = false", nativeQuery = true)
+	int confirmAllByTeam(Integer sprintId, Integer teamId, String gradeTypeName, Integer projectId);
 
 
 	@Query("SELECT g FROM Grade g WHERE g.student.id = :studentId AND g.gradeType.id = :gradeTypeId AND g.author.id = :authorId AND g.sprint.id = :sprintId")
@@ -79,6 +125,18 @@ public interface GradeRepository extends JpaRepository<Grade, Integer> {
 	@Query("SELECT g FROM Grade g WHERE g.author.id = :authorId")
 	List<Grade> findAllByAuthorId(Integer authorId);
 
+	@Query("SELECT CASE WHEN COUNT(g) > 0 THEN true ELSE false END FROM Grade g WHERE g.student.id = :studentId AND g.sprint.id = :sprintId AND g.gradeType.id = :gradeTypeId AND g.author.id = :authorId")
+	boolean existsStudentGrade(Integer authorId, Integer sprintId, Integer gradeTypeId, Integer studentId);
+
+	@Query("SELECT CASE WHEN COUNT(g) > 0 THEN true ELSE false END FROM Grade g WHERE g.team.id = :teamId AND g.sprint.id = :sprintId AND g.gradeType.id = :gradeTypeId AND g.author.id = :authorId")
+	boolean existsTeamGrade(Integer authorId, Integer sprintId, Integer gradeTypeId, Integer teamId);
+
+	@Query("SELECT g.author.id, g.sprint.id, g.gradeType.id, g.student.id FROM Grade g WHERE g.student.id IN :studentIds AND g.sprint.id IN :sprintIds AND g.gradeType.id IN :gradeTypeIds AND g.author.id IN :authorIds")
+	List<Object[]> findStudentGradeKeys(Collection<Integer> authorIds, Collection<Integer> sprintIds, Collection<Integer> gradeTypeIds, Collection<Integer> studentIds);
+
+	@Query("SELECT g.author.id, g.sprint.id, g.gradeType.id, g.team.id FROM Grade g WHERE g.team.id IN :teamIds AND g.sprint.id IN :sprintIds AND g.gradeType.id IN :gradeTypeIds AND g.author.id IN :authorIds")
+	List<Object[]> findTeamGradeKeys(Collection<Integer> authorIds, Collection<Integer> sprintIds, Collection<Integer> gradeTypeIds, Collection<Integer> teamIds);
+
 	@Query("SELECT g FROM Grade g WHERE g.sprint.id = :sprintId AND g.student.team.id = :teamId AND g.gradeType.name = 'Performance individuelle'")
 	List<Grade> findIndividualGradesByTeam(Integer sprintId, Integer teamId);
 }
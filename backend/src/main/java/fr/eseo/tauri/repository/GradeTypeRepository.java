@@ -14,6 +14,9 @@ public interface GradeTypeRepository extends JpaRepository<GradeType, Integer> {
 	@Query("SELECT g FROM GradeType g WHERE g.forGroup")
 	List<GradeType> findAllForGroup();
 
+	@Query("SELECT g FROM GradeType g WHERE g.forGroup AND g.project.id = :projectId ORDER BY g.id")
+	List<GradeType> findAllForGroupByProject(Integer projectId);
+
 
 	@Query("SELECT gt FROM GradeType gt WHERE gt.imported = true AND gt.project.id = :projectId")
 	List<GradeType> findAllImported(Integer projectId);
@@ -32,6 +35,11 @@ public interface GradeTypeRepository extends JpaRepository<GradeType, Integer> {
 	@Query("DELETE FROM GradeType gt WHERE gt.imported = true")
 	void deleteAllImported();
 
+	@Modifying
+	@Transactional
+	@Query("DELETE FROM GradeType gt WHERE gt.imported = true AND gt.project.id = :projectId")
+	int deleteAllImportedByProject(Integer projectId);
+
 	@Modifying
 	@Transactional
 	@Query("DELETE FROM GradeType gt WHERE gt.imported = false")
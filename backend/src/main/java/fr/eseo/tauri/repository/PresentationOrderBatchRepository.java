@@ -0,0 +1,15 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.PresentationOrder;
+
+import java.util.List;
+
+public interface PresentationOrderBatchRepository {
+
+    /**
+     * Inserts the given presentation orders with batched statements.
+     * @param presentationOrders the presentation orders to insert, with their sprint and student resolved
+     */
+    void insertAll(List<PresentationOrder> presentationOrders);
+
+}
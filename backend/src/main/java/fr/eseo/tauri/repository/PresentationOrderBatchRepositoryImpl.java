@@ -0,0 +1,32 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.PresentationOrder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class PresentationOrderBatchRepositoryImpl implements PresentationOrderBatchRepository {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String INSERT_PRESENTATION_ORDER = "INSERT INTO presentation_orders (sprint_id, student_id, value) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<PresentationOrder> presentationOrders) {
+        jdbcTemplate.batchUpdate(INSERT_PRESENTATION_ORDER, presentationOrders, BATCH_SIZE, (ps, presentationOrder) -> {
+            ps.setInt(1, presentationOrder.sprint().id());
+            ps.setInt(2, presentationOrder.student().id());
+            if (presentationOrder.value() == null) {
+                ps.setNull(3, Types.INTEGER);
+            } else {
+                ps.setInt(3, presentationOrder.value());
+            }
+        });
+    }
+
+}
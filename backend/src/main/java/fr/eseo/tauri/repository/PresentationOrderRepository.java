@@ -8,7 +8,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
-public interface PresentationOrderRepository extends JpaRepository<PresentationOrder, Integer> {
+public interface PresentationOrderRepository extends JpaRepository<PresentationOrder, Integer>, PresentationOrderBatchRepository {
 
     @Query("SELECT po FROM PresentationOrder po WHERE po.sprint.project.id = :projectId")
     List<PresentationOrder> findAllByProject(Integer projectId);
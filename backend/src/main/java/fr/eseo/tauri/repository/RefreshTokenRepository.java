@@ -0,0 +1,44 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Integer> {
+
+    @Query("SELECT rt FROM RefreshToken rt JOIN FETCH rt.user WHERE rt.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Returns the number of deleted tokens, 0 when another request has already used the token
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.id = :id")
+    int deleteAndCountById(Integer id);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.expiresAt < :now")
+    int deleteAllExpired(Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.roles = NULL WHERE rt.user.id = :userId")
+    void forgetRolesByUser(Integer userId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.roles = NULL WHERE rt.user.id IN :userIds")
+    void forgetRolesByUsers(Collection<Integer> userIds);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.roles = NULL")
+    void forgetAllRoles();
+
+}
@@ -0,0 +1,16 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.Role;
+
+import java.util.List;
+
+public interface RoleBatchRepository {
+
+    /**
+     * Inserts the given roles with batched statements.
+     * The ids of the roles are not set back on the entities.
+     * @param roles the roles to insert, with their user resolved
+     */
+    void insertAll(List<Role> roles);
+
+}
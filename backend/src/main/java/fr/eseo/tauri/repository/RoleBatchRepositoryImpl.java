@@ -0,0 +1,26 @@
+package fr.eseo.tauri.repository;
+
+import fr.eseo.tauri.model.Role;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class RoleBatchRepositoryImpl implements RoleBatchRepository {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String INSERT_ROLE = "INSERT INTO roles (type, user_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<Role> roles) {
+        jdbcTemplate.batchUpdate(INSERT_ROLE, roles, BATCH_SIZE, (ps, role) -> {
+            ps.setString(1, role.type().name());
+            ps.setInt(2, role.user().id());
+        });
+    }
+
+}
@@ -8,11 +8,14 @@ import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
-public interface RoleRepository extends JpaRepository<Role, Integer> {
+public interface RoleRepository extends JpaRepository<Role, Integer>, RoleBatchRepository {
 
     @Query("SELECT r.type FROM Role r WHERE r.user = :user")
     List<RoleType> findByUser(User user);
 
+    @Query("SELECT r.type FROM Role r WHERE r.user.id = :userId")
+    List<RoleType> findByUserId(Integer userId);
+
     @Query("SELECT r FROM Role r WHERE r.type = :roleType")
     List<Role> findByType(RoleType roleType);
 
@@ -22,4 +25,7 @@ public interface RoleRepository extends JpaRepository<Role, Integer> {
     @Query("SELECT r FROM Role r WHERE r.user = :user AND r.type = :roleType")
     Role findFirstByUserAndType(User user, RoleType roleType);
 
+    @Query("SELECT s.id FROM Student s, Role r WHERE r.user.id = s.id AND r.type = :roleType AND s.project.id = :projectId")
+    List<Integer> findStudentIdsByTypeAndProject(RoleType roleType, Integer projectId);
+
 }
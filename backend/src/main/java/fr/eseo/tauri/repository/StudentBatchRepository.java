@@ -0,0 +1,22 @@
+package fr.eseo.tauri.repository;
+
+import java.util.List;
+import java.util.Map;
+
+public interface StudentBatchRepository {
+
+    /**
+     * Moves students to their team with batched statements.
+     * @param teamIdsByStudentId the id of the new team of each student
+     */
+    void assignTeams(Map<Integer, Integer> teamIdsByStudentId);
+
+    /**
+     * Deletes students and every row that refers to them, with one statement per table, children first.
+     * The teams they lead lose their leader.
+     * @param studentIds the ids of the students
+     * @return the number of deleted rows
+     */
+    int deleteAllWithDependents(List<Integer> studentIds);
+
+}
@@ -0,0 +1,61 @@
+package fr.eseo.tauri.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class StudentBatchRepositoryImpl implements StudentBatchRepository {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String ASSIGN_TEAM = "UPDATE students SET team_id = ? WHERE user_id = ?";
+
+    // In dependency order, each statement is run with the ids of the students in place of every "%1$s"
+    private static final List<String> DELETE_WITH_DEPENDENTS = List.of(
+            "DELETE FROM validation_bonuses WHERE author_id IN (%1$s) OR bonus_id IN (SELECT id FROM bonuses WHERE student_id IN (%1$s) OR author_id IN (%1$s))",
+            "DELETE FROM validation_flags WHERE author_id IN (%1$s) OR flag_id IN (SELECT id FROM flags WHERE first_student_id IN (%1$s) OR second_student_id IN (%1$s) OR author_id IN (%1$s))",
+            "DELETE FROM flags WHERE first_student_id IN (%1$s) OR second_student_id IN (%1$s) OR author_id IN (%1$s)",
+            "DELETE FROM bonuses WHERE student_id IN (%1$s) OR author_id IN (%1$s)",
+            "DELETE FROM presentation_orders WHERE student_id IN (%1$s)",
+            "DELETE FROM grade_aggregates WHERE student_id IN (%1$s)",
+            "DELETE FROM grades WHERE student_id IN (%1$s) OR author_id IN (%1$s)",
+            "DELETE FROM comments WHERE student_id IN (%1$s) OR author_id IN (%1$s)",
+            "DELETE FROM notifications WHERE user_to IN (%1$s) OR user_from IN (%1$s)",
+            "DELETE FROM roles WHERE user_id IN (%1$s)",
+            "DELETE FROM refresh_tokens WHERE user_id IN (%1$s)",
+            "UPDATE teams SET leader_id = NULL WHERE leader_id IN (%1$s)",
+            "DELETE FROM students WHERE user_id IN (%1$s)",
+            "DELETE FROM users WHERE id IN (%1$s)");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void assignTeams(Map<Integer, Integer> teamIdsByStudentId) {
+        jdbcTemplate.batchUpdate(ASSIGN_TEAM, new ArrayList<>(teamIdsByStudentId.entrySet()), BATCH_SIZE, (ps, assignment) -> {
+            ps.setInt(1, assignment.getValue());
+            ps.setInt(2, assignment.getKey());
+        });
+    }
+
+    @Override
+    public int deleteAllWithDependents(List<Integer> studentIds) {
+        if (studentIds.isEmpty()) return 0;
+        String placeholders = String.join(",", Collections.nCopies(studentIds.size(), "?"));
+        int deletedRows = 0;
+        for (String statement : DELETE_WITH_DEPENDENTS) {
+            String sql = String.format(statement, placeholders);
+            // The ids are bound once for each list of placeholders of the statement
+            int lists = statement.split("%1\\$s", -1).length - 1;
+            Object[] args = Collections.nCopies(lists, studentIds).stream().flatMap(List::stream).toArray();
+            int rows = jdbcTemplate.update(sql, args);
+            if (!statement.startsWith("UPDATE")) deletedRows += rows;
+        }
+        return deletedRows;
+    }
+
+}
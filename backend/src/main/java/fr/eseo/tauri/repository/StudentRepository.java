@@ -9,11 +9,14 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
-public interface StudentRepository extends JpaRepository<Student, Integer> {
+public interface StudentRepository extends JpaRepository<Student, Integer>, StudentBatchRepository {
 
     @Query("SELECT s FROM Student s WHERE s.project.id = :projectId")
     List<Student> findAllByProject(Integer projectId);
 
+    @Query("SELECT s.id FROM Student s WHERE s.project.id = :projectId ORDER BY s.id")
+    List<Integer> findAllIdsByProject(Integer projectId);
+
     @Transactional
     @Modifying
     @Query(value = "DELETE FROM students WHERE project_id = :projectId", nativeQuery = true)
@@ -26,6 +29,9 @@ public interface StudentRepository extends JpaRepository<Student, Integer> {
     @Query("SELECT s FROM Student s WHERE s.team.id = :teamId")
     List<Student> findByTeam(Integer teamId);
 
+    @Query("SELECT s FROM Student s WHERE s.team.project.id = :projectId")
+    List<Student> findAllWithTeamByProject(Integer projectId);
+
     List<Student> findByGender(Gender gender);
     @Query("SELECT s FROM Student s WHERE s.gender = :gender AND s.project.id = :projectId")
     List<Student> findByGenderAndProjectId(Gender gender, Integer projectId);
@@ -41,13 +47,11 @@ public interface StudentRepository extends JpaRepository<Student, Integer> {
     @Query("UPDATE Student s SET s.team = null WHERE s.project.id = :projectId")
     void removeAllStudentsFromTeams(Integer projectId);
 
-	@Query("SELECT COUNT(s) FROM Student s WHERE s.gender = 'WOMAN'")
-	int countWomen();
-
-	@Query("SELECT COUNT(s) FROM Student s")
-	int countTotal();
-
-	@Query("SELECT COUNT(s) FROM Student s WHERE s.bachelor = true")
-	int countBachelor();
+	/**
+	 * Count the students of a project by gender and bachelor status.
+	 * @return rows of [gender, bachelor, count]
+	 */
+	@Query("SELECT s.gender, s.bachelor, COUNT(s) FROM Student s WHERE s.project.id = :projectId GROUP BY s.gender, s.bachelor")
+	List<Object[]> countByGenderAndBachelor(Integer projectId);
 
 }
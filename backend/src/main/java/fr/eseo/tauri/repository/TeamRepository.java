@@ -17,7 +17,22 @@ public interface TeamRepository extends JpaRepository<Team, Integer> {
     @Transactional
     @Modifying
     @Query(value = "DELETE FROM teams WHERE project_id = :projectId", nativeQuery = true)
-    void deleteAllByProject(Integer projectId);
+    int deleteAllByProject(Integer projectId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM grade_aggregates WHERE team_id IN (SELECT id FROM teams WHERE project_id = :projectId)", nativeQuery = true)
+    int deleteAllTeamAggregatesByProject(Integer projectId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM grades WHERE team_id IN (SELECT id FROM teams WHERE project_id = :projectId)", nativeQuery = true)
+    int deleteAllTeamGradesByProject(Integer projectId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM comments WHERE team_id IN (SELECT id FROM teams WHERE project_id = :projectId)", nativeQuery = true)
+    int deleteAllTeamCommentsByProject(Integer projectId);
 
     @Query("SELECT COUNT(s) FROM Student s WHERE s.team.id = :teamId AND s.gender = 'WOMAN'")
     Integer countWomenInTeam(Integer teamId);
@@ -46,6 +61,24 @@ public interface TeamRepository extends JpaRepository<Team, Integer> {
     @Query("SELECT AVG(gr.value) FROM Grade gr JOIN gr.student s JOIN gr.gradeType gt WHERE s.team = ?1 AND gt.name = 'Moyenne'")
     Double findAvgGradeByTeam(Team team);
 
+    /**
+     * Count the students, women and bachelors of every team of a project, with the average imported grade of its students.
+     * @return rows of [team id, team name, students, women, bachelors, average], ordered by team id
+     */
+    @Query(value = "SELECT t.id, t.name, COUNT(s.user_id), " +
+            "COALESCE(SUM(CASE WHEN s.gender = 'WOMAN' THEN 1 ELSE 0 END), 0), " +
+            "COALESCE(SUM(CASE WHEN s.bachelor = true THEN 1 ELSE 0 END), 0), AVG(m.value) " +
+            "FROM teams t " +
+            "LEFT JOIN students s ON s.team_id = t.id " +
+            "LEFT JOIN (SELECT g.student_id, AVG(g.value) AS value FROM grades g " +
+            "JOIN grade_types gt ON gt.id = g.grade_type_id " +
+            "JOIN students st ON st.user_id = g.student_id " +
+            "WHERE gt.name = 'Moyenne' AND st.project_id = :projectId " +
+            "GROUP BY g.student_id) m ON m.student_id = s.user_id " +
+            "WHERE t.project_id = :projectId " +
+            "GROUP BY t.id, t.name ORDER BY t.id", nativeQuery = true)
+    List<Object[]> findCriteriaByProject(Integer projectId);
+
     @Query("SELECT s.team FROM Student s WHERE s.id = :studentId")
     Team findTeamByStudentId(int studentId);
 
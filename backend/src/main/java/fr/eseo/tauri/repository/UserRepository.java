@@ -2,8 +2,13 @@ package fr.eseo.tauri.repository;
 
 import fr.eseo.tauri.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Integer> {
@@ -12,4 +17,20 @@ public interface UserRepository extends JpaRepository<User, Integer> {
 
     @Query("SELECT u FROM User u WHERE u.name = :name")
     User findByName(String name);
+
+    /**
+     * @return rows of [userId, rolesChangedAt] of the users whose roles have changed after the given time
+     */
+    @Query("SELECT u.id, u.rolesChangedAt FROM User u WHERE u.rolesChangedAt > :since")
+    List<Object[]> findRolesChangedAfter(Instant since);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.rolesChangedAt = :changedAt WHERE u.id IN :userIds")
+    int updateRolesChangedAt(Collection<Integer> userIds, Instant changedAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.rolesChangedAt = :changedAt")
+    int updateAllRolesChangedAt(Instant changedAt);
 }
\ No newline at end of file
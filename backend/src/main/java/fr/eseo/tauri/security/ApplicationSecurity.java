@@ -5,16 +5,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.config.Customizer;
-import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.LdapShaPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
+import org.springframework.security.ldap.authentication.BindAuthenticator;
+import org.springframework.security.ldap.authentication.LdapAuthenticationProvider;
+import org.springframework.security.ldap.search.FilterBasedLdapUserSearch;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -59,7 +61,8 @@ public class ApplicationSecurity {
                 .cors(Customizer.withDefaults())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/auth/login", "/tauri/api/auth/login").permitAll()
+                        .requestMatchers("/api/auth/login", "/tauri/api/auth/login", "/api/auth/refresh", "/tauri/api/auth/refresh",
+                                "/api/grades/events", "/tauri/api/grades/events").permitAll()
                         .anyRequest().authenticated())
                 .addFilterBefore(jwtTokenFilter, UsernamePasswordAuthenticationFilter.class);
 
@@ -67,23 +70,37 @@ public class ApplicationSecurity {
     }
 
     @Bean
-    public AuthenticationManager authenticationManager(HttpSecurity http) throws Exception {
-        AuthenticationManagerBuilder auth = http.getSharedObject(AuthenticationManagerBuilder.class);
-        PasswordEncoder passwordEncoder = new LdapShaPasswordEncoder();
-
-        auth
-            .ldapAuthentication()
-                .contextSource()
-                    .url(ldapUrl + ldapBaseDn)
-                    .managerDn(ldapUsername)
-                    .managerPassword(ldapPassword)
-                .and()
-                .userSearchFilter(ldapUserSearchFilter)
-                .passwordEncoder(passwordEncoder);
-
-        return auth.build();
+    public DefaultSpringSecurityContextSource ldapContextSource() {
+        return pooledContextSource(ldapUrl + ldapBaseDn, ldapUsername, ldapPassword);
     }
 
+    @Bean
+    public AuthenticationManager authenticationManager(DefaultSpringSecurityContextSource ldapContextSource) {
+        return ldapAuthenticationManager(ldapContextSource, ldapUserSearchFilter);
+    }
+
+    /**
+     * Creates the LDAP context source, with the connections of the manager account kept in the JNDI pool.
+     * The search of the user reuses a pooled connection, the bind with the credentials of the user opens its own.
+     * The size of the JNDI pool is set for the whole JVM by LdapPoolInitializer, before the context starts.
+     */
+    public static DefaultSpringSecurityContextSource pooledContextSource(String url, String managerDn, String managerPassword) {
+        DefaultSpringSecurityContextSource contextSource = new DefaultSpringSecurityContextSource(url);
+        contextSource.setUserDn(managerDn);
+        contextSource.setPassword(managerPassword);
+        contextSource.setPooled(true);
+        contextSource.afterPropertiesSet();
+        return contextSource;
+    }
+
+    /**
+     * Authenticates a user by searching their entry with the manager account, then binding with their password.
+     */
+    public static AuthenticationManager ldapAuthenticationManager(DefaultSpringSecurityContextSource contextSource, String userSearchFilter) {
+        BindAuthenticator authenticator = new BindAuthenticator(contextSource);
+        authenticator.setUserSearch(new FilterBasedLdapUserSearch("", userSearchFilter, contextSource));
+        return new ProviderManager(new LdapAuthenticationProvider(authenticator));
+    }
 
     @Bean
     public UserDetailsService userDetailsService() {
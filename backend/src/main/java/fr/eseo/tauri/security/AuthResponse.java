@@ -1,5 +1,6 @@
 package fr.eseo.tauri.security;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -13,6 +14,18 @@ public class AuthResponse {
     @JsonProperty
     private String accessToken;
 
+    // Single use, exchanged for a new access token once the access token has expired
+    @JsonProperty
+    private String refreshToken;
+
     @JsonProperty
     private Integer idProject;
+
+    // Time spent binding to LDAP, given in the Server-Timing header rather than in the body
+    @JsonIgnore
+    private long ldapMs;
+
+    // Time spent reading the user, their roles and the actual project
+    @JsonIgnore
+    private long databaseMs;
 }
@@ -1,6 +1,7 @@
 package fr.eseo.tauri.security;
 
-import fr.eseo.tauri.util.CustomLogger;
+import fr.eseo.tauri.service.PermissionService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,24 +13,34 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Locale;
 
 @Component
 @AllArgsConstructor
 public class JwtTokenFilter extends OncePerRequestFilter {
 
+    // Standard header read by the browsers' developer tools and by the proxies
+    static final String SERVER_TIMING_HEADER = "Server-Timing";
+
     private final JwtTokenUtil jwtTokenUtil;
+    private final PermissionService permissionService;
     @Override
     protected void doFilterInternal(@NotNull HttpServletRequest request, @NotNull HttpServletResponse response, @NotNull FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
         String token = jwtTokenUtil.extractToken(request);
-
-        CustomLogger.info(request.getRequestURI());
-
-        if (token != null && jwtTokenUtil.validateAccessToken(token)) {
-            UserDetails userDetails = jwtTokenUtil.createUserDetails(token);
-            jwtTokenUtil.setAuthenticationContext(userDetails, request);
+        Claims claims = token != null ? jwtTokenUtil.verifyAccessToken(token) : null;
+        TokenPermissions tokenPermissions = claims != null ? jwtTokenUtil.readPermissions(claims) : null;
+
+        // A token issued before the permissions of the roles or the roles of its user changed is rejected, the user has to get a new one
+        if (tokenPermissions != null && tokenPermissions.version() == permissionService.getPermissionsVersion()
+                && !permissionService.haveRolesChangedSince(tokenPermissions.userId(), tokenPermissions.issuedAt())) {
+            UserDetails userDetails = jwtTokenUtil.createUserDetails(claims);
+            jwtTokenUtil.setAuthenticationContext(userDetails, tokenPermissions);
+            // The time spent authenticating the request, in milliseconds
+            response.setHeader(SERVER_TIMING_HEADER, String.format(Locale.ROOT, "auth;dur=%.3f", (System.nanoTime() - start) / 1_000_000.0));
             filterChain.doFilter(request, response);
 
-        } else if (request.getRequestURI().equals("/api/auth/login") || request.getRequestURI().equals("/tauri/api/auth/login")) {
+        } else if (isPublic(request.getRequestURI())) {
             filterChain.doFilter(request, response);
 
         } else if (request.getRequestURI().contains(("/api/")) || request.getRequestURI().contains("/tauri/api/")) {
@@ -39,4 +50,11 @@ public class JwtTokenFilter extends OncePerRequestFilter {
             filterChain.doFilter(request, response);
         }
     }
+
+    // The stream of the grade events is opened with a ticket instead of the access token, as an EventSource cannot send headers
+    private static boolean isPublic(String uri) {
+        return uri.equals("/api/auth/login") || uri.equals("/tauri/api/auth/login")
+                || uri.equals("/api/auth/refresh") || uri.equals("/tauri/api/auth/refresh")
+                || uri.equals("/api/grades/events") || uri.equals("/tauri/api/grades/events");
+    }
 }
@@ -1,6 +1,8 @@
 package fr.eseo.tauri.security;
 
 import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.model.enumeration.PermissionType;
+import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.util.CustomLogger;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
@@ -10,15 +12,25 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
-import java.util.Date;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class JwtTokenUtil {
 
+    static final int MAX_VERIFIED_TOKENS = 1024;
+
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLES_CLAIM = "roles";
+    static final String PERMISSIONS_CLAIM = "perms";
+    static final String PERMISSIONS_VERSION_CLAIM = "pver";
+
     @Value("${app.jwt.secret}")
     private String secretKey;
 
@@ -28,41 +40,129 @@ public class JwtTokenUtil {
     @Value("${app.jwt.expiration}")
     private long expireDuration;
 
+    // The claims of the tokens already verified, by hash of the token, until the tokens expire
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    private record VerifiedToken(Claims claims, Instant expiresAt) {
+    }
+
+    /**
+     * Reads the access token of a request from its Authorization header.
+     */
     public String extractToken(HttpServletRequest request) {
         String header = request.getHeader("Authorization");
-        return (header != null && header.startsWith("Bearer ")) ? header.substring(7) : null;
+        if (header != null && header.startsWith("Bearer ")) return header.substring(7);
+        return null;
     }
 
-    public boolean validateAccessToken(String token) {
+    /**
+     * Verifies the signature and the expiration of an access token, once per token:
+     * the claims of a valid token are kept in memory until the token expires.
+     * @return the claims of the token, or null if the token is not valid
+     */
+    public Claims verifyAccessToken(String token) {
+        String key = hash(token);
+        Instant now = Instant.now();
+        VerifiedToken verified = verifiedTokens.get(key);
+        if (verified != null) {
+            if (verified.expiresAt().isAfter(now)) return verified.claims();
+            verifiedTokens.remove(key, verified);
+        }
+
+        Claims claims;
         try {
-            Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token);
-            return true;
+            claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
         } catch (Exception e) {
             CustomLogger.error("Validate token : " + e);
-            return false;
+            return null;
+        }
+        // A token without expiration is verified on each request
+        if (claims.getExpiration() != null) {
+            evictExpired(now);
+            verifiedTokens.put(key, new VerifiedToken(claims, claims.getExpiration().toInstant()));
         }
+        return claims;
     }
 
-    public UserDetails createUserDetails(String token) {
+    public UserDetails createUserDetails(Claims claims) {
         User userDetails = new User();
-        Claims claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
         userDetails.email(claims.getSubject().split(",")[0]);
+        userDetails.id(claims.get(USER_ID_CLAIM, Integer.class));
         return userDetails;
     }
 
-    public void setAuthenticationContext(UserDetails userDetails, HttpServletRequest request) {
+    /**
+     * Authenticates the current request, with the permissions of its token as the details of the authentication.
+     */
+    public void setAuthenticationContext(UserDetails userDetails, TokenPermissions tokenPermissions) {
         UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        authentication.setDetails(tokenPermissions);
         SecurityContextHolder.getContext().setAuthentication(authentication);
     }
 
-    public String generateAccessToken(User user) {
+    /**
+     * Generates an access token that carries the id, the roles and the permissions of the user,
+     * so that the permissions can be checked without querying the database.
+     * @param permissionsVersion the version of the permissions of the roles, see {@link TokenPermissions#version()}
+     */
+    public String generateAccessToken(User user, Collection<RoleType> roles, Set<PermissionType> permissions, long permissionsVersion) {
         return Jwts.builder()
                 .setSubject(String.format("%s", user.email()))
                 .setIssuer(issuer)
                 .setIssuedAt(new Date())
                 .setExpiration(Date.from(Instant.now().plusMillis(expireDuration)))
+                .claim(USER_ID_CLAIM, user.id())
+                .claim(ROLES_CLAIM, roles.stream().map(RoleType::name).distinct().toList())
+                .claim(PERMISSIONS_CLAIM, PermissionMask.encode(permissions))
+                .claim(PERMISSIONS_VERSION_CLAIM, permissionsVersion)
                 .signWith(SignatureAlgorithm.HS256, secretKey)
                 .compact();
     }
+
+    /**
+     * Reads the user, roles and permissions carried by the claims of a verified token.
+     * @return the permissions of the token, or null if the token does not carry them
+     */
+    public TokenPermissions readPermissions(Claims claims) {
+        try {
+            Integer userId = claims.get(USER_ID_CLAIM, Integer.class);
+            List<?> roleNames = claims.get(ROLES_CLAIM, List.class);
+            String mask = claims.get(PERMISSIONS_CLAIM, String.class);
+            Long version = claims.get(PERMISSIONS_VERSION_CLAIM, Long.class);
+            if (userId == null || roleNames == null || mask == null || version == null) return null;
+
+            Set<RoleType> roles = EnumSet.noneOf(RoleType.class);
+            for (Object roleName : roleNames) {
+                roles.add(RoleType.valueOf(String.valueOf(roleName)));
+            }
+            Instant issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : Instant.EPOCH;
+            Instant expiresAt = claims.getExpiration() != null ? claims.getExpiration().toInstant() : null;
+            return new TokenPermissions(userId, roles, PermissionMask.decode(mask), version, issuedAt, expiresAt);
+        } catch (RuntimeException e) {
+            CustomLogger.error("Read token permissions : " + e);
+            return null;
+        }
+    }
+
+    private void evictExpired(Instant now) {
+        verifiedTokens.values().removeIf(verified -> !verified.expiresAt().isAfter(now));
+        // The tokens that expire first are dropped when too many are kept
+        while (verifiedTokens.size() >= MAX_VERIFIED_TOKENS) {
+            verifiedTokens.entrySet().stream()
+                    .min(Comparator.comparing(entry -> entry.getValue().expiresAt()))
+                    .ifPresent(entry -> verifiedTokens.remove(entry.getKey()));
+        }
+    }
+
+    /**
+     * The tokens are kept by hash, so that neither the memory nor the database holds usable credentials.
+     */
+    public static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
 }
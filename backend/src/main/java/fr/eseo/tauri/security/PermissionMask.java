@@ -0,0 +1,42 @@
+package fr.eseo.tauri.security;
+
+import fr.eseo.tauri.model.enumeration.PermissionType;
+
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Writes a set of permissions as a compact string, one bit per permission at its ordinal, encoded in URL-safe base64.
+ * The order of the values of {@link PermissionType} must stay the same for the masks of the issued tokens to stay valid.
+ */
+public final class PermissionMask {
+
+    private static final PermissionType[] PERMISSION_TYPES = PermissionType.values();
+
+    private PermissionMask() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static String encode(Set<PermissionType> permissions) {
+        BitSet bits = new BitSet(PERMISSION_TYPES.length);
+        for (PermissionType permission : permissions) {
+            bits.set(permission.ordinal());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bits.toByteArray());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the mask is not valid base64
+     */
+    public static Set<PermissionType> decode(String mask) {
+        BitSet bits = BitSet.valueOf(Base64.getUrlDecoder().decode(mask));
+        Set<PermissionType> permissions = EnumSet.noneOf(PermissionType.class);
+        for (int i = bits.nextSetBit(0); i >= 0 && i < PERMISSION_TYPES.length; i = bits.nextSetBit(i + 1)) {
+            permissions.add(PERMISSION_TYPES[i]);
+        }
+        return permissions;
+    }
+
+}
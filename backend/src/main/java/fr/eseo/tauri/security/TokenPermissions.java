@@ -0,0 +1,31 @@
+package fr.eseo.tauri.security;
+
+import fr.eseo.tauri.model.enumeration.PermissionType;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * The user, roles and permissions carried by the verified access token of the current request.
+ * @param version the version of the permissions of the roles when the token was issued
+ * @param issuedAt the date the token was issued, to the second
+ * @param expiresAt the date the token expires, to the second
+ */
+public record TokenPermissions(Integer userId, Set<RoleType> roles, Set<PermissionType> permissions, long version, Instant issuedAt, Instant expiresAt) {
+
+    public boolean has(PermissionType permission) {
+        return permissions.contains(permission);
+    }
+
+    /**
+     * @return the permissions of the token of the current request, or null if the request is not authenticated with a token
+     */
+    public static TokenPermissions ofCurrentRequest() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getDetails() instanceof TokenPermissions tokenPermissions ? tokenPermissions : null;
+    }
+
+}
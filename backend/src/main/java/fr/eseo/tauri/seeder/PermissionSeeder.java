@@ -4,6 +4,7 @@ import fr.eseo.tauri.model.Permission;
 import fr.eseo.tauri.model.enumeration.PermissionType;
 import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.PermissionRepository;
+import fr.eseo.tauri.service.PermissionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -39,6 +40,7 @@ public class PermissionSeeder {
 	);
 
 	private final PermissionRepository permissionRepository;
+	private final PermissionService permissionService;
 
 	public void seed() {
 		RoleType role;
@@ -50,6 +52,7 @@ public class PermissionSeeder {
 				attributePermission(role, permission);
 			}
 		}
+		permissionService.refreshPermissions();
 	}
 
 	private void attributePermission(RoleType role, PermissionType permission) {
@@ -1,8 +1,11 @@
 package fr.eseo.tauri.service;
 
 import fr.eseo.tauri.model.Project;
+import fr.eseo.tauri.model.RefreshToken;
 import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.ProjectRepository;
+import fr.eseo.tauri.repository.RoleRepository;
 import fr.eseo.tauri.repository.UserRepository;
 import fr.eseo.tauri.security.AuthResponse;
 import fr.eseo.tauri.security.JwtTokenUtil;
@@ -18,6 +21,12 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Service
 @RequiredArgsConstructor
 public class AuthService {
@@ -26,6 +35,9 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final UserRepository userRepository;
     private final ProjectRepository projectRepository;
+    private final RoleRepository roleRepository;
+    private final PermissionService permissionService;
+    private final RefreshTokenService refreshTokenService;
 
     @Getter
     @Setter
@@ -34,30 +46,115 @@ public class AuthService {
 
     private static final String WRONG_CREDENTIALS = "Wrong credentials";
 
+    // The users and the actual project read at login are kept for a short time, as many users log in at once at the start of a semester
+    static final Duration LOOKUP_TIME_TO_LIVE = Duration.ofSeconds(30);
+    private static final int MAX_CACHED_USERS = 1024;
+
+    private final Map<String, Cached<User>> usersByEmail = new ConcurrentHashMap<>();
+    private volatile Cached<Integer> actualProjectId;
+
+    private record Cached<T>(T value, Instant expiresAt) {
+        private boolean isValid() {
+            return expiresAt.isAfter(Instant.now());
+        }
+    }
+
+    /**
+     * Authenticates a user, with LDAP in production, and gives them an access token and a refresh token.
+     * The time spent binding to LDAP and the time spent on the database are logged and given with the response.
+     */
     public AuthResponse login(String email, String password) {
         try {
-            User user;
+            String userEmail = email;
+            long ldapMs = 0;
 
             if(prodProperty.equals("true")){       // Auth with LDAP
+                long ldapStart = System.nanoTime();
                 Authentication authentication = authenticate(email, password);
+                ldapMs = (System.nanoTime() - ldapStart) / 1_000_000;
                 UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+                userEmail = userDetails.getUsername();
+            }                                      // Auth without LDAP for dev mode otherwise
 
-                user = userRepository.findByEmail(userDetails.getUsername())
-                        .orElseThrow(() -> new SecurityException(WRONG_CREDENTIALS));
-            } else {                               // Auth without LDAP for dev mode
-                user = userRepository.findByEmail(email)
-                        .orElseThrow(() -> new SecurityException(WRONG_CREDENTIALS));
-            }
-
-            String accessToken = jwtTokenUtil.generateAccessToken(user);
-            CustomLogger.info("Access token generated for user " + user.id() + " : " + accessToken);
-            Integer idProject = projectRepository.findFirstByActualTrue().map(Project::id).orElse(0);
-            return new AuthResponse(user.id(), accessToken, idProject);
+            long databaseStart = System.nanoTime();
+            User user = getUserByEmail(userEmail);
+            List<RoleType> roles = roleRepository.findByUserId(user.id());
+            String accessToken = createAccessToken(user, roles);
+            String refreshToken = refreshTokenService.issue(user, roles);
+            Integer idProject = getActualProjectId();
+            long databaseMs = (System.nanoTime() - databaseStart) / 1_000_000;
+
+            CustomLogger.info("Access token generated for user " + user.id() + " (LDAP " + ldapMs + " ms, database " + databaseMs + " ms)");
+            return new AuthResponse(user.id(), accessToken, refreshToken, idProject, ldapMs, databaseMs);
         } catch (Exception e){
             throw new SecurityException(WRONG_CREDENTIALS + e.getMessage());
         }
     }
 
+    /**
+     * Gives a new access token and a new refresh token in exchange for a refresh token, which cannot be used again.
+     * Neither LDAP nor the roles of the user are read, unless the roles have changed since the refresh token was issued.
+     * @throws SecurityException if the refresh token is unknown, already used or expired
+     */
+    public AuthResponse refresh(String refreshToken) {
+        long databaseStart = System.nanoTime();
+        RefreshToken consumed = refreshTokenService.consume(refreshToken);
+        User user = consumed.user();
+        List<RoleType> roles = RefreshTokenService.readRoles(consumed);
+        if (roles == null) roles = roleRepository.findByUserId(user.id());
+
+        String accessToken = createAccessToken(user, roles);
+        String newRefreshToken = refreshTokenService.issue(user, roles);
+        Integer idProject = getActualProjectId();
+        long databaseMs = (System.nanoTime() - databaseStart) / 1_000_000;
+        return new AuthResponse(user.id(), accessToken, newRefreshToken, idProject, 0, databaseMs);
+    }
+
+    private User getUserByEmail(String email) {
+        Cached<User> cached = usersByEmail.get(email);
+        if (cached != null && cached.isValid()) return cached.value();
+
+        User user = userRepository.findByEmail(email).orElseThrow(() -> new SecurityException(WRONG_CREDENTIALS));
+        if (usersByEmail.size() >= MAX_CACHED_USERS) {
+            usersByEmail.values().removeIf(entry -> !entry.isValid());
+            // Past the limit, the cache starts over rather than tracking the oldest entries
+            if (usersByEmail.size() >= MAX_CACHED_USERS) usersByEmail.clear();
+        }
+        usersByEmail.put(email, new Cached<>(user, Instant.now().plus(LOOKUP_TIME_TO_LIVE)));
+        return user;
+    }
+
+    /**
+     * Forgets the user kept from a previous login, so that a deleted or updated user is read again at their next login.
+     */
+    public void forgetUser(Integer userId) {
+        usersByEmail.values().removeIf(entry -> userId.equals(entry.value().id()));
+    }
+
+    /**
+     * Forgets all the users kept from previous logins.
+     */
+    public void forgetAllUsers() {
+        usersByEmail.clear();
+    }
+
+    private Integer getActualProjectId() {
+        Cached<Integer> cached = actualProjectId;
+        if (cached != null && cached.isValid()) return cached.value();
+
+        Integer projectId = projectRepository.findFirstByActualTrue().map(Project::id).orElse(0);
+        actualProjectId = new Cached<>(projectId, Instant.now().plus(LOOKUP_TIME_TO_LIVE));
+        return projectId;
+    }
+
+    /**
+     * Creates an access token carrying the roles and the permissions the user has at the time.
+     */
+    public String createAccessToken(User user, List<RoleType> roles) {
+        var permissions = permissionService.getPermissionTypesByRoles(roles);
+        return jwtTokenUtil.generateAccessToken(user, roles, permissions, permissionService.getPermissionsVersion());
+    }
+
     public Authentication authenticate(String email, String password) {
         String safeEmail = StringEscapeUtils.escapeHtml4(email);
         String safePassword = StringEscapeUtils.escapeHtml4(password);
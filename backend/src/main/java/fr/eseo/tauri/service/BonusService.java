@@ -2,11 +2,13 @@ package fr.eseo.tauri.service;
 
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.enumeration.GradeEventType;
 import fr.eseo.tauri.repository.BonusRepository;
 import fr.eseo.tauri.repository.StudentRepository;
 import fr.eseo.tauri.repository.TeamRepository;
 import fr.eseo.tauri.util.CustomLogger;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -21,6 +23,7 @@ public class BonusService {
     private final UserService userService;
     private final StudentRepository studentRepository;
     private final TeamRepository teamRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Get a bonus by its id
@@ -46,6 +49,7 @@ public class BonusService {
      */
     public void createBonus(Bonus bonus) {
         bonusRepository.save(bonus);
+        publishBonusEvent(bonus);
     }
 
     /**
@@ -67,6 +71,7 @@ public class BonusService {
         if (updatedBonus.comment() != null) bonus.comment(updatedBonus.comment());
 
         bonusRepository.save(bonus);
+        publishBonusEvent(bonus);
 
         if(isLimited) {
             Team team = teamRepository.findTeamByStudentId(bonus.student().id());
@@ -91,8 +96,17 @@ public class BonusService {
      * @param id the id of the bonus
      */
     public void deleteBonus(Integer id) {
-        getBonusById(id);
+        Bonus bonus = getBonusById(id);
         bonusRepository.deleteById(id);
+        publishBonusEvent(bonus);
+    }
+
+    /**
+     * Publishes the change of a bonus to the subscribers of its sprint, the team of the student is resolved when the event is sent.
+     */
+    private void publishBonusEvent(Bonus bonus) {
+        if (bonus.sprint() == null || bonus.student() == null) return;
+        eventPublisher.publishEvent(new GradeEvent(GradeEventType.BONUS, bonus.sprint().id(), null, bonus.student().id()));
     }
 
     /**
@@ -0,0 +1,125 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.model.AggregateRebuildResult;
+import fr.eseo.tauri.model.Grade;
+import fr.eseo.tauri.repository.GradeAggregateRepository;
+import fr.eseo.tauri.util.CustomLogger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Maintains the sum and count of the sprint grades of each student and team, so that averages are read from a single row.
+ * The methods that write grades must call it in the same transaction.
+ */
+@Service
+@RequiredArgsConstructor
+public class GradeAggregateService {
+
+    private final GradeAggregateRepository gradeAggregateRepository;
+
+    public Double getStudentAverage(Integer studentId, Integer sprintId, String gradeTypeName) {
+        return gradeAggregateRepository.findAverageForStudent(studentId, sprintId, gradeTypeName);
+    }
+
+    public Double getTeamAverage(Integer teamId, Integer sprintId, String gradeTypeName) {
+        return gradeAggregateRepository.findAverageForTeam(teamId, sprintId, gradeTypeName);
+    }
+
+    /**
+     * Adds a grade that has just been written to the aggregates.
+     */
+    public void add(Grade grade) {
+        applyDelta(grade, 1);
+    }
+
+    /**
+     * Removes a grade from the aggregates, before it is deleted or modified.
+     */
+    public void remove(Grade grade) {
+        applyDelta(grade, -1);
+    }
+
+    private void applyDelta(Grade grade, int sign) {
+        if (!isAggregated(grade)) return;
+        gradeAggregateRepository.applyDelta(
+                grade.student() != null ? grade.student().id() : null,
+                grade.team() != null ? grade.team().id() : null,
+                grade.sprint().id(),
+                grade.gradeType().id(),
+                sign * grade.value().doubleValue(),
+                sign);
+    }
+
+    /**
+     * Recomputes the aggregates of the students and teams graded in a batch, whose previous values are unknown.
+     * The relations of the grades must be resolved.
+     */
+    public void refresh(List<Grade> grades) {
+        Set<Integer> studentIds = new HashSet<>();
+        Set<Integer> teamIds = new HashSet<>();
+        Set<Integer> sprintIds = new HashSet<>();
+        Set<Integer> gradeTypeIds = new HashSet<>();
+        for (Grade grade : grades) {
+            if (!isAggregated(grade)) continue;
+            if (grade.student() != null) studentIds.add(grade.student().id());
+            if (grade.team() != null) teamIds.add(grade.team().id());
+            sprintIds.add(grade.sprint().id());
+            gradeTypeIds.add(grade.gradeType().id());
+        }
+        if (!studentIds.isEmpty()) gradeAggregateRepository.refreshStudentAggregates(studentIds, sprintIds, gradeTypeIds);
+        if (!teamIds.isEmpty()) gradeAggregateRepository.refreshTeamAggregates(teamIds, sprintIds, gradeTypeIds);
+    }
+
+    public void deleteAllByProject(Integer projectId) {
+        gradeAggregateRepository.deleteAllByProject(projectId);
+    }
+
+    public long countDrift() {
+        return gradeAggregateRepository.countDrift();
+    }
+
+    /**
+     * Recomputes every aggregate from the grades table, after measuring how far the store had drifted.
+     */
+    @Transactional
+    public AggregateRebuildResult rebuild() {
+        long start = System.nanoTime();
+        long drift = gradeAggregateRepository.countDrift();
+        gradeAggregateRepository.deleteAllAggregates();
+        int rebuilt = gradeAggregateRepository.insertAllAggregates();
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        if (drift > 0) {
+            CustomLogger.warn("Found " + drift + " drifted grade aggregates before the rebuild.");
+        }
+        CustomLogger.info("Rebuilt " + rebuilt + " grade aggregates in " + durationMs + " ms.");
+        return new AggregateRebuildResult(drift, rebuilt, durationMs);
+    }
+
+    /**
+     * Fills the aggregates from the grades table when the store is empty, as on a database created before the store existed.
+     * Without it, every existing average would read as null until the next rebuild.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void fillIfEmpty() {
+        if (gradeAggregateRepository.count() > 0) return;
+        long start = System.nanoTime();
+        int filled = gradeAggregateRepository.insertAllAggregates();
+        if (filled > 0) {
+            CustomLogger.info("Filled the empty store with " + filled + " grade aggregates in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }
+    }
+
+    // Only the sprint grades of a single student or team are aggregated
+    private boolean isAggregated(Grade grade) {
+        return grade.sprint() != null && grade.gradeType() != null && grade.value() != null
+                && (grade.student() == null) != (grade.team() == null);
+    }
+
+}
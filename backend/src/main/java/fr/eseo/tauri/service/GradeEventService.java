@@ -0,0 +1,263 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.GradeEvent;
+import fr.eseo.tauri.model.GradeEventsTicket;
+import fr.eseo.tauri.model.Team;
+import fr.eseo.tauri.repository.TeamRepository;
+import fr.eseo.tauri.security.JwtTokenUtil;
+import fr.eseo.tauri.util.CustomLogger;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Pushes the grade, bonus and confirmation changes of a sprint to the clients subscribed to it, once the change is committed.
+ * The results of a team are computed on one thread with a bounded queue, once for all the events of the team waiting for them.
+ * Each subscriber has its own drain thread and a bounded buffer, so that a slow client only delays itself;
+ * a subscriber that does not keep up is disconnected and has to reconnect.
+ * As a browser EventSource cannot send the access token, a stream is opened with a ticket given to an authenticated request,
+ * which can be used once and only for a short time. The stream ends when the access token the ticket was given for expires.
+ */
+@Service
+@RequiredArgsConstructor
+public class GradeEventService {
+
+    private static final int BUFFER_SIZE = 32;
+    private static final int MAX_PENDING_RESULTS = 64;
+    private static final int MAX_SUBSCRIBERS = 200;
+    private static final long DRAIN_POLL_MS = 1000;
+    private static final long STREAM_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final long TICKET_TIME_TO_LIVE_MS = 30 * 1000L;
+    private static final int MAX_TICKETS = 1024;
+    private static final int TICKET_BYTES = 32;
+    private static final String INVALID_TICKET = "Invalid or expired grade events ticket";
+
+    private final SprintGradeService sprintGradeService;
+    private final TeamRepository teamRepository;
+
+    private final Map<Integer, List<Subscriber>> subscribersBySprint = new ConcurrentHashMap<>();
+    // The events waiting for the results of their team, grouped so that the results are computed once per group
+    private final Map<PendingKey, List<GradeEvent>> pendingEvents = new ConcurrentHashMap<>();
+    private final ExecutorService resultsExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_PENDING_RESULTS));
+    // One thread per subscriber at most, reused once its subscriber is gone
+    private final ExecutorService drains = new ThreadPoolExecutor(0, MAX_SUBSCRIBERS, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+    // The tickets not used yet, by hash of the ticket
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @PreDestroy
+    public void shutdown() {
+        resultsExecutor.shutdownNow();
+        drains.shutdownNow();
+        subscribersBySprint.values().forEach(subscribers -> subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        subscribersBySprint.clear();
+    }
+
+    /**
+     * Gives a ticket to open the stream of the changes of a sprint once, within a short time.
+     * @param tokenExpiresAt the expiration of the access token of the request, the stream does not outlive it
+     */
+    public GradeEventsTicket issueTicket(Integer sprintId, Instant tokenExpiresAt) {
+        byte[] bytes = new byte[TICKET_BYTES];
+        secureRandom.nextBytes(bytes);
+        String ticket = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        Instant now = Instant.now();
+        tickets.values().removeIf(entry -> !entry.expiresAt().isAfter(now));
+        if (tickets.size() >= MAX_TICKETS) {
+            throw new IllegalArgumentException("Too many clients follow the grades, please try again later");
+        }
+        Instant streamEndsAt = tokenExpiresAt != null ? tokenExpiresAt : now.plusMillis(STREAM_TIMEOUT_MS);
+        tickets.put(JwtTokenUtil.hash(ticket), new Ticket(sprintId, now.plusMillis(TICKET_TIME_TO_LIVE_MS), streamEndsAt));
+        return new GradeEventsTicket(ticket, sprintId, TICKET_TIME_TO_LIVE_MS);
+    }
+
+    /**
+     * Opens the stream of the changes of the sprint of a ticket, which cannot be used again.
+     * @return the emitter of the stream, removed from the subscribers when the connection ends
+     * @throws SecurityException if the ticket is unknown, already used or expired
+     * @throws IllegalArgumentException if too many clients are already subscribed
+     */
+    public SseEmitter subscribe(String ticket) {
+        Ticket used = ticket != null ? tickets.remove(JwtTokenUtil.hash(ticket)) : null;
+        Instant now = Instant.now();
+        if (used == null || !used.expiresAt().isAfter(now)) throw new SecurityException(INVALID_TICKET);
+
+        long timeout = Math.min(STREAM_TIMEOUT_MS, Duration.between(now, used.streamEndsAt()).toMillis());
+        if (timeout <= 0) throw new SecurityException(INVALID_TICKET);
+        return subscribe(used.sprintId(), new SseEmitter(timeout));
+    }
+
+    /**
+     * Subscribes an emitter to the changes of a sprint, and starts its drain.
+     */
+    public SseEmitter subscribe(Integer sprintId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(sprintId, emitter);
+        try {
+            drains.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            throw new IllegalArgumentException("Too many clients follow the grades, please try again later");
+        }
+        subscribersBySprint.compute(sprintId, (k, subscribers) -> {
+            List<Subscriber> sprintSubscribers = subscribers != null ? subscribers : new CopyOnWriteArrayList<>();
+            sprintSubscribers.add(subscriber);
+            return sprintSubscribers;
+        });
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        return emitter;
+    }
+
+    public int countSubscribers(Integer sprintId) {
+        List<Subscriber> subscribers = subscribersBySprint.get(sprintId);
+        return subscribers == null ? 0 : subscribers.size();
+    }
+
+    /**
+     * Called after the transaction that published the event has been committed, or directly when there is no transaction.
+     * The event joins the events of the same team waiting for their results, or queues a computation of the results,
+     * so that the write is not delayed and a burst of changes of a team costs one computation.
+     * When the queue is full, the event is sent without the results of the team.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGradeEvent(GradeEvent event) {
+        if (countSubscribers(event.sprintId()) == 0) return;
+
+        PendingKey key = new PendingKey(event.sprintId(), event.teamId(), event.teamId() == null ? event.studentId() : null);
+        boolean[] queued = {false};
+        pendingEvents.compute(key, (k, events) -> {
+            if (events != null) {
+                events.add(event);
+                return events;
+            }
+            queued[0] = true;
+            List<GradeEvent> newEvents = new ArrayList<>();
+            newEvents.add(event);
+            return newEvents;
+        });
+        if (!queued[0]) return;
+
+        try {
+            resultsExecutor.execute(() -> publishWithTeamResults(key));
+        } catch (RejectedExecutionException e) {
+            List<GradeEvent> events = pendingEvents.remove(key);
+            CustomLogger.info("Too many grade events of sprint " + event.sprintId() + " are waiting, sending them without the results of the team.");
+            if (events != null) events.forEach(this::publish);
+        }
+    }
+
+    private void publishWithTeamResults(PendingKey key) {
+        List<GradeEvent> events = pendingEvents.remove(key);
+        if (events == null || events.isEmpty()) return;
+
+        GradeEvent last = withTeamResults(events.get(events.size() - 1));
+        for (GradeEvent event : events) {
+            event.teamId(last.teamId());
+            event.teamSprintGrades(last.teamSprintGrades());
+            publish(event);
+        }
+    }
+
+    /**
+     * Resolves the team of the event and fills in its results for the sprint.
+     */
+    public GradeEvent withTeamResults(GradeEvent event) {
+        if (event.teamId() == null && event.studentId() != null) {
+            Team team = teamRepository.findByStudentId(event.studentId());
+            if (team != null) event.teamId(team.id());
+        }
+        if (event.teamId() != null) {
+            try {
+                event.teamSprintGrades(sprintGradeService.getTeamSprintGrades(event.teamId(), event.sprintId()));
+            } catch (ResourceNotFoundException e) {
+                // The team has been deleted since, the event is still sent without its results
+                CustomLogger.info(e.getMessage());
+            }
+        }
+        return event;
+    }
+
+    /**
+     * Queues an event for every subscriber of its sprint, and disconnects the subscribers whose buffer is full.
+     */
+    public void publish(GradeEvent event) {
+        List<Subscriber> subscribers = subscribersBySprint.get(event.sprintId());
+        if (subscribers == null) return;
+
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.buffer.offer(event)) {
+                CustomLogger.info("Disconnecting a slow subscriber of the events of sprint " + event.sprintId() + ".");
+                unsubscribe(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * Sends the buffered events of a subscriber until it is unsubscribed. Blocking on a slow client only blocks this drain.
+     */
+    private void drain(Subscriber subscriber) {
+        try {
+            while (subscriber.open) {
+                GradeEvent event = subscriber.buffer.poll(DRAIN_POLL_MS, TimeUnit.MILLISECONDS);
+                if (event != null && subscriber.open) {
+                    subscriber.emitter.send(SseEmitter.event().name(event.type().name()).data(event));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            unsubscribe(subscriber);
+            subscriber.emitter.completeWithError(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.open = false;
+        subscribersBySprint.computeIfPresent(subscriber.sprintId, (k, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * The events of a team, or of a student whose team is not known yet, in a sprint.
+     */
+    private record PendingKey(Integer sprintId, Integer teamId, Integer studentId) {
+    }
+
+    /**
+     * @param expiresAt the date after which the ticket can no longer open the stream
+     * @param streamEndsAt the expiration of the access token the ticket was given for
+     */
+    private record Ticket(Integer sprintId, Instant expiresAt, Instant streamEndsAt) {
+    }
+
+    private static final class Subscriber {
+        private final Integer sprintId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<GradeEvent> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+        private volatile boolean open = true;
+
+        private Subscriber(Integer sprintId, SseEmitter emitter) {
+            this.sprintId = sprintId;
+            this.emitter = emitter;
+        }
+    }
+
+}
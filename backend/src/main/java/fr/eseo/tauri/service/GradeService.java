@@ -3,23 +3,30 @@ package fr.eseo.tauri.service;
 import com.opencsv.CSVWriter;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.model.enumeration.Gender;
+import fr.eseo.tauri.model.enumeration.GradeEventType;
 import fr.eseo.tauri.model.enumeration.GradeTypeName;
 import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.*;
 import fr.eseo.tauri.util.CustomLogger;
+import fr.eseo.tauri.util.valid.Create;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import fr.eseo.tauri.model.Grade;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.repository.GradeRepository;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-
-import static fr.eseo.tauri.util.ListUtil.filter;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -37,6 +44,11 @@ public class GradeService {
     @Lazy
     private final GradeTypeService gradeTypeService;
     private final TeamService teamService;
+    private final UserRepository userRepository;
+    private final SprintRepository sprintRepository;
+    private final Validator validator;
+    private final GradeAggregateService gradeAggregateService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Grade getGradeById(Integer id) {
         return gradeRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("grade", id));
@@ -50,25 +62,169 @@ public class GradeService {
         return gradeRepository.findAllImportedByProject(projectId);
     }
 
+    @Transactional
     public void createGrade(Grade grade) {
         setGradeAttributes(grade);
         validateGrade(grade);
+        checkForExistingGrade(grade);
         gradeRepository.save(grade);
+        gradeAggregateService.add(grade);
+        publishGradeEvent(grade);
+    }
+
+    /**
+     * Creates a list of grades in one transaction.
+     * The referenced entities are loaded with one query per entity type and the grades are written with batched statements.
+     * A grade that already exists for the same author, sprint, grade type and student or team is either updated or reported as a conflict.
+     * @param grades the grades to create
+     * @param overwrite true to update the existing grades, false to reject the batch with the list of every conflict
+     * @return the number of saved grades
+     */
+    @Transactional
+    public int createGrades(List<Grade> grades, boolean overwrite) {
+        if (grades == null || grades.isEmpty()) {
+            throw new IllegalArgumentException("The list of grades to create must not be empty");
+        }
+        for (int i = 0; i < grades.size(); i++) {
+            Set<ConstraintViolation<Grade>> violations = validator.validate(grades.get(i), Create.class);
+            if (!violations.isEmpty()) {
+                throw new IllegalArgumentException("grades[" + i + "] : " + violations.iterator().next().getMessage());
+            }
+        }
+
+        Map<Integer, GradeType> gradeTypes = findAllById(gradeTypeRepository, collectIds(grades, Grade::gradeTypeId), GradeType::id, "gradeType");
+        Map<Integer, User> authors = findAllById(userRepository, collectIds(grades, Grade::authorId), User::id, "user");
+        Map<Integer, Sprint> sprints = findAllById(sprintRepository, collectIds(grades, Grade::sprintId), Sprint::id, "sprint");
+
+        List<Grade> teamGrades = new ArrayList<>();
+        List<Grade> studentGrades = new ArrayList<>();
+        for (Grade grade : grades) {
+            grade.gradeType(gradeTypes.get(grade.gradeTypeId()));
+            if (Boolean.TRUE.equals(grade.gradeType().forGroup())) teamGrades.add(grade);
+            else studentGrades.add(grade);
+        }
+        Map<Integer, Team> teams = findAllById(teamRepository, collectIds(teamGrades, Grade::teamId), Team::id, "team");
+        Map<Integer, Student> students = findAllById(studentRepository, collectIds(studentGrades, Grade::studentId), Student::id, "student");
+
+        for (Grade grade : grades) {
+            grade.author(authors.get(grade.authorId()));
+            grade.sprint(grade.sprintId() != null ? sprints.get(grade.sprintId()) : null);
+            if (Boolean.TRUE.equals(grade.gradeType().forGroup())) {
+                grade.student(null);
+                grade.team(grade.teamId() != null ? teams.get(grade.teamId()) : null);
+            } else {
+                grade.team(null);
+                grade.student(grade.studentId() != null ? students.get(grade.studentId()) : null);
+            }
+            validateGrade(grade);
+        }
+
+        if (!overwrite) {
+            List<String> conflicts = findConflictingGrades(grades);
+            if (!conflicts.isEmpty()) {
+                throw new IllegalArgumentException("Some grades already exist : " + String.join(", ", conflicts));
+            }
+        }
+
+        gradeRepository.upsertAll(grades);
+        gradeAggregateService.refresh(grades);
+        Set<GradeEvent> events = new HashSet<>();
+        for (Grade grade : grades) {
+            GradeEvent event = toGradeEvent(grade);
+            if (event != null) events.add(event);
+        }
+        events.forEach(eventPublisher::publishEvent);
+        CustomLogger.info("Saved a batch of " + grades.size() + " grades.");
+        return grades.size();
+    }
+
+    private static Set<Integer> collectIds(List<Grade> grades, Function<Grade, Integer> id) {
+        Set<Integer> ids = new HashSet<>();
+        for (Grade grade : grades) {
+            if (id.apply(grade) != null) ids.add(id.apply(grade));
+        }
+        return ids;
+    }
+
+    private static <T> Map<Integer, T> findAllById(JpaRepository<T, Integer> repository, Set<Integer> ids, Function<T, Integer> id, String resource) {
+        Map<Integer, T> entities = new HashMap<>();
+        if (ids.isEmpty()) return entities;
+        for (T entity : repository.findAllById(ids)) {
+            entities.put(id.apply(entity), entity);
+        }
+        for (Integer missingId : ids) {
+            if (!entities.containsKey(missingId)) throw new ResourceNotFoundException(resource, missingId);
+        }
+        return entities;
     }
 
+    /**
+     * Checks that no grade exists for the same author, sprint, grade type and student or team.
+     * Each check is a lookup on one of the unique keys of the grades table.
+     */
     public void checkForExistingGrade(Grade grade) {
-        var ratedGrades = gradeRepository.findAllByAuthorId(grade.authorId());
-        for (Grade ratedGrade : ratedGrades) {
-            if (isSameGrade(grade, ratedGrade)) {
-                throw new IllegalArgumentException("A grade with the same author, sprint, grade type, student and team already exists");
+        boolean exists = (grade.studentId() != null && gradeRepository.existsStudentGrade(grade.authorId(), grade.sprintId(), grade.gradeTypeId(), grade.studentId()))
+                || (grade.teamId() != null && gradeRepository.existsTeamGrade(grade.authorId(), grade.sprintId(), grade.gradeTypeId(), grade.teamId()));
+        if (exists) {
+            throw new IllegalArgumentException("A grade with the same author, sprint, grade type, student and team already exists");
+        }
+    }
+
+    /**
+     * Finds the grades of a batch that already exist, or that appear twice in the batch.
+     * The existing grades are found with one query on the student key and one query on the team key.
+     * The relations of the grades must be resolved.
+     * @return a description of each conflicting grade, empty if there is none
+     */
+    public List<String> findConflictingGrades(List<Grade> grades) {
+        Set<Integer> authorIds = new HashSet<>();
+        Set<Integer> sprintIds = new HashSet<>();
+        Set<Integer> gradeTypeIds = new HashSet<>();
+        Set<Integer> studentIds = new HashSet<>();
+        Set<Integer> teamIds = new HashSet<>();
+        for (Grade grade : grades) {
+            if (grade.sprint() == null) continue;
+            authorIds.add(grade.author().id());
+            sprintIds.add(grade.sprint().id());
+            gradeTypeIds.add(grade.gradeType().id());
+            if (grade.student() != null) studentIds.add(grade.student().id());
+            if (grade.team() != null) teamIds.add(grade.team().id());
+        }
+
+        Set<GradeKey> existingKeys = new HashSet<>();
+        if (!studentIds.isEmpty()) {
+            for (Object[] row : gradeRepository.findStudentGradeKeys(authorIds, sprintIds, gradeTypeIds, studentIds)) {
+                existingKeys.add(new GradeKey((Integer) row[0], (Integer) row[1], (Integer) row[2], (Integer) row[3], null));
             }
         }
+        if (!teamIds.isEmpty()) {
+            for (Object[] row : gradeRepository.findTeamGradeKeys(authorIds, sprintIds, gradeTypeIds, teamIds)) {
+                existingKeys.add(new GradeKey((Integer) row[0], (Integer) row[1], (Integer) row[2], null, (Integer) row[3]));
+            }
+        }
+
+        List<String> conflicts = new ArrayList<>();
+        Set<GradeKey> batchKeys = new HashSet<>();
+        for (int i = 0; i < grades.size(); i++) {
+            Grade grade = grades.get(i);
+            // Grades without sprint are not covered by the unique keys
+            if (grade.sprint() == null) continue;
+            GradeKey key = GradeKey.of(grade);
+            if (existingKeys.contains(key)) {
+                conflicts.add("grades[" + i + "] already exists");
+            } else if (!batchKeys.add(key)) {
+                conflicts.add("grades[" + i + "] is duplicated in the batch");
+            }
+        }
+        return conflicts;
     }
 
-    public boolean isSameGrade(Grade grade, Grade ratedGrade) {
-        return ratedGrade.sprint().id().equals(grade.sprintId())
-                && ratedGrade.gradeType().id().equals(grade.gradeTypeId())
-                && ((ratedGrade.student() != null && ratedGrade.student().id().equals(grade.studentId())) || (ratedGrade.team() != null && ratedGrade.team().id().equals(grade.teamId())));
+    private record GradeKey(Integer authorId, Integer sprintId, Integer gradeTypeId, Integer studentId, Integer teamId) {
+        static GradeKey of(Grade grade) {
+            return new GradeKey(grade.author().id(), grade.sprint().id(), grade.gradeType().id(),
+                    grade.student() != null ? grade.student().id() : null,
+                    grade.team() != null ? grade.team().id() : null);
+        }
     }
 
     private void setGradeAttributes(Grade grade) {
@@ -91,8 +247,10 @@ public class GradeService {
         }
     }
 
+    @Transactional
     public void updateGrade(Integer id, Grade updatedGrade) {
         Grade grade = getGradeById(id);
+        gradeAggregateService.remove(grade);
         grade.value(updatedGrade.value());
         grade.comment(updatedGrade.comment());
         if (updatedGrade.sprintId() != null) grade.sprint(sprintService.getSprintById(updatedGrade.sprintId()));
@@ -105,14 +263,38 @@ public class GradeService {
         }
 
         gradeRepository.save(grade);
+        gradeAggregateService.add(grade);
+        publishGradeEvent(grade);
     }
 
+    @Transactional
     public void deleteGrade(Integer id) {
-        getGradeById(id);
+        Grade grade = getGradeById(id);
+        gradeAggregateService.remove(grade);
         gradeRepository.deleteById(id);
+        publishGradeEvent(grade);
+    }
+
+    /**
+     * Publishes the change of a sprint grade, sent to the subscribers of the sprint once the transaction is committed.
+     */
+    private void publishGradeEvent(Grade grade) {
+        GradeEvent event = toGradeEvent(grade);
+        if (event != null) eventPublisher.publishEvent(event);
+    }
+
+    private static GradeEvent toGradeEvent(Grade grade) {
+        if (grade.sprint() == null) return null;
+        if (grade.team() != null) return new GradeEvent(GradeEventType.GRADE, grade.sprint().id(), grade.team().id(), null);
+        if (grade.student() == null) return null;
+        Integer teamId = grade.student().team() != null ? grade.student().team().id() : null;
+        // The event is about the whole team, so the grades of its students are sent as one event
+        return new GradeEvent(GradeEventType.GRADE, grade.sprint().id(), teamId, teamId == null ? grade.student().id() : null);
     }
 
+    @Transactional
     public void deleteAllGradesByProject(Integer projectId) {
+        gradeAggregateService.deleteAllByProject(projectId);
         gradeRepository.deleteAllByProject(projectId);
     }
 
@@ -120,15 +302,20 @@ public class GradeService {
      * This method is used to update the mean of imported grades for each student.
      */
     public void updateImportedMean(Integer projectId) {
-        var students = studentRepository.findAllByProject(projectId);
-        var grades = filter(gradeRepository.findAll(), grade -> grade.student() != null);
-        for (var student : students) {
-            if (Boolean.TRUE.equals(student.bachelor())) continue;
-            var studentGrades = filter(grades, grade -> grade.student().id().equals(student.id()) && grade.gradeType().imported() && /*!grade.gradeType().name().equalsIgnoreCase("mean") && !grade.gradeType().name().equalsIgnoreCase("average")*/!grade.gradeType().name().equals(GradeTypeName.AVERAGE.displayName()));
-            var mean = mean(studentGrades);
-            updateImportedMeanByStudentId(mean, student.id());
-        }
-        CustomLogger.info("Updated imported mean for all students.");
+        recomputeImportedMeans(projectId);
+    }
+
+    /**
+     * This method recomputes the imported mean of every student of a project with one set-based update.
+     * @param projectId the id of the project
+     * @return the number of updated grades and the time the recompute took
+     */
+    public RecomputeResult recomputeImportedMeans(Integer projectId) {
+        long start = System.nanoTime();
+        int updatedRows = gradeRepository.updateImportedMeansByProject(projectId);
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        CustomLogger.info("Updated imported mean of " + updatedRows + " students of project " + projectId + " in " + durationMs + " ms.");
+        return new RecomputeResult(projectId, updatedRows, durationMs);
     }
 
     /**
@@ -149,20 +336,33 @@ public class GradeService {
         gradeRepository.updateImportedMeanByStudentId(value, studentId);
     }
 
-    public Double getAverageGradesByGradeTypeByRoleType(int userId, RoleType roleType, String gradeTypeName) {
+    /**
+     * Computes the average grade given to the team of a student, for each group grade type of the project and each role of the authors.
+     * The averages come from a single query grouped by grade type and role.
+     * @return one row per grade type, with one column per role type, -1 when there is no grade
+     */
+    public List<List<Double>> getAverageGradesByGradeTypeAndRoleType(Integer userId, Integer projectId) {
+        List<GradeType> gradeTypes = gradeTypeRepository.findAllForGroupByProject(projectId);
+        if (gradeTypes.isEmpty()) return Collections.emptyList();
+
+        Map<Integer, Map<RoleType, Double>> averages = new HashMap<>();
         Team team = teamRepository.findTeamByStudentId(userId);
-        return gradeRepository.findAverageGradesByGradeType(team, gradeTypeName, roleType);
-    }
+        if (team != null) {
+            for (Object[] row : gradeRepository.findTeamAveragesByGradeTypeAndRoleType(team.id())) {
+                averages.computeIfAbsent((Integer) row[0], k -> new EnumMap<>(RoleType.class)).put((RoleType) row[1], ((Number) row[2]).doubleValue());
+            }
+        }
 
-    public Float getGradeByStudentAndGradeType(Student student, GradeType gradeType) {
-        try {
-            Float grade = gradeRepository.findValueByStudentAndGradeType(student, gradeType);
-            CustomLogger.info("Getting grade for student " + student.name() + " and grade type " + gradeType.name() + ": " + grade);
-            return grade;
-        } catch (NullPointerException e) {
-            CustomLogger.info("No grade found for student " + student.name() + " and grade type " + gradeType.name());
-            return null;
+        List<List<Double>> gradesByTypes = new ArrayList<>(gradeTypes.size());
+        for (GradeType gradeType : gradeTypes) {
+            Map<RoleType, Double> gradeTypeAverages = averages.getOrDefault(gradeType.id(), Collections.emptyMap());
+            List<Double> gradesByRoles = new ArrayList<>(RoleType.values().length);
+            for (RoleType roleType : RoleType.values()) {
+                gradesByRoles.add(gradeTypeAverages.getOrDefault(roleType, -1.0));
+            }
+            gradesByTypes.add(gradesByRoles);
         }
+        return gradesByTypes;
     }
 
     public Double getAverageByGradeTypeByStudentIdOrTeamId(Integer id, Integer sprintId, String gradeTypeName, Integer projectId) {
@@ -170,68 +370,98 @@ public class GradeService {
 
         Double grade;
         if (Boolean.TRUE.equals(gradeType.forGroup())) {
-            grade = gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, gradeTypeName);
+            grade = gradeAggregateService.getTeamAverage(id, sprintId, gradeTypeName);
         } else {
-            grade = gradeRepository.findAverageByGradeTypeForStudent(id, sprintId, gradeTypeName);
+            grade = gradeAggregateService.getStudentAverage(id, sprintId, gradeTypeName);
         }
         return grade;
     }
 
     /**
-     * This method generates a CSV report of a student's individual grades.
+     * This method writes the CSV report of the students' individual grades to the given output stream.
+     * The whole student x grade type matrix is loaded with a single grouped query, then each row is written as soon as it is built.
      *
      * @param projectId The ID of the project.
-     * @return A byte array containing the CSV report.
+     * @param outputStream The stream the report is written to, it is flushed but not closed.
      * @throws IOException If an I/O error occurs.
      */
-    public byte[] createStudentIndividualGradesCSVReport(int projectId) throws IOException {
-        CustomLogger.info("Creating student grades report for project with id " + projectId);
-
+    public void writeStudentIndividualGradesCSVReport(int projectId, OutputStream outputStream) throws IOException {
         CustomLogger.info("Creating student grades report for project with id " + projectId);
 
         // Fetch student details and grades
         List<Student> students = studentRepository.findAllByProject(projectId);
-        List<GradeType> notImportedGradeTypes = gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId);
+        List<GradeType> notImportedGradeTypes = new ArrayList<>();
+        Map<Integer, Integer> gradeTypeIndexes = new HashMap<>();
+        for (GradeType gradeType : gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId)) {
+            if (gradeTypeIndexes.putIfAbsent(gradeType.id(), notImportedGradeTypes.size()) == null) {
+                notImportedGradeTypes.add(gradeType);
+            }
+        }
         CustomLogger.info("Found " + students.size() + " students and " + notImportedGradeTypes.size() + " grade types");
 
         int gradeTypesCount = notImportedGradeTypes.size();
         int studentFieldsSize = 3;
+        float[][] grades = getUnimportedGradesMatrix(projectId, students, gradeTypeIndexes);
 
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             OutputStreamWriter writer = new OutputStreamWriter(byteArrayOutputStream);
-             CSVWriter csvWriter = new CSVWriter(writer)) {
+        CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
 
-            String[] header = new String[studentFieldsSize + gradeTypesCount];
-            String[] factors = new String[studentFieldsSize + gradeTypesCount];
-            Arrays.fill(header, "");
-            Arrays.fill(factors, "");
+        String[] header = new String[studentFieldsSize + gradeTypesCount];
+        String[] factors = new String[studentFieldsSize + gradeTypesCount];
+        Arrays.fill(header, "");
+        Arrays.fill(factors, "");
+
+        for (int i = 0; i < gradeTypesCount; i++) {
+            header[i + studentFieldsSize] = notImportedGradeTypes.get(i).name();
+            factors[i + studentFieldsSize] = String.valueOf(notImportedGradeTypes.get(i).factor());
+        }
+        csvWriter.writeNext(header);
+        csvWriter.writeNext(factors);
+
+        String[] studentInfo = new String[studentFieldsSize + gradeTypesCount];
+        for (int s = 0; s < students.size(); s++) {
+            Student student = students.get(s);
+            studentInfo[0] = student.name();
+            studentInfo[1] = student.gender() == Gender.MAN ? "M" : "F";
+            studentInfo[2] = Boolean.TRUE.equals(student.bachelor()) ? "B" : "";
 
             for (int i = 0; i < gradeTypesCount; i++) {
-                header[i + studentFieldsSize] = notImportedGradeTypes.get(i).name();
-                factors[i + studentFieldsSize] = String.valueOf(notImportedGradeTypes.get(i).factor());
-            }
-            csvWriter.writeNext(header);
-            csvWriter.writeNext(factors);
-
-            for (Student student : students) {
-                String[] studentInfo = new String[studentFieldsSize + gradeTypesCount];
-                Arrays.fill(studentInfo, "");
-                studentInfo[0] = student.name();
-                studentInfo[1] = student.gender() == Gender.MAN ? "M" : "F";
-                studentInfo[2] = Boolean.TRUE.equals(student.bachelor()) ? "B" : "";
-
-                for (int i = 0; i < gradeTypesCount; i++) {
-                    GradeType gradeType = notImportedGradeTypes.get(i);
-                    Float grade = getGradeByStudentAndGradeType(student, gradeType);
-                    studentInfo[i + studentFieldsSize] = grade != null ? String.valueOf(grade) : "";
-                }
-                csvWriter.writeNext(studentInfo);
+                float grade = grades[s][i];
+                studentInfo[i + studentFieldsSize] = Float.isNaN(grade) ? "" : String.valueOf(grade);
             }
+            csvWriter.writeNext(studentInfo);
+        }
 
-            writer.flush();
+        csvWriter.flush();
+    }
+
+    /**
+     * <b>HELPER METHOD</b>
+     * Load the average unimported grade of every student for every grade type with one grouped query.
+     *
+     * @param projectId The ID of the project.
+     * @param students The students of the project, their position gives the row of the matrix.
+     * @param gradeTypeIndexes The column of the matrix for each grade type id.
+     * @return A students x grade types matrix, missing grades are set to NaN.
+     */
+    private float[][] getUnimportedGradesMatrix(int projectId, List<Student> students, Map<Integer, Integer> gradeTypeIndexes) {
+        Map<Integer, Integer> studentIndexes = new HashMap<>();
+        for (int i = 0; i < students.size(); i++) {
+            studentIndexes.put(students.get(i).id(), i);
+        }
+
+        float[][] grades = new float[students.size()][gradeTypeIndexes.size()];
+        for (float[] row : grades) {
+            Arrays.fill(row, Float.NaN);
+        }
 
-            return byteArrayOutputStream.toByteArray();
+        for (Object[] row : gradeRepository.findUnimportedAveragesByProject(projectId)) {
+            Integer studentIndex = studentIndexes.get((Integer) row[0]);
+            Integer gradeTypeIndex = gradeTypeIndexes.get((Integer) row[1]);
+            if (studentIndex != null && gradeTypeIndex != null && row[2] != null) {
+                grades[studentIndex][gradeTypeIndex] = ((Number) row[2]).floatValue();
+            }
         }
+        return grades;
     }
 
     public Map<String, Double> getTeamGrades(Integer teamId, Integer sprintId) {
@@ -240,7 +470,7 @@ public class GradeService {
         List<GradeType> gradeTypes = gradeTypeRepository.findAllUnimportedAndForGroup();
 
         for (GradeType gradeType : gradeTypes) {
-            Double averageGrade = gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, gradeType.name());
+            Double averageGrade = gradeAggregateService.getTeamAverage(teamId, sprintId, gradeType.name());
             allGrades.put(gradeType.name(), averageGrade);
         }
 
@@ -253,63 +483,37 @@ public class GradeService {
         List<Student> teamStudents = studentRepository.findByTeam(teamId);
 
         for (Student student : teamStudents) {
-            Double averageGrade = gradeRepository.findAverageByGradeTypeForStudent(student.id(), sprintId, "Performance individuelle");
+            Double averageGrade = gradeAggregateService.getStudentAverage(student.id(), sprintId, "Performance individuelle");
             allGrades.put(String.valueOf(student.id()), averageGrade);
         }
 
         return allGrades;
     }
 
+    /**
+     * Checks whether every individual performance grade of a team for a sprint is confirmed.
+     * @return true if no grade is left to confirm
+     */
     public Boolean getGradesConfirmation(Integer sprintId, Integer teamId, Integer projectId) {
-        try {
-            Boolean gradesConfirmed = true;
-            List<Student> students = studentRepository.findByTeam(teamId);
-            if (students.isEmpty()) {
-                return gradesConfirmed;
-            }
-            for (Student student : students) {
-                GradeType gradeType = gradeTypeRepository.findByNameAndProjectId(GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId);
-                List<Grade> grades = gradeRepository.findIsConfirmedBySprindAndStudents(sprintId, student.id(), gradeType.id());
-                for (Grade g : grades){
-                    if (Boolean.FALSE.equals(g.confirmed())) {
-                        gradesConfirmed = false;
-                    }
-                }
-            }
-            return gradesConfirmed;
-        } catch (NullPointerException e) {
-            CustomLogger.info("No student or no grades found");
-            return true;
-        }
+        return gradeRepository.countUnconfirmedByTeam(sprintId, teamId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId) == 0;
     }
 
-
-    public Boolean setGradesConfirmation(Integer sprintId, Integer teamId, Integer projectId) {
-        try {
-            List<Student> students = studentRepository.findByTeam(teamId);
-            if (students.isEmpty()) {
-                return false;
-            }
-
-            for (Student student : students) {
-                GradeType gradeType = gradeTypeRepository.findByNameAndProjectId(GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId);
-
-                List<Grade> grades = gradeRepository.findIsConfirmedBySprindAndStudents(sprintId, student.id(), gradeType.id());
-                if (grades.isEmpty()) {
-                    throw new IllegalStateException("No grades found");
-                }
-                for (Grade grade : grades) {
-                    if (Boolean.FALSE.equals(grade.confirmed())) {
-                        gradeRepository.setConfirmedBySprintAndStudent(grade.id());
-                    }
-                }
-            }
-
-            return true;
-        } catch (NullPointerException e) {
-            CustomLogger.info("No student or no grades found");
-            return false;
+    /**
+     * Confirms every individual performance grade of a team for a sprint with a single update.
+     * A team without students has nothing to confirm.
+     * @return the number of grades that have been confirmed by this call
+     * @throws IllegalArgumentException if a student of the team has no individual performance grade for the sprint
+     */
+    public ConfirmationResult setGradesConfirmation(Integer sprintId, Integer teamId, Integer projectId) {
+        long ungradedStudents = gradeRepository.countStudentsWithoutGradeByTeam(sprintId, teamId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId);
+        if (ungradedStudents > 0) {
+            throw new IllegalArgumentException("No grades found for " + ungradedStudents + " students of team " + teamId + " in sprint " + sprintId);
         }
+
+        int confirmedGrades = gradeRepository.confirmAllByTeam(sprintId, teamId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId);
+        CustomLogger.info("Confirmed " + confirmedGrades + " grades of team " + teamId + " for sprint " + sprintId + ".");
+        if (confirmedGrades > 0) eventPublisher.publishEvent(new GradeEvent(GradeEventType.CONFIRMATION, sprintId, teamId, null));
+        return new ConfirmationResult(sprintId, teamId, confirmedGrades);
     }
 
     public List<Grade> getRatedGradesByAuthorId(Integer authorId) {
@@ -1,7 +1,5 @@
 package fr.eseo.tauri.service;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
 import fr.eseo.tauri.exception.EmptyResourceException;
 import fr.eseo.tauri.model.GradeType;
 import fr.eseo.tauri.model.enumeration.GradeTypeName;
@@ -14,8 +12,6 @@ import fr.eseo.tauri.exception.ResourceNotFoundException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -50,16 +46,16 @@ public class GradeTypeService {
         CustomLogger.info("Updating GradeType with id " + gradeType);
 
         if (updatedGradeType.name() != null) gradeType.name(updatedGradeType.name());
-        if (updatedGradeType.factor() != null) {
-            gradeType.factor(updatedGradeType.factor());
-            gradeService.updateImportedMean(projectId);
-        }
+        if (updatedGradeType.factor() != null) gradeType.factor(updatedGradeType.factor());
         if (updatedGradeType.forGroup() != null) gradeType.forGroup(updatedGradeType.forGroup());
         if (updatedGradeType.imported() != null) gradeType.imported(updatedGradeType.imported());
         if (updatedGradeType.scaleTXTBlob() != null) gradeType.scaleTXTBlob(updatedGradeType.scaleTXTBlob());
         if (updatedGradeType.project() != null) gradeType.project(updatedGradeType.project());
 
         gradeTypeRepository.save(gradeType);
+
+        // The means are recomputed by the database, so the new factor must be saved first
+        if (updatedGradeType.factor() != null) gradeService.updateImportedMean(projectId);
     }
 
     public void deleteGradeTypeById(Integer id) {
@@ -115,34 +111,6 @@ public class GradeTypeService {
         return(gradeTypeRepository.save(gradeType));
     }
 
-    /**
-     * This method is used to create a list of GradeType objects from a CSV file.
-     *
-     * @param inputStream the InputStream from which the CSV file is read
-     * @return a list of GradeType objects created from the coefficients and names in the CSV file
-     */
-    public List<GradeType> createGradeTypesFromCSV(InputStream inputStream) throws CsvValidationException, IOException {
-        List<String> coefficients = new ArrayList<>();
-        List<String> names = new ArrayList<>();
-        boolean coefficientsStarted = false;
-        int startingCoefficients = 1;
-        int lineBrowsed = 0;
-
-        CSVReader reader = new CSVReader(new InputStreamReader(inputStream));
-        String[] nextLine;
-        while ((nextLine = reader.readNext()) != null) {
-            lineBrowsed++;
-            if (!coefficientsStarted) {
-                startingCoefficients = processLineForCoefficients(nextLine, coefficients);
-                coefficientsStarted = true;
-            } else if (lineBrowsed == 2) {
-                processLineForNames(nextLine, names, startingCoefficients);
-            }
-        }
-
-        return generateImportedGradeTypes(coefficients, names);
-    }
-
     /**
      * <b>HELPER METHOD</b>
      * This method is used to process a line from a CSV file and extract the coefficients.
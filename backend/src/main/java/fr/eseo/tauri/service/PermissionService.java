@@ -2,17 +2,46 @@ package fr.eseo.tauri.service;
 
 import fr.eseo.tauri.model.Permission;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.enumeration.PermissionType;
 import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.PermissionRepository;
+import fr.eseo.tauri.repository.UserRepository;
+import fr.eseo.tauri.security.PermissionMask;
 import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 @Service
 @RequiredArgsConstructor
 public class PermissionService {
     private final PermissionRepository permissionRepository;
+    private final UserRepository userRepository;
+
+    // The permissions of each role, loaded from the permissions table on the first check and after each change
+    private volatile LoadedPermissions loadedPermissions;
+
+    // The last change of the roles of each user, remembered longer than an access token lives.
+    // The changes are stored on the users, and read again periodically so that the changes made by another instance are seen.
+    static final Duration ROLE_CHANGES_MEMORY = Duration.ofDays(1);
+    static final long ROLE_CHANGES_POLLING_SECONDS = 30;
+    private final Map<Integer, Instant> rolesChangedAt = new ConcurrentHashMap<>();
+    private volatile Instant allRolesChangedAt = Instant.EPOCH;
+    private volatile Instant rolesChangesLoadedAt;
+
+    /**
+     * @param version a checksum of the permissions of every role, the same across restarts as long as the permissions do not change
+     */
+    private record LoadedPermissions(Map<RoleType, Set<PermissionType>> permissionsByRole, long version) {
+    }
 
     public Permission getPermissionById(Integer id) {
         return permissionRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("permission", id));
@@ -26,8 +55,96 @@ public class PermissionService {
         return permissionRepository.findByRole(roleType);
     }
 
+    /**
+     * Check if a role has a permission, without querying the database once the permissions are loaded.
+     */
+    public boolean hasPermission(RoleType roleType, PermissionType permissionType) {
+        Set<PermissionType> permissions = getLoadedPermissions().permissionsByRole().get(roleType);
+        return permissions != null && permissions.contains(permissionType);
+    }
+
+    /**
+     * Get the permissions given by any of the roles, without querying the database once the permissions are loaded.
+     */
+    public Set<PermissionType> getPermissionTypesByRoles(Collection<RoleType> roleTypes) {
+        Set<PermissionType> permissions = EnumSet.noneOf(PermissionType.class);
+        Map<RoleType, Set<PermissionType>> permissionsByRole = getLoadedPermissions().permissionsByRole();
+        for (RoleType roleType : roleTypes) {
+            Set<PermissionType> rolePermissions = permissionsByRole.get(roleType);
+            if (rolePermissions != null) permissions.addAll(rolePermissions);
+        }
+        return permissions;
+    }
+
+    /**
+     * Get the version of the permissions of the roles, given to the access tokens
+     * so that the tokens issued before a change of the permissions can be told apart.
+     */
+    public long getPermissionsVersion() {
+        return getLoadedPermissions().version();
+    }
+
+    /**
+     * Records that the roles of some users have changed, so that the access tokens issued before are rejected.
+     */
+    public void markRolesChanged(Collection<Integer> userIds) {
+        if (userIds.isEmpty()) return;
+        Instant now = Instant.now();
+        forgetOldRolesChanges(now);
+        userIds.forEach(userId -> rolesChangedAt.put(userId, now));
+        userRepository.updateRolesChangedAt(userIds, now);
+    }
+
+    public void markAllRolesChanged() {
+        Instant now = Instant.now();
+        allRolesChangedAt = now;
+        rolesChangedAt.clear();
+        userRepository.updateAllRolesChangedAt(now);
+    }
+
+    /**
+     * Reads the changes of the roles stored on the users: all the recent ones at startup, then the ones since the last reading.
+     * The readings overlap by one period, so that a change stored while reading is not missed.
+     */
+    @Scheduled(fixedDelay = ROLE_CHANGES_POLLING_SECONDS, timeUnit = TimeUnit.SECONDS)
+    public void loadRolesChanges() {
+        Instant now = Instant.now();
+        Instant lastLoad = rolesChangesLoadedAt;
+        Instant since = lastLoad != null ? lastLoad.minusSeconds(ROLE_CHANGES_POLLING_SECONDS) : now.minus(ROLE_CHANGES_MEMORY);
+
+        forgetOldRolesChanges(now);
+        for (Object[] row : userRepository.findRolesChangedAfter(since)) {
+            rolesChangedAt.merge((Integer) row[0], (Instant) row[1], (known, loaded) -> loaded.isAfter(known) ? loaded : known);
+        }
+        rolesChangesLoadedAt = now;
+    }
+
+    private void forgetOldRolesChanges(Instant now) {
+        Instant forgotten = now.minus(ROLE_CHANGES_MEMORY);
+        rolesChangedAt.values().removeIf(changedAt -> changedAt.isBefore(forgotten));
+    }
+
+    /**
+     * Tells if the roles of a user have changed since a token was issued.
+     * The tokens carry their date to the second, so a token issued in the second of the change is still accepted.
+     */
+    public boolean haveRolesChangedSince(Integer userId, Instant issuedAt) {
+        Instant changedAt = rolesChangedAt.get(userId);
+        Instant lastChange = changedAt != null && changedAt.isAfter(allRolesChangedAt) ? changedAt : allRolesChangedAt;
+        return issuedAt.isBefore(lastChange.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    /**
+     * Forgets the loaded permissions, to be called when the permissions table is changed.
+     * They are loaded again on the next check.
+     */
+    public synchronized void refreshPermissions() {
+        loadedPermissions = null;
+    }
+
     public void createPermission(Permission permission) {
         permissionRepository.save(permission);
+        refreshPermissions();
     }
 
     public void updatePermission(Integer id, Permission updatedPermission) {
@@ -37,15 +154,41 @@ public class PermissionService {
         if (updatedPermission.role() != null) permission.role(updatedPermission.role());
 
         permissionRepository.save(permission);
+        refreshPermissions();
     }
 
     public void deletePermission(Integer id) {
         getPermissionById(id);
         permissionRepository.deleteById(id);
+        refreshPermissions();
     }
 
     public void deleteAllPermissions() {
         permissionRepository.deleteAll();
+        refreshPermissions();
+    }
+
+    private LoadedPermissions getLoadedPermissions() {
+        LoadedPermissions permissions = loadedPermissions;
+        return permissions != null ? permissions : loadPermissions();
+    }
+
+    // Synchronized with the refresh, so that permissions read before a change cannot be kept after it
+    private synchronized LoadedPermissions loadPermissions() {
+        if (loadedPermissions == null) {
+            Map<RoleType, Set<PermissionType>> permissions = new EnumMap<>(RoleType.class);
+            for (Permission permission : permissionRepository.findAll()) {
+                if (permission.role() == null || permission.type() == null) continue;
+                permissions.computeIfAbsent(permission.role(), role -> EnumSet.noneOf(PermissionType.class)).add(permission.type());
+            }
+
+            CRC32 checksum = new CRC32();
+            for (var entry : permissions.entrySet()) {
+                checksum.update((entry.getKey().name() + ":" + PermissionMask.encode(entry.getValue()) + ";").getBytes(StandardCharsets.UTF_8));
+            }
+            loadedPermissions = new LoadedPermissions(Collections.unmodifiableMap(permissions), checksum.getValue());
+        }
+        return loadedPermissions;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.model.ProjectTeardownResult;
+import fr.eseo.tauri.repository.GradeTypeRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.repository.TeamRepository;
+import fr.eseo.tauri.util.CustomLogger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Deletes the students, the teams and the imported grade types of a project with set-based statements.
+ * The students are deleted by chunks, each in its own transaction, so that a large project does not hold its locks
+ * for the whole teardown. The teams and the imported grade types are deleted last, in one transaction.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProjectTeardownService {
+
+    static final int CHUNK_SIZE = 500;
+
+    private final StudentRepository studentRepository;
+    private final TeamRepository teamRepository;
+    private final GradeTypeRepository gradeTypeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AuthService authService;
+    private final PermissionService permissionService;
+
+    /**
+     * Deletes the students of a project with their roles, grades, bonuses, presentation orders, flags, comments and validations,
+     * then the teams of the project with their grades and comments, then the imported grade types of the project.
+     * @param projectId the id of the project
+     * @return the number of deleted rows and the time the teardown took
+     */
+    public ProjectTeardownResult deleteStudentsAndTeams(Integer projectId) {
+        long start = System.nanoTime();
+
+        List<Integer> studentIds = studentRepository.findAllIdsByProject(projectId);
+        int deletedRows = 0;
+        int nbChunks = 0;
+        for (int from = 0; from < studentIds.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = studentIds.subList(from, Math.min(from + CHUNK_SIZE, studentIds.size()));
+            Integer rows = transactionTemplate.execute(status -> studentRepository.deleteAllWithDependents(chunk));
+            // Once the chunk is committed, the access tokens of its students are rejected
+            permissionService.markRolesChanged(chunk);
+            deletedRows += rows != null ? rows : 0;
+            nbChunks++;
+        }
+        if (!studentIds.isEmpty()) authService.forgetAllUsers();
+
+        int[] teamRows = new int[2];
+        transactionTemplate.executeWithoutResult(status -> {
+            teamRows[0] = teamRepository.deleteAllTeamAggregatesByProject(projectId)
+                    + teamRepository.deleteAllTeamGradesByProject(projectId)
+                    + teamRepository.deleteAllTeamCommentsByProject(projectId)
+                    + gradeTypeRepository.deleteAllImportedByProject(projectId);
+            teamRows[1] = teamRepository.deleteAllByProject(projectId);
+        });
+        deletedRows += teamRows[0] + teamRows[1];
+
+        ProjectTeardownResult result = new ProjectTeardownResult(projectId, studentIds.size(), teamRows[1], nbChunks, deletedRows,
+                (System.nanoTime() - start) / 1_000_000);
+        CustomLogger.info(String.format("Deleted %d students and %d teams of project %d in %d transactions, %d rows in %d ms.",
+                result.nbStudents(), result.nbTeams(), projectId, nbChunks + 1, deletedRows, result.durationMs()));
+        return result;
+    }
+
+}
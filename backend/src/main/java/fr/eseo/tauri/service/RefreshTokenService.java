@@ -0,0 +1,124 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.model.RefreshToken;
+import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.repository.RefreshTokenRepository;
+import fr.eseo.tauri.security.JwtTokenUtil;
+import fr.eseo.tauri.util.CustomLogger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Issues the refresh tokens, which give new access tokens without authenticating again.
+ * A refresh token can be used once: using it gives a new one. Only the hash of the tokens is stored.
+ * The role types of the user are stored with the token, and forgotten when the roles of the user change.
+ */
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+    private static final String INVALID_TOKEN = "Invalid refresh token";
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final PermissionService permissionService;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Value("${app.jwt.refresh-expiration}")
+    private long refreshExpiration;
+
+    /**
+     * Creates a refresh token for a user.
+     * @param roles the role types of the user, reused when the token is used
+     * @return the token, to give to the client
+     */
+    public String issue(User user, Collection<RoleType> roles) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.tokenHash(JwtTokenUtil.hash(token));
+        refreshToken.user(user);
+        refreshToken.roles(roles.stream().map(RoleType::name).collect(Collectors.joining(",")));
+        refreshToken.expiresAt(Instant.now().plusMillis(refreshExpiration));
+        refreshTokenRepository.save(refreshToken);
+        return token;
+    }
+
+    /**
+     * Uses a refresh token, which is deleted so that it cannot be used again.
+     * @return the used token, with its user and the role types stored with it
+     * @throws SecurityException if the token is unknown, already used or expired
+     */
+    public RefreshToken consume(String token) {
+        if (token == null || token.isBlank()) throw new SecurityException(INVALID_TOKEN);
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(JwtTokenUtil.hash(token))
+                .orElseThrow(() -> new SecurityException(INVALID_TOKEN));
+
+        // Only one of two requests using the same token at once deletes it
+        if (refreshTokenRepository.deleteAndCountById(refreshToken.id()) != 1) {
+            CustomLogger.warn("Refresh token of user " + refreshToken.user().id() + " used twice");
+            throw new SecurityException(INVALID_TOKEN);
+        }
+        if (refreshToken.expiresAt().isBefore(Instant.now())) throw new SecurityException(INVALID_TOKEN);
+        return refreshToken;
+    }
+
+    /**
+     * Purges the expired tokens every hour, away from the logins.
+     */
+    @Scheduled(fixedDelay = 1, initialDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void deleteExpiredTokens() {
+        int deleted = refreshTokenRepository.deleteAllExpired(Instant.now());
+        if (deleted > 0) CustomLogger.info("Deleted " + deleted + " expired refresh tokens");
+    }
+
+    /**
+     * The role types stored with a refresh token, or null if they have changed since the token was issued.
+     */
+    public static List<RoleType> readRoles(RefreshToken refreshToken) {
+        if (refreshToken.roles() == null) return null;
+        if (refreshToken.roles().isEmpty()) return List.of();
+        return Arrays.stream(refreshToken.roles().split(",")).map(RoleType::valueOf).toList();
+    }
+
+    /**
+     * To be called on every change of the roles of a user: the access tokens issued before are rejected,
+     * and the next use of the refresh tokens of the user reads their roles again.
+     */
+    public void forgetRoles(User user) {
+        if (user != null && user.id() != null) {
+            refreshTokenRepository.forgetRolesByUser(user.id());
+            permissionService.markRolesChanged(List.of(user.id()));
+        }
+    }
+
+    /**
+     * Same as forgetRoles for several users, with one statement.
+     */
+    public void forgetRoles(Collection<Integer> userIds) {
+        if (!userIds.isEmpty()) {
+            refreshTokenRepository.forgetRolesByUsers(userIds);
+            permissionService.markRolesChanged(userIds);
+        }
+    }
+
+    public void forgetAllRoles() {
+        refreshTokenRepository.forgetAllRoles();
+        permissionService.markAllRolesChanged();
+    }
+
+}
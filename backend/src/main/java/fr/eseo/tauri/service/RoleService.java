@@ -22,6 +22,7 @@ public class RoleService {
 	private final StudentRepository studentRepository;
 	private final GradeRepository gradeRepository;
 	private final GradeTypeRepository gradeTypeRepository;
+	private final RefreshTokenService refreshTokenService;
 
 	public Role getRoleById(Integer id) {
 		return roleRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("role", id));
@@ -34,6 +35,7 @@ public class RoleService {
 	public void createRole(Role role) {
 		if(role.userId() != null) role.user(userService.getUserById(role.userId()));
 		roleRepository.save(role);
+		refreshTokenService.forgetRoles(role.user());
 	}
 
 	public void createRoles(String email, RoleType[] roles, Integer projectId) {
@@ -51,6 +53,7 @@ public class RoleService {
 				roleRepository.save(role);
 			}
 		}
+		refreshTokenService.forgetRoles(user);
 	}
 
 	public void createStudentRoleAndGrades(String email, Integer projectId, RoleType roleType){
@@ -88,19 +91,24 @@ public class RoleService {
 	public void updateRole(Integer id, Role updatedRole) {
 		Role role = getRoleById(id);
 
+		// The previous user of the role loses it
+		refreshTokenService.forgetRoles(role.user());
 		if (updatedRole.type() != null) role.type(updatedRole.type());
 		if (updatedRole.userId() != null) role.user(userService.getUserById(updatedRole.userId()));
 
 		roleRepository.save(role);
+		refreshTokenService.forgetRoles(role.user());
 	}
 
 	public void deleteRoleById(Integer id) {
-		getRoleById(id);
+		Role role = getRoleById(id);
 		roleRepository.deleteById(id);
+		refreshTokenService.forgetRoles(role.user());
 	}
 
 	public void deleteAllRoles() {
 		roleRepository.deleteAll();
+		refreshTokenService.forgetAllRoles();
 	}
 
 	/**
@@ -115,8 +123,7 @@ public class RoleService {
 	}
 
 	public Boolean hasPermission(RoleType roleType, PermissionType permissionType) {
-		var permissions = permissionService.getAllPermissionsByRole(roleType);
-		return ListUtil.map(permissions, Permission::type).contains(permissionType);
+		return permissionService.hasPermission(roleType, permissionType);
 	}
 
 }
\ No newline at end of file
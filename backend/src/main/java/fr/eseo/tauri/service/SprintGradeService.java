@@ -0,0 +1,176 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.Team;
+import fr.eseo.tauri.model.TeamSprintGrades;
+import fr.eseo.tauri.model.enumeration.GradeTypeName;
+import fr.eseo.tauri.repository.BonusRepository;
+import fr.eseo.tauri.repository.GradeRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.repository.TeamRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes the sprint results of a team (team grade, individual totals and sprint grades)
+ * with a fixed number of queries, whatever the size of the team.
+ */
+@Service
+@RequiredArgsConstructor
+public class SprintGradeService {
+
+    private static final String GLOBAL_TEAM_PERFORMANCE = GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName();
+    private static final String INDIVIDUAL_PERFORMANCE = GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName();
+    private static final int PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private final TeamRepository teamRepository;
+    private final StudentRepository studentRepository;
+    private final GradeRepository gradeRepository;
+    private final BonusRepository bonusRepository;
+
+    // Bounded pool so that a burst of requests cannot take over the common pool
+    private final ForkJoinPool gradesPool = new ForkJoinPool(PARALLELISM);
+
+    @PreDestroy
+    public void shutdown() {
+        gradesPool.shutdown();
+    }
+
+    public TeamSprintGrades getTeamSprintGrades(Integer teamId, Integer sprintId) {
+        if (!teamRepository.existsById(teamId)) {
+            throw new ResourceNotFoundException("team", teamId);
+        }
+
+        List<Student> students = studentRepository.findByTeam(teamId);
+        Map<String, Double> teamAverages = toDoubleMap(gradeRepository.findTeamAveragesByGradeType(teamId, sprintId));
+        Map<Integer, Double> individualAverages = toDoubleMap(gradeRepository.findStudentAveragesByTeam(teamId, sprintId, INDIVIDUAL_PERFORMANCE));
+        Map<Integer, Double> bonuses = toDoubleMap(bonusRepository.findBonusSumsByTeam(teamId, sprintId));
+
+        return computeTeamSprintGrades(teamId, students, teamAverages, individualAverages, bonuses);
+    }
+
+    /**
+     * Computes the sprint results of every team of a project.
+     * The data of the whole project is loaded in a fixed number of queries, then the teams are computed in parallel.
+     * @return the results of each team, in the order of the teams of the project
+     */
+    public List<TeamSprintGrades> getProjectSprintGrades(Integer projectId, Integer sprintId) {
+        List<Team> teams = teamRepository.findAllByProject(projectId);
+        if (teams.isEmpty()) return List.of();
+
+        Map<Integer, List<Student>> studentsByTeam = new HashMap<>();
+        for (Student student : studentRepository.findAllWithTeamByProject(projectId)) {
+            studentsByTeam.computeIfAbsent(student.team().id(), k -> new ArrayList<>()).add(student);
+        }
+        Map<Integer, Map<String, Double>> teamAverages = new HashMap<>();
+        for (Object[] row : gradeRepository.findTeamAveragesByGradeTypeForProject(projectId, sprintId)) {
+            teamAverages.computeIfAbsent((Integer) row[0], k -> new HashMap<>()).put((String) row[1], ((Number) row[2]).doubleValue());
+        }
+        Map<Integer, Double> individualAverages = toDoubleMap(gradeRepository.findStudentAveragesByProject(projectId, sprintId, INDIVIDUAL_PERFORMANCE));
+        Map<Integer, Double> bonuses = toDoubleMap(bonusRepository.findBonusSumsByProject(projectId, sprintId));
+
+        return gradesPool.submit(() -> teams.parallelStream()
+                .map(team -> computeTeamSprintGrades(team.id(),
+                        studentsByTeam.getOrDefault(team.id(), List.of()),
+                        teamAverages.getOrDefault(team.id(), Map.of()),
+                        individualAverages,
+                        bonuses))
+                .toList()
+        ).join();
+    }
+
+    public Double getTeamTotalGrade(Integer teamId, Integer sprintId) {
+        return teamGrade(toDoubleMap(gradeRepository.findTeamAveragesByGradeType(teamId, sprintId)));
+    }
+
+    public Double getStudentIndividualTotalGrade(Integer studentId, Integer sprintId) {
+        TeamSprintGrades grades = getTeamSprintGradesOfStudent(studentId, sprintId);
+        return grades.individualGrades().get(grades.studentIds().indexOf(studentId));
+    }
+
+    public Double getStudentSprintGrade(Integer studentId, Integer sprintId) {
+        TeamSprintGrades grades = getTeamSprintGradesOfStudent(studentId, sprintId);
+        return grades.sprintGrades().get(grades.studentIds().indexOf(studentId));
+    }
+
+    private TeamSprintGrades getTeamSprintGradesOfStudent(Integer studentId, Integer sprintId) {
+        Team team = teamRepository.findByStudentId(studentId);
+        if (team == null) {
+            throw new ResourceNotFoundException("team of the student", studentId);
+        }
+        return getTeamSprintGrades(team.id(), sprintId);
+    }
+
+    /**
+     * Computes the sprint results from the aggregates of the team, without any database access.
+     * Missing grades are left as NaN, like an average over no grade.
+     * The sprint grades are combined from the team and individual grades rounded to 2 decimals, as they are displayed.
+     * @param students the students of the team, in the order of the returned grades
+     * @param teamAverages the average of each team grade type, by grade type name
+     * @param individualAverages the average individual performance grade, by student id
+     * @param bonuses the sum of the bonuses, by student id
+     */
+    public TeamSprintGrades computeTeamSprintGrades(Integer teamId, List<Student> students, Map<String, Double> teamAverages, Map<Integer, Double> individualAverages, Map<Integer, Double> bonuses) {
+        double teamGrade = teamGrade(teamAverages);
+        double roundedTeamGrade = rounded(teamGrade);
+        Double studentGradedTeamGrade = teamAverages.get(GLOBAL_TEAM_PERFORMANCE);
+
+        List<Integer> studentIds = new ArrayList<>(students.size());
+        List<Double> individualGrades = new ArrayList<>(students.size());
+        List<Double> sprintGrades = new ArrayList<>(students.size());
+
+        for (Student student : students) {
+            double individualGrade = individualTotalGrade(individualAverages.get(student.id()), studentGradedTeamGrade);
+            double bonus = bonuses.getOrDefault(student.id(), 0.0);
+
+            studentIds.add(student.id());
+            individualGrades.add(individualGrade);
+            sprintGrades.add(0.7*(Math.min(roundedTeamGrade + bonus, 20.0)) + 0.3*rounded(individualGrade));
+        }
+
+        return new TeamSprintGrades(teamId, studentIds, teamGrade, individualGrades, sprintGrades);
+    }
+
+    private double teamGrade(Map<String, Double> teamAverages) {
+        double sum = 0;
+        int count = 0;
+        for (Map.Entry<String, Double> entry : teamAverages.entrySet()) {
+            if (!GLOBAL_TEAM_PERFORMANCE.equals(entry.getKey()) && entry.getValue() != null) {
+                sum += entry.getValue();
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    private double individualTotalGrade(Double individualGrade, Double studentGradedTeamGrade) {
+        if (individualGrade != null && studentGradedTeamGrade != null) {
+            return (2*individualGrade + studentGradedTeamGrade)/3;
+        }
+        if (individualGrade != null) return individualGrade;
+        if (studentGradedTeamGrade != null) return studentGradedTeamGrade;
+        return Double.NaN;
+    }
+
+    private static double rounded(double grade) {
+        return Double.parseDouble(String.format("%.2f", grade).replace(',', '.'));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> Map<K, Double> toDoubleMap(List<Object[]> rows) {
+        Map<K, Double> map = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            map.put((K) row[0], row[1] == null ? null : ((Number) row[1]).doubleValue());
+        }
+        return map;
+    }
+
+}
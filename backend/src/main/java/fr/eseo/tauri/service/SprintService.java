@@ -1,23 +1,28 @@
 package fr.eseo.tauri.service;
 
-import fr.eseo.tauri.model.Bonus;
-import fr.eseo.tauri.model.PresentationOrder;
-import fr.eseo.tauri.model.Sprint;
-import fr.eseo.tauri.model.Student;
-import fr.eseo.tauri.model.Comment;
+import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.repository.BonusRepository;
 import fr.eseo.tauri.repository.CommentRepository;
+import fr.eseo.tauri.repository.PresentationOrderRepository;
 import fr.eseo.tauri.repository.SprintRepository;
 import fr.eseo.tauri.util.CustomLogger;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @RequiredArgsConstructor
@@ -27,12 +32,16 @@ public class SprintService {
     private final ProjectService projectService;
     @Lazy
     private final StudentService studentService;
-    private final PresentationOrderService presentationOrderService;
-    private final BonusService bonusService;
+    private final PresentationOrderRepository presentationOrderRepository;
+    private final BonusRepository bonusRepository;
     private final CommentRepository commentRepository;
     @Lazy
     private final TeamService teamService;
 
+    // The id of the current sprint of each project, valid for the day it has been resolved on
+    private final Map<Integer, CurrentSprint> currentSprintsByProject = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
     public Sprint getSprintById(Integer id) {
 
         return sprintRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("sprint", id));
@@ -42,33 +51,47 @@ public class SprintService {
         return sprintRepository.findAllByProject(projectId);
     }
 
-    public void createSprint(Sprint sprint, int sprintId) {
+    /**
+     * Creates a sprint with a presentation order and a limited and an unlimited bonus for each student of the project.
+     * The rows are built in memory and written with batched statements, whatever the number of students.
+     * The presentation orders are numbered within each team, a student without a team has no presentation order value.
+     * @return the number of created rows and the time the creation took
+     */
+    @Transactional
+    public SprintCreationResult createSprint(Sprint sprint, int sprintId) {
         CustomLogger.info("Creating sprint " + sprintId);
+        long start = System.nanoTime();
 
         sprint.project(projectService.getProjectById(sprint.projectId()));
         sprintRepository.save(sprint);
+        evictCurrentSprint(sprint.project());
 		List<Student> students = studentService.getAllStudentsByProject(sprint.projectId());
-        if(!students.isEmpty()) {
-            var teamsIndexes = new HashMap<Integer, Integer>();
-            for (var team : teamService.getAllTeamsByProject(sprint.projectId())) {
-                teamsIndexes.put(team.id(), 0);
-            }
-            for (Student student : students) {
-				var presentationOrder = new PresentationOrder(sprint, student);
-				var value = teamsIndexes.get(student.team().id());
-				presentationOrder.value(value);
-				teamsIndexes.put(student.team().id(), value + 1);
-				presentationOrderService.createPresentationOrder(presentationOrder);
-                Bonus limitedBonus = new Bonus((float) 0, true, sprint, student);
-                Bonus unlimitedBonus = new Bonus((float) 0, false, sprint, student);
-                bonusService.createBonus(limitedBonus);
-                bonusService.createBonus(unlimitedBonus);
+
+        List<PresentationOrder> presentationOrders = new ArrayList<>(students.size());
+        List<Bonus> bonuses = new ArrayList<>(students.size() * 2);
+        var teamsIndexes = new HashMap<Integer, Integer>();
+        for (Student student : students) {
+            var presentationOrder = new PresentationOrder(sprint, student);
+            if (student.team() != null) {
+                presentationOrder.value(teamsIndexes.merge(student.team().id(), 1, Integer::sum) - 1);
             }
+            presentationOrders.add(presentationOrder);
+            bonuses.add(new Bonus((float) 0, true, sprint, student));
+            bonuses.add(new Bonus((float) 0, false, sprint, student));
         }
+        if (!presentationOrders.isEmpty()) presentationOrderRepository.insertAll(presentationOrders);
+        if (!bonuses.isEmpty()) bonusRepository.insertAll(bonuses);
+
+        SprintCreationResult result = new SprintCreationResult(sprint.id(), students.size(), presentationOrders.size(), bonuses.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        CustomLogger.info(String.format("Created sprint %d with %d presentation orders and %d bonuses in %d ms.",
+                sprint.id(), result.nbPresentationOrders(), result.nbBonuses(), result.durationMs()));
+        return result;
     }
 
     public void updateSprint(Integer id, Sprint updatedSprint) {
         Sprint sprint = getSprintById(id);
+        evictCurrentSprint(sprint.project());
 
         if (updatedSprint.startDate() != null) sprint.startDate(updatedSprint.startDate());
         if (updatedSprint.endDate() != null) sprint.endDate(updatedSprint.endDate());
@@ -77,11 +100,13 @@ public class SprintService {
         if (updatedSprint.projectId() != null) sprint.project(projectService.getProjectById(updatedSprint.projectId()));
 
         sprintRepository.save(sprint);
+        evictCurrentSprint(sprint.project());
     }
 
     public void deleteSprint(Integer id) {
         var deletedSprint = getSprintById(id);
         sprintRepository.deleteById(id);
+        evictCurrentSprint(deletedSprint.project());
 
         var sprints = sprintRepository.findAllByProject(id);
         for (var sprint : sprints) {
@@ -94,10 +119,58 @@ public class SprintService {
 
     public void deleteAllSprintsByProject(Integer projectId) {
         sprintRepository.deleteAllByProject(projectId);
+        evictCurrentSprint(projectId);
     }
 
+    /**
+     * Get the sprint in progress of a project, or the closest one if none is in progress.
+     * The sprint is resolved once per project and per day, until a sprint of the project changes.
+     * Only its id is kept, each caller gets its own instance of the sprint.
+     */
     public Sprint getCurrentSprint(Integer projectId) {
         LocalDate today = LocalDate.now();
+        CurrentSprint cached = currentSprintsByProject.get(projectId);
+        if (cached != null && today.equals(cached.date())) {
+            if (cached.sprintId() == null) return null;
+            Optional<Sprint> sprint = sprintRepository.findById(cached.sprintId());
+            if (sprint.isPresent()) return sprint.get();
+        }
+
+        Sprint sprint = findCurrentSprint(projectId, today);
+        // Kept only if the entry has not changed meanwhile, so that an eviction cannot be overwritten by an older resolution
+        CurrentSprint resolved = new CurrentSprint(today, sprint != null ? sprint.id() : null, evictions.get());
+        if (cached == null) {
+            currentSprintsByProject.putIfAbsent(projectId, resolved);
+        } else {
+            currentSprintsByProject.replace(projectId, cached, resolved);
+        }
+        return sprint;
+    }
+
+    /**
+     * Forgets the current sprint of a project, now and again when the running transaction ends, as a read may have happened in between.
+     */
+    private void evictCurrentSprint(Integer projectId) {
+        markEvicted(projectId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    markEvicted(projectId);
+                }
+            });
+        }
+    }
+
+    private void markEvicted(Integer projectId) {
+        currentSprintsByProject.put(projectId, new CurrentSprint(null, null, evictions.incrementAndGet()));
+    }
+
+    private void evictCurrentSprint(Project project) {
+        if (project != null && project.id() != null) evictCurrentSprint(project.id());
+    }
+
+    private Sprint findCurrentSprint(Integer projectId, LocalDate today) {
         List<Sprint> sprints = sprintRepository.findAllByProject(projectId);
 
         Sprint currentSprint = null;
@@ -131,4 +204,11 @@ public class SprintService {
 
         return studentsComments;
     }
-}
\ No newline at end of file
+
+    /**
+     * The current sprint of a project, or an evicted entry without a date.
+     * Each eviction has its own version, so that a resolution started before it cannot replace it.
+     */
+    private record CurrentSprint(LocalDate date, Integer sprintId, long version) {}
+
+}
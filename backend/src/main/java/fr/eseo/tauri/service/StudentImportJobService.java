@@ -0,0 +1,150 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.exception.EmptyResourceException;
+import fr.eseo.tauri.model.ImportJob;
+import fr.eseo.tauri.model.StudentImportResult;
+import fr.eseo.tauri.model.enumeration.ImportJobStatus;
+import fr.eseo.tauri.util.CustomLogger;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the student imports in the background, so that the request that uploads the file returns as soon as the file is received.
+ * Only one import per project can be queued or running at a time, and finished jobs can be polled for a limited time.
+ */
+@Service
+@RequiredArgsConstructor
+public class StudentImportJobService {
+
+    private static final int IMPORT_THREADS = 2;
+    private static final int MAX_QUEUED_IMPORTS = 8;
+    static final Duration TIME_TO_LIVE = Duration.ofHours(1);
+
+    private final StudentImportService studentImportService;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<Integer, String> runningJobIdsByProject = new ConcurrentHashMap<>();
+    private final Map<Integer, String> lastJobIdsByProject = new ConcurrentHashMap<>();
+    // Bounded pool and queue so that a burst of uploads cannot take over the server
+    private final ExecutorService importsPool = new ThreadPoolExecutor(IMPORT_THREADS, IMPORT_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_IMPORTS));
+
+    @PreDestroy
+    public void shutdown() {
+        importsPool.shutdownNow();
+    }
+
+    /**
+     * Queues the import of a CSV file of students.
+     * The content of the file is read before returning, the request does not need to stay open during the import.
+     * @param file the CSV file
+     * @param projectId the id of the project of the students
+     * @return the job, to poll with its id
+     * @throws IllegalArgumentException if an import of the project is already queued or running, or too many imports are queued
+     */
+    public ImportJob submit(MultipartFile file, Integer projectId) throws IOException {
+        if (file.isEmpty()) {
+            CustomLogger.info("Uploaded file is empty");
+            throw new EmptyResourceException("uploaded file");
+        }
+        evictExpired();
+        byte[] content = file.getBytes();
+
+        Job job = new Job(UUID.randomUUID().toString(), projectId);
+        if (runningJobIdsByProject.putIfAbsent(projectId, job.id) != null) {
+            throw new IllegalArgumentException("An import of students is already running for this project");
+        }
+        jobs.put(job.id, job);
+        try {
+            importsPool.execute(() -> run(job, content));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            runningJobIdsByProject.remove(projectId, job.id);
+            throw new IllegalArgumentException("Too many imports of students are waiting, please try again later");
+        }
+        lastJobIdsByProject.put(projectId, job.id);
+        CustomLogger.info("Queued the import of students " + job.id + " of project " + projectId + ".");
+        return job.toImportJob();
+    }
+
+    /**
+     * Get the progress of an import of a project.
+     * @param jobId the id of the job, or null for the last import of the project
+     * @throws IllegalArgumentException if the job is unknown, has expired or belongs to another project
+     */
+    public ImportJob getJob(Integer projectId, String jobId) {
+        evictExpired();
+        String id = jobId != null ? jobId : lastJobIdsByProject.get(projectId);
+        Job job = id != null ? jobs.get(id) : null;
+        if (job == null || !job.projectId.equals(projectId)) {
+            throw new IllegalArgumentException("The import of students does not exist or has expired");
+        }
+        return job.toImportJob();
+    }
+
+    private void run(Job job, byte[] content) {
+        job.status = ImportJobStatus.RUNNING;
+        ImportJobStatus status = ImportJobStatus.FAILED;
+        try {
+            job.result = studentImportService.importStudents(new ByteArrayInputStream(content), job.projectId, job.processedRows);
+            status = ImportJobStatus.SUCCEEDED;
+        } catch (Exception e) {
+            CustomLogger.error("The import of students " + job.id + " of project " + job.projectId + " has failed: " + e.getMessage());
+            job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        } finally {
+            // The project is released before the job is seen as over, so that a new import can follow right away
+            runningJobIdsByProject.remove(job.projectId, job.id);
+            job.finish(status);
+        }
+    }
+
+    private void evictExpired() {
+        Instant limit = Instant.now().minus(TIME_TO_LIVE);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(limit));
+        lastJobIdsByProject.values().removeIf(id -> !jobs.containsKey(id));
+    }
+
+    /**
+     * The state of an import, written by the import thread and read by the status requests.
+     */
+    private static final class Job {
+        private final String id;
+        private final Integer projectId;
+        private final long submittedAt = System.nanoTime();
+        private final AtomicInteger processedRows = new AtomicInteger();
+        private volatile ImportJobStatus status = ImportJobStatus.PENDING;
+        private volatile String error;
+        private volatile StudentImportResult result;
+        private volatile long elapsedMs;
+        private volatile Instant finishedAt;
+
+        private Job(String id, Integer projectId) {
+            this.id = id;
+            this.projectId = projectId;
+        }
+
+        private void finish(ImportJobStatus finalStatus) {
+            elapsedMs = (System.nanoTime() - submittedAt) / 1_000_000;
+            finishedAt = Instant.now();
+            status = finalStatus;
+        }
+
+        private ImportJob toImportJob() {
+            long elapsed = finishedAt != null ? elapsedMs : (System.nanoTime() - submittedAt) / 1_000_000;
+            return new ImportJob(id, projectId, status, processedRows.get(), error != null ? List.of(error) : List.of(), elapsed, result);
+        }
+    }
+
+}
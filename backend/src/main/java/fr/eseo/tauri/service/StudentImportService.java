@@ -0,0 +1,209 @@
+package fr.eseo.tauri.service;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import fr.eseo.tauri.exception.EmptyResourceException;
+import fr.eseo.tauri.model.*;
+import fr.eseo.tauri.model.enumeration.GradeTypeName;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.repository.*;
+import fr.eseo.tauri.util.CustomLogger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports the students of a project from a CSV file in one transaction.
+ * The file is read once: the first line holds the coefficients of the imported grade types, the second line their names,
+ * then come the students, one per line, with their name, gender, bachelor status and grades.
+ * The project, the grade types and the sprints are loaded once, and every table is written with batched statements.
+ */
+@Service
+@RequiredArgsConstructor
+public class StudentImportService {
+
+    private static final int COEFFICIENTS_LINE = 1;
+    private static final int NAMES_LINE = 2;
+    private static final int NAME_COLUMN = 1;
+    private static final int GENDER_COLUMN = 2;
+    private static final int BACHELOR_COLUMN = 3;
+    private static final int FIRST_GRADE_COLUMN = 4;
+
+    private final ProjectService projectService;
+    private final GradeTypeService gradeTypeService;
+    private final GradeTypeRepository gradeTypeRepository;
+    private final StudentRepository studentRepository;
+    private final RoleRepository roleRepository;
+    private final GradeRepository gradeRepository;
+    private final SprintRepository sprintRepository;
+    private final BonusRepository bonusRepository;
+    private final PresentationOrderRepository presentationOrderRepository;
+
+    /**
+     * Imports the students of a CSV file with their imported grades, their role,
+     * and a presentation order and two bonuses for each sprint the project already has.
+     * @param inputStream the content of the CSV file
+     * @param projectId the id of the project of the students
+     * @param processedRows incremented for each student line read, to follow the progress of the import
+     * @return the number of created rows and the time each phase took
+     */
+    @Transactional
+    public StudentImportResult importStudents(InputStream inputStream, Integer projectId, AtomicInteger processedRows) throws IOException, CsvValidationException {
+        long start = System.nanoTime();
+
+        Project project = projectService.getProjectById(projectId);
+        ParsedFile parsedFile = parse(inputStream, project, processedRows);
+        long parseMs = elapsedMs(start);
+
+        long phaseStart = System.nanoTime();
+        studentRepository.saveAll(parsedFile.students());
+        List<Role> roles = new ArrayList<>();
+        for (Student student : parsedFile.students()) {
+            Role role = new Role();
+            role.type(RoleType.OPTION_STUDENT);
+            role.user(student);
+            roles.add(role);
+        }
+        if (!roles.isEmpty()) roleRepository.insertAll(roles);
+        long studentsMs = elapsedMs(phaseStart);
+
+        phaseStart = System.nanoTime();
+        gradeTypeRepository.saveAll(parsedFile.gradeTypes());
+        if (!parsedFile.grades().isEmpty()) gradeRepository.upsertAll(parsedFile.grades());
+        long gradesMs = elapsedMs(phaseStart);
+
+        phaseStart = System.nanoTime();
+        List<PresentationOrder> presentationOrders = new ArrayList<>();
+        List<Bonus> bonuses = new ArrayList<>();
+        for (Sprint sprint : sprintRepository.findAllByProject(projectId)) {
+            for (Student student : parsedFile.students()) {
+                // The imported students have no team yet, so they have no rank within a team
+                presentationOrders.add(new PresentationOrder(sprint, student));
+                bonuses.add(new Bonus((float) 0, true, sprint, student));
+                bonuses.add(new Bonus((float) 0, false, sprint, student));
+            }
+        }
+        if (!presentationOrders.isEmpty()) presentationOrderRepository.insertAll(presentationOrders);
+        if (!bonuses.isEmpty()) bonusRepository.insertAll(bonuses);
+        long sprintsMs = elapsedMs(phaseStart);
+
+        StudentImportResult result = new StudentImportResult(projectId, parsedFile.students().size(), parsedFile.grades().size(),
+                bonuses.size(), presentationOrders.size(), parseMs, studentsMs, gradesMs, sprintsMs, elapsedMs(start));
+        CustomLogger.info(String.format("Imported %d students and %d grades in project %d in %d ms (parse %d ms, students %d ms, grades %d ms, sprints %d ms).",
+                result.nbStudents(), result.nbGrades(), projectId, result.durationMs(), parseMs, studentsMs, gradesMs, sprintsMs));
+        return result;
+    }
+
+    /**
+     * Reads the file in one pass and builds the grade types, the students and their grades, without saving them.
+     * The students start at the first line after the names that has a name, and end at the next line without one.
+     * A grade that is not a number is ignored.
+     */
+    public ParsedFile parse(InputStream inputStream, Project project, AtomicInteger processedRows) throws IOException, CsvValidationException {
+        List<String> coefficients = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int startingCoefficients = 1;
+        ParsedFile parsedFile = new ParsedFile();
+
+        CSVReader reader = new CSVReader(new InputStreamReader(inputStream));
+        String[] nextLine;
+        int lineBrowsed = 0;
+        while ((nextLine = reader.readNext()) != null) {
+            lineBrowsed++;
+            if (lineBrowsed == COEFFICIENTS_LINE) {
+                startingCoefficients = gradeTypeService.processLineForCoefficients(nextLine, coefficients);
+            } else if (lineBrowsed == NAMES_LINE) {
+                gradeTypeService.processLineForNames(nextLine, names, startingCoefficients);
+                parsedFile.gradeTypes().addAll(createImportedGradeTypes(coefficients, names, project));
+            } else if (StudentService.hasNonEmptyValue(nextLine, NAME_COLUMN)) {
+                addStudent(parsedFile, nextLine, lineBrowsed, project);
+                processedRows.incrementAndGet();
+            } else if (!parsedFile.students().isEmpty()) {
+                break;
+            }
+        }
+
+        // A file without the line of the names is rejected like a file without coefficients
+        if (lineBrowsed < NAMES_LINE) createImportedGradeTypes(coefficients, names, project);
+        return parsedFile;
+    }
+
+    private void addStudent(ParsedFile parsedFile, String[] line, int lineNumber, Project project) {
+        String bachelor = line.length > BACHELOR_COLUMN ? line[BACHELOR_COLUMN] : "";
+        String gender = line.length > GENDER_COLUMN ? line[GENDER_COLUMN] : null;
+        Student student = StudentService.createStudentFromData(line[NAME_COLUMN], gender, bachelor, project);
+        parsedFile.students().add(student);
+
+        for (int column = FIRST_GRADE_COLUMN; column < line.length; column++) {
+            String value = line[column].trim();
+            if (value.isEmpty()) continue;
+            float gradeValue;
+            try {
+                gradeValue = Float.parseFloat(value);
+            } catch (NumberFormatException ignored) {
+                continue; // If the grade is not a number, it is ignored
+            }
+            int gradeTypeIndex = column - FIRST_GRADE_COLUMN;
+            if (gradeTypeIndex >= parsedFile.gradeTypes().size()) {
+                throw new IllegalArgumentException("Line " + lineNumber + " has more grades than grade types");
+            }
+            Grade grade = new Grade();
+            grade.value(gradeValue);
+            grade.student(student);
+            grade.gradeType(parsedFile.gradeTypes().get(gradeTypeIndex));
+            parsedFile.grades().add(grade);
+        }
+    }
+
+    /**
+     * Builds the imported grade types of the project, the average first, in the order of the columns of the grades.
+     */
+    private static List<GradeType> createImportedGradeTypes(List<String> coefficients, List<String> names, Project project) {
+        if (coefficients.isEmpty()) {
+            CustomLogger.warn("The list of coefficients is null or empty");
+            throw new EmptyResourceException("list of coefficients");
+        }
+        if (names.size() < coefficients.size()) {
+            CustomLogger.warn("The list of names is shorter than the list of coefficients");
+            throw new EmptyResourceException("list of names");
+        }
+
+        List<GradeType> gradeTypes = new ArrayList<>();
+        gradeTypes.add(createImportedGradeType(GradeTypeName.AVERAGE.displayName(), (float) 0, project));
+        for (int i = 0; i < coefficients.size(); i++) {
+            gradeTypes.add(createImportedGradeType(names.get(i), Float.parseFloat(coefficients.get(i)), project));
+        }
+        return gradeTypes;
+    }
+
+    private static GradeType createImportedGradeType(String name, Float factor, Project project) {
+        GradeType gradeType = new GradeType();
+        gradeType.name(name);
+        gradeType.factor(factor);
+        gradeType.forGroup(false);
+        gradeType.imported(true);
+        gradeType.project(project);
+        return gradeType;
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * The unsaved entities read from a file, in the order of the file.
+     */
+    public record ParsedFile(List<GradeType> gradeTypes, List<Student> students, List<Grade> grades) {
+        private ParsedFile() {
+            this(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+    }
+
+}
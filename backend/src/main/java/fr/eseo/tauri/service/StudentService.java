@@ -1,9 +1,6 @@
 package fr.eseo.tauri.service;
 
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
-import com.opencsv.exceptions.CsvValidationException;
-import fr.eseo.tauri.exception.EmptyResourceException;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.model.enumeration.Gender;
@@ -17,9 +14,9 @@ import fr.eseo.tauri.util.CustomLogger;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @Service
@@ -30,7 +27,6 @@ public class StudentService {
     private final ProjectService projectService;
     private final TeamService teamService;
     private final GradeTypeService gradeTypeService;
-    private final GradeService gradeService;
     private final RoleService roleService;
     @Lazy
     private final SprintService sprintService;
@@ -38,13 +34,10 @@ public class StudentService {
     private final BonusRepository bonusRepository;
     private final BonusService bonusService;
     private final GradeRepository gradeRepository;
-    private final UserService userService;
+    private final ProjectTeardownService projectTeardownService;
+    private final SprintGradeService sprintGradeService;
     private final CommentRepository commentRepository;
-
-    public static final String MAP_KEY_NAMES = "names";
-    public static final String MAP_KEY_GENDERS = "genders";
-    public static final String MAP_KEY_BACHELORS = "bachelors";
-    public static final String MAP_KEY_GRADES = "grades";
+    private final AuthService authService;
 
     public Student getStudentById(Integer id) {
         return studentRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("student", id));
@@ -103,60 +96,14 @@ public class StudentService {
     public void deleteStudent(Integer id) {
         getStudentById(id);
         studentRepository.deleteById(id);
+        authService.forgetUser(id);
     }
 
-    public void deleteAllStudentsByProject(Integer projectId) {
-        var students = getAllStudentsByProject(projectId);
-        for (var student : students) {
-            userService.deleteUserById(student.id());
-        }
-        gradeTypeService.deleteAllImportedGradeTypes();
-        teamService.deleteAllTeamsByProject(projectId);
-    }
-
-
     /**
-     * <b>HELPER METHOD</b>
-     * This method is used to extract student data from a CSV file.
-     * The data includes the student's name, gender, bachelor status, and grades.
-     *
-     * @param inputStream The input stream of the CSV file.
-     * @return A map containing lists of names, genders, bachelor statuses, and grades.
+     * Deletes the students of a project with everything that refers to them, the teams and the imported grade types of the project.
      */
-    public Map<String, Object> extractNamesGenderBachelorAndGrades(InputStream inputStream) throws CsvValidationException, IOException {
-        Map<String, Object> result = new HashMap<>();
-        List<String> names = new ArrayList<>();
-        List<String> genders = new ArrayList<>();
-        List<String> bachelors = new ArrayList<>();
-        List<List<String>> grades = new ArrayList<>();
-
-        boolean namesStarted = false;
-
-        CSVReader reader = new CSVReader(new InputStreamReader(inputStream));
-        String[] nextLine;
-        while ((nextLine = reader.readNext()) != null) {
-            if (!namesStarted && hasNonEmptyValue(nextLine, 1)) {
-                namesStarted = true;
-            }
-            if (namesStarted && !names.isEmpty() && !hasNonEmptyValue(nextLine, 1)) {
-                break;
-            }
-            if (namesStarted && hasNonEmptyValue(nextLine, 1)) {
-                names.add(nextLine[1]);
-                genders.add(nextLine[2]);
-                bachelors.add(nextLine.length > 3 ? nextLine[3] : "");
-                grades.add(Arrays.asList(Arrays.copyOfRange(nextLine, 4, nextLine.length)));
-            }
-        }
-
-        CustomLogger.info("Successfully extracted student data (names, genders, bachelors and grades ) from the CSV file.");
-
-        result.put(MAP_KEY_NAMES, names);
-        result.put(MAP_KEY_GENDERS, genders);
-        result.put(MAP_KEY_BACHELORS, bachelors);
-        result.put(MAP_KEY_GRADES, grades);
-
-        return result;
+    public ProjectTeardownResult deleteAllStudentsByProject(Integer projectId) {
+        return projectTeardownService.deleteStudentsAndTeams(projectId);
     }
 
 
@@ -185,6 +132,14 @@ public class StudentService {
      * @throws IllegalArgumentException if the name or gender is null or empty, or if the bachelor status is null
      */
     public Student createStudentFromData(String name, String gender, String bachelor, Integer projectId) {
+        return createStudentFromData(name, gender, bachelor, projectService.getProjectById(projectId));
+    }
+
+    /**
+     * <b>HELPER  METHOD</b>
+     * Same as {@link #createStudentFromData(String, String, String, Integer)}, with the project already loaded.
+     */
+    public static Student createStudentFromData(String name, String gender, String bachelor, Project project) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Name cannot be null or empty");
         }
@@ -199,7 +154,7 @@ public class StudentService {
         student.name(name);
         student.gender(gender.equals("M") ? Gender.MAN : Gender.WOMAN);
         student.bachelor(!bachelor.isEmpty());
-        student.project(projectService.getProjectById(projectId));
+        student.project(project);
         student.privateKey("privateKey");
         String[] nameParts = name.split(" "); // Divise le nom en deux parties basées sur l'espace
         student.email(nameParts[1].toLowerCase() + "." + nameParts[0].toLowerCase() + "@reseau.eseo.fr");
@@ -207,78 +162,65 @@ public class StudentService {
     }
 
     /**
-     * This method is used to populate the database with student data from a CSV file.
-     * The CSV file is expected to contain the following data for each student:
+     * This method writes the CSV file of the students of a project to the given output stream.
+     * The CSV file includes the following data for each student:
      * - Name
      * - Gender
      * - Bachelor status
      * - Grades
-     * - Coefficients
-     * - Ratings
-     * @param file The CSV file containing the student data.
+     * The imported grades are loaded with a single project-scoped query and the summary with a single grouped query,
+     * then each row is written as soon as it is built.
+     *
+     * @param projectId The ID of the project.
+     * @param outputStream The stream the file is written to, it is flushed but not closed.
+     * @throws IOException If an I/O error occurs.
      */
-    @SuppressWarnings("unchecked")
-    public void populateDatabaseFromCSV(MultipartFile file, Integer projectId) throws IOException, CsvValidationException {
-        if (file.isEmpty()) {
-            CustomLogger.info("Uploaded file is empty");
-            throw new EmptyResourceException("uploaded file");
-        }
+    public void writeStudentsCSV(Integer projectId, OutputStream outputStream) throws IOException {
+        CustomLogger.info("Downloading students CSV of project " + projectId);
 
-        List<GradeType> gradeTypes = gradeTypeService.createGradeTypesFromCSV(file.getInputStream());
-        CustomLogger.info("Successfully created GradeType objects from the CSV file.");
-        Map<String, Object> extractedData = extractNamesGenderBachelorAndGrades(file.getInputStream());
-
-        List<String> names = (List<String>) extractedData.get(MAP_KEY_NAMES);
-        List<String> genders = (List<String>) extractedData.get(MAP_KEY_GENDERS);
-        List<String> bachelors = (List<String>) extractedData.get(MAP_KEY_BACHELORS);
-        List<List<String>> grades = (List<List<String>>) extractedData.get(MAP_KEY_GRADES);
-
-        for (int i = 0; i < names.size(); i++) {
-            Student student = createStudentFromData(names.get(i), genders.get(i), bachelors.get(i), projectId);
-            createStudent(student);
-            for (int j = 0; j < grades.get(i).size(); j++) {
-
-                if(!grades.get(i).get(j).trim().isEmpty()) {
-                    try {
-                        Grade grade = new Grade();
-                        grade.value(Float.parseFloat(grades.get(i).get(j).trim()));
-                        grade.student(student);
-                        grade.gradeType(gradeTypes.get(j));
-                        gradeService.createGrade(grade);
-                    } catch (NumberFormatException ignored) {
-                        // Do nothing // If the grade is not a number, it is ignored
-                    }
-                }
-            }
-        }
-        CustomLogger.info(String.format("Successfully populated database with %d students and their associated grades contained in the CSV file.", names.size()));
+        List<GradeType> importedGrades = gradeTypeService.getAllImportedGradeTypes(projectId);
+        List<Student> students = getAllStudentsByProject(projectId);
+        float[][] grades = getImportedGradesMatrix(projectId, students, importedGrades);
+
+        CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writeHeaders(csvWriter, importedGrades);
+        writeStudentData(csvWriter, students, importedGrades, grades);
+        writeSummaryData(csvWriter, importedGrades.size(), projectId);
+        csvWriter.flush();
     }
 
     /**
-     * This method is used to create a CSV file containing student data.
-     * The CSV file includes the following data for each student:
-     * - Name
-     * - Gender
-     * - Bachelor status
-     * - Grades
+     * <b>HELPER METHOD</b>
+     * Load the imported grade of every student for every imported grade type with one query.
      *
-     * @return A byte array representing the CSV file.
-     * @throws RuntimeException if an IOException occurs while creating the CSV file.
+     * @param projectId The ID of the project.
+     * @param students The students of the project, their position gives the row of the matrix.
+     * @param importedGradeTypes The imported grade types, their position gives the column of the matrix.
+     * @return A students x grade types matrix, missing grades are set to NaN.
      */
-    public byte[] createStudentsCSV(Integer projectId) throws IOException {
-        CustomLogger.info("Downloading students CSV");
+    private float[][] getImportedGradesMatrix(Integer projectId, List<Student> students, List<GradeType> importedGradeTypes) {
+        Map<Integer, Integer> studentIndexes = new HashMap<>();
+        for (int i = 0; i < students.size(); i++) {
+            studentIndexes.put(students.get(i).id(), i);
+        }
+        Map<Integer, Integer> gradeTypeIndexes = new HashMap<>();
+        for (int i = 0; i < importedGradeTypes.size(); i++) {
+            gradeTypeIndexes.put(importedGradeTypes.get(i).id(), i);
+        }
 
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        OutputStreamWriter writer = new OutputStreamWriter(byteArrayOutputStream);
-        List<GradeType> importedGrades = gradeTypeService.getAllImportedGradeTypes(projectId);
-        List<Student> students = getAllStudentsByProject(projectId);
+        float[][] grades = new float[students.size()][importedGradeTypes.size()];
+        for (float[] row : grades) {
+            Arrays.fill(row, Float.NaN);
+        }
 
-        CSVWriter csvWriter = new CSVWriter(writer);
-        writeHeaders(csvWriter, importedGrades);
-        writeStudentData(csvWriter, students, importedGrades);
-        writeSummaryData(csvWriter, importedGrades.size());
-        writer.flush();
-        return byteArrayOutputStream.toByteArray();
+        for (Object[] row : gradeRepository.findImportedGradesByProject(projectId)) {
+            Integer studentIndex = studentIndexes.get((Integer) row[0]);
+            Integer gradeTypeIndex = gradeTypeIndexes.get((Integer) row[1]);
+            if (studentIndex != null && gradeTypeIndex != null && row[2] != null) {
+                grades[studentIndex][gradeTypeIndex] = ((Number) row[2]).floatValue();
+            }
+        }
+        return grades;
     }
 
     /**
@@ -312,21 +254,21 @@ public class StudentService {
      * @param csvWriter The CSVWriter object that is used to write to the CSV file.
      * @param students  The list of students whose data is to be written to the CSV file.
      * @param importedGradeTypes The list of imported grade types.
+     * @param grades The students x imported grade types matrix of the grades, missing grades are set to NaN.
      */
-    public void writeStudentData(CSVWriter csvWriter, List<Student> students, List<GradeType> importedGradeTypes) {
-        int studentIndex = 1;
-        for (Student student : students) {
-            String[] studentInfo = new String[importedGradeTypes.size() + 4];
+    public void writeStudentData(CSVWriter csvWriter, List<Student> students, List<GradeType> importedGradeTypes, float[][] grades) {
+        String[] studentInfo = new String[importedGradeTypes.size() + 4];
+        for (int s = 0; s < students.size(); s++) {
+            Student student = students.get(s);
             Arrays.fill(studentInfo, "");
-            studentInfo[0] = String.valueOf(studentIndex++);
+            studentInfo[0] = String.valueOf(s + 1);
             studentInfo[1] = student.name();
-            studentInfo[2] = student.gender().toString().equals("MAN") ? "M" : "F";
+            studentInfo[2] = student.gender() == Gender.MAN ? "M" : "F";
             studentInfo[3] = Boolean.TRUE.equals(student.bachelor()) ? "B" : "";
 
-            int gradeIndex = 4;
-            for (GradeType gradeType : importedGradeTypes) {
-                Float grade = gradeService.getGradeByStudentAndGradeType(student, gradeType);
-                studentInfo[gradeIndex++] = grade != null ? String.valueOf(grade) : "";
+            for (int i = 0; i < importedGradeTypes.size(); i++) {
+                float grade = grades[s][i];
+                studentInfo[i + 4] = Float.isNaN(grade) ? "" : String.valueOf(grade);
             }
             csvWriter.writeNext(studentInfo);
         }
@@ -335,17 +277,29 @@ public class StudentService {
     /**
      * <b>HELPER METHOD</b>
      *  This method is used to write summary data to the CSV file.
+     *  The students of the project are counted with one query grouped by gender and bachelor status.
      * @param csvWriter The CSVWriter object that is used to write to the CSV file.
      * @param numberOfGrades The number of imported grade types.
+     * @param projectId The ID of the project.
      */
-    public void writeSummaryData(CSVWriter csvWriter, int numberOfGrades) {
+    public void writeSummaryData(CSVWriter csvWriter, int numberOfGrades, Integer projectId) {
+        int total = 0;
+        int women = 0;
+        int bachelors = 0;
+        for (Object[] row : studentRepository.countByGenderAndBachelor(projectId)) {
+            int count = ((Number) row[2]).intValue();
+            total += count;
+            if (row[0] == Gender.WOMAN) women += count;
+            if (Boolean.TRUE.equals(row[1])) bachelors += count;
+        }
+
         writeEmptyRows(csvWriter, 4, numberOfGrades + 4);
-        writeCountRow(csvWriter, "Nombre F", studentRepository.countWomen(), numberOfGrades + 4);
-        writeCountRow(csvWriter, "Nombre M", studentRepository.countTotal() - studentRepository.countWomen(), numberOfGrades + 4);
+        writeCountRow(csvWriter, "Nombre F", women, numberOfGrades + 4);
+        writeCountRow(csvWriter, "Nombre M", total - women, numberOfGrades + 4);
         String[] row = new String[numberOfGrades + 4];
         Arrays.fill(row, "");
         row[1] = "Nombre B";
-        row[3] = String.valueOf(studentRepository.countBachelor());
+        row[3] = String.valueOf(bachelors);
         csvWriter.writeNext(row);
     }
 
@@ -393,23 +347,11 @@ public class StudentService {
     }
 
     public Double getIndividualTotalGrade(Integer id, Integer sprintId) {
-        Integer teamId = userService.getTeamByMemberId(id, getStudentById(id).projectId()).id();
-
-        Double studentGradedTeamGrade = gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName());
-
-        Double individualGrade = gradeRepository.findAverageByGradeTypeForStudent(id, sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName());
-
-        return (2*individualGrade + studentGradedTeamGrade)/3;
+        return sprintGradeService.getStudentIndividualTotalGrade(id, sprintId);
     }
 
     public Double getSprintGrade(Integer studentId, Integer sprintId) {
-        Integer teamId = userService.getTeamByMemberId(studentId, getStudentById(studentId).projectId()).id();
-
-        double teamGrade = teamService.getTeamTotalGrade(teamId, sprintId);
-
-        List<Bonus> studentBonuses = getStudentBonuses(studentId, sprintId);
-
-        return 0.7*(Math.min(teamGrade + studentBonuses.stream().mapToDouble(Bonus::value).sum(), 20.0)) + 0.3*(getIndividualTotalGrade(studentId, sprintId));
+        return sprintGradeService.getStudentSprintGrade(studentId, sprintId);
     }
 
     public Grade getGradeByTypeAndAuthor(Integer id, Integer gradeTypeId, Integer authorId, Integer sprintId) {
@@ -0,0 +1,135 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.model.Role;
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.Team;
+import fr.eseo.tauri.model.enumeration.Gender;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.repository.GradeRepository;
+import fr.eseo.tauri.repository.RoleRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.util.ListUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Composes the teams of a project in memory from the imported averages of the students,
+ * then saves the assignments and the team member roles with batched statements.
+ */
+@Service
+@RequiredArgsConstructor
+public class TeamCompositionService {
+
+    private final GradeRepository gradeRepository;
+    private final StudentRepository studentRepository;
+    private final RoleRepository roleRepository;
+    private final RefreshTokenService refreshTokenService;
+
+    /**
+     * Get the imported average ("Moyenne") of every student of a project that has one.
+     * @param projectId the id of the project
+     * @return the average of each student, by student id
+     */
+    public Map<Integer, Double> getImportedAverages(Integer projectId) {
+        Map<Integer, Double> averages = new HashMap<>();
+        for (Object[] row : gradeRepository.findImportedAveragesByProject(projectId)) {
+            averages.put((Integer) row[0], ((Number) row[1]).doubleValue());
+        }
+        return averages;
+    }
+
+    /**
+     * Distributes the students in the teams.
+     * Unless the ratio of women is automatic, each team first receives "womenPerTeam" women, completed with men when there are not enough.
+     * The other students are then dealt round by round, the team with the lowest average receiving the best remaining student.
+     * Students are dealt non bachelor first, then by decreasing average.
+     * @param students the students of the project
+     * @param averages the imported average of each student, by student id
+     * @param nbTeams the number of teams
+     * @param womenPerTeam the number of women per team
+     * @param autoWomenRatio true to deal the women like the other students
+     * @return the students of each team, in the order of the teams
+     */
+    public List<List<Student>> compose(List<Student> students, Map<Integer, Double> averages, int nbTeams, int womenPerTeam, boolean autoWomenRatio) {
+        List<List<Student>> composition = new ArrayList<>();
+        if (nbTeams < 1) return composition;
+        for (int i = 0; i < nbTeams; i++) composition.add(new ArrayList<>());
+
+        Comparator<Student> dealOrder = Comparator.comparing((Student student) -> Boolean.TRUE.equals(student.bachelor()))
+                .thenComparing(student -> averages.get(student.id()), Comparator.nullsLast(Comparator.<Double>reverseOrder()));
+        List<Student> dealtStudents = new ArrayList<>();
+        students.stream().filter(student -> student.gender() == Gender.WOMAN).sorted(dealOrder).forEach(dealtStudents::add);
+        students.stream().filter(student -> student.gender() != Gender.WOMAN).sorted(dealOrder).forEach(dealtStudents::add);
+
+        double[] sums = new double[nbTeams];
+        int[] counts = new int[nbTeams];
+        int index = 0;
+
+        if (!autoWomenRatio && womenPerTeam > 0) {
+            for (; index < Math.min(nbTeams * womenPerTeam, dealtStudents.size()); index++) {
+                addToTeam(composition, sums, counts, index / womenPerTeam, dealtStudents.get(index), averages);
+            }
+        }
+
+        Integer[] teamOrder = new Integer[nbTeams];
+        for (int i = index; i < dealtStudents.size(); i++) {
+            int position = (i - index) % nbTeams;
+            if (position == 0) {
+                for (int team = 0; team < nbTeams; team++) teamOrder[team] = team;
+                Arrays.sort(teamOrder, Comparator.comparingDouble(team -> average(sums, counts, team)));
+            }
+            addToTeam(composition, sums, counts, teamOrder[position], dealtStudents.get(i), averages);
+        }
+        return composition;
+    }
+
+    private static void addToTeam(List<List<Student>> composition, double[] sums, int[] counts, int team, Student student, Map<Integer, Double> averages) {
+        composition.get(team).add(student);
+        Double average = averages.get(student.id());
+        if (average != null) {
+            sums[team] += average;
+            counts[team]++;
+        }
+    }
+
+    private static double average(double[] sums, int[] counts, int team) {
+        return counts[team] == 0 ? 0 : sums[team] / counts[team];
+    }
+
+    /**
+     * Saves a composition in one transaction: one batch moves the students to their team,
+     * one batch gives the team member role to the students who do not have it yet,
+     * whose refresh tokens then read their roles again.
+     * @param projectId the id of the project
+     * @param teams the saved teams, in the order of the composition
+     * @param composition the students of each team
+     */
+    @Transactional
+    public void saveComposition(Integer projectId, List<Team> teams, List<List<Student>> composition) {
+        Set<Integer> teamMembers = new HashSet<>(roleRepository.findStudentIdsByTypeAndProject(RoleType.TEAM_MEMBER, projectId));
+        Map<Integer, Integer> teamIdsByStudentId = new LinkedHashMap<>();
+        List<Role> roles = new ArrayList<>();
+
+        for (int i = 0; i < composition.size(); i++) {
+            for (Student student : composition.get(i)) {
+                teamIdsByStudentId.put(student.id(), teams.get(i).id());
+                if (teamMembers.add(student.id())) {
+                    Role role = new Role();
+                    role.type(RoleType.TEAM_MEMBER);
+                    role.user(student);
+                    roles.add(role);
+                }
+            }
+        }
+
+        studentRepository.assignTeams(teamIdsByStudentId);
+        if (!roles.isEmpty()) {
+            roleRepository.insertAll(roles);
+            refreshTokenService.forgetRoles(ListUtil.map(roles, role -> role.user().id()));
+        }
+    }
+
+}
@@ -0,0 +1,291 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.TeamGenerationResult;
+import fr.eseo.tauri.model.enumeration.Gender;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+
+/**
+ * Improves a team composition with simulated annealing, to minimise the variance of the average grades of the teams
+ * while every team gets the required number of women and at least one bachelor student.
+ * The search swaps students between teams, so the sizes of the teams never change.
+ */
+@Service
+public class TeamOptimizerService {
+
+    public static final long MAX_TIME_BUDGET_MS = 10_000;
+    private static final int PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final int BACHELORS_PER_TEAM = 1;
+    // Weight of a missing woman or bachelor, far above any variance of grades out of 20
+    private static final double PENALTY = 1000;
+    private static final double INITIAL_TEMPERATURE = 1;
+    private static final int CLOCK_CHECK_INTERVAL = 256;
+
+    // Bounded pool so that the restarts of several requests cannot take over the server
+    private final ExecutorService restartsPool = Executors.newFixedThreadPool(PARALLELISM);
+
+    @PreDestroy
+    public void shutdown() {
+        restartsPool.shutdownNow();
+    }
+
+    /**
+     * Get the number of women each team must have.
+     * With an automatic ratio, the women of the project are spread evenly.
+     */
+    public int requiredWomenPerTeam(List<Student> students, int nbTeams, int womenPerTeam, boolean autoWomenRatio) {
+        if (!autoWomenRatio) return womenPerTeam;
+        if (nbTeams < 1) return 0;
+        return (int) students.stream().filter(student -> student.gender() == Gender.WOMAN).count() / nbTeams;
+    }
+
+    /**
+     * Rejects a time budget the search may not take, before anything is read or written.
+     * @param timeBudgetMs the time the search may take, or null when there is no search
+     * @throws IllegalArgumentException if the time budget is not between 1 ms and MAX_TIME_BUDGET_MS
+     */
+    public static void checkTimeBudget(Long timeBudgetMs) {
+        if (timeBudgetMs != null && (timeBudgetMs < 1 || timeBudgetMs > MAX_TIME_BUDGET_MS)) {
+            throw new IllegalArgumentException("The time budget must be between 1 and " + MAX_TIME_BUDGET_MS + " ms");
+        }
+    }
+
+    /**
+     * Runs one annealing per core from the given composition, until the time budget runs out, and keeps the best result.
+     * The first run starts from the composition itself, the others from a shuffled copy.
+     * @param composition the students of each team
+     * @param averages the imported average of each student, by student id
+     * @param requiredWomen the number of women each team must have
+     * @param timeBudgetMs the time the search may take, in milliseconds
+     * @return the best composition found, never worse than the given one
+     */
+    public List<List<Student>> optimize(List<List<Student>> composition, Map<Integer, Double> averages, int requiredWomen, long timeBudgetMs) {
+        checkTimeBudget(timeBudgetMs);
+        Problem problem = new Problem(composition, averages, requiredWomen);
+        if (!problem.canSwap()) return composition;
+
+        long start = System.nanoTime();
+        long deadline = start + timeBudgetMs * 1_000_000;
+        List<Callable<int[]>> restarts = new ArrayList<>();
+        for (int seed = 0; seed < PARALLELISM; seed++) {
+            long restartSeed = seed;
+            restarts.add(() -> problem.anneal(restartSeed, start, deadline));
+        }
+
+        int[] best = problem.initialTeams();
+        double bestScore = problem.score(best);
+        try {
+            for (Future<int[]> restart : restartsPool.invokeAll(restarts)) {
+                int[] teams = restart.get();
+                double score = problem.score(teams);
+                if (score < bestScore) {
+                    best = teams;
+                    bestScore = score;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The team optimization has been interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The team optimization has failed", e.getCause());
+        }
+        return problem.toComposition(best);
+    }
+
+    /**
+     * Scores a composition with the objective of the optimizer.
+     * @return the variance of the team averages and the constraints that are not satisfied
+     */
+    public TeamGenerationResult evaluate(List<List<Student>> composition, Map<Integer, Double> averages, int requiredWomen) {
+        Problem problem = new Problem(composition, averages, requiredWomen);
+        int[] teams = problem.initialTeams();
+        Totals totals = problem.totals(teams);
+        int teamsMissingWomen = 0;
+        int teamsMissingBachelors = 0;
+        for (int team = 0; team < problem.nbTeams; team++) {
+            if (totals.women[team] < requiredWomen) teamsMissingWomen++;
+            if (totals.bachelors[team] < BACHELORS_PER_TEAM) teamsMissingBachelors++;
+        }
+        return new TeamGenerationResult(false, totals.variance(), teamsMissingWomen == 0 && teamsMissingBachelors == 0,
+                teamsMissingWomen, teamsMissingBachelors, null);
+    }
+
+    /**
+     * The composition flattened in arrays: student i is in team teams[i].
+     */
+    private static final class Problem {
+        private final int nbTeams;
+        private final Student[] students;
+        private final int[] initialTeams;
+        private final double[] grades;
+        private final boolean[] graded;
+        private final boolean[] women;
+        private final boolean[] bachelors;
+        private final int requiredWomen;
+
+        private Problem(List<List<Student>> composition, Map<Integer, Double> averages, int requiredWomen) {
+            int size = composition.stream().mapToInt(List::size).sum();
+            this.nbTeams = composition.size();
+            this.students = new Student[size];
+            this.initialTeams = new int[size];
+            this.grades = new double[size];
+            this.graded = new boolean[size];
+            this.women = new boolean[size];
+            this.bachelors = new boolean[size];
+            this.requiredWomen = requiredWomen;
+
+            int i = 0;
+            for (int team = 0; team < nbTeams; team++) {
+                for (Student student : composition.get(team)) {
+                    Double average = averages.get(student.id());
+                    students[i] = student;
+                    initialTeams[i] = team;
+                    graded[i] = average != null;
+                    grades[i] = average != null ? average : 0;
+                    women[i] = student.gender() == Gender.WOMAN;
+                    bachelors[i] = Boolean.TRUE.equals(student.bachelor());
+                    i++;
+                }
+            }
+        }
+
+        private int[] initialTeams() {
+            return initialTeams.clone();
+        }
+
+        private boolean canSwap() {
+            for (int i = 1; i < initialTeams.length; i++) {
+                if (initialTeams[i] != initialTeams[0]) return true;
+            }
+            return false;
+        }
+
+        private Totals totals(int[] teams) {
+            Totals totals = new Totals(nbTeams);
+            for (int i = 0; i < teams.length; i++) totals.add(this, i, teams[i], 1);
+            return totals;
+        }
+
+        private double score(int[] teams) {
+            return totals(teams).score(requiredWomen);
+        }
+
+        private int[] anneal(long seed, long start, long deadline) {
+            SplittableRandom random = new SplittableRandom(seed);
+            int size = initialTeams.length;
+            int[] teams = initialTeams();
+            if (seed > 0) {
+                for (int k = 0; k < size; k++) swap(teams, null, random.nextInt(size), random.nextInt(size));
+            }
+            Totals totals = totals(teams);
+            double current = totals.score(requiredWomen);
+            int[] best = teams.clone();
+            double bestScore = current;
+            double temperature = INITIAL_TEMPERATURE;
+
+            for (long iteration = 0; ; iteration++) {
+                if (iteration % CLOCK_CHECK_INTERVAL == 0) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) break;
+                    temperature = INITIAL_TEMPERATURE * (deadline - now) / (deadline - start);
+                }
+                int i = random.nextInt(size);
+                int j = random.nextInt(size);
+                if (teams[i] == teams[j]) continue;
+
+                swap(teams, totals, i, j);
+                double candidate = totals.score(requiredWomen);
+                double delta = candidate - current;
+                if (delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature)) {
+                    current = candidate;
+                    if (current < bestScore) {
+                        bestScore = current;
+                        System.arraycopy(teams, 0, best, 0, size);
+                    }
+                } else {
+                    swap(teams, totals, i, j);
+                }
+            }
+            return best;
+        }
+
+        private void swap(int[] teams, Totals totals, int i, int j) {
+            int teamI = teams[i];
+            int teamJ = teams[j];
+            if (totals != null) {
+                totals.add(this, i, teamI, -1);
+                totals.add(this, j, teamJ, -1);
+                totals.add(this, i, teamJ, 1);
+                totals.add(this, j, teamI, 1);
+            }
+            teams[i] = teamJ;
+            teams[j] = teamI;
+        }
+
+        private List<List<Student>> toComposition(int[] teams) {
+            List<List<Student>> composition = new ArrayList<>();
+            for (int team = 0; team < nbTeams; team++) composition.add(new ArrayList<>());
+            for (int i = 0; i < teams.length; i++) composition.get(teams[i]).add(students[i]);
+            return composition;
+        }
+    }
+
+    /**
+     * Running totals of each team, updated in constant time when a student moves.
+     */
+    private static final class Totals {
+        private final double[] sums;
+        private final int[] counts;
+        private final int[] women;
+        private final int[] bachelors;
+
+        private Totals(int nbTeams) {
+            this.sums = new double[nbTeams];
+            this.counts = new int[nbTeams];
+            this.women = new int[nbTeams];
+            this.bachelors = new int[nbTeams];
+        }
+
+        private void add(Problem problem, int student, int team, int sign) {
+            if (problem.graded[student]) {
+                sums[team] += sign * problem.grades[student];
+                counts[team] += sign;
+            }
+            if (problem.women[student]) women[team] += sign;
+            if (problem.bachelors[student]) bachelors[team] += sign;
+        }
+
+        private double variance() {
+            double sum = 0;
+            double squares = 0;
+            int teams = 0;
+            for (int team = 0; team < sums.length; team++) {
+                if (counts[team] == 0) continue;
+                double average = sums[team] / counts[team];
+                sum += average;
+                squares += average * average;
+                teams++;
+            }
+            if (teams == 0) return 0;
+            double mean = sum / teams;
+            return Math.max(0, squares / teams - mean * mean);
+        }
+
+        private double score(int requiredWomen) {
+            int violations = 0;
+            for (int team = 0; team < sums.length; team++) {
+                violations += Math.max(0, requiredWomen - women[team]);
+                violations += Math.max(0, BACHELORS_PER_TEAM - bachelors[team]);
+            }
+            return variance() + PENALTY * violations;
+        }
+    }
+
+}
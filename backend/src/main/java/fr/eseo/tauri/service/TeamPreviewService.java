@@ -0,0 +1,88 @@
+package fr.eseo.tauri.service;
+
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.TeamPreview;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the team compositions computed by a preview, so that the chosen one can be saved without being computed again.
+ * Previews are kept in memory for a limited time and each one can be committed only once.
+ */
+@Service
+public class TeamPreviewService {
+
+    static final Duration TIME_TO_LIVE = Duration.ofMinutes(15);
+    private static final int MAX_PREVIEWS = 50;
+
+    private final Map<String, StoredPreview> previews = new ConcurrentHashMap<>();
+    // The tokens of the previews being committed, which cannot be committed a second time meanwhile
+    private final Set<String> committingTokens = ConcurrentHashMap.newKeySet();
+
+    /**
+     * A composition waiting to be committed, with the parameters it has been computed with.
+     */
+    public record StoredPreview(Integer projectId, Integer nbTeams, Integer nbWomen, List<List<Student>> composition, TeamPreview preview) {
+    }
+
+    /**
+     * Stores a composition and gives it a token.
+     * @return the token and the expiration date of the preview
+     */
+    public TeamPreview store(Integer projectId, Integer nbTeams, Integer nbWomen, List<List<Student>> composition, TeamPreview preview) {
+        evictExpired();
+        // The oldest previews are dropped first when too many are kept
+        while (previews.size() >= MAX_PREVIEWS) {
+            previews.entrySet().stream()
+                    .min(Comparator.comparing(entry -> entry.getValue().preview().expiresAt()))
+                    .ifPresent(entry -> previews.remove(entry.getKey()));
+        }
+        preview.token(UUID.randomUUID().toString());
+        preview.expiresAt(Instant.now().plus(TIME_TO_LIVE));
+        previews.put(preview.token(), new StoredPreview(projectId, nbTeams, nbWomen, composition, preview));
+        return preview;
+    }
+
+    /**
+     * Claims a preview of a project to commit it and returns it.
+     * In a transaction, the preview is removed only once the transaction commits, and can be committed again if it rolls back.
+     * @throws IllegalArgumentException if the token is unknown, has expired, belongs to another project or is being committed
+     */
+    public StoredPreview take(Integer projectId, String token) {
+        evictExpired();
+        StoredPreview stored = token != null ? previews.get(token) : null;
+        if (stored == null || !stored.projectId().equals(projectId) || !committingTokens.add(token)) {
+            throw new IllegalArgumentException("The team preview does not exist or has expired, please preview the teams again");
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) previews.remove(token, stored);
+                    committingTokens.remove(token);
+                }
+            });
+        } else {
+            previews.remove(token, stored);
+            committingTokens.remove(token);
+        }
+        return stored;
+    }
+
+    private void evictExpired() {
+        Instant now = Instant.now();
+        previews.values().removeIf(stored -> stored.preview().expiresAt().isBefore(now));
+    }
+
+}
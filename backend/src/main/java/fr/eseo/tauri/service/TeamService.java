@@ -2,20 +2,17 @@ package fr.eseo.tauri.service;
 
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.model.enumeration.Gender;
-import fr.eseo.tauri.model.enumeration.GradeTypeName;
-import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.*;
 import fr.eseo.tauri.util.CustomLogger;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.repository.TeamRepository;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
@@ -25,15 +22,15 @@ public class TeamService {
     private final UserService userService;
     private final ProjectService projectService;
     private final StudentRepository studentRepository;
-    private final RoleRepository roleRepository;
     private final CommentRepository commentRepository;
-    private final GradeRepository gradeRepository;
-    private final GradeTypeRepository gradeTypeRepository;
+    private final SprintGradeService sprintGradeService;
+    private final TeamCompositionService teamCompositionService;
+    private final TeamOptimizerService teamOptimizerService;
+    private final TeamPreviewService teamPreviewService;
     private final PresentationOrderService presentationOrderService;
+    private final TransactionTemplate transactionTemplate;
     @Lazy
     private final SprintService sprintService;
-    @Lazy
-    private final StudentService studentService;
 
     public Team getTeamById(Integer id) {
         return teamRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("team", id));
@@ -66,7 +63,7 @@ public class TeamService {
         // Create the teams
         for (int i = 0; i < nbTeams; i++) {
             Team team = new Team(project);
-            team.name("Équipe " + (i + 1));
+            team.name(teamName(i));
             this.teamRepository.save(team);
             teams.add(team);
         }
@@ -133,136 +130,162 @@ public class TeamService {
 
     public Criteria getCriteriaByTeamId(Integer id, Integer projectId) {
         getTeamById(id);
-        boolean validateWoman = getNbWomenByTeamId(id) >= projectService.getProjectById(projectId).nbWomen();
-        boolean validateBachelor = getNbBachelorByTeamId(id) >= 1;
-        return new Criteria(getNbWomenByTeamId(id), getNbBachelorByTeamId(id), validateWoman, validateBachelor);
+        int nbWomen = teamRepository.countWomenInTeam(id);
+        int nbBachelor = teamRepository.countBachelorInTeam(id);
+        boolean validateWoman = nbWomen >= projectService.getProjectById(projectId).nbWomen();
+        boolean validateBachelor = nbBachelor >= 1;
+        return new Criteria(nbWomen, nbBachelor, validateWoman, validateBachelor);
     }
 
     /**
-     * Auto generate teams with students according to the given number of teams and the number of women per team.
-     * FUTURE :  create teams with the same average grade
+     * Get the criteria of every team of a project from one grouped query.
+     * @param projectId the id of the project
+     * @return the criteria of each team, ordered by team id
      */
-    public void generateTeams(Integer projectId, Project projectDetails, boolean autoWomenRatio) {
-        CustomLogger.info("TeamService.createTeams : Creating Teams");
-
-        List<Student> women = this.studentRepository.findByGenderAndProjectId(Gender.WOMAN, projectId);
-        List<Student> men = this.studentRepository.findByGenderOrderByBachelorAndImportedAvgDesc(Gender.MAN, projectId);
-        int nbStudent = men.size() + women.size();
-        Integer nbTeams = projectDetails.nbTeams();
-        Integer womenPerTeam = projectDetails.nbWomen();
-
-        // Check if the number of students is enough to create the teams
-        if (nbStudent < nbTeams * womenPerTeam - 1) {
-            CustomLogger.error("TeamService.generateTeams : Not enough students to create the teams");
-            throw new IllegalArgumentException("Not enough students to create the teams");
+    public List<TeamCriteria> getCriteriaByProject(Integer projectId) {
+        Integer nbWomenRequired = projectService.getProjectById(projectId).nbWomen();
+        List<TeamCriteria> criteria = new ArrayList<>();
+        for (Object[] row : teamRepository.findCriteriaByProject(projectId)) {
+            int nbWomen = ((Number) row[3]).intValue();
+            int nbBachelors = ((Number) row[4]).intValue();
+            Double average = row[5] != null ? formattedResult(((Number) row[5]).doubleValue()) : null;
+            criteria.add(new TeamCriteria(((Number) row[0]).intValue(), (String) row[1], ((Number) row[2]).intValue(), nbWomen, nbBachelors,
+                    average, nbWomenRequired == null || nbWomen >= nbWomenRequired, nbBachelors >= 1));
         }
-        projectService.updateProject(projectId, projectDetails);
-        List<Team> teams = this.createTeams(projectId, nbTeams);
-        this.fillTeams(teams, women, men, womenPerTeam, autoWomenRatio, projectId);
+        return criteria;
     }
 
     /**
-     * Assign teams to the students.
-     * @param teams the list of empty teams to fill
-     * @param women the list of women students
-     * @param men the list of men students
-     * @param womenPerTeam the number of women per team
+     * Auto generate teams with students according to the given number of teams and the number of women per team.
+     * The students and their imported averages are loaded once, and the teams are composed in memory and optionally improved
+     * by the optimizer before anything is written, so that no row stays locked during the search.
+     * The project and the teams are then saved in one short transaction.
+     * @param timeBudgetMs the time the optimizer may take, or null to keep the greedy composition
+     * @return the score of the composition and the constraints it satisfies
      */
-    public void fillTeams(List<Team> teams, List<Student> women, List<Student> men, Integer womenPerTeam, boolean autoWomenRatio, Integer projectId) {
-        int nbTeams = teams.size();
+    public TeamGenerationResult generateTeams(Integer projectId, Project projectDetails, boolean autoWomenRatio, Long timeBudgetMs) {
+        CustomLogger.info("TeamService.generateTeams : Creating Teams");
+        long start = System.nanoTime();
+        TeamOptimizerService.checkTimeBudget(timeBudgetMs);
 
-        List<Team> sortedTeams = teams;
-        int index = 0;
+        List<Student> students = this.studentRepository.findAllByProject(projectId);
+        Integer nbTeams = projectDetails.nbTeams();
+        Integer womenPerTeam = projectDetails.nbWomen();
+        checkEnoughStudents(students, nbTeams, womenPerTeam);
 
-        if (!autoWomenRatio && womenPerTeam != 0) {
-            assignWomenPerTeam(teams, women, men, womenPerTeam);
+        ComposedTeams composed = composeTeams(projectId, students, nbTeams, womenPerTeam, autoWomenRatio, timeBudgetMs);
+        transactionTemplate.executeWithoutResult(status -> saveTeams(projectId, projectDetails, composed.composition()));
+        CustomLogger.info("Teams have been filled with students");
 
-            // re-order the teams by average grade
-            sortedTeams = this.teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId);
+        TeamGenerationResult result = teamOptimizerService.evaluate(composed.composition(), composed.averages(), composed.requiredWomen());
+        result.optimized(timeBudgetMs != null);
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        result.durationMs(durationMs);
+        CustomLogger.info("Generated " + nbTeams + " teams for " + students.size() + " students in " + durationMs + " ms, score " + result.score()
+                + (Boolean.TRUE.equals(result.constraintsSatisfied()) ? "" : ", some constraints are not satisfied") + ".");
+        return result;
+    }
 
-            // find the next index
-            index = nbTeams * womenPerTeam;
+    /**
+     * Computes the teams that generateTeams would create, without writing anything, and keeps them under a token.
+     * @param timeBudgetMs the time the optimizer may take, or null to keep the greedy composition
+     * @return the proposed teams with their criteria, and the token to commit them
+     */
+    public TeamPreview previewTeams(Integer projectId, Project projectDetails, boolean autoWomenRatio, Long timeBudgetMs) {
+        long start = System.nanoTime();
+        TeamOptimizerService.checkTimeBudget(timeBudgetMs);
+        projectService.getProjectById(projectId);
+        List<Student> students = this.studentRepository.findAllByProject(projectId);
+        Integer nbTeams = projectDetails.nbTeams();
+        Integer womenPerTeam = projectDetails.nbWomen();
+        checkEnoughStudents(students, nbTeams, womenPerTeam);
+
+        ComposedTeams composed = composeTeams(projectId, students, nbTeams, womenPerTeam, autoWomenRatio, timeBudgetMs);
+        List<List<Student>> composition = composed.composition();
+        Map<Integer, Double> averages = composed.averages();
+
+        TeamGenerationResult result = teamOptimizerService.evaluate(composition, averages, composed.requiredWomen());
+        result.optimized(timeBudgetMs != null);
+        result.durationMs((System.nanoTime() - start) / 1_000_000);
+
+        // The criteria are those of getCriteriaByTeamId, checked against the number of women the project would be saved with
+        List<TeamProposal> proposals = new ArrayList<>();
+        for (int i = 0; i < composition.size(); i++) {
+            List<Student> members = composition.get(i);
+            int nbWomen = (int) members.stream().filter(student -> student.gender() == Gender.WOMAN).count();
+            int nbBachelors = (int) members.stream().filter(student -> Boolean.TRUE.equals(student.bachelor())).count();
+            OptionalDouble average = members.stream().map(student -> averages.get(student.id())).filter(Objects::nonNull).mapToDouble(Double::doubleValue).average();
+            proposals.add(new TeamProposal(teamName(i), members.stream().map(Student::id).toList(), nbWomen, nbBachelors,
+                    average.isPresent() ? formattedResult(average.getAsDouble()) : null, nbWomen >= womenPerTeam, nbBachelors >= 1));
         }
 
-        // Assign the remaining students evenly to the teams
-        assignStudentsEvenly(women, men, projectId, index, sortedTeams);
-        CustomLogger.info("Teams have been filled with students");
+        TeamPreview preview = new TeamPreview(null, null, result, proposals);
+        return teamPreviewService.store(projectId, nbTeams, womenPerTeam, composition, preview);
     }
 
     /**
-     * Assign "womenPerTeam" women to the teams first then even the teams with men if needed
-     * @param teams the list of teams
-     * @param women the list of female students
-     * @param men   the list of male students
-     * @param womenPerTeam  the number of women to assign to every team
+     * Saves the teams of a preview in one transaction, in place of the existing teams of the project.
+     * @param token the token of the preview
+     * @return the score of the saved composition
      */
-    public void assignWomenPerTeam(List<Team> teams, List<Student> women, List<Student> men, Integer womenPerTeam) {
-        int nbTeams = teams.size();
-        int nbWomen = women.size();
-        int nbStudents = nbWomen + men.size();
+    @Transactional
+    public TeamGenerationResult commitTeamPreview(Integer projectId, String token) {
+        TeamPreviewService.StoredPreview stored = teamPreviewService.take(projectId, token);
+
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(stored.nbTeams());
+        projectDetails.nbWomen(stored.nbWomen());
+        saveTeams(projectId, projectDetails, stored.composition());
+        CustomLogger.info("Teams of the preview " + token + " have been saved");
+        return stored.preview().result();
+    }
 
-        int index;
-        for (int i = 0; i < nbTeams; i++) {
-            for (int j = 0; j < womenPerTeam; j++) {
-                Student student;
-                Role role = new Role();
-                role.type(RoleType.TEAM_MEMBER);
-                index = i * womenPerTeam + j;
-
-                if (index < nbWomen) {
-                    student = women.get(index);
-                    student.team(teams.get(i));
-                    role.user(student);
-                    this.roleRepository.save(role);
-                    this.studentRepository.save(student);
-                } else if (index < nbStudents) {
-                    student = men.get(index - nbWomen);
-                    student.team(teams.get(i));
-                    role.user(student);
-                    this.roleRepository.save(role);
-                    this.studentRepository.save(student);
-                }
-            }
+    private void checkEnoughStudents(List<Student> students, Integer nbTeams, Integer womenPerTeam) {
+        // Check if the number of students is enough to create the teams
+        if (students.size() < nbTeams * womenPerTeam - 1) {
+            CustomLogger.error("TeamService.generateTeams : Not enough students to create the teams");
+            throw new IllegalArgumentException("Not enough students to create the teams");
         }
     }
 
     /**
-     * Assign the remaining students evenly to the teams
-     * @param women the list of female students
-     * @param men   the list of male students
-     * @param projectId the ID of the project
-     * @param index the index of the first student to assign
-     * @param sortedTeams the list of teams sorted by average grade
+     * Saves the project details, then replaces the teams of the project with the given composition.
+     * Must run in a transaction.
+     * @throws IllegalArgumentException if the students of the project are not those of the composition anymore
      */
-    public void assignStudentsEvenly(List<Student> women, List<Student> men, Integer projectId, int index, List<Team> sortedTeams) {
-        int nbTeams = sortedTeams.size();
-        int nbWomen = women.size();
-        int nbStudent = nbWomen + men.size();
-
-        for (int i = index; i < nbStudent; i++) {
-            if (((i - index) % nbTeams == 0) && i != 0) {
-                sortedTeams = this.teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId);
-            }
+    private void saveTeams(Integer projectId, Project projectDetails, List<List<Student>> composition) {
+        Set<Integer> composedStudents = new HashSet<>();
+        composition.forEach(members -> members.forEach(student -> composedStudents.add(student.id())));
+        Set<Integer> currentStudents = new HashSet<>();
+        this.studentRepository.findAllByProject(projectId).forEach(student -> currentStudents.add(student.id()));
+        if (!composedStudents.equals(currentStudents)) {
+            throw new IllegalArgumentException("The students of the project have changed since the teams were composed, please compose the teams again");
+        }
 
-            CustomLogger.info("Sorted teams : " + sortedTeams);
+        projectService.updateProject(projectId, projectDetails);
+        List<Team> teams = this.createTeams(projectId, projectDetails.nbTeams());
+        teamCompositionService.saveComposition(projectId, teams, composition);
+    }
 
-            Student student;
-            Role role = new Role();
-            role.type(RoleType.TEAM_MEMBER);
+    private ComposedTeams composeTeams(Integer projectId, List<Student> students, int nbTeams, int womenPerTeam,
+                                       boolean autoWomenRatio, Long timeBudgetMs) {
+        Map<Integer, Double> averages = teamCompositionService.getImportedAverages(projectId);
+        int requiredWomen = teamOptimizerService.requiredWomenPerTeam(students, nbTeams, womenPerTeam, autoWomenRatio);
+        List<List<Student>> composition = teamCompositionService.compose(students, averages, nbTeams, womenPerTeam, autoWomenRatio);
+        if (timeBudgetMs != null) {
+            composition = teamOptimizerService.optimize(composition, averages, requiredWomen, timeBudgetMs);
+        }
+        return new ComposedTeams(composition, averages, requiredWomen);
+    }
 
-            if (i < nbWomen) {
-                student = women.get(i);
-                student.team(sortedTeams.get((i - index)% nbTeams));
-            }else{
-                student = men.get(i - nbWomen);
-                student.team(sortedTeams.get((i - index)% nbTeams));
-            }
+    /**
+     * The students of each team, with the averages and the number of women per team they were composed with.
+     */
+    private record ComposedTeams(List<List<Student>> composition, Map<Integer, Double> averages, int requiredWomen) {
+    }
 
-            role.user(student);
-            CustomLogger.info("studentEND : " + student);
-            this.roleRepository.save(role);
-            this.studentRepository.save(student);
-        }
+    private static String teamName(int index) {
+        return "Équipe " + (index + 1);
     }
 
     public List<Comment> getFeedbacksByTeamAndSprint(Integer teamId, Integer sprintId) {
@@ -270,67 +293,30 @@ public class TeamService {
     }
 
     public Double getTeamTotalGrade(Integer teamId, Integer sprintId) {
-        List<GradeType> teacherGradedTeamGradeTypes = gradeTypeRepository.findTeacherGradedTeamGradeTypes();
-        List<Double> teamGrades = new ArrayList<>();
-
-        for (GradeType gradeType : teacherGradedTeamGradeTypes) {
-            Double average = gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, gradeType.name());
-            if (average != null) {
-                teamGrades.add(average);
-            }
-
-        }
-
-        return formattedResult(teamGrades.stream().mapToDouble(Double::doubleValue).sum() / teamGrades.size());
-
+        return formattedResult(sprintGradeService.getTeamTotalGrade(teamId, sprintId));
     }
 
     public List<Double> getIndividualTotalGrades(Integer id, Integer sprintId) {
-
-        List<Student> students = getStudentsByTeamId(id, false);
-        List<Double> individualGrades = new ArrayList<>();
-
-        for(Student student : students){
-            Double studentGradedTeamGrade = gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName());
-            Double individualGrade = gradeRepository.findAverageByGradeTypeForStudent(student.id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName());
-            double result;
-            if(studentGradedTeamGrade != null && individualGrade != null){
-                result = (2*individualGrade + studentGradedTeamGrade)/3;
-            }
-            else if(studentGradedTeamGrade == null){
-                result = individualGrade;
-            } else {
-                result = studentGradedTeamGrade;
-            }
-            individualGrades.add(formattedResult(result));
-
-        }
-        return individualGrades;
+        return sprintGradeService.getTeamSprintGrades(id, sprintId).individualGrades().stream().map(this::formattedResult).toList();
     }
 
     public List<Double> getSprintGrades(Integer id, Integer sprintId) {
-        double teamGrade = getTeamTotalGrade(id, sprintId);
-
-        List<Student> students = getStudentsByTeamId(id, false);
-        List<Double> sprintGrades = new ArrayList<>();
-
-        for(int i = 0; i < students.size(); i++){
-            List<Bonus> studentBonuses = studentService.getStudentBonuses(students.get(i).id(), sprintId);
-            double result = 0.7*(Math.min(teamGrade + studentBonuses.stream().mapToDouble(Bonus::value).sum(), 20.0)) + 0.3*(getIndividualTotalGrades(id, sprintId)).get(i);
-            sprintGrades.add(formattedResult(result));
-        }
+        List<Double> sprintGrades = sprintGradeService.getTeamSprintGrades(id, sprintId).sprintGrades();
         if (sprintGrades.isEmpty()) {
             return Collections.singletonList(-1.0);
         }
-        return sprintGrades;
+        return sprintGrades.stream().map(this::formattedResult).toList();
     }
 
-    public List<Double> getAverageSprintGrades(Integer sprintId){
-        List<Team> teams = teamRepository.findAll();
+    public List<Double> getAverageSprintGrades(Integer projectId, Integer sprintId){
         List<Double> averageSprintGrades = new ArrayList<>();
-        for(Team team : teams){
-            List<Double> sprintGrades = getSprintGrades(team.id(), sprintId);
-            double average = sprintGrades.stream().mapToDouble(Double::doubleValue).sum() / sprintGrades.size();
+        for(TeamSprintGrades teamSprintGrades : sprintGradeService.getProjectSprintGrades(projectId, sprintId)){
+            List<Double> sprintGrades = teamSprintGrades.sprintGrades();
+            if (sprintGrades.isEmpty()) {
+                averageSprintGrades.add(-1.0);
+                continue;
+            }
+            double average = sprintGrades.stream().mapToDouble(this::formattedResult).sum() / sprintGrades.size();
             averageSprintGrades.add(formattedResult(average));
         }
         return averageSprintGrades;
@@ -8,6 +8,7 @@ import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.RoleRepository;
 import fr.eseo.tauri.repository.TeamRepository;
 import fr.eseo.tauri.repository.UserRepository;
+import fr.eseo.tauri.security.TokenPermissions;
 import fr.eseo.tauri.util.CustomLogger;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -23,6 +24,7 @@ public class UserService {
 	private final TeamRepository teamRepository;
 	private final RoleRepository roleRepository;
 	private final PermissionService permissionService;
+	private final AuthService authService;
 
 
 
@@ -51,6 +53,7 @@ public class UserService {
 		if (updatedUser.privateKey() != null) user.privateKey(updatedUser.privateKey());
 
 		userRepository.save(user);
+		authService.forgetUser(id);
 	}
 
 	public void deleteUserById(Integer id) {
@@ -64,10 +67,12 @@ public class UserService {
 		}
 
 		userRepository.deleteById(id);
+		authService.forgetUser(id);
 	}
 
 	public void deleteAllUsers() {
 		userRepository.deleteAll();
+		authService.forgetAllUsers();
 	}
 
 	public List<RoleType> getRolesByUserId(Integer id) {
@@ -89,26 +94,39 @@ public class UserService {
 		}
 	}
 
+	/**
+	 * Get the permissions of a user, read from the access token of the request when it is the token of this user.
+	 * A token issued before the roles of its user changed is not used.
+	 */
 	public List<PermissionType> getPermissionsByUser(Integer id) {
+		var tokenPermissions = TokenPermissions.ofCurrentRequest();
+		if (isUpToDateTokenOf(tokenPermissions, id)) return new ArrayList<>(tokenPermissions.permissions());
+
 		var user = getUserById(id);
 		var roles = roleRepository.findByUser(user);
 
-		List<PermissionType> permissions = new ArrayList<>();
-
-		for (var role : roles) {
-			var permissionsRoles = permissionService.getAllPermissionsByRole(role);
-			for (var permission : permissionsRoles) {
-				if (!permissions.contains(permission.type())) permissions.add(permission.type());
-			}
-		}
-
-		return permissions;
+		return new ArrayList<>(permissionService.getPermissionTypesByRoles(roles));
 	}
 
+	/**
+	 * Check if a user has a permission through any of their roles.
+	 * The access token of the request answers without querying the database when it is the token of this user
+	 * and the roles of the user have not changed since it was issued, otherwise only the roles of the user are read from the database, the permissions of the roles are kept in memory.
+	 */
 	public Boolean hasPermission(Integer id, PermissionType permission) {
-		var permissions = getPermissionsByUser(id);
+		var tokenPermissions = TokenPermissions.ofCurrentRequest();
+		if (isUpToDateTokenOf(tokenPermissions, id)) return tokenPermissions.has(permission);
+
+		var roles = roleRepository.findByUserId(id);
+		// A user without roles may not exist
+		if (roles.isEmpty()) getUserById(id);
+
+		return roles.stream().anyMatch(role -> permissionService.hasPermission(role, permission));
+	}
 
-		return permissions.contains(permission);
+	private boolean isUpToDateTokenOf(TokenPermissions tokenPermissions, Integer id) {
+		return tokenPermissions != null && tokenPermissions.userId().equals(id)
+				&& !permissionService.haveRolesChangedSince(id, tokenPermissions.issuedAt());
 	}
 
 	public User getUserByName(String name){
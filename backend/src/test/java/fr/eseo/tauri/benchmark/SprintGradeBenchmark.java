@@ -0,0 +1,131 @@
+package fr.eseo.tauri.benchmark;
+
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.Team;
+import fr.eseo.tauri.model.enumeration.GradeTypeName;
+import fr.eseo.tauri.repository.BonusRepository;
+import fr.eseo.tauri.repository.GradeRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.repository.TeamRepository;
+import fr.eseo.tauri.service.SprintGradeService;
+import fr.eseo.tauri.util.CustomLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Latency of the all-teams sprint average versus the number of teams.
+ * Every repository call waits {@link #QUERY_LATENCY_MS} to stand for a database round trip,
+ * so the per-team path (one team after the other) can be compared with the project-scoped one.
+ * Run with {@code ./gradlew benchmarkTest}.
+ */
+class SprintGradeBenchmark {
+
+    private static final int QUERY_LATENCY_MS = 1;
+    private static final int STUDENTS_PER_TEAM = 6;
+    private static final int[] TEAM_COUNTS = {5, 10, 25, 50, 100};
+    private static final int PROJECT_ID = 1;
+    private static final int SPRINT_ID = 1;
+
+    private TeamRepository teamRepository;
+    private StudentRepository studentRepository;
+    private GradeRepository gradeRepository;
+    private BonusRepository bonusRepository;
+    private SprintGradeService sprintGradeService;
+
+    @BeforeEach
+    void setUp() {
+        teamRepository = mock(TeamRepository.class);
+        studentRepository = mock(StudentRepository.class);
+        gradeRepository = mock(GradeRepository.class);
+        bonusRepository = mock(BonusRepository.class);
+        sprintGradeService = new SprintGradeService(teamRepository, studentRepository, gradeRepository, bonusRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sprintGradeService.shutdown();
+    }
+
+    @Test
+    void averageSprintGradesLatencyVersusNumberOfTeams() {
+        CustomLogger.info(String.format("%-8s %-14s %-14s", "teams", "per team (ms)", "project (ms)"));
+        for (int teamCount : TEAM_COUNTS) {
+            List<Team> teams = stubProject(teamCount);
+
+            long start = System.nanoTime();
+            for (Team team : teams) {
+                sprintGradeService.getTeamSprintGrades(team.id(), SPRINT_ID);
+            }
+            long perTeamMs = (System.nanoTime() - start) / 1_000_000;
+
+            start = System.nanoTime();
+            int computedTeams = sprintGradeService.getProjectSprintGrades(PROJECT_ID, SPRINT_ID).size();
+            long projectMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(teamCount, computedTeams);
+            CustomLogger.info(String.format("%-8d %-14d %-14d", teamCount, perTeamMs, projectMs));
+        }
+    }
+
+    private List<Team> stubProject(int teamCount) {
+        List<Team> teams = new ArrayList<>();
+        List<Student> students = new ArrayList<>();
+        List<Object[]> teamAverages = new ArrayList<>();
+        List<Object[]> individualAverages = new ArrayList<>();
+        List<Object[]> bonuses = new ArrayList<>();
+
+        for (int t = 1; t <= teamCount; t++) {
+            Team team = new Team().id(t);
+            teams.add(team);
+            teamAverages.add(new Object[]{t, "Solution", 14.0});
+            teamAverages.add(new Object[]{t, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName(), 15.0});
+            for (int s = 0; s < STUDENTS_PER_TEAM; s++) {
+                int studentId = t * STUDENTS_PER_TEAM + s;
+                Student student = new Student();
+                student.id(studentId);
+                student.team(team);
+                students.add(student);
+                individualAverages.add(new Object[]{studentId, 12.0 + s});
+                bonuses.add(new Object[]{studentId, 0.5});
+            }
+        }
+
+        reset(teamRepository, studentRepository, gradeRepository, bonusRepository);
+        when(teamRepository.findAllByProject(PROJECT_ID)).then(delayed(teams));
+        when(teamRepository.existsById(anyInt())).then(delayed(true));
+        when(studentRepository.findAllWithTeamByProject(PROJECT_ID)).then(delayed(students));
+        when(studentRepository.findByTeam(anyInt())).then(invocation -> {
+            sleep();
+            Integer teamId = invocation.getArgument(0);
+            return students.stream().filter(s -> s.team().id().equals(teamId)).toList();
+        });
+        when(gradeRepository.findTeamAveragesByGradeTypeForProject(PROJECT_ID, SPRINT_ID)).then(delayed(teamAverages));
+        when(gradeRepository.findTeamAveragesByGradeType(anyInt(), anyInt())).then(delayed(List.of(new Object[]{"Solution", 14.0})));
+        when(gradeRepository.findStudentAveragesByProject(eq(PROJECT_ID), eq(SPRINT_ID), anyString())).then(delayed(individualAverages));
+        when(gradeRepository.findStudentAveragesByTeam(anyInt(), anyInt(), anyString())).then(delayed(individualAverages));
+        when(bonusRepository.findBonusSumsByProject(PROJECT_ID, SPRINT_ID)).then(delayed(bonuses));
+        when(bonusRepository.findBonusSumsByTeam(anyInt(), anyInt())).then(delayed(bonuses));
+        return teams;
+    }
+
+    private static Answer<Object> delayed(Object result) {
+        return invocation -> {
+            sleep();
+            return result;
+        };
+    }
+
+    private static void sleep() throws InterruptedException {
+        Thread.sleep(QUERY_LATENCY_MS);
+    }
+
+}
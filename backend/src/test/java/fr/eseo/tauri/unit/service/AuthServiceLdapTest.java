@@ -0,0 +1,118 @@
+package fr.eseo.tauri.unit.service;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.sdk.LDAPException;
+import fr.eseo.tauri.model.Project;
+import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.repository.ProjectRepository;
+import fr.eseo.tauri.repository.RoleRepository;
+import fr.eseo.tauri.repository.UserRepository;
+import fr.eseo.tauri.security.ApplicationSecurity;
+import fr.eseo.tauri.security.AuthResponse;
+import fr.eseo.tauri.security.JwtTokenUtil;
+import fr.eseo.tauri.service.AuthService;
+import fr.eseo.tauri.service.PermissionService;
+import fr.eseo.tauri.service.RefreshTokenService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Logs in against an in-process LDAP server, through the pooled context source of the application.
+ */
+@Nested
+class AuthServiceLdapTest {
+
+    private static final String BASE_DN = "dc=tauri,dc=fr";
+    private static final String MANAGER_DN = "cn=admin," + BASE_DN;
+    private static final String EMAIL = "john.doe@tauri.fr";
+
+    @Mock
+    UserRepository userRepository;
+
+    @Mock
+    ProjectRepository projectRepository;
+
+    @Mock
+    JwtTokenUtil jwtTokenUtil;
+
+    @Mock
+    RoleRepository roleRepository;
+
+    @Mock
+    PermissionService permissionService;
+
+    @Mock
+    RefreshTokenService refreshTokenService;
+
+    private InMemoryDirectoryServer server;
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() throws LDAPException {
+        MockitoAnnotations.openMocks(this);
+
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE_DN);
+        config.addAdditionalBindCredentials(MANAGER_DN, "admin");
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        config.setSchema(null);
+        server = new InMemoryDirectoryServer(config);
+        server.add("dn: " + BASE_DN, "objectClass: top", "objectClass: domain", "dc: tauri");
+        server.add("dn: uid=jdoe," + BASE_DN, "objectClass: inetOrgPerson", "uid: jdoe", "cn: John Doe", "sn: Doe",
+                "mail: " + EMAIL, "userPassword: secret");
+        server.startListening();
+
+        DefaultSpringSecurityContextSource contextSource = ApplicationSecurity.pooledContextSource(
+                "ldap://localhost:" + server.getListenPort() + "/" + BASE_DN, MANAGER_DN, "admin");
+        authService = new AuthService(jwtTokenUtil, ApplicationSecurity.ldapAuthenticationManager(contextSource, "(mail={0})"),
+                userRepository, projectRepository, roleRepository, permissionService, refreshTokenService);
+        authService.prodProperty("true");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.shutDown(true);
+    }
+
+    @Test
+    void loginShouldBindToLdapAndReadTheLookupsOnlyOnce() {
+        User user = new User();
+        user.id(1);
+        user.email(EMAIL);
+        Project project = new Project();
+        project.id(2);
+
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.of(project));
+        when(jwtTokenUtil.generateAccessToken(eq(user), anyList(), anySet(), anyLong())).thenReturn("accessToken");
+
+        AuthResponse first = authService.login(EMAIL, "secret");
+        AuthResponse second = authService.login(EMAIL, "secret");
+
+        assertEquals("accessToken", first.accessToken());
+        assertEquals(2, second.idProject());
+        assertTrue(first.ldapMs() >= 0);
+        verify(userRepository, times(1)).findByEmail(EMAIL);
+        verify(projectRepository, times(1)).findFirstByActualTrue();
+    }
+
+    @Test
+    void loginShouldRejectAWrongPasswordWithoutReadingTheDatabase() {
+        assertThrows(SecurityException.class, () -> authService.login(EMAIL, "wrong"));
+
+        verifyNoInteractions(userRepository, projectRepository, jwtTokenUtil);
+    }
+
+}
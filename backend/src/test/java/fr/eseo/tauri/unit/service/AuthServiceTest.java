@@ -2,12 +2,18 @@ package fr.eseo.tauri.unit.service;
 
 
 import fr.eseo.tauri.model.Project;
+import fr.eseo.tauri.model.RefreshToken;
 import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.model.enumeration.PermissionType;
+import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.ProjectRepository;
+import fr.eseo.tauri.repository.RoleRepository;
 import fr.eseo.tauri.repository.UserRepository;
 import fr.eseo.tauri.security.AuthResponse;
 import fr.eseo.tauri.security.JwtTokenUtil;
 import fr.eseo.tauri.service.AuthService;
+import fr.eseo.tauri.service.PermissionService;
+import fr.eseo.tauri.service.RefreshTokenService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -20,10 +26,13 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @Nested
@@ -44,6 +53,15 @@ class AuthServiceTest {
     @Mock
     JwtTokenUtil jwtTokenUtil;
 
+    @Mock
+    RoleRepository roleRepository;
+
+    @Mock
+    PermissionService permissionService;
+
+    @Mock
+    RefreshTokenService refreshTokenService;
+
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
@@ -88,7 +106,7 @@ class AuthServiceTest {
 
         when(authenticationManager.authenticate(any())).thenReturn(authentication);
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(jwtTokenUtil.generateAccessToken(user)).thenReturn("accessToken");
+        when(jwtTokenUtil.generateAccessToken(eq(user), anyList(), anySet(), anyLong())).thenReturn("accessToken");
         when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.of(project));
         when(userRepository.findByEmail(email)).thenReturn(null);
 
@@ -107,7 +125,7 @@ class AuthServiceTest {
         project.id(1);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(jwtTokenUtil.generateAccessToken(user)).thenReturn("accessToken");
+        when(jwtTokenUtil.generateAccessToken(eq(user), anyList(), anySet(), anyLong())).thenReturn("accessToken");
         when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.of(project));
 
         AuthResponse authResponse = authService.login(email, password);
@@ -184,7 +202,7 @@ class AuthServiceTest {
         project.id(1);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(jwtTokenUtil.generateAccessToken(user)).thenReturn("accessToken");
+        when(jwtTokenUtil.generateAccessToken(eq(user), anyList(), anySet(), anyLong())).thenReturn("accessToken");
         when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.of(project));
         authService.prodProperty("false");
 
@@ -208,7 +226,7 @@ class AuthServiceTest {
 
         // Mocking the JWT token generation
         String mockToken = "mockToken";
-        when(jwtTokenUtil.generateAccessToken(mockUser)).thenReturn(mockToken);
+        when(jwtTokenUtil.generateAccessToken(eq(mockUser), anyList(), anySet(), anyLong())).thenReturn(mockToken);
 
         // Mocking the project repository behavior
         Project mockProject = mock(Project.class);
@@ -220,11 +238,102 @@ class AuthServiceTest {
 
         // Verify the interactions and the expected response
         verify(userRepository).findByEmail(email);
-        verify(jwtTokenUtil).generateAccessToken(mockUser);
+        verify(jwtTokenUtil).generateAccessToken(eq(mockUser), anyList(), anySet(), anyLong());
         verify(projectRepository).findFirstByActualTrue();
 
         assertNotNull(response);
     }
 
+    @Test
+    void createAccessTokenShouldCarryTheRolesAndPermissionsOfTheUser() {
+        User user = new User();
+        user.id(1);
+        List<RoleType> roles = List.of(RoleType.TEAM_MEMBER);
+        EnumSet<PermissionType> permissions = EnumSet.of(PermissionType.VIEW_TEAMS);
+
+        when(permissionService.getPermissionTypesByRoles(roles)).thenReturn(permissions);
+        when(permissionService.getPermissionsVersion()).thenReturn(42L);
+        when(jwtTokenUtil.generateAccessToken(user, roles, permissions, 42L)).thenReturn("accessToken");
+
+        assertEquals("accessToken", authService.createAccessToken(user, roles));
+    }
+
+    @Test
+    void loginShouldIssueARefreshTokenWithTheRolesOfTheUser() {
+        User user = new User();
+        user.id(1);
+        List<RoleType> roles = List.of(RoleType.TEAM_MEMBER);
+        authService.prodProperty("false");
+        when(userRepository.findByEmail("john.doe@example.com")).thenReturn(Optional.of(user));
+        when(roleRepository.findByUserId(1)).thenReturn(roles);
+        when(refreshTokenService.issue(user, roles)).thenReturn("refreshToken");
+
+        AuthResponse response = authService.login("john.doe@example.com", "password");
+
+        assertEquals("refreshToken", response.refreshToken());
+        verify(refreshTokenService, never()).deleteExpiredTokens();
+    }
+
+    @Test
+    void refreshShouldReuseTheRolesStoredWithTheRefreshToken() {
+        User user = new User();
+        user.id(1);
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.user(user);
+        refreshToken.roles("TEAM_MEMBER,SUPERVISING_STAFF");
+        List<RoleType> roles = List.of(RoleType.TEAM_MEMBER, RoleType.SUPERVISING_STAFF);
+        when(refreshTokenService.consume("oldRefreshToken")).thenReturn(refreshToken);
+        when(jwtTokenUtil.generateAccessToken(eq(user), eq(roles), any(), anyLong())).thenReturn("accessToken");
+        when(refreshTokenService.issue(user, roles)).thenReturn("newRefreshToken");
+
+        AuthResponse response = authService.refresh("oldRefreshToken");
+
+        assertEquals("accessToken", response.accessToken());
+        assertEquals("newRefreshToken", response.refreshToken());
+        verifyNoInteractions(roleRepository, authenticationManager, userRepository);
+    }
+
+    @Test
+    void refreshShouldReadTheRolesAgainWhenTheyHaveChanged() {
+        User user = new User();
+        user.id(1);
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.user(user);
+        List<RoleType> roles = List.of(RoleType.PROJECT_LEADER);
+        when(refreshTokenService.consume("oldRefreshToken")).thenReturn(refreshToken);
+        when(roleRepository.findByUserId(1)).thenReturn(roles);
+
+        authService.refresh("oldRefreshToken");
+
+        verify(jwtTokenUtil, times(1)).generateAccessToken(eq(user), eq(roles), any(), anyLong());
+        verify(refreshTokenService, times(1)).issue(user, roles);
+    }
+
+    @Test
+    void loginShouldReadTheUserAgainOnceItIsForgotten() {
+        String email = "john.doe@example.com";
+        User user = new User();
+        user.id(1);
+        user.email(email);
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(projectRepository.findFirstByActualTrue()).thenReturn(Optional.empty());
+        authService.prodProperty("false");
+
+        authService.login(email, "password");
+        authService.login(email, "password");
+        verify(userRepository, times(1)).findByEmail(email);
+
+        authService.forgetUser(1);
+        authService.login(email, "password");
+        verify(userRepository, times(2)).findByEmail(email);
+    }
+
+    @Test
+    void refreshShouldThrowSecurityExceptionWhenTheRefreshTokenIsInvalid() {
+        when(refreshTokenService.consume("usedRefreshToken")).thenThrow(new SecurityException("Invalid refresh token"));
+
+        assertThrows(SecurityException.class, () -> authService.refresh("usedRefreshToken"));
+        verifyNoInteractions(jwtTokenUtil);
+    }
 
-}
\ No newline at end of file
+}
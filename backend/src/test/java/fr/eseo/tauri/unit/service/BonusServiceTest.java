@@ -1,6 +1,7 @@
 package fr.eseo.tauri.unit.service;
 
 import fr.eseo.tauri.model.*;
+import fr.eseo.tauri.model.enumeration.GradeEventType;
 import fr.eseo.tauri.repository.BonusRepository;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.repository.StudentRepository;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.*;
 
@@ -40,6 +42,9 @@ class BonusServiceTest {
     @Mock
     BonusRepository bonusRepository;
 
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
@@ -104,6 +109,20 @@ class BonusServiceTest {
         verify(bonusRepository, times(1)).save(bonus);
     }
 
+    @Test
+    void createBonusShouldPublishAnEventForTheSprintOfTheStudent() {
+        Student student = new Student();
+        student.id(10);
+        Bonus bonus = new Bonus();
+        bonus.value(2F);
+        bonus.sprint(new Sprint().id(3));
+        bonus.student(student);
+
+        bonusService.createBonus(bonus);
+
+        verify(eventPublisher, times(1)).publishEvent(new GradeEvent(GradeEventType.BONUS, 3, null, 10));
+    }
+
 
     @Test
     void updateBonusShouldThrowIllegalArgumentExceptionWhenBonusIsLimitedAndValueIsOutOfRange() {
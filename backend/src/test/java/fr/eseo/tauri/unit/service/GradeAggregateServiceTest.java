@@ -0,0 +1,127 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.model.*;
+import fr.eseo.tauri.repository.GradeAggregateRepository;
+import fr.eseo.tauri.service.GradeAggregateService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class GradeAggregateServiceTest {
+
+    @Mock
+    private GradeAggregateRepository gradeAggregateRepository;
+
+    @InjectMocks
+    private GradeAggregateService gradeAggregateService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void addShouldIncrementTheAggregateOfTheStudent() {
+        gradeAggregateService.add(studentGrade(10, 15F));
+
+        verify(gradeAggregateRepository, times(1)).applyDelta(10, null, 1, 2, 15.0, 1);
+    }
+
+    @Test
+    void removeShouldDecrementTheAggregateOfTheTeam() {
+        Grade grade = new Grade();
+        grade.team(new Team().id(5));
+        grade.sprint(new Sprint().id(1));
+        grade.gradeType(new GradeType().id(2));
+        grade.value(12F);
+
+        gradeAggregateService.remove(grade);
+
+        verify(gradeAggregateRepository, times(1)).applyDelta(null, 5, 1, 2, -12.0, -1);
+    }
+
+    @Test
+    void addShouldIgnoreGradesWithoutSprint() {
+        Grade grade = studentGrade(10, 15F);
+        grade.sprint(null);
+
+        gradeAggregateService.add(grade);
+
+        verifyNoInteractions(gradeAggregateRepository);
+    }
+
+    @Test
+    void refreshShouldRecomputeTheGradedStudentsAndTeams() {
+        Grade teamGrade = new Grade();
+        teamGrade.team(new Team().id(5));
+        teamGrade.sprint(new Sprint().id(1));
+        teamGrade.gradeType(new GradeType().id(3));
+        teamGrade.value(12F);
+
+        gradeAggregateService.refresh(List.of(studentGrade(10, 15F), studentGrade(11, 14F), teamGrade));
+
+        verify(gradeAggregateRepository, times(1)).refreshStudentAggregates(Set.of(10, 11), Set.of(1), Set.of(2, 3));
+        verify(gradeAggregateRepository, times(1)).refreshTeamAggregates(Set.of(5), Set.of(1), Set.of(2, 3));
+    }
+
+    @Test
+    void refreshShouldNotQueryWhenNoGradeIsAggregated() {
+        gradeAggregateService.refresh(List.of());
+
+        verifyNoInteractions(gradeAggregateRepository);
+    }
+
+    @Test
+    void rebuildShouldReportTheDriftBeforeRecomputingEveryAggregate() {
+        when(gradeAggregateRepository.countDrift()).thenReturn(3L);
+        when(gradeAggregateRepository.insertAllAggregates()).thenReturn(42);
+
+        AggregateRebuildResult result = gradeAggregateService.rebuild();
+
+        assertEquals(3L, result.driftedAggregates());
+        assertEquals(42, result.rebuiltAggregates());
+        assertTrue(result.durationMs() >= 0);
+        verify(gradeAggregateRepository, times(1)).deleteAllAggregates();
+    }
+
+    @Test
+    void getTeamAverageShouldReadTheAggregate() {
+        when(gradeAggregateRepository.findAverageForTeam(5, 1, "Solution")).thenReturn(13.5);
+
+        assertEquals(13.5, gradeAggregateService.getTeamAverage(5, 1, "Solution"));
+    }
+
+    private static Grade studentGrade(int studentId, Float value) {
+        Student student = new Student();
+        student.id(studentId);
+        Grade grade = new Grade();
+        grade.student(student);
+        grade.sprint(new Sprint().id(1));
+        grade.gradeType(new GradeType().id(2));
+        grade.value(value);
+        return grade;
+    }
+
+    @Test
+    void fillIfEmptyShouldInsertTheAggregatesOnlyWhenTheStoreIsEmpty() {
+        when(gradeAggregateRepository.count()).thenReturn(0L);
+        gradeAggregateService.fillIfEmpty();
+
+        when(gradeAggregateRepository.count()).thenReturn(3L);
+        gradeAggregateService.fillIfEmpty();
+
+        verify(gradeAggregateRepository, times(1)).insertAllAggregates();
+        verify(gradeAggregateRepository, never()).deleteAllAggregates();
+    }
+
+}
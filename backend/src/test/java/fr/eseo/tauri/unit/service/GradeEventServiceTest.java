@@ -0,0 +1,167 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.GradeEvent;
+import fr.eseo.tauri.model.GradeEventsTicket;
+import fr.eseo.tauri.model.Team;
+import fr.eseo.tauri.model.TeamSprintGrades;
+import fr.eseo.tauri.model.enumeration.GradeEventType;
+import fr.eseo.tauri.repository.TeamRepository;
+import fr.eseo.tauri.service.GradeEventService;
+import fr.eseo.tauri.service.SprintGradeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class GradeEventServiceTest {
+
+    @Mock
+    private SprintGradeService sprintGradeService;
+
+    @Mock
+    private TeamRepository teamRepository;
+
+    @InjectMocks
+    private GradeEventService gradeEventService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gradeEventService.shutdown();
+    }
+
+    @Test
+    void subscribeShouldRegisterTheSubscriberOfTheSprintOfTheTicket() {
+        GradeEventsTicket ticket = gradeEventService.issueTicket(1, Instant.now().plusSeconds(600));
+
+        SseEmitter emitter = gradeEventService.subscribe(ticket.ticket());
+
+        assertNotNull(emitter);
+        assertEquals(1, gradeEventService.countSubscribers(1));
+        assertEquals(0, gradeEventService.countSubscribers(2));
+    }
+
+    @Test
+    void subscribeShouldRefuseATicketUsedTwice() {
+        GradeEventsTicket ticket = gradeEventService.issueTicket(1, Instant.now().plusSeconds(600));
+        gradeEventService.subscribe(ticket.ticket());
+
+        assertThrows(SecurityException.class, () -> gradeEventService.subscribe(ticket.ticket()));
+        assertThrows(SecurityException.class, () -> gradeEventService.subscribe("unknown"));
+        assertEquals(1, gradeEventService.countSubscribers(1));
+    }
+
+    @Test
+    void subscribeShouldEndTheStreamWhenTheAccessTokenExpires() {
+        GradeEventsTicket ticket = gradeEventService.issueTicket(1, Instant.now().plusSeconds(60));
+
+        SseEmitter emitter = gradeEventService.subscribe(ticket.ticket());
+
+        assertTrue(emitter.getTimeout() <= 60 * 1000L);
+    }
+
+    @Test
+    void subscribeShouldRefuseATicketOfAnExpiredAccessToken() {
+        GradeEventsTicket ticket = gradeEventService.issueTicket(1, Instant.now().minusSeconds(1));
+
+        assertThrows(SecurityException.class, () -> gradeEventService.subscribe(ticket.ticket()));
+        assertEquals(0, gradeEventService.countSubscribers(1));
+    }
+
+    @Test
+    void onGradeEventShouldNotComputeAnythingWithoutSubscribers() {
+        gradeEventService.onGradeEvent(new GradeEvent(GradeEventType.GRADE, 1, 5, null));
+
+        verifyNoInteractions(sprintGradeService, teamRepository);
+    }
+
+    @Test
+    void withTeamResultsShouldResolveTheTeamOfTheStudent() {
+        TeamSprintGrades results = new TeamSprintGrades(5, List.of(10), 12.0, List.of(14.0), List.of(12.6));
+        when(teamRepository.findByStudentId(10)).thenReturn(new Team().id(5));
+        when(sprintGradeService.getTeamSprintGrades(5, 1)).thenReturn(results);
+
+        GradeEvent event = gradeEventService.withTeamResults(new GradeEvent(GradeEventType.BONUS, 1, null, 10));
+
+        assertEquals(5, event.teamId());
+        assertEquals(results, event.teamSprintGrades());
+    }
+
+    @Test
+    void withTeamResultsShouldKeepTheEventWhenTheTeamNoLongerExists() {
+        when(sprintGradeService.getTeamSprintGrades(5, 1)).thenThrow(new ResourceNotFoundException("team", 5));
+
+        GradeEvent event = gradeEventService.withTeamResults(new GradeEvent(GradeEventType.GRADE, 1, 5, null));
+
+        assertNull(event.teamSprintGrades());
+    }
+
+    @Test
+    void publishShouldDisconnectASubscriberWhoseBufferIsFullWithoutBlockingTheOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SseEmitter slowEmitter = mock(SseEmitter.class);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(slowEmitter).send(any(SseEmitter.SseEventBuilder.class));
+        SseEmitter fastEmitter = mock(SseEmitter.class);
+        gradeEventService.subscribe(1, slowEmitter);
+        gradeEventService.subscribe(1, fastEmitter);
+
+        // The drain of the slow subscriber blocks on the first event, the next ones fill its buffer
+        gradeEventService.publish(new GradeEvent(GradeEventType.GRADE, 1, 5, null));
+        verify(slowEmitter, timeout(5000)).send(any(SseEmitter.SseEventBuilder.class));
+        for (int i = 0; i < 32; i++) {
+            gradeEventService.publish(new GradeEvent(GradeEventType.GRADE, 1, 5, null));
+        }
+        assertEquals(2, gradeEventService.countSubscribers(1));
+        verify(fastEmitter, timeout(5000).times(33)).send(any(SseEmitter.SseEventBuilder.class));
+
+        gradeEventService.publish(new GradeEvent(GradeEventType.GRADE, 1, 5, null));
+        assertEquals(1, gradeEventService.countSubscribers(1));
+        verify(slowEmitter, times(1)).complete();
+        release.countDown();
+    }
+
+    @Test
+    void onGradeEventShouldComputeTheResultsOnceForTheWaitingEventsOfATeam() throws Exception {
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TeamSprintGrades results = new TeamSprintGrades(6, List.of(10), 12.0, List.of(14.0), List.of(12.6));
+        when(sprintGradeService.getTeamSprintGrades(5, 1)).thenAnswer(invocation -> {
+            computing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        when(sprintGradeService.getTeamSprintGrades(6, 1)).thenReturn(results);
+        SseEmitter emitter = mock(SseEmitter.class);
+        gradeEventService.subscribe(1, emitter);
+
+        // The results of team 5 keep the thread busy while three events of team 6 arrive
+        gradeEventService.onGradeEvent(new GradeEvent(GradeEventType.GRADE, 1, 5, null));
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            gradeEventService.onGradeEvent(new GradeEvent(GradeEventType.GRADE, 1, 6, null));
+        }
+        release.countDown();
+
+        verify(emitter, timeout(5000).times(4)).send(any(SseEmitter.SseEventBuilder.class));
+        verify(sprintGradeService, times(1)).getTeamSprintGrades(6, 1);
+    }
+
+}
@@ -3,26 +3,26 @@ package fr.eseo.tauri.unit.service;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.model.enumeration.Gender;
+import fr.eseo.tauri.model.enumeration.GradeEventType;
 import fr.eseo.tauri.model.enumeration.GradeTypeName;
 import fr.eseo.tauri.model.enumeration.RoleType;
-import fr.eseo.tauri.repository.GradeRepository;
-import fr.eseo.tauri.repository.GradeTypeRepository;
-import fr.eseo.tauri.repository.StudentRepository;
-import fr.eseo.tauri.repository.TeamRepository;
+import fr.eseo.tauri.repository.*;
 import fr.eseo.tauri.service.*;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.Arguments;
-import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -57,6 +57,21 @@ class GradeServiceTest {
     @Mock
     private GradeTypeRepository gradeTypeRepository;
 
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private SprintRepository sprintRepository;
+
+    @Mock
+    private Validator validator;
+
+    @Mock
+    private GradeAggregateService gradeAggregateService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private GradeService gradeService;
 
@@ -143,14 +158,145 @@ class GradeServiceTest {
         gradeService.createGrade(grade);
 
         verify(gradeRepository, times(1)).save(any(Grade.class));
+        verify(gradeAggregateService, times(1)).add(grade);
+    }
+
+    @Test
+    void createGradesShouldLoadReferencesOncePerEntityTypeAndUpsertInBatch() {
+        GradeType teamGradeType = new GradeType().id(1).forGroup(true);
+        GradeType individualGradeType = new GradeType().id(2).forGroup(false);
+        User author = new User();
+        author.id(1);
+        Student student1 = new Student();
+        student1.id(10);
+        Student student2 = new Student();
+        student2.id(11);
+        List<Grade> grades = List.of(
+                batchGrade(1, 1, null, 5, 15F),
+                batchGrade(2, 1, 10, null, 12F),
+                batchGrade(2, 1, 11, null, 14F));
+
+        when(gradeTypeRepository.findAllById(Set.of(1, 2))).thenReturn(List.of(teamGradeType, individualGradeType));
+        when(userRepository.findAllById(Set.of(1))).thenReturn(List.of(author));
+        when(sprintRepository.findAllById(Set.of(1))).thenReturn(List.of(new Sprint().id(1)));
+        when(teamRepository.findAllById(Set.of(5))).thenReturn(List.of(new Team().id(5)));
+        when(studentRepository.findAllById(Set.of(10, 11))).thenReturn(List.of(student1, student2));
+
+        int result = gradeService.createGrades(grades, true);
+
+        assertEquals(3, result);
+        assertEquals(5, grades.get(0).team().id());
+        assertNull(grades.get(0).student());
+        assertEquals(student2, grades.get(2).student());
+        verify(gradeRepository, times(1)).upsertAll(grades);
+        verify(gradeAggregateService, times(1)).refresh(grades);
+        verify(eventPublisher, times(1)).publishEvent(new GradeEvent(GradeEventType.GRADE, 1, 5, null));
+        verify(eventPublisher, times(1)).publishEvent(new GradeEvent(GradeEventType.GRADE, 1, null, 10));
+        verify(eventPublisher, times(1)).publishEvent(new GradeEvent(GradeEventType.GRADE, 1, null, 11));
+        verify(gradeRepository, never()).save(any(Grade.class));
+        verifyNoInteractions(userService, sprintService, gradeTypeService, teamService, studentService);
+    }
+
+    @Test
+    void createGradesShouldThrowResourceNotFoundExceptionWhenAReferenceIsMissing() {
+        List<Grade> grades = List.of(batchGrade(2, 1, 10, null, 12F));
+
+        when(gradeTypeRepository.findAllById(Set.of(2))).thenReturn(List.of(new GradeType().id(2).forGroup(false)));
+        when(userRepository.findAllById(Set.of(1))).thenReturn(List.of());
+
+        assertThrows(ResourceNotFoundException.class, () -> gradeService.createGrades(grades, true));
+        verify(gradeRepository, never()).upsertAll(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createGradesShouldThrowIllegalArgumentExceptionWhenAGradeIsInvalid() {
+        Grade invalidGrade = batchGrade(2, 1, 10, null, null);
+        ConstraintViolation<Grade> violation = mock(ConstraintViolation.class);
+        when(violation.getMessage()).thenReturn("The value field is required");
+        when(validator.validate(eq(invalidGrade), any())).thenReturn(Set.of(violation));
+
+        List<Grade> grades = List.of(batchGrade(2, 1, 11, null, 10F), invalidGrade);
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> gradeService.createGrades(grades, true));
+
+        assertEquals("grades[1] : The value field is required", exception.getMessage());
+        verify(gradeRepository, never()).upsertAll(anyList());
+    }
+
+    @Test
+    void createGradesShouldThrowIllegalArgumentExceptionWhenListIsEmpty() {
+        List<Grade> grades = List.of();
+
+        assertThrows(IllegalArgumentException.class, () -> gradeService.createGrades(grades, true));
+    }
+
+    @Test
+    void createGradesShouldReportEveryConflictWhenNotOverwriting() {
+        GradeType teamGradeType = new GradeType().id(1).forGroup(true);
+        GradeType individualGradeType = new GradeType().id(2).forGroup(false);
+        User author = new User();
+        author.id(1);
+        Student student = new Student();
+        student.id(10);
+        List<Grade> grades = List.of(
+                batchGrade(1, 1, null, 5, 15F),
+                batchGrade(2, 1, 10, null, 12F),
+                batchGrade(2, 1, 10, null, 14F));
+
+        when(gradeTypeRepository.findAllById(Set.of(1, 2))).thenReturn(List.of(teamGradeType, individualGradeType));
+        when(userRepository.findAllById(Set.of(1))).thenReturn(List.of(author));
+        when(sprintRepository.findAllById(Set.of(1))).thenReturn(List.of(new Sprint().id(1)));
+        when(teamRepository.findAllById(Set.of(5))).thenReturn(List.of(new Team().id(5)));
+        when(studentRepository.findAllById(Set.of(10))).thenReturn(List.of(student));
+        when(gradeRepository.findTeamGradeKeys(Set.of(1), Set.of(1), Set.of(1, 2), Set.of(5))).thenReturn(List.<Object[]>of(new Object[]{1, 1, 1, 5}));
+        when(gradeRepository.findStudentGradeKeys(Set.of(1), Set.of(1), Set.of(1, 2), Set.of(10))).thenReturn(List.of());
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> gradeService.createGrades(grades, false));
+
+        assertEquals("Some grades already exist : grades[0] already exists, grades[2] is duplicated in the batch", exception.getMessage());
+        verify(gradeRepository, never()).upsertAll(anyList());
+        verify(gradeRepository, never()).findAllByAuthorId(anyInt());
+    }
+
+    @Test
+    void createGradeShouldThrowIllegalArgumentExceptionWhenGradeAlreadyExists() {
+        Grade grade = new Grade();
+        grade.authorId(1);
+        grade.sprintId(1);
+        grade.gradeTypeId(1);
+        grade.studentId(1);
+        GradeType gradeType = new GradeType();
+        gradeType.forGroup(false);
+
+        when(userService.getUserById(anyInt())).thenReturn(new User());
+        when(sprintService.getSprintById(anyInt())).thenReturn(new Sprint());
+        when(gradeTypeService.getGradeTypeById(anyInt())).thenReturn(gradeType);
+        when(studentService.getStudentById(anyInt())).thenReturn(new Student());
+        when(gradeRepository.existsStudentGrade(1, 1, 1, 1)).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> gradeService.createGrade(grade));
+        verify(gradeRepository, never()).save(any(Grade.class));
+    }
+
+    private static Grade batchGrade(Integer gradeTypeId, Integer authorId, Integer studentId, Integer teamId, Float value) {
+        Grade grade = new Grade();
+        grade.gradeTypeId(gradeTypeId);
+        grade.authorId(authorId);
+        grade.studentId(studentId);
+        grade.teamId(teamId);
+        grade.sprintId(1);
+        grade.value(value);
+        return grade;
     }
 
     @Test
     void deleteGradeShouldDeleteGradeWhenAuthorized() {
-        when(gradeRepository.findById(anyInt())).thenReturn(Optional.of(new Grade()));
+        Grade grade = new Grade();
+        when(gradeRepository.findById(anyInt())).thenReturn(Optional.of(grade));
 
         gradeService.deleteGrade(1);
 
+        verify(gradeAggregateService, times(1)).remove(grade);
         verify(gradeRepository, times(1)).deleteById(anyInt());
     }
 
@@ -165,6 +311,7 @@ class GradeServiceTest {
     void deleteAllGradesByProjectShouldDeleteGradesWhenAuthorized() {
         gradeService.deleteAllGradesByProject(1);
 
+        verify(gradeAggregateService, times(1)).deleteAllByProject(1);
         verify(gradeRepository, times(1)).deleteAllByProject(anyInt());
     }
 
@@ -214,36 +361,80 @@ class GradeServiceTest {
     }
 
     @Test
-    void createStudentIndividualGradesCSVReportShouldGenerateCorrectReportWhenAuthorized() throws IOException {
+    void writeStudentIndividualGradesCSVReportShouldGenerateCorrectReportWhenAuthorized() throws IOException {
         int projectId = 1;
         Student student = new Student();
+        student.id(1);
         student.name("John Doe");
         student.gender(Gender.MAN);
         student.bachelor(true);
         GradeType gradeType = new GradeType();
+        gradeType.id(1);
         gradeType.name("Test Grade");
         gradeType.factor(1f);
         List<Student> students = Collections.singletonList(student);
         List<GradeType> gradeTypes = Collections.singletonList(gradeType);
+        List<Object[]> averages = Collections.singletonList(new Object[]{1, 1, 90.0});
 
         when(studentRepository.findAllByProject(projectId)).thenReturn(students);
         when(gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId)).thenReturn(gradeTypes);
-        when(gradeService.getGradeByStudentAndGradeType(student, gradeType)).thenReturn(90f);
+        when(gradeRepository.findUnimportedAveragesByProject(projectId)).thenReturn(averages);
 
-        byte[] result = gradeService.createStudentIndividualGradesCSVReport(projectId);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        gradeService.writeStudentIndividualGradesCSVReport(projectId, outputStream);
 
         String expectedCsv = """
                 "","","","Test Grade"
                 "","","","1.0"
                 "John Doe","M","B","90.0"
                 """;
-        String actualCsv = new String(result);
+        String actualCsv = outputStream.toString(StandardCharsets.UTF_8);
 
         assertEquals(expectedCsv, actualCsv);
     }
 
     @Test
-    void createStudentIndividualGradesCSVReportShouldHandleNoGrades() throws IOException {
+    void writeStudentIndividualGradesCSVReportShouldMergeDuplicatedGradeTypesAndLeaveMissingGradesEmpty() throws IOException {
+        int projectId = 1;
+        Student student1 = new Student();
+        student1.id(1);
+        student1.name("John Doe");
+        student1.gender(Gender.MAN);
+        student1.bachelor(false);
+        Student student2 = new Student();
+        student2.id(2);
+        student2.name("Jane Doe");
+        student2.gender(Gender.WOMAN);
+        student2.bachelor(false);
+        GradeType gradeType1 = new GradeType();
+        gradeType1.id(1);
+        gradeType1.name("Grade 1");
+        gradeType1.factor(1f);
+        GradeType gradeType2 = new GradeType();
+        gradeType2.id(2);
+        gradeType2.name("Grade 2");
+        gradeType2.factor(2f);
+        List<Object[]> averages = Arrays.asList(new Object[]{1, 1, 12.0}, new Object[]{2, 2, 15.5});
+
+        when(studentRepository.findAllByProject(projectId)).thenReturn(Arrays.asList(student1, student2));
+        when(gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId)).thenReturn(Arrays.asList(gradeType1, gradeType2, gradeType1));
+        when(gradeRepository.findUnimportedAveragesByProject(projectId)).thenReturn(averages);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        gradeService.writeStudentIndividualGradesCSVReport(projectId, outputStream);
+
+        String expectedCsv = """
+                "","","","Grade 1","Grade 2"
+                "","","","1.0","2.0"
+                "John Doe","M","","12.0",""
+                "Jane Doe","F","","","15.5"
+                """;
+
+        assertEquals(expectedCsv, outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writeStudentIndividualGradesCSVReportShouldHandleNoGrades() throws IOException {
         int projectId = 1;
         Student student = new Student();
         student.name("John Doe");
@@ -255,19 +446,19 @@ class GradeServiceTest {
         when(studentRepository.findAllByProject(projectId)).thenReturn(students);
         when(gradeRepository.findAllUnimportedGradeTypesByProjectId(projectId)).thenReturn(gradeTypes);
 
-        byte[] result = gradeService.createStudentIndividualGradesCSVReport(projectId);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        gradeService.writeStudentIndividualGradesCSVReport(projectId, outputStream);
 
         String expectedCsv = """
                 "","",""
                 "","",""
                 "John Doe","M","B"
                 """;
-        String actualCsv = new String(result);
+        String actualCsv = outputStream.toString(StandardCharsets.UTF_8);
 
         assertEquals(expectedCsv, actualCsv);
     }
 
-
     @Test
     void updateImportedMeanShouldNotUpdateMeanForBachelorStudents() {
         Student student = new Student();
@@ -312,47 +503,36 @@ class GradeServiceTest {
     }
 
     @Test
-    void getAverageGradesByGradeTypeByRoleTypeShouldReturnAverageWhenTeamExists() {
-        int userId = 1;
-        RoleType roleType = RoleType.TEAM_MEMBER;
-        String gradeTypeName = "Test Grade";
-        Team team = new Team();
-        Double expectedAverage = 85.0;
-
-        when(teamRepository.findTeamByStudentId(userId)).thenReturn(team);
-        when(gradeRepository.findAverageGradesByGradeType(team, gradeTypeName, roleType)).thenReturn(expectedAverage);
-
-        Double actualAverage = gradeService.getAverageGradesByGradeTypeByRoleType(userId, roleType, gradeTypeName);
-
-        assertEquals(expectedAverage, actualAverage);
-    }
-
-    @Test
-    void getAverageGradesByGradeTypeByRoleTypeShouldReturnZeroWhenNoTeamExists() {
-        int userId = 1;
-        RoleType roleType = RoleType.TEAM_MEMBER;
-        String gradeTypeName = "Test Grade";
+    void getAverageGradesByGradeTypeAndRoleTypeShouldBuildTheMatrixFromOneGroupedQuery() {
+        Team team = new Team().id(3);
+        List<GradeType> gradeTypes = List.of(new GradeType().id(1), new GradeType().id(2));
 
-        when(teamRepository.findTeamByStudentId(userId)).thenReturn(null);
+        when(gradeTypeRepository.findAllForGroupByProject(1)).thenReturn(gradeTypes);
+        when(teamRepository.findTeamByStudentId(7)).thenReturn(team);
+        when(gradeRepository.findTeamAveragesByGradeTypeAndRoleType(3)).thenReturn(List.<Object[]>of(
+                new Object[]{1, RoleType.SUPERVISING_STAFF, 14.0},
+                new Object[]{2, RoleType.TEAM_MEMBER, 12.5}));
 
-        Double actualAverage = gradeService.getAverageGradesByGradeTypeByRoleType(userId, roleType, gradeTypeName);
+        List<List<Double>> result = gradeService.getAverageGradesByGradeTypeAndRoleType(7, 1);
 
-        assertEquals(0.0, actualAverage);
+        assertEquals(2, result.size());
+        assertEquals(RoleType.values().length, result.get(0).size());
+        assertEquals(14.0, result.get(0).get(RoleType.SUPERVISING_STAFF.ordinal()));
+        assertEquals(-1.0, result.get(0).get(RoleType.TEAM_MEMBER.ordinal()));
+        assertEquals(12.5, result.get(1).get(RoleType.TEAM_MEMBER.ordinal()));
+        verify(gradeRepository, times(1)).findTeamAveragesByGradeTypeAndRoleType(3);
     }
 
     @Test
-    void getAverageGradesByGradeTypeByRoleTypeShouldReturnNullWhenNoAverageGradeExists() {
-        int userId = 1;
-        RoleType roleType = RoleType.TEAM_MEMBER;
-        String gradeTypeName = "Test Grade";
-        Team team = new Team();
+    void getAverageGradesByGradeTypeAndRoleTypeShouldReturnMinusOneWhenStudentHasNoTeam() {
+        when(gradeTypeRepository.findAllForGroupByProject(1)).thenReturn(List.of(new GradeType().id(1)));
+        when(teamRepository.findTeamByStudentId(7)).thenReturn(null);
 
-        when(teamRepository.findTeamByStudentId(userId)).thenReturn(team);
-        when(gradeRepository.findAverageGradesByGradeType(team, gradeTypeName, roleType)).thenReturn(null);
+        List<List<Double>> result = gradeService.getAverageGradesByGradeTypeAndRoleType(7, 1);
 
-        Double actualAverage = gradeService.getAverageGradesByGradeTypeByRoleType(userId, roleType, gradeTypeName);
-
-        assertNull(actualAverage);
+        assertEquals(1, result.size());
+        assertTrue(result.get(0).stream().allMatch(grade -> grade == -1.0));
+        verify(gradeRepository, never()).findTeamAveragesByGradeTypeAndRoleType(anyInt());
     }
 
     @Test
@@ -367,7 +547,7 @@ class GradeServiceTest {
 
 
         when(gradeTypeRepository.findByNameAndProjectId(gradeTypeName, projectId)).thenReturn(gradeType);
-        when(gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, gradeTypeName)).thenReturn(expectedAverage);
+        when(gradeAggregateService.getTeamAverage(id, sprintId, gradeTypeName)).thenReturn(expectedAverage);
 
         Double actualAverage = gradeService.getAverageByGradeTypeByStudentIdOrTeamId(id, sprintId, gradeTypeName, projectId);
 
@@ -386,7 +566,7 @@ class GradeServiceTest {
 
 
         when(gradeTypeRepository.findByNameAndProjectId(gradeTypeName, projectId)).thenReturn(gradeType);
-        when(gradeRepository.findAverageByGradeTypeForStudent(id, sprintId, gradeTypeName)).thenReturn(expectedAverage);
+        when(gradeAggregateService.getStudentAverage(id, sprintId, gradeTypeName)).thenReturn(expectedAverage);
 
         Double actualAverage = gradeService.getAverageByGradeTypeByStudentIdOrTeamId(id, sprintId, gradeTypeName, projectId);
 
@@ -404,7 +584,7 @@ class GradeServiceTest {
 
 
         when(gradeTypeRepository.findByNameAndProjectId(gradeTypeName, projectId)).thenReturn(gradeType);
-        when(gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, gradeTypeName)).thenReturn(null);
+        when(gradeAggregateService.getTeamAverage(id, sprintId, gradeTypeName)).thenReturn(null);
 
         Double actualAverage = gradeService.getAverageByGradeTypeByStudentIdOrTeamId(id, sprintId, gradeTypeName, projectId);
 
@@ -421,7 +601,7 @@ class GradeServiceTest {
         Double expectedAverage = 85.0;
 
         when(gradeTypeRepository.findAllUnimportedAndForGroup()).thenReturn(gradeTypes);
-        when(gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, gradeType.name())).thenReturn(expectedAverage);
+        when(gradeAggregateService.getTeamAverage(teamId, sprintId, gradeType.name())).thenReturn(expectedAverage);
 
         Map<String, Double> actualGrades = gradeService.getTeamGrades(teamId, sprintId);
 
@@ -449,7 +629,7 @@ class GradeServiceTest {
         List<GradeType> gradeTypes = Collections.singletonList(gradeType);
 
         when(gradeTypeRepository.findAllUnimportedAndForGroup()).thenReturn(gradeTypes);
-        when(gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, gradeType.name())).thenReturn(null);
+        when(gradeAggregateService.getTeamAverage(teamId, sprintId, gradeType.name())).thenReturn(null);
 
         Map<String, Double> actualGrades = gradeService.getTeamGrades(teamId, sprintId);
 
@@ -466,7 +646,7 @@ class GradeServiceTest {
         Double expectedAverage = 85.0;
 
         when(studentRepository.findByTeam(teamId)).thenReturn(teamStudents);
-        when(gradeRepository.findAverageByGradeTypeForStudent(student.id(), sprintId, "Performance individuelle")).thenReturn(expectedAverage);
+        when(gradeAggregateService.getStudentAverage(student.id(), sprintId, "Performance individuelle")).thenReturn(expectedAverage);
 
         Map<String, Double> actualGrades = gradeService.getTeamStudentGrades(teamId, sprintId);
 
@@ -494,157 +674,38 @@ class GradeServiceTest {
         List<Student> teamStudents = Collections.singletonList(student);
 
         when(studentRepository.findByTeam(teamId)).thenReturn(teamStudents);
-        when(gradeRepository.findAverageByGradeTypeForStudent(student.id(), sprintId, "Performance individuelle")).thenReturn(null);
+        when(gradeAggregateService.getStudentAverage(student.id(), sprintId, "Performance individuelle")).thenReturn(null);
 
         Map<String, Double> actualGrades = gradeService.getTeamStudentGrades(teamId, sprintId);
 
         assertNull(actualGrades.get(String.valueOf(student.id())));
     }
 
-
     @Test
-    void setGradesConfirmationShouldReturnFalseWhenNoStudentsInTeam() {
+    void setGradesConfirmationShouldReturnZeroWhenNothingToConfirm() {
         Integer teamId = 1;
         Integer sprintId = 1;
         Integer projectId = 1;
 
-        when(studentRepository.findByTeam(teamId)).thenReturn(Collections.emptyList());
+        when(gradeRepository.confirmAllByTeam(sprintId, teamId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId)).thenReturn(0);
 
-        Boolean result = gradeService.setGradesConfirmation(teamId, sprintId, projectId);
+        ConfirmationResult result = gradeService.setGradesConfirmation(sprintId, teamId, projectId);
 
-        assertFalse(result);
+        assertEquals(0, result.confirmedGrades());
+        verifyNoInteractions(eventPublisher);
     }
 
-
     @Test
-    void setGradesConfirmationShouldReturnFalseWhenNoGradesFound() {
+    void setGradesConfirmationShouldThrowIllegalArgumentExceptionWhenNoGradesFound() {
         Integer teamId = 1;
         Integer sprintId = 1;
         Integer projectId = 1;
-        Student student = new Student();
-        student.id(1);
-        List<Student> students = Collections.singletonList(student);
-        GradeType gradeType = new GradeType();
-        gradeType.name(GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName());
-
-        when(studentRepository.findByTeam(teamId)).thenReturn(students);
-        when(gradeTypeService.findByName(GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId)).thenReturn(gradeType);
-        when(gradeRepository.findIsConfirmedBySprindAndStudent(sprintId, student.id(), gradeType.id())).thenReturn(null);
-
-        Boolean result = gradeService.setGradesConfirmation(teamId, sprintId, projectId);
-
-        assertFalse(result);
-    }
-
-    @Test
-    void isSameGradeShouldReturnTrueWhenGradesAreSame() {
-        Grade grade = new Grade();
-        grade.sprintId(1);
-        grade.gradeTypeId(1);
-        grade.studentId(1);
-
-        Sprint sprint = new Sprint();
-        sprint.id(1);
-        GradeType gradeType = new GradeType();
-        gradeType.id(1);
-        Student student = new Student();
-        student.id(1);
-
-        Grade ratedGrade = new Grade();
-        ratedGrade.sprint(sprint);
-        ratedGrade.gradeType(gradeType);
-        ratedGrade.student(student);
-
-        assertTrue(gradeService.isSameGrade(grade, ratedGrade));
-    }
-
-
-    @ParameterizedTest
-    @MethodSource("provideGradesForTesting")
-    void isSameGradeShouldReturnFalseWhenDifferentIds(Grade grade, Grade ratedGrade) {
-        assertFalse(gradeService.isSameGrade(grade, ratedGrade));
-    }
-
-    private static Stream<Arguments> provideGradesForTesting() {
-        return Stream.of(
-                Arguments.of(
-                        createGrade(1, 1, 1),
-                        createGrade(2, 1, 1)
-                ),
-                Arguments.of(
-                        createGrade(1, 1, 1),
-                        createGrade(1, 2, 1)
-                ),
-                Arguments.of(
-                        createGrade(1, 1, 1),
-                        createGrade(1, 1, 2)
-                )
-        );
-    }
-
-    private static Grade createGrade(int sprintId, int gradeTypeId, int studentId) {
-        Grade grade = new Grade();
-        grade.sprintId(sprintId);
-        grade.gradeTypeId(gradeTypeId);
-        grade.studentId(studentId);
-
-        Sprint sprint = new Sprint();
-        sprint.id(sprintId);
-        GradeType gradeType = new GradeType();
-        gradeType.id(gradeTypeId);
-        Student student = new Student();
-        student.id(studentId);
-
-        Grade ratedGrade = new Grade();
-        ratedGrade.sprint(sprint);
-        ratedGrade.gradeType(gradeType);
-        ratedGrade.student(student);
-
-        return ratedGrade;
-    }
 
-    @Test
-    void isSameGradeShouldReturnTrueWhenTeamIdsAreSameAndStudentIsNull() {
-        Grade grade = new Grade();
-        grade.sprintId(1);
-        grade.gradeTypeId(1);
-        grade.teamId(1);
-
-        Sprint sprint = new Sprint();
-        sprint.id(1);
-        GradeType gradeType = new GradeType();
-        gradeType.id(1);
-        Team team = new Team();
-        team.id(1);
-
-        Grade ratedGrade = new Grade();
-        ratedGrade.sprint(sprint);
-        ratedGrade.gradeType(gradeType);
-        ratedGrade.team(team);
+        when(gradeRepository.countStudentsWithoutGradeByTeam(sprintId, teamId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId)).thenReturn(1L);
 
-        assertTrue(gradeService.isSameGrade(grade, ratedGrade));
-    }
-
-    @Test
-    void isSameGradeShouldReturnFalseWhenTeamIdsAreDifferentAndStudentIsNull() {
-        Grade grade = new Grade();
-        grade.sprintId(1);
-        grade.gradeTypeId(1);
-        grade.teamId(1);
-
-        Sprint sprint = new Sprint();
-        sprint.id(1);
-        GradeType gradeType = new GradeType();
-        gradeType.id(1);
-        Team team = new Team();
-        team.id(2);
-
-        Grade ratedGrade = new Grade();
-        ratedGrade.sprint(sprint);
-        ratedGrade.gradeType(gradeType);
-        ratedGrade.team(team);
-
-        assertFalse(gradeService.isSameGrade(grade, ratedGrade));
+        assertThrows(IllegalArgumentException.class, () -> gradeService.setGradesConfirmation(sprintId, teamId, projectId));
+        verify(gradeRepository, never()).confirmAllByTeam(anyInt(), anyInt(), anyString(), anyInt());
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -663,14 +724,18 @@ class GradeServiceTest {
         updatedGrade.authorId(1);
         updatedGrade.studentId(1);
 
-        when(gradeRepository.findById(anyInt())).thenReturn(Optional.of(new Grade()));
+        Grade grade = new Grade();
+        when(gradeRepository.findById(anyInt())).thenReturn(Optional.of(grade));
         when(sprintService.getSprintById(anyInt())).thenReturn(new Sprint());
         when(userService.getUserById(anyInt())).thenReturn(new User());
         when(studentService.getStudentById(anyInt())).thenReturn(new Student());
 
         gradeService.updateGrade(1, updatedGrade);
 
-        verify(gradeRepository, times(1)).save(any(Grade.class));
+        InOrder inOrder = inOrder(gradeAggregateService, gradeRepository);
+        inOrder.verify(gradeAggregateService).remove(grade);
+        inOrder.verify(gradeRepository).save(grade);
+        inOrder.verify(gradeAggregateService).add(grade);
     }
 
     @Test
@@ -744,9 +809,10 @@ class GradeServiceTest {
         existingGrade.gradeType(gradeType);
         existingGrade.student(student);
 
-        when(gradeRepository.findAllByAuthorId(grade.authorId())).thenReturn(Collections.singletonList(existingGrade));
+        when(gradeRepository.existsStudentGrade(1, 1, 1, 1)).thenReturn(true);
 
         assertThrows(IllegalArgumentException.class, () -> gradeService.checkForExistingGrade(grade));
+        verify(gradeRepository, never()).findAllByAuthorId(anyInt());
     }
 
     @Test
@@ -774,97 +840,49 @@ class GradeServiceTest {
     void testUpdateImportedMean() {
         Integer projectId = 1;
 
-        // Mock students
-        Student student1 = mock(Student.class);
-        Student student2 = mock(Student.class);
-        when(student1.id()).thenReturn(1);
-        when(student2.id()).thenReturn(2);
-        when(student1.bachelor()).thenReturn(false);
-        when(student2.bachelor()).thenReturn(true); // Bachelor student to be skipped
-        when(studentRepository.findAllByProject(projectId)).thenReturn(List.of(student1, student2));
-
-        // Mock grades
-        Grade grade1 = mock(Grade.class);
-        Grade grade2 = mock(Grade.class);
-        GradeType gradeType1 = mock(GradeType.class);
-        GradeType gradeType2 = mock(GradeType.class);
-        when(grade1.student()).thenReturn(student1);
-        when(grade2.student()).thenReturn(student2);
-        when(grade1.gradeType()).thenReturn(gradeType1);
-        when(grade2.gradeType()).thenReturn(gradeType2);
-        when(gradeType1.imported()).thenReturn(true);
-        when(gradeType1.name()).thenReturn(GradeTypeName.AVERAGE.displayName());
-        when(gradeType2.imported()).thenReturn(true);
-        when(gradeType2.name()).thenReturn("OtherGrade");
-        when(gradeRepository.findAll()).thenReturn(List.of(grade1, grade2));
-
-        // Call the method to test
-        gradeService.updateImportedMean(projectId);
-
-        // Verify methods were called
-        verify(studentRepository).findAllByProject(projectId);
-        verify(gradeRepository).findAll();
-
-    }
-
-    @Test
-    void getGradeByStudentAndGradeTypeShouldReturnGradeWhenExists() {
-        Student student = new Student();
-        student.name("John Doe");
-        GradeType gradeType = new GradeType();
-        gradeType.name("Test Grade");
-        Float expectedGrade = 85.0f;
-
-        when(gradeRepository.findValueByStudentAndGradeType(student, gradeType)).thenReturn(expectedGrade);
+        when(gradeRepository.updateImportedMeansByProject(projectId)).thenReturn(2);
 
-        Float actualGrade = gradeService.getGradeByStudentAndGradeType(student, gradeType);
+        gradeService.updateImportedMean(projectId);
 
-        assertEquals(expectedGrade, actualGrade);
+        verify(gradeRepository, times(1)).updateImportedMeansByProject(projectId);
+        verify(gradeRepository, never()).findAll();
+        verify(gradeRepository, never()).updateImportedMeanByStudentId(anyFloat(), anyInt());
     }
 
     @Test
-    void getGradeByStudentAndGradeTypeShouldReturnNullWhenNoGradeExists() {
-        Student student = new Student();
-        student.name("John Doe");
-        GradeType gradeType = new GradeType();
-        gradeType.name("Test Grade");
+    void recomputeImportedMeansShouldReturnUpdatedRowsAndDuration() {
+        Integer projectId = 1;
 
-        when(gradeRepository.findValueByStudentAndGradeType(student, gradeType)).thenReturn(null);
+        when(gradeRepository.updateImportedMeansByProject(projectId)).thenReturn(3);
 
-        Float actualGrade = gradeService.getGradeByStudentAndGradeType(student, gradeType);
+        RecomputeResult result = gradeService.recomputeImportedMeans(projectId);
 
-        assertNull(actualGrade);
+        assertEquals(projectId, result.projectId());
+        assertEquals(3, result.updatedRows());
+        assertTrue(result.durationMs() >= 0);
     }
 
     @Test
-    void getGradeByStudentAndGradeTypeShouldReturnNullWhenExceptionOccurs() {
-        Student student = new Student();
-        student.name("John Doe");
-        GradeType gradeType = new GradeType();
-        gradeType.name("Test Grade");
+    void getGradesConfirmationShouldReturnFalseWhenAGradeIsNotConfirmed() {
+        Integer sprintId = 1;
+        Integer teamId = 1;
+        Integer projectId = 1;
 
-        when(gradeRepository.findValueByStudentAndGradeType(student, gradeType)).thenThrow(NullPointerException.class);
+        when(gradeRepository.countUnconfirmedByTeam(sprintId, teamId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId)).thenReturn(2L);
 
-        Float actualGrade = gradeService.getGradeByStudentAndGradeType(student, gradeType);
+        Boolean result = gradeService.getGradesConfirmation(sprintId, teamId, projectId);
 
-        assertNull(actualGrade);
+        assertFalse(result);
+        verifyNoInteractions(studentRepository, gradeTypeRepository);
     }
 
     @Test
-    void getGradesConfirmationShouldReturnTrueWhenGradeNotConfirmed() {
+    void getGradesConfirmationShouldReturnTrueWhenEveryGradeIsConfirmed() {
         Integer sprintId = 1;
         Integer teamId = 1;
         Integer projectId = 1;
-        Student student = new Student();
-        student.id(1);
-        GradeType gradeType = new GradeType();
-        gradeType.id(1);
-        Grade grade = new Grade();
-        grade.confirmed(false);
 
-        when(studentRepository.findByTeam(teamId)).thenReturn(Collections.singletonList(student));
-        when(gradeTypeRepository.findByNameAndProjectId(GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId)).thenReturn(gradeType);
-        when(gradeRepository.findIsConfirmedBySprindAndStudent(sprintId, student.id(), gradeType.id())).thenReturn(grade);
+        when(gradeRepository.countUnconfirmedByTeam(sprintId, teamId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId)).thenReturn(0L);
 
         Boolean result = gradeService.getGradesConfirmation(sprintId, teamId, projectId);
 
@@ -897,47 +915,22 @@ class GradeServiceTest {
     }
 
     @Test
-    void setGradesConfirmationShouldReturnTrueWhenGradesExistAndAreNotConfirmed() {
+    void setGradesConfirmationShouldConfirmTheWholeTeamWithOneUpdate() {
         Integer sprintId = 1;
         Integer teamId = 1;
         Integer projectId = 1;
-        Student student = new Student();
-        student.id(1);
-        GradeType gradeType = new GradeType();
-        gradeType.id(1);
-        Grade grade = new Grade();
-        grade.confirmed(false);
 
-        when(studentRepository.findByTeam(teamId)).thenReturn(Collections.singletonList(student));
-        when(gradeTypeRepository.findByNameAndProjectId(GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId)).thenReturn(gradeType);
-        when(gradeRepository.findIsConfirmedBySprindAndStudents(sprintId, student.id(), gradeType.id())).thenReturn(Collections.singletonList(grade));
+        when(gradeRepository.confirmAllByTeam(sprintId, teamId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId)).thenReturn(5);
 
-        Boolean result = gradeService.setGradesConfirmation(sprintId, teamId, projectId);
+        ConfirmationResult result = gradeService.setGradesConfirmation(sprintId, teamId, projectId);
 
-        assertTrue(result);
-        verify(gradeRepository, times(1)).setConfirmedBySprintAndStudent(grade.id());
+        assertEquals(sprintId, result.sprintId());
+        assertEquals(teamId, result.teamId());
+        assertEquals(5, result.confirmedGrades());
+        verify(gradeRepository, times(1)).confirmAllByTeam(sprintId, teamId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId);
+        verify(eventPublisher, times(1)).publishEvent(new GradeEvent(GradeEventType.CONFIRMATION, sprintId, teamId, null));
+        verifyNoInteractions(studentRepository, gradeTypeRepository);
     }
 
-    @Test
-    void setGradesConfirmationShouldReturnTrueWhenGradesExistAndAreConfirmed() {
-        Integer sprintId = 1;
-        Integer teamId = 1;
-        Integer projectId = 1;
-        Student student = new Student();
-        student.id(1);
-        GradeType gradeType = new GradeType();
-        gradeType.id(1);
-        Grade grade = new Grade();
-        grade.confirmed(true);
-
-        when(studentRepository.findByTeam(teamId)).thenReturn(Collections.singletonList(student));
-        when(gradeTypeRepository.findByNameAndProjectId(GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName(), projectId)).thenReturn(gradeType);
-        when(gradeRepository.findIsConfirmedBySprindAndStudents(sprintId, student.id(), gradeType.id())).thenReturn(Collections.singletonList(grade));
-
-        Boolean result = gradeService.setGradesConfirmation(sprintId, teamId, projectId);
-
-        assertTrue(result);
-        verify(gradeRepository, never()).setConfirmedBySprintAndStudent(anyInt());
-    }
 
 }
\ No newline at end of file
@@ -1,6 +1,5 @@
 package fr.eseo.tauri.unit.service;
 
-import com.opencsv.exceptions.CsvValidationException;
 import fr.eseo.tauri.exception.EmptyResourceException;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.GradeType;
@@ -18,9 +17,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -220,29 +217,6 @@ class GradeTypeServiceTest {
         assertEquals(project, result.project());
     }
 
-    @Test
-    void createGradeTypesFromCSVShouldReturnGradeTypesWhenAuthorized() throws IOException, CsvValidationException {
-        InputStream inputStream = new ByteArrayInputStream("1.0,2.0,3.0\nType1,Type2,Type3".getBytes());
-
-        List<GradeType> result = gradeTypeService.createGradeTypesFromCSV(inputStream);
-
-        assertEquals(4, result.size()); // 3 types + 1 average
-    }
-
-    @Test
-    void createGradeTypesFromCSVShouldThrowEmptyResourceExceptionWhenCoefficientsEmpty() {
-        InputStream inputStream = new ByteArrayInputStream("\nType1,Type2,Type3".getBytes());
-
-        assertThrows(EmptyResourceException.class, () -> gradeTypeService.createGradeTypesFromCSV(inputStream));
-    }
-
-    @Test
-    void createGradeTypesFromCSVShouldThrowEmptyResourceExceptionWhenNamesEmpty() {
-        InputStream inputStream = new ByteArrayInputStream("1.0,2.0,3.0\n".getBytes());
-
-        assertThrows(EmptyResourceException.class, () -> gradeTypeService.createGradeTypesFromCSV(inputStream));
-    }
-
     @Test
     void processLineForCoefficientsShouldReturnCorrectStartingIndexAndFillCoefficients() {
         String[] nextLine = {"Not a number", "2.0", "3.0", "4.0"};
@@ -5,6 +5,7 @@ import fr.eseo.tauri.model.Permission;
 import fr.eseo.tauri.model.enumeration.PermissionType;
 import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.PermissionRepository;
+import fr.eseo.tauri.repository.UserRepository;
 import fr.eseo.tauri.service.PermissionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -13,10 +14,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.time.Instant;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,6 +26,9 @@ class PermissionsServiceTest {
     @Mock
     private PermissionRepository permissionRepository;
 
+    @Mock
+    private UserRepository userRepository;
+
     @InjectMocks
     private PermissionService permissionService;
 
@@ -172,4 +174,82 @@ class PermissionsServiceTest {
 
         assertThrows(ResourceNotFoundException.class, () -> permissionService.updatePermission(id, updatedPermission));
     }
+
+    @Test
+    void hasPermissionShouldLoadThePermissionsOnlyOnce() {
+        when(permissionRepository.findAll()).thenReturn(List.of(permission(RoleType.TEAM_MEMBER, PermissionType.VIEW_TEAM_GRADE)));
+
+        assertTrue(permissionService.hasPermission(RoleType.TEAM_MEMBER, PermissionType.VIEW_TEAM_GRADE));
+        assertFalse(permissionService.hasPermission(RoleType.TEAM_MEMBER, PermissionType.DELETE_PROJECT));
+        assertFalse(permissionService.hasPermission(RoleType.JURY_MEMBER, PermissionType.VIEW_TEAM_GRADE));
+
+        verify(permissionRepository, times(1)).findAll();
+    }
+
+    @Test
+    void getPermissionTypesByRolesShouldMergeThePermissionsOfTheRoles() {
+        when(permissionRepository.findAll()).thenReturn(List.of(
+                permission(RoleType.TEAM_MEMBER, PermissionType.VIEW_TEAM_GRADE),
+                permission(RoleType.OPTION_STUDENT, PermissionType.VIEW_TEAMS),
+                permission(RoleType.OPTION_STUDENT, PermissionType.VIEW_TEAM_GRADE)));
+
+        Set<PermissionType> result = permissionService.getPermissionTypesByRoles(List.of(RoleType.TEAM_MEMBER, RoleType.OPTION_STUDENT));
+
+        assertEquals(EnumSet.of(PermissionType.VIEW_TEAM_GRADE, PermissionType.VIEW_TEAMS), result);
+    }
+
+    @Test
+    void createPermissionShouldRefreshTheLoadedPermissions() {
+        Permission permission = permission(RoleType.JURY_MEMBER, PermissionType.VIEW_TEAMS);
+        when(permissionRepository.findAll()).thenReturn(List.of()).thenReturn(List.of(permission));
+
+        assertFalse(permissionService.hasPermission(RoleType.JURY_MEMBER, PermissionType.VIEW_TEAMS));
+        permissionService.createPermission(permission);
+
+        assertTrue(permissionService.hasPermission(RoleType.JURY_MEMBER, PermissionType.VIEW_TEAMS));
+        verify(permissionRepository, times(2)).findAll();
+    }
+
+    private static Permission permission(RoleType roleType, PermissionType permissionType) {
+        Permission permission = new Permission();
+        permission.role(roleType);
+        permission.type(permissionType);
+        return permission;
+    }
+
+    @Test
+    void haveRolesChangedSinceShouldRejectOnlyTheTokensIssuedBeforeTheChange() {
+        Instant before = Instant.now().minusSeconds(60);
+
+        assertFalse(permissionService.haveRolesChangedSince(1, before));
+        permissionService.markRolesChanged(List.of(1));
+
+        assertTrue(permissionService.haveRolesChangedSince(1, before));
+        assertFalse(permissionService.haveRolesChangedSince(2, before));
+        assertFalse(permissionService.haveRolesChangedSince(1, Instant.now().plusSeconds(1)));
+
+        permissionService.markAllRolesChanged();
+        assertTrue(permissionService.haveRolesChangedSince(2, before));
+    }
+
+    @Test
+    void markRolesChangedShouldStoreTheChangeOnTheUsers() {
+        permissionService.markRolesChanged(List.of(1, 2));
+        permissionService.markAllRolesChanged();
+
+        verify(userRepository, times(1)).updateRolesChangedAt(eq(List.of(1, 2)), any(Instant.class));
+        verify(userRepository, times(1)).updateAllRolesChangedAt(any(Instant.class));
+    }
+
+    @Test
+    void loadRolesChangesShouldRejectTheTokensIssuedBeforeAStoredChange() {
+        Instant before = Instant.now().minusSeconds(60);
+        when(userRepository.findRolesChangedAfter(any(Instant.class))).thenReturn(List.<Object[]>of(new Object[]{1, Instant.now().minusSeconds(10)}));
+
+        permissionService.loadRolesChanges();
+
+        assertTrue(permissionService.haveRolesChangedSince(1, before));
+        assertFalse(permissionService.haveRolesChangedSince(2, before));
+    }
+
 }
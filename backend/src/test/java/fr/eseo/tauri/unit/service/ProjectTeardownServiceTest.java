@@ -0,0 +1,109 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.model.ProjectTeardownResult;
+import fr.eseo.tauri.repository.GradeTypeRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.repository.TeamRepository;
+import fr.eseo.tauri.service.AuthService;
+import fr.eseo.tauri.service.PermissionService;
+import fr.eseo.tauri.service.ProjectTeardownService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@Nested
+class ProjectTeardownServiceTest {
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private TeamRepository teamRepository;
+
+    @Mock
+    private GradeTypeRepository gradeTypeRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private AuthService authService;
+
+    @Mock
+    private PermissionService permissionService;
+
+    @InjectMocks
+    private ProjectTeardownService projectTeardownService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // The callbacks are run right away, as if each one had its own transaction
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> invocation.getArgument(0, TransactionCallback.class).doInTransaction(null));
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void deleteStudentsAndTeamsShouldDeleteTheStudentsByChunks() {
+        List<Integer> studentIds = IntStream.rangeClosed(1, 1200).boxed().toList();
+        when(studentRepository.findAllIdsByProject(1)).thenReturn(studentIds);
+        when(studentRepository.deleteAllWithDependents(anyList())).thenAnswer(invocation -> invocation.getArgument(0, List.class).size() * 2);
+        when(teamRepository.deleteAllTeamGradesByProject(1)).thenReturn(3);
+        when(gradeTypeRepository.deleteAllImportedByProject(1)).thenReturn(4);
+        when(teamRepository.deleteAllByProject(1)).thenReturn(5);
+
+        ProjectTeardownResult result = projectTeardownService.deleteStudentsAndTeams(1);
+
+        verify(studentRepository, times(1)).deleteAllWithDependents(studentIds.subList(0, 500));
+        verify(studentRepository, times(1)).deleteAllWithDependents(studentIds.subList(500, 1000));
+        verify(studentRepository, times(1)).deleteAllWithDependents(studentIds.subList(1000, 1200));
+        verify(transactionTemplate, times(3)).execute(any());
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+        verify(studentRepository, never()).deleteById(any());
+        verify(authService, times(1)).forgetAllUsers();
+        verify(permissionService, times(1)).markRolesChanged(studentIds.subList(0, 500));
+        verify(permissionService, times(1)).markRolesChanged(studentIds.subList(1000, 1200));
+        InOrder inOrder = inOrder(studentRepository, permissionService);
+        inOrder.verify(studentRepository).deleteAllWithDependents(studentIds.subList(0, 500));
+        inOrder.verify(permissionService).markRolesChanged(studentIds.subList(0, 500));
+
+        assertEquals(1200, result.nbStudents());
+        assertEquals(3, result.nbChunks());
+        assertEquals(5, result.nbTeams());
+        assertEquals(2400 + 3 + 4 + 5, result.deletedRows());
+    }
+
+    @Test
+    void deleteStudentsAndTeamsShouldStillDeleteTheTeamsOfAProjectWithoutStudents() {
+        when(studentRepository.findAllIdsByProject(1)).thenReturn(List.of());
+
+        ProjectTeardownResult result = projectTeardownService.deleteStudentsAndTeams(1);
+
+        verify(studentRepository, never()).deleteAllWithDependents(anyList());
+        verify(teamRepository, times(1)).deleteAllByProject(1);
+        verify(gradeTypeRepository, times(1)).deleteAllImportedByProject(1);
+        verify(gradeTypeRepository, never()).deleteAllImported();
+        verifyNoInteractions(authService, permissionService);
+        assertEquals(0, result.nbChunks());
+    }
+
+}
@@ -0,0 +1,133 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.model.RefreshToken;
+import fr.eseo.tauri.model.User;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.repository.RefreshTokenRepository;
+import fr.eseo.tauri.security.JwtTokenUtil;
+import fr.eseo.tauri.service.PermissionService;
+import fr.eseo.tauri.service.RefreshTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@Nested
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private PermissionService permissionService;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(refreshTokenService, "refreshExpiration", 60_000L);
+    }
+
+    @Test
+    void issueShouldStoreOnlyTheHashOfTheTokenWithTheRolesOfTheUser() {
+        User user = new User();
+
+        String token = refreshTokenService.issue(user, List.of(RoleType.TEAM_MEMBER, RoleType.OPTION_STUDENT));
+
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository, times(1)).save(saved.capture());
+        assertEquals(JwtTokenUtil.hash(token), saved.getValue().tokenHash());
+        assertNotEquals(token, saved.getValue().tokenHash());
+        assertSame(user, saved.getValue().user());
+        assertEquals(List.of(RoleType.TEAM_MEMBER, RoleType.OPTION_STUDENT), RefreshTokenService.readRoles(saved.getValue()));
+        assertTrue(saved.getValue().expiresAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void issueShouldGiveADifferentTokenEachTime() {
+        User user = new User();
+
+        assertNotEquals(refreshTokenService.issue(user, List.of()), refreshTokenService.issue(user, List.of()));
+    }
+
+    @Test
+    void consumeShouldDeleteTheToken() {
+        RefreshToken refreshToken = refreshToken(Instant.now().plusSeconds(60));
+        when(refreshTokenRepository.findByTokenHash(JwtTokenUtil.hash("token"))).thenReturn(Optional.of(refreshToken));
+        when(refreshTokenRepository.deleteAndCountById(1)).thenReturn(1);
+
+        assertSame(refreshToken, refreshTokenService.consume("token"));
+        verify(refreshTokenRepository, times(1)).deleteAndCountById(1);
+    }
+
+    @Test
+    void consumeShouldRejectATokenAlreadyUsed() {
+        when(refreshTokenRepository.findByTokenHash(any())).thenReturn(Optional.of(refreshToken(Instant.now().plusSeconds(60))));
+        when(refreshTokenRepository.deleteAndCountById(1)).thenReturn(0);
+
+        assertThrows(SecurityException.class, () -> refreshTokenService.consume("token"));
+    }
+
+    @Test
+    void consumeShouldRejectAnExpiredOrUnknownToken() {
+        when(refreshTokenRepository.findByTokenHash(JwtTokenUtil.hash("expired"))).thenReturn(Optional.of(refreshToken(Instant.now().minusSeconds(1))));
+        when(refreshTokenRepository.deleteAndCountById(1)).thenReturn(1);
+
+        assertThrows(SecurityException.class, () -> refreshTokenService.consume("expired"));
+        assertThrows(SecurityException.class, () -> refreshTokenService.consume("unknown"));
+        assertThrows(SecurityException.class, () -> refreshTokenService.consume(null));
+    }
+
+    @Test
+    void deleteExpiredTokensShouldDeleteTheTokensExpiredByNow() {
+        Instant before = Instant.now();
+
+        refreshTokenService.deleteExpiredTokens();
+
+        ArgumentCaptor<Instant> now = ArgumentCaptor.forClass(Instant.class);
+        verify(refreshTokenRepository, times(1)).deleteAllExpired(now.capture());
+        assertFalse(now.getValue().isBefore(before));
+    }
+
+    @Test
+    void forgetRolesShouldAlsoRejectTheAccessTokensIssuedBefore() {
+        refreshTokenService.forgetRoles(List.of(3, 4));
+
+        verify(refreshTokenRepository, times(1)).forgetRolesByUsers(List.of(3, 4));
+        verify(permissionService, times(1)).markRolesChanged(List.of(3, 4));
+    }
+
+    @Test
+    void readRolesShouldGiveNullOnceTheRolesHaveBeenForgotten() {
+        RefreshToken refreshToken = refreshToken(Instant.now());
+
+        assertNull(RefreshTokenService.readRoles(refreshToken));
+        refreshToken.roles("");
+        assertEquals(List.of(), RefreshTokenService.readRoles(refreshToken));
+    }
+
+    private static RefreshToken refreshToken(Instant expiresAt) {
+        User user = new User();
+        user.id(2);
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.id(1);
+        refreshToken.user(user);
+        refreshToken.expiresAt(expiresAt);
+        return refreshToken;
+    }
+
+}
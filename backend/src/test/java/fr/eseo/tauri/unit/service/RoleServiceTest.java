@@ -6,6 +6,7 @@ import fr.eseo.tauri.model.enumeration.PermissionType;
 import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.*;
 import fr.eseo.tauri.service.PermissionService;
+import fr.eseo.tauri.service.RefreshTokenService;
 import fr.eseo.tauri.service.RoleService;
 import fr.eseo.tauri.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
@@ -47,6 +48,9 @@ class RoleServiceTest {
     @Mock
     private GradeRepository gradeRepository;
 
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
     @InjectMocks
     private RoleService roleService;
 
@@ -127,15 +131,27 @@ class RoleServiceTest {
         roleService.deleteAllRoles();
 
         verify(roleRepository, times(1)).deleteAll();
+        verify(refreshTokenService, times(1)).forgetAllRoles();
+    }
+
+    @Test
+    void deleteRoleByIdShouldForgetTheRolesStoredWithTheRefreshTokensOfTheUser() {
+        User user = new User();
+        Role role = new Role();
+        role.user(user);
+
+        when(roleRepository.findById(1)).thenReturn(Optional.of(role));
+
+        roleService.deleteRoleById(1);
+
+        verify(refreshTokenService, times(1)).forgetRoles(user);
     }
 
     @Test
     void hasPermissionShouldReturnFalseWhenPermissionDoesNotExist() {
         RoleType roleType = RoleType.OPTION_LEADER;
         PermissionType permissionType = PermissionType.ADD_GRADE_COMMENT;
-        List<Permission> permissions = List.of(new Permission());
-
-        when(permissionService.getAllPermissionsByRole(roleType)).thenReturn(permissions);
+        when(permissionService.hasPermission(roleType, permissionType)).thenReturn(false);
 
         Boolean result = roleService.hasPermission(roleType, permissionType);
 
@@ -0,0 +1,187 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.exception.ResourceNotFoundException;
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.Team;
+import fr.eseo.tauri.model.TeamSprintGrades;
+import fr.eseo.tauri.model.enumeration.GradeTypeName;
+import fr.eseo.tauri.repository.BonusRepository;
+import fr.eseo.tauri.repository.GradeRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.repository.TeamRepository;
+import fr.eseo.tauri.service.SprintGradeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class SprintGradeServiceTest {
+
+    private static final String GTP = GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName();
+    private static final String IP = GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName();
+
+    @Mock
+    private TeamRepository teamRepository;
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private GradeRepository gradeRepository;
+
+    @Mock
+    private BonusRepository bonusRepository;
+
+    @InjectMocks
+    private SprintGradeService sprintGradeService;
+
+    private final List<Student> students = List.of(student(1), student(2));
+
+    @BeforeEach
+    void init_mocks() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void getTeamSprintGradesShouldThrowResourceNotFoundExceptionWhenTeamDoesNotExist() {
+        when(teamRepository.existsById(1)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class, () -> sprintGradeService.getTeamSprintGrades(1, 1));
+        verifyNoInteractions(gradeRepository, bonusRepository);
+    }
+
+    @Test
+    void getTeamSprintGradesShouldUseAFixedNumberOfQueries() {
+        when(teamRepository.existsById(1)).thenReturn(true);
+        when(studentRepository.findByTeam(1)).thenReturn(students);
+        when(gradeRepository.findTeamAveragesByGradeType(1, 1)).thenReturn(List.<Object[]>of(new Object[]{"Solution", 14.0}, new Object[]{GTP, 15.0}));
+        when(gradeRepository.findStudentAveragesByTeam(1, 1, IP)).thenReturn(List.<Object[]>of(new Object[]{1, 16.0}, new Object[]{2, 17.0}));
+        when(bonusRepository.findBonusSumsByTeam(1, 1)).thenReturn(List.<Object[]>of(new Object[]{1, 2.0}));
+
+        TeamSprintGrades result = sprintGradeService.getTeamSprintGrades(1, 1);
+
+        assertEquals(List.of(1, 2), result.studentIds());
+        assertEquals(14.0, result.teamGrade());
+        assertEquals(0.7*16.0 + 0.3*(47.0/3), result.sprintGrades().get(0), 1e-9);
+        assertEquals(0.7*14.0 + 0.3*(49.0/3), result.sprintGrades().get(1), 1e-9);
+        verify(gradeRepository, times(1)).findTeamAveragesByGradeType(1, 1);
+        verify(gradeRepository, times(1)).findStudentAveragesByTeam(1, 1, IP);
+        verify(bonusRepository, times(1)).findBonusSumsByTeam(1, 1);
+        verifyNoMoreInteractions(gradeRepository, bonusRepository);
+    }
+
+    @Test
+    void computeTeamSprintGradesShouldWeightIndividualGradeWhenBothGradesExist() {
+        TeamSprintGrades result = sprintGradeService.computeTeamSprintGrades(1, students, Map.of(GTP, 15.0), Map.of(1, 16.0, 2, 17.0), Map.of());
+
+        assertEquals(47.0/3, result.individualGrades().get(0), 1e-9);
+        assertEquals(49.0/3, result.individualGrades().get(1), 1e-9);
+    }
+
+    @Test
+    void computeTeamSprintGradesShouldReturnTeamGradeWhenIndividualGradesDoNotExist() {
+        TeamSprintGrades result = sprintGradeService.computeTeamSprintGrades(1, students, Map.of(GTP, 15.0), Map.of(), Map.of());
+
+        assertEquals(List.of(15.0, 15.0), result.individualGrades());
+    }
+
+    @Test
+    void computeTeamSprintGradesShouldReturnIndividualGradesWhenTeamGradeDoesNotExist() {
+        TeamSprintGrades result = sprintGradeService.computeTeamSprintGrades(1, students, Map.of(), Map.of(1, 16.0, 2, 17.0), Map.of());
+
+        assertEquals(List.of(16.0, 17.0), result.individualGrades());
+    }
+
+    @Test
+    void computeTeamSprintGradesShouldCapTeamGradeWithBonusesAtTwenty() {
+        TeamSprintGrades result = sprintGradeService.computeTeamSprintGrades(1, students, Map.of("Solution", 18.0), Map.of(1, 10.0, 2, 10.0), Map.of(1, 5.0));
+
+        assertEquals(17.0, result.sprintGrades().get(0), 1e-9);
+        assertEquals(0.7*18.0 + 3.0, result.sprintGrades().get(1), 1e-9);
+    }
+
+    @Test
+    void computeTeamSprintGradesShouldCombineTheRoundedTeamAndIndividualGrades() {
+        TeamSprintGrades result = sprintGradeService.computeTeamSprintGrades(1, students, Map.of("Solution", 10.0049), Map.of(1, 10.0149, 2, 10.0149), Map.of());
+
+        assertEquals(10.0049, result.teamGrade(), 1e-9);
+        assertEquals(10.0149, result.individualGrades().get(0), 1e-9);
+        assertEquals(0.7*10.0 + 0.3*10.01, result.sprintGrades().get(0), 1e-9);
+    }
+
+    @Test
+    void computeTeamSprintGradesShouldIgnoreGlobalTeamPerformanceInTeamGrade() {
+        TeamSprintGrades result = sprintGradeService.computeTeamSprintGrades(1, students, Map.of("Solution", 12.0, "Conception", 16.0, GTP, 4.0), Map.of(), Map.of());
+
+        assertEquals(14.0, result.teamGrade());
+    }
+
+    @Test
+    void getStudentSprintGradeShouldReturnTheGradeOfTheStudentInItsTeam() {
+        when(teamRepository.findByStudentId(2)).thenReturn(new Team().id(1));
+        when(teamRepository.existsById(1)).thenReturn(true);
+        when(studentRepository.findByTeam(1)).thenReturn(students);
+        when(gradeRepository.findTeamAveragesByGradeType(1, 1)).thenReturn(List.<Object[]>of(new Object[]{"Solution", 20.0}));
+        when(gradeRepository.findStudentAveragesByTeam(1, 1, IP)).thenReturn(List.<Object[]>of(new Object[]{1, 10.0}, new Object[]{2, 15.0}));
+        when(bonusRepository.findBonusSumsByTeam(1, 1)).thenReturn(List.of());
+
+        assertEquals(18.5, sprintGradeService.getStudentSprintGrade(2, 1), 1e-9);
+        assertEquals(15.0, sprintGradeService.getStudentIndividualTotalGrade(2, 1), 1e-9);
+    }
+
+    @Test
+    void getProjectSprintGradesShouldComputeEveryTeamOfTheProjectFromProjectScopedQueries() {
+        Team team1 = new Team().id(1);
+        Team team2 = new Team().id(2);
+        Student student1 = student(1);
+        student1.team(team1);
+        Student student2 = student(2);
+        student2.team(team2);
+
+        when(teamRepository.findAllByProject(1)).thenReturn(List.of(team1, team2));
+        when(studentRepository.findAllWithTeamByProject(1)).thenReturn(List.of(student1, student2));
+        when(gradeRepository.findTeamAveragesByGradeTypeForProject(1, 1)).thenReturn(List.<Object[]>of(new Object[]{1, "Solution", 10.0}, new Object[]{2, "Solution", 20.0}));
+        when(gradeRepository.findStudentAveragesByProject(1, 1, IP)).thenReturn(List.<Object[]>of(new Object[]{1, 10.0}, new Object[]{2, 20.0}));
+        when(bonusRepository.findBonusSumsByProject(1, 1)).thenReturn(List.of());
+
+        List<TeamSprintGrades> result = sprintGradeService.getProjectSprintGrades(1, 1);
+
+        assertEquals(2, result.size());
+        assertEquals(1, result.get(0).teamId());
+        assertEquals(List.of(10.0), result.get(0).sprintGrades());
+        assertEquals(2, result.get(1).teamId());
+        assertEquals(List.of(20.0), result.get(1).sprintGrades());
+        verify(teamRepository, never()).findAll();
+        verify(studentRepository, never()).findByTeam(anyInt());
+    }
+
+    @Test
+    void getProjectSprintGradesShouldReturnEmptyListWhenProjectHasNoTeam() {
+        when(teamRepository.findAllByProject(1)).thenReturn(List.of());
+
+        assertTrue(sprintGradeService.getProjectSprintGrades(1, 1).isEmpty());
+        verifyNoInteractions(gradeRepository, bonusRepository);
+    }
+
+    @Test
+    void getStudentSprintGradeShouldThrowResourceNotFoundExceptionWhenStudentHasNoTeam() {
+        when(teamRepository.findByStudentId(1)).thenReturn(null);
+
+        assertThrows(ResourceNotFoundException.class, () -> sprintGradeService.getStudentSprintGrade(1, 1));
+    }
+
+    private static Student student(int id) {
+        Student student = new Student();
+        student.id(id);
+        return student;
+    }
+
+}
@@ -3,12 +3,15 @@ package fr.eseo.tauri.unit.service;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.model.enumeration.SprintEndType;
+import fr.eseo.tauri.repository.BonusRepository;
 import fr.eseo.tauri.repository.CommentRepository;
+import fr.eseo.tauri.repository.PresentationOrderRepository;
 import fr.eseo.tauri.repository.SprintRepository;
 import fr.eseo.tauri.service.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -35,10 +38,10 @@ class SprintServiceTest {
     private StudentService studentService;
 
     @Mock
-    private PresentationOrderService presentationOrderService;
+    private PresentationOrderRepository presentationOrderRepository;
 
     @Mock
-    private BonusService bonusService;
+    private BonusRepository bonusRepository;
 
     @Mock
     private TeamService teamService;
@@ -152,9 +155,12 @@ class SprintServiceTest {
         sprintService.createSprint(sprint, sprintId);
 
         verify(sprintRepository, times(1)).save(sprint);
+        verify(presentationOrderRepository, never()).insertAll(anyList());
+        verify(bonusRepository, never()).insertAll(anyList());
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void createSprintTest() {
         int sprintId = 1;
         Sprint sprint = new Sprint();
@@ -164,32 +170,50 @@ class SprintServiceTest {
         project.id(1);
         sprint.project(project);
 
-        Student student1 = new Student();
-        student1.id(1);
         Team team1 = new Team();
         team1.id(1);
+        Team team2 = new Team();
+        team2.id(2);
+
+        Student student1 = new Student();
+        student1.id(1);
         student1.team(team1);
 
         Student student2 = new Student();
         student2.id(2);
-        Team team2 = new Team();
-        team2.id(2);
         student2.team(team2);
 
-        List<Student> students = List.of(student1, student2);
-        List<Team> teams = List.of(team1, team2);
+        Student student3 = new Student();
+        student3.id(3);
+        student3.team(team1);
+
+        // A student without a team gets a presentation order without a value
+        Student student4 = new Student();
+        student4.id(4);
+
+        List<Student> students = List.of(student1, student2, student3, student4);
 
         when(projectService.getProjectById(sprint.projectId())).thenReturn(project);
         when(studentService.getAllStudentsByProject(sprint.projectId())).thenReturn(students);
-        when(teamService.getAllTeamsByProject(sprint.projectId())).thenReturn(teams);
 
-        sprintService.createSprint(sprint, sprintId);
+        SprintCreationResult result = sprintService.createSprint(sprint, sprintId);
 
         verify(sprintRepository, times(1)).save(sprint);
-        verify(presentationOrderService, times(2)).createPresentationOrder(any(PresentationOrder.class));
-        verify(bonusService, times(4)).createBonus(any(Bonus.class));
         verify(studentService, times(1)).getAllStudentsByProject(sprint.projectId());
-        verify(teamService, times(1)).getAllTeamsByProject(sprint.projectId());
+        verifyNoInteractions(teamService);
+
+        ArgumentCaptor<List<PresentationOrder>> presentationOrders = ArgumentCaptor.forClass(List.class);
+        verify(presentationOrderRepository, times(1)).insertAll(presentationOrders.capture());
+        assertEquals(Arrays.asList(0, 0, 1, null), presentationOrders.getValue().stream().map(PresentationOrder::value).toList());
+
+        ArgumentCaptor<List<Bonus>> bonuses = ArgumentCaptor.forClass(List.class);
+        verify(bonusRepository, times(1)).insertAll(bonuses.capture());
+        assertEquals(8, bonuses.getValue().size());
+        assertEquals(4, bonuses.getValue().stream().filter(Bonus::limited).count());
+
+        assertEquals(4, result.nbStudents());
+        assertEquals(4, result.nbPresentationOrders());
+        assertEquals(8, result.nbBonuses());
     }
 
     @Test
@@ -325,6 +349,63 @@ class SprintServiceTest {
         assertNull(result);
     }
 
+    @Test
+    void getCurrentSprintShouldResolveTheSprintOncePerDay() {
+        Integer projectId = 1;
+        Sprint sprint1 = new Sprint();
+        sprint1.id(1);
+        sprint1.startDate(LocalDate.now().minusDays(1));
+        sprint1.endDate(LocalDate.now().plusDays(1));
+        Sprint reloadedSprint1 = new Sprint();
+        reloadedSprint1.id(1);
+
+        when(sprintRepository.findAllByProject(projectId)).thenReturn(List.of(sprint1));
+        when(sprintRepository.findById(1)).thenReturn(Optional.of(reloadedSprint1));
+
+        assertSame(sprint1, sprintService.getCurrentSprint(projectId));
+        // Only the id is kept, the sprint is read again rather than shared between the callers
+        assertSame(reloadedSprint1, sprintService.getCurrentSprint(projectId));
+
+        verify(sprintRepository, times(1)).findAllByProject(projectId);
+        verify(sprintRepository, times(1)).findById(1);
+    }
+
+    @Test
+    void getCurrentSprintShouldRememberThatAProjectHasNoSprint() {
+        Integer projectId = 1;
+
+        when(sprintRepository.findAllByProject(projectId)).thenReturn(List.of());
+
+        assertNull(sprintService.getCurrentSprint(projectId));
+        assertNull(sprintService.getCurrentSprint(projectId));
+
+        verify(sprintRepository, times(1)).findAllByProject(projectId);
+        verify(sprintRepository, never()).findById(any());
+    }
+
+    @Test
+    void getCurrentSprintShouldResolveTheSprintAgainAfterAnUpdate() {
+        Integer projectId = 1;
+        Project project = new Project();
+        project.id(projectId);
+        Sprint sprint1 = new Sprint();
+        sprint1.id(1);
+        sprint1.project(project);
+        sprint1.startDate(LocalDate.now().minusDays(1));
+        sprint1.endDate(LocalDate.now().plusDays(1));
+        Sprint updatedSprint = new Sprint();
+        updatedSprint.endDate(LocalDate.now().minusDays(1));
+
+        when(sprintRepository.findAllByProject(projectId)).thenReturn(List.of(sprint1));
+        when(sprintRepository.findById(1)).thenReturn(Optional.of(sprint1));
+
+        sprintService.getCurrentSprint(projectId);
+        sprintService.updateSprint(1, updatedSprint);
+        sprintService.getCurrentSprint(projectId);
+
+        verify(sprintRepository, times(2)).findAllByProject(projectId);
+    }
+
     @Test
     void deleteSprintShouldDeleteSprintAndReorderWhenSprintOrderIsGreater() {
         Integer id = 1;
@@ -0,0 +1,132 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.exception.EmptyResourceException;
+import fr.eseo.tauri.model.ImportJob;
+import fr.eseo.tauri.model.StudentImportResult;
+import fr.eseo.tauri.model.enumeration.ImportJobStatus;
+import fr.eseo.tauri.service.StudentImportJobService;
+import fr.eseo.tauri.service.StudentImportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@Nested
+class StudentImportJobServiceTest {
+
+    @Mock
+    private StudentImportService studentImportService;
+
+    @InjectMocks
+    private StudentImportJobService studentImportJobService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    void tearDown() {
+        studentImportJobService.shutdown();
+    }
+
+    @Test
+    void submitShouldThrowEmptyResourceExceptionWhenFileIsEmpty() {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.isEmpty()).thenReturn(true);
+
+        assertThrows(EmptyResourceException.class, () -> studentImportJobService.submit(file, 1));
+        verifyNoInteractions(studentImportService);
+    }
+
+    @Test
+    void submitShouldRunTheImportInTheBackgroundAndReportItsResult() throws Exception {
+        StudentImportResult importResult = new StudentImportResult(1, 2, 4, 0, 0, 1L, 1L, 1L, 0L, 3L);
+        when(studentImportService.importStudents(any(InputStream.class), eq(1), any(AtomicInteger.class))).thenAnswer(invocation -> {
+            invocation.getArgument(2, AtomicInteger.class).addAndGet(2);
+            return importResult;
+        });
+
+        ImportJob submitted = studentImportJobService.submit(file(), 1);
+        ImportJob job = awaitEnd(submitted.jobId());
+
+        assertEquals(ImportJobStatus.SUCCEEDED, job.status());
+        assertEquals(2, job.processedRows());
+        assertEquals(List.of(), job.errors());
+        assertSame(importResult, job.result());
+        // Without a job id, the last import of the project is given
+        assertEquals(submitted.jobId(), studentImportJobService.getJob(1, null).jobId());
+    }
+
+    @Test
+    void submitShouldReportTheErrorOfAFailedImport() throws Exception {
+        when(studentImportService.importStudents(any(InputStream.class), eq(1), any(AtomicInteger.class)))
+                .thenThrow(new IllegalArgumentException("Line 3 has more grades than grade types"));
+
+        ImportJob job = awaitEnd(studentImportJobService.submit(file(), 1).jobId());
+
+        assertEquals(ImportJobStatus.FAILED, job.status());
+        assertEquals(List.of("Line 3 has more grades than grade types"), job.errors());
+        assertNull(job.result());
+    }
+
+    @Test
+    void submitShouldRejectASecondImportOfTheSameProjectUntilTheFirstIsOver() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(studentImportService.importStudents(any(InputStream.class), any(), any(AtomicInteger.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+
+        String jobId = studentImportJobService.submit(file(), 1).jobId();
+        MultipartFile secondFile = file();
+
+        assertThrows(IllegalArgumentException.class, () -> studentImportJobService.submit(secondFile, 1));
+        assertNotNull(studentImportJobService.submit(file(), 2).jobId());
+
+        release.countDown();
+        awaitEnd(jobId);
+        assertNotNull(studentImportJobService.submit(file(), 1).jobId());
+    }
+
+    @Test
+    void getJobShouldRejectTheJobOfAnotherProject() throws Exception {
+        String jobId = studentImportJobService.submit(file(), 1).jobId();
+
+        assertThrows(IllegalArgumentException.class, () -> studentImportJobService.getJob(2, jobId));
+        assertThrows(IllegalArgumentException.class, () -> studentImportJobService.getJob(1, "unknown"));
+    }
+
+    private static MultipartFile file() throws Exception {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.isEmpty()).thenReturn(false);
+        when(file.getBytes()).thenReturn(",,,,1\n,,,,Maths\n".getBytes());
+        return file;
+    }
+
+    private ImportJob awaitEnd(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        ImportJob job = studentImportJobService.getJob(1, jobId);
+        while ((job.status() == ImportJobStatus.PENDING || job.status() == ImportJobStatus.RUNNING) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            job = studentImportJobService.getJob(1, jobId);
+        }
+        return job;
+    }
+
+}
@@ -0,0 +1,166 @@
+package fr.eseo.tauri.unit.service;
+
+import com.opencsv.exceptions.CsvValidationException;
+import fr.eseo.tauri.exception.EmptyResourceException;
+import fr.eseo.tauri.model.*;
+import fr.eseo.tauri.model.enumeration.Gender;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.repository.*;
+import fr.eseo.tauri.service.GradeTypeService;
+import fr.eseo.tauri.service.ProjectService;
+import fr.eseo.tauri.service.StudentImportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@Nested
+class StudentImportServiceTest {
+
+    private static final String CSV = """
+            ,,,,1,2
+            ,,,,Maths,Physique
+            1,Doe John,M,B,12,14,abc
+            2,Smith Jane,F,,15,,16
+            ,,,,
+            3,Late Row,M,,10
+            """;
+
+    @Mock
+    private ProjectService projectService;
+
+    // The line helpers of the grade types are used as they are
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
+    private GradeTypeService gradeTypeService;
+
+    @Mock
+    private GradeTypeRepository gradeTypeRepository;
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private GradeRepository gradeRepository;
+
+    @Mock
+    private SprintRepository sprintRepository;
+
+    @Mock
+    private BonusRepository bonusRepository;
+
+    @Mock
+    private PresentationOrderRepository presentationOrderRepository;
+
+    @InjectMocks
+    private StudentImportService studentImportService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void parseShouldBuildTheGradeTypesStudentsAndGradesInOnePass() throws IOException, CsvValidationException {
+        Project project = new Project();
+
+        StudentImportService.ParsedFile parsedFile = studentImportService.parse(stream(CSV), project, new AtomicInteger());
+
+        assertEquals(List.of("Moyenne", "Maths", "Physique"), parsedFile.gradeTypes().stream().map(GradeType::name).toList());
+        assertEquals(List.of(0f, 1f, 2f), parsedFile.gradeTypes().stream().map(GradeType::factor).toList());
+
+        assertEquals(2, parsedFile.students().size());
+        Student john = parsedFile.students().get(0);
+        assertEquals("john.doe@reseau.eseo.fr", john.email());
+        assertEquals(Gender.MAN, john.gender());
+        assertTrue(john.bachelor());
+        assertSame(project, john.project());
+        assertEquals(Gender.WOMAN, parsedFile.students().get(1).gender());
+
+        // The grade that is not a number and the empty cell are ignored
+        List<Grade> grades = parsedFile.grades();
+        assertEquals(4, grades.size());
+        assertEquals("Physique", grades.get(3).gradeType().name());
+        assertEquals(16f, grades.get(3).value());
+        assertSame(parsedFile.students().get(1), grades.get(3).student());
+        verifyNoInteractions(studentRepository, gradeRepository);
+    }
+
+    @Test
+    void parseShouldRejectAFileWithoutTheNamesOfTheGradeTypes() {
+        InputStream inputStream = stream("1,2\n");
+        Project project = new Project();
+
+        assertThrows(EmptyResourceException.class, () -> studentImportService.parse(inputStream, project, new AtomicInteger()));
+    }
+
+    @Test
+    void parseShouldRejectAStudentWithMoreGradesThanGradeTypes() {
+        InputStream inputStream = stream(",,,,1\n,,,,Maths\n1,Doe John,M,,12,14,16\n");
+        Project project = new Project();
+
+        assertThrows(IllegalArgumentException.class, () -> studentImportService.parse(inputStream, project, new AtomicInteger()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importStudentsShouldWriteEachTableWithOneBatch() throws IOException, CsvValidationException {
+        when(projectService.getProjectById(1)).thenReturn(new Project());
+        when(sprintRepository.findAllByProject(1)).thenReturn(List.of(new Sprint()));
+        AtomicInteger processedRows = new AtomicInteger();
+
+        StudentImportResult result = studentImportService.importStudents(stream(CSV), 1, processedRows);
+
+        assertEquals(2, processedRows.get());
+        verify(projectService, times(1)).getProjectById(1);
+        verify(studentRepository, times(1)).saveAll(anyList());
+        verify(gradeTypeRepository, times(1)).saveAll(anyList());
+
+        ArgumentCaptor<List<Role>> roles = ArgumentCaptor.forClass(List.class);
+        verify(roleRepository, times(1)).insertAll(roles.capture());
+        assertEquals(2, roles.getValue().size());
+        assertTrue(roles.getValue().stream().allMatch(role -> role.type() == RoleType.OPTION_STUDENT));
+
+        verify(gradeRepository, times(1)).upsertAll(anyList());
+        verify(presentationOrderRepository, times(1)).insertAll(anyList());
+        verify(bonusRepository, times(1)).insertAll(anyList());
+
+        assertEquals(2, result.nbStudents());
+        assertEquals(4, result.nbGrades());
+        assertEquals(4, result.nbBonuses());
+        assertEquals(2, result.nbPresentationOrders());
+        assertTrue(result.durationMs() >= result.parseMs());
+    }
+
+    @Test
+    void importStudentsShouldNotWriteSprintRowsWhenTheProjectHasNoSprint() throws IOException, CsvValidationException {
+        when(sprintRepository.findAllByProject(1)).thenReturn(List.of());
+
+        StudentImportResult result = studentImportService.importStudents(stream(CSV), 1, new AtomicInteger());
+
+        verify(presentationOrderRepository, never()).insertAll(anyList());
+        verify(bonusRepository, never()).insertAll(anyList());
+        assertEquals(0, result.nbBonuses());
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes());
+    }
+
+}
@@ -1,8 +1,6 @@
 package fr.eseo.tauri.unit.service;
 
 import com.opencsv.CSVWriter;
-import com.opencsv.exceptions.CsvValidationException;
-import fr.eseo.tauri.exception.EmptyResourceException;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.model.enumeration.Gender;
@@ -21,12 +19,11 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -39,9 +36,6 @@ class StudentServiceTest {
     @Mock
     private StudentRepository studentRepository;
 
-    @Mock
-    private GradeService gradeService;
-
     @Mock
     private TeamService teamService;
 
@@ -58,7 +52,7 @@ class StudentServiceTest {
     private BonusRepository bonusRepository;
 
     @Mock
-    private UserService userService;
+    private ProjectTeardownService projectTeardownService;
 
     @Mock
     private GradeTypeService gradeTypeService;
@@ -75,6 +69,12 @@ class StudentServiceTest {
     @Mock
     private CommentRepository commentRepository;
 
+    @Mock
+    private SprintGradeService sprintGradeService;
+
+    @Mock
+    private AuthService authService;
+
     @InjectMocks
     private StudentService studentService;
 
@@ -133,59 +133,6 @@ class StudentServiceTest {
         verify(roleService, times(1)).createRole(any(Role.class));
     }
 
-    @Test
-    void extractNamesGenderBachelorAndGradesShouldReturnCorrectData() throws IOException, CsvValidationException {
-        String csvContent = "1,John Doe,M,B,15,14,13\n2,Jane Doe,F,B,12,13,14";
-        InputStream inputStream = new ByteArrayInputStream(csvContent.getBytes());
-
-        Map<String, Object> result = studentService.extractNamesGenderBachelorAndGrades(inputStream);
-
-        List<String> names = (List<String>) result.get(StudentService.MAP_KEY_NAMES);
-        List<String> genders = (List<String>) result.get(StudentService.MAP_KEY_GENDERS);
-        List<String> bachelors = (List<String>) result.get(StudentService.MAP_KEY_BACHELORS);
-        List<List<String>> grades = (List<List<String>>) result.get(StudentService.MAP_KEY_GRADES);
-
-        assertEquals(Arrays.asList("John Doe", "Jane Doe"), names);
-        assertEquals(Arrays.asList("M", "F"), genders);
-        assertEquals(Arrays.asList("B", "B"), bachelors);
-        assertEquals(Arrays.asList(Arrays.asList("15", "14", "13"), Arrays.asList("12", "13", "14")), grades);
-    }
-
-    @Test
-    void extractNamesGenderBachelorAndGradesShouldHandleEmptyInputStream() throws IOException, CsvValidationException {
-        InputStream inputStream = new ByteArrayInputStream("".getBytes());
-
-        Map<String, Object> result = studentService.extractNamesGenderBachelorAndGrades(inputStream);
-
-        List<String> names = (List<String>) result.get(StudentService.MAP_KEY_NAMES);
-        List<String> genders = (List<String>) result.get(StudentService.MAP_KEY_GENDERS);
-        List<String> bachelors = (List<String>) result.get(StudentService.MAP_KEY_BACHELORS);
-        List<List<String>> grades = (List<List<String>>) result.get(StudentService.MAP_KEY_GRADES);
-
-        assertTrue(names.isEmpty());
-        assertTrue(genders.isEmpty());
-        assertTrue(bachelors.isEmpty());
-        assertTrue(grades.isEmpty());
-    }
-
-    @Test
-    void extractNamesGenderBachelorAndGradesShouldHandleInputStreamWithMissingData() throws IOException, CsvValidationException {
-        String csvContent = "1,John Doe,M,,15,14,13\n2,Jane Doe,,B,12,13,14";
-        InputStream inputStream = new ByteArrayInputStream(csvContent.getBytes());
-
-        Map<String, Object> result = studentService.extractNamesGenderBachelorAndGrades(inputStream);
-
-        List<String> names = (List<String>) result.get(StudentService.MAP_KEY_NAMES);
-        List<String> genders = (List<String>) result.get(StudentService.MAP_KEY_GENDERS);
-        List<String> bachelors = (List<String>) result.get(StudentService.MAP_KEY_BACHELORS);
-        List<List<String>> grades = (List<List<String>>) result.get(StudentService.MAP_KEY_GRADES);
-
-        assertEquals(Arrays.asList("John Doe", "Jane Doe"), names);
-        assertEquals(Arrays.asList("M", ""), genders);
-        assertEquals(Arrays.asList("", "B"), bachelors);
-        assertEquals(Arrays.asList(Arrays.asList("15", "14", "13"), Arrays.asList("12", "13", "14")), grades);
-    }
-
     @Test
     void hasNonEmptyValueReturnsTrueWhenIndexContainsNonEmptyValue() {
         String[] line = {"test", "example"};
@@ -236,14 +183,6 @@ class StudentServiceTest {
         assertThrows(IllegalArgumentException.class, () -> studentService.createStudentFromData("John Doe", "M", null, 1));
     }
 
-    @Test
-    void populateDatabaseFromCSVShouldThrowEmptyResourceExceptionWhenFileIsEmpty() {
-        MultipartFile file = mock(MultipartFile.class);
-        when(file.isEmpty()).thenReturn(true);
-
-        assertThrows(EmptyResourceException.class, () -> studentService.populateDatabaseFromCSV(file, 1));
-    }
-
     @Test
     void writeHeadersShouldSkipAverageGradeType() {
         StringWriter stringWriter = new StringWriter();
@@ -297,9 +236,7 @@ class StudentServiceTest {
         GradeType gradeType = new GradeType();
         gradeType.name("GradeType1");
 
-        when(gradeService.getGradeByStudentAndGradeType(student, gradeType)).thenReturn(15.0f);
-
-        studentService.writeStudentData(csvWriter, List.of(student), List.of(gradeType));
+        studentService.writeStudentData(csvWriter, List.of(student), List.of(gradeType), new float[][]{{15.0f}});
 
         String expectedCsv = "\"1\",\"John Doe\",\"M\",\"B\",\"15.0\"\n";
         String actualCsv = stringWriter.toString();
@@ -325,10 +262,7 @@ class StudentServiceTest {
         GradeType gradeType = new GradeType();
         gradeType.name("GradeType1");
 
-        when(gradeService.getGradeByStudentAndGradeType(student1, gradeType)).thenReturn(15.0f);
-        when(gradeService.getGradeByStudentAndGradeType(student2, gradeType)).thenReturn(14.0f);
-
-        studentService.writeStudentData(csvWriter, Arrays.asList(student1, student2), List.of(gradeType));
+        studentService.writeStudentData(csvWriter, Arrays.asList(student1, student2), List.of(gradeType), new float[][]{{15.0f}, {14.0f}});
 
         String expectedCsv = """
                 "1","John Doe","M","B","15.0"
@@ -352,9 +286,7 @@ class StudentServiceTest {
         GradeType gradeType = new GradeType();
         gradeType.name("GradeType1");
 
-        when(gradeService.getGradeByStudentAndGradeType(student, gradeType)).thenReturn(null);
-
-        studentService.writeStudentData(csvWriter, List.of(student), List.of(gradeType));
+        studentService.writeStudentData(csvWriter, List.of(student), List.of(gradeType), new float[][]{{Float.NaN}});
 
         String expectedCsv = "\"1\",\"John Doe\",\"M\",\"B\",\"\"\n";
         String actualCsv = stringWriter.toString();
@@ -367,11 +299,13 @@ class StudentServiceTest {
         StringWriter stringWriter = new StringWriter();
         CSVWriter csvWriter = new CSVWriter(stringWriter);
 
-        when(studentRepository.countWomen()).thenReturn(5);
-        when(studentRepository.countTotal()).thenReturn(10);
-        when(studentRepository.countBachelor()).thenReturn(3);
+        when(studentRepository.countByGenderAndBachelor(1)).thenReturn(Arrays.asList(
+                new Object[]{Gender.WOMAN, true, 2L},
+                new Object[]{Gender.WOMAN, false, 3L},
+                new Object[]{Gender.MAN, true, 1L},
+                new Object[]{Gender.MAN, false, 4L}));
 
-        studentService.writeSummaryData(csvWriter, 2);
+        studentService.writeSummaryData(csvWriter, 2, 1);
 
         String expectedCsv = """
                 "","","","","",""
@@ -392,11 +326,9 @@ class StudentServiceTest {
         StringWriter stringWriter = new StringWriter();
         CSVWriter csvWriter = new CSVWriter(stringWriter);
 
-        when(studentRepository.countWomen()).thenReturn(0);
-        when(studentRepository.countTotal()).thenReturn(0);
-        when(studentRepository.countBachelor()).thenReturn(0);
+        when(studentRepository.countByGenderAndBachelor(1)).thenReturn(Collections.emptyList());
 
-        studentService.writeSummaryData(csvWriter, 0);
+        studentService.writeSummaryData(csvWriter, 0, 1);
 
         String expectedCsv = """
                 "","","",""
@@ -593,6 +525,7 @@ class StudentServiceTest {
         studentService.deleteStudent(id);
 
         verify(studentRepository, times(1)).deleteById(id);
+        verify(authService, times(1)).forgetUser(id);
     }
 
     @Test
@@ -605,39 +538,19 @@ class StudentServiceTest {
     }
 
     @Test
-    void deleteAllStudentsByProjectShouldDeleteAllStudentsWhenStudentsExist() {
+    void deleteAllStudentsByProjectShouldDelegateToTheTeardownOfTheProject() {
         Integer projectId = 1;
-        Student student1 = new Student();
-        student1.id(1);
-        Student student2 = new Student();
-        student2.id(2);
-        List<Student> students = Arrays.asList(student1, student2);
-
-        when(studentRepository.findAllByProject(projectId)).thenReturn(students);
-
-        studentService.deleteAllStudentsByProject(projectId);
-
-        verify(userService, times(1)).deleteUserById(student1.id());
-        verify(userService, times(1)).deleteUserById(student2.id());
-        verify(gradeTypeService, times(1)).deleteAllImportedGradeTypes();
-        verify(teamService, times(1)).deleteAllTeamsByProject(projectId);
-    }
+        ProjectTeardownResult teardownResult = new ProjectTeardownResult(projectId, 2, 1, 1, 12, 5L);
 
-    @Test
-    void deleteAllStudentsByProjectShouldNotDeleteAnyStudentWhenNoStudentsExist() {
-        Integer projectId = 1;
-
-        when(studentRepository.findAllByProject(projectId)).thenReturn(Collections.emptyList());
-
-        studentService.deleteAllStudentsByProject(projectId);
+        when(projectTeardownService.deleteStudentsAndTeams(projectId)).thenReturn(teardownResult);
 
-        verify(userService, times(0)).deleteUserById(anyInt());
-        verify(gradeTypeService, times(1)).deleteAllImportedGradeTypes();
-        verify(teamService, times(1)).deleteAllTeamsByProject(projectId);
+        assertSame(teardownResult, studentService.deleteAllStudentsByProject(projectId));
+        verify(projectTeardownService, times(1)).deleteStudentsAndTeams(projectId);
+        verify(studentRepository, never()).findAllByProject(anyInt());
     }
 
     @Test
-    void createStudentsCSVShouldReturnByteArrayWhenStudentsExist() throws IOException {
+    void writeStudentsCSVShouldWriteTheFileWhenStudentsExist() throws IOException {
         Integer projectId = 1;
         Student student = new Student();
         student.projectId(projectId);
@@ -647,77 +560,83 @@ class StudentServiceTest {
         when(gradeTypeService.getAllImportedGradeTypes(projectId)).thenReturn(Collections.emptyList());
         when(studentService.getAllStudentsByProject(projectId)).thenReturn(students);
 
-        byte[] result = studentService.createStudentsCSV(projectId);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        studentService.writeStudentsCSV(projectId, outputStream);
 
-        assertNotNull(result);
-        assertEquals(157, result.length);
+        assertEquals(157, outputStream.size());
     }
 
     @Test
-    void getIndividualTotalGradeShouldReturnCorrectGradeWhenGradesExist() {
-        Integer id = 1;
-        Integer sprintId = 1;
-        Integer teamId = 1;
-        Double expectedGrade = 16.666666666666668;
-
-        when(studentRepository.findById(id)).thenReturn(Optional.of(new Student().projectId(1)));
-        when(userService.getTeamByMemberId(id, studentService.getStudentById(id).projectId())).thenReturn(new Team().id(teamId));
-        when(gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName())).thenReturn(10.0);
-        when(gradeRepository.findAverageByGradeTypeForStudent(id, sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(20.0);
-
-        Double result = studentService.getIndividualTotalGrade(id, sprintId);
-
-        assertEquals(expectedGrade, result);
-    }
-
-    @Test
-    void getSprintGradeShouldReturnCorrectGradeWhenBonusesAndGradesExist() {
-        Integer studentId = 1;
-        Integer sprintId = 1;
-        Integer teamId = 1;
-        Double expectedGrade = 17.0;
-
-        when(studentRepository.findById(studentId)).thenReturn(Optional.of(new Student().projectId(1)));
-        when(userService.getTeamByMemberId(studentId, studentService.getStudentById(studentId).projectId())).thenReturn(new Team().id(teamId));
-        when(teamService.getTeamTotalGrade(teamId, sprintId)).thenReturn(20.0);
-        when(studentService.getStudentBonuses(studentId, sprintId)).thenReturn(Arrays.asList(new Bonus().value(2.0F), new Bonus().value(3.0F)));
-        when(studentService.getIndividualTotalGrade(studentId, sprintId)).thenReturn(15.0);
-
-        Double result = studentService.getSprintGrade(studentId, sprintId);
+    void writeStudentsCSVShouldFillTheGradesFromOneProjectQuery() throws IOException {
+        Integer projectId = 1;
+        Student student1 = new Student();
+        student1.id(1);
+        student1.name("John Doe");
+        student1.gender(Gender.MAN);
+        student1.bachelor(true);
+        Student student2 = new Student();
+        student2.id(2);
+        student2.name("Jane Doe");
+        student2.gender(Gender.WOMAN);
+        student2.bachelor(false);
+        GradeType average = new GradeType();
+        average.id(1);
+        average.name(GradeTypeName.AVERAGE.displayName());
+        average.factor(0f);
+        GradeType maths = new GradeType();
+        maths.id(2);
+        maths.name("Maths");
+        maths.factor(2f);
+
+        when(gradeTypeService.getAllImportedGradeTypes(projectId)).thenReturn(Arrays.asList(average, maths));
+        when(studentRepository.findAllByProject(projectId)).thenReturn(Arrays.asList(student1, student2));
+        when(gradeRepository.findImportedGradesByProject(projectId)).thenReturn(Arrays.asList(
+                new Object[]{1, 1, 12.5f}, new Object[]{1, 2, 12.5f}, new Object[]{2, 2, 16f}));
+        when(studentRepository.countByGenderAndBachelor(projectId)).thenReturn(Arrays.asList(
+                new Object[]{Gender.MAN, true, 1L}, new Object[]{Gender.WOMAN, false, 1L}));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        studentService.writeStudentsCSV(projectId, outputStream);
+        String csv = outputStream.toString(StandardCharsets.UTF_8);
 
-        assertEquals(expectedGrade, result);
+        String expectedCsv = """
+                "","","","","","2.0"
+                "","","sexe M / F","","","Maths"
+                "1","John Doe","M","B","12.5","12.5"
+                "2","Jane Doe","F","","","16.0"
+                "","","","","",""
+                "","","","","",""
+                "","","","","",""
+                "","","","","",""
+                "","Nombre F","1","","",""
+                "","Nombre M","1","","",""
+                "","Nombre B","","1","",""
+                """;
+        assertEquals(expectedCsv, csv);
+        verify(gradeRepository, times(1)).findImportedGradesByProject(projectId);
+        verify(studentRepository, times(1)).countByGenderAndBachelor(projectId);
     }
 
     @Test
-    void getSprintGradeShouldReturnCorrectGradeWhenNoBonusesExist() {
-        Integer studentId = 1;
+    void getIndividualTotalGradeShouldReturnCorrectGradeWhenGradesExist() {
+        Integer id = 1;
         Integer sprintId = 1;
-        Integer teamId = 1;
-        Double expectedGrade = 17.0;
+        Double expectedGrade = 16.666666666666668;
 
-        when(studentRepository.findById(studentId)).thenReturn(Optional.of(new Student().projectId(1)));
-        when(userService.getTeamByMemberId(studentId, studentService.getStudentById(studentId).projectId())).thenReturn(new Team().id(teamId));
-        when(teamService.getTeamTotalGrade(teamId, sprintId)).thenReturn(20.0);
-        when(studentService.getStudentBonuses(studentId, sprintId)).thenReturn(Collections.emptyList());
-        when(studentService.getIndividualTotalGrade(studentId, sprintId)).thenReturn(15.0);
+        when(sprintGradeService.getStudentIndividualTotalGrade(id, sprintId)).thenReturn(expectedGrade);
 
-        Double result = studentService.getSprintGrade(studentId, sprintId);
+        Double result = studentService.getIndividualTotalGrade(id, sprintId);
 
         assertEquals(expectedGrade, result);
     }
 
     @Test
-    void getSprintGradeShouldReturnCorrectGradeWhenTeamGradeExceedsTwentyWithBonuses() {
+    void getSprintGradeShouldReturnTheGradeComputedForTheTeam() {
         Integer studentId = 1;
         Integer sprintId = 1;
-        Integer teamId = 1;
         Double expectedGrade = 17.0;
 
-        when(studentRepository.findById(studentId)).thenReturn(Optional.of(new Student().projectId(1)));
-        when(userService.getTeamByMemberId(studentId, studentService.getStudentById(studentId).projectId())).thenReturn(new Team().id(teamId));
-        when(teamService.getTeamTotalGrade(teamId, sprintId)).thenReturn(25.0);
-        when(studentService.getStudentBonuses(studentId, sprintId)).thenReturn(Arrays.asList(new Bonus().value(2.0F), new Bonus().value(3.0F)));
-        when(studentService.getIndividualTotalGrade(studentId, sprintId)).thenReturn(15.0);
+        when(sprintGradeService.getStudentSprintGrade(studentId, sprintId)).thenReturn(expectedGrade);
 
         Double result = studentService.getSprintGrade(studentId, sprintId);
 
@@ -881,93 +800,4 @@ class StudentServiceTest {
         assertTrue(result.isEmpty());
     }
 
-    @Test
-    void testPopulateDatabaseFromCSV_Success() throws IOException, CsvValidationException {
-        String csvContent = "John Doe,M,B,15.5,16.0\nJane Smith,F,,18.0,17.5";
-        InputStream inputStream = new ByteArrayInputStream(csvContent.getBytes());
-
-        MultipartFile mockFile = mock(MultipartFile.class);
-        when(mockFile.isEmpty()).thenReturn(false);
-        when(mockFile.getInputStream()).thenReturn(inputStream);
-
-        GradeType gradeType1 = new GradeType();
-        GradeType gradeType2 = new GradeType();
-        List<GradeType> gradeTypes = Arrays.asList(gradeType1, gradeType2);
-
-        when(gradeTypeService.createGradeTypesFromCSV(any(InputStream.class))).thenReturn(gradeTypes);
-
-        Map<String, Object> extractedData = new HashMap<>();
-        extractedData.put(StudentService.MAP_KEY_NAMES, Arrays.asList("John Doe", "Jane Smith"));
-        extractedData.put(StudentService.MAP_KEY_GENDERS, Arrays.asList("M", "F"));
-        extractedData.put(StudentService.MAP_KEY_BACHELORS, Arrays.asList("B", ""));
-        extractedData.put(StudentService.MAP_KEY_GRADES, Arrays.asList(
-                Arrays.asList("15.5", "16.0"),
-                Arrays.asList("18.0", "17.5")
-        ));
-
-        // Use spy to stub methods on the studentService instance
-        StudentService spyStudentService = spy(studentService);
-        doReturn(extractedData).when(spyStudentService).extractNamesGenderBachelorAndGrades(any(InputStream.class));
-
-        Student student1 = new Student();
-        Student student2 = new Student();
-
-        doReturn(student1).when(spyStudentService).createStudentFromData("John Doe", "M", "B", 1);
-        doReturn(student2).when(spyStudentService).createStudentFromData("Jane Smith", "F", "", 1);
-
-        spyStudentService.populateDatabaseFromCSV(mockFile, 1);
-
-        verify(gradeTypeService, times(1)).createGradeTypesFromCSV(any(InputStream.class));
-        verify(spyStudentService, times(1)).extractNamesGenderBachelorAndGrades(any(InputStream.class));
-        verify(spyStudentService, times(2)).createStudent(student1);
-        verify(spyStudentService, times(2)).createStudent(student2);
-
-        verify(gradeService, times(4)).createGrade(any(Grade.class)); // 4 grades in total
-    }
-
-    @Test
-    void testPopulateDatabaseFromCSV_GradeParsingError() throws IOException, CsvValidationException {
-        String csvContent = "John Doe,M,B,15.5,abc\nJane Smith,F,,18.0,17.5";
-        InputStream inputStream = new ByteArrayInputStream(csvContent.getBytes());
-
-        MultipartFile mockFile = mock(MultipartFile.class);
-        when(mockFile.isEmpty()).thenReturn(false);
-        when(mockFile.getInputStream()).thenReturn(inputStream);
-
-        GradeType gradeType1 = new GradeType();
-        GradeType gradeType2 = new GradeType();
-        List<GradeType> gradeTypes = Arrays.asList(gradeType1, gradeType2);
-
-        when(gradeTypeService.createGradeTypesFromCSV(any(InputStream.class))).thenReturn(gradeTypes);
-
-        Map<String, Object> extractedData = new HashMap<>();
-        extractedData.put(StudentService.MAP_KEY_NAMES, Arrays.asList("John Doe", "Jane Smith"));
-        extractedData.put(StudentService.MAP_KEY_GENDERS, Arrays.asList("M", "F"));
-        extractedData.put(StudentService.MAP_KEY_BACHELORS, Arrays.asList("B", ""));
-        extractedData.put(StudentService.MAP_KEY_GRADES, Arrays.asList(
-                Arrays.asList("15.5", "abc"),
-                Arrays.asList("18.0", "17.5")
-        ));
-
-        // Use spy to stub methods on the studentService instance
-        StudentService spyStudentService = spy(studentService);
-        doReturn(extractedData).when(spyStudentService).extractNamesGenderBachelorAndGrades(any(InputStream.class));
-
-        Student student1 = new Student();
-        Student student2 = new Student();
-
-        doReturn(student1).when(spyStudentService).createStudentFromData("John Doe", "M", "B", 1);
-        doReturn(student2).when(spyStudentService).createStudentFromData("Jane Smith", "F", "", 1);
-
-        spyStudentService.populateDatabaseFromCSV(mockFile, 1);
-
-        verify(gradeTypeService, times(1)).createGradeTypesFromCSV(any(InputStream.class));
-        verify(spyStudentService, times(1)).extractNamesGenderBachelorAndGrades(any(InputStream.class));
-        verify(spyStudentService, times(2)).createStudent(student1);
-        verify(spyStudentService, times(2)).createStudent(student2);
-
-        // Ensure createGrade is called only for valid grades
-        verify(gradeService, times(3)).createGrade(any(Grade.class)); // 3 valid grades in total
-    }
-
 }
\ No newline at end of file
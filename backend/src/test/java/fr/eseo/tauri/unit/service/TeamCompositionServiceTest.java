@@ -0,0 +1,141 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.model.Role;
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.Team;
+import fr.eseo.tauri.model.enumeration.Gender;
+import fr.eseo.tauri.model.enumeration.RoleType;
+import fr.eseo.tauri.repository.GradeRepository;
+import fr.eseo.tauri.repository.RoleRepository;
+import fr.eseo.tauri.repository.StudentRepository;
+import fr.eseo.tauri.service.RefreshTokenService;
+import fr.eseo.tauri.service.TeamCompositionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@Nested
+class TeamCompositionServiceTest {
+
+    @Mock
+    private GradeRepository gradeRepository;
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @InjectMocks
+    private TeamCompositionService teamCompositionService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void getImportedAveragesShouldMapTheAverageOfEachStudent() {
+        when(gradeRepository.findImportedAveragesByProject(1)).thenReturn(List.of(new Object[]{10, 12.5}, new Object[]{11, 8.0}));
+
+        Map<Integer, Double> averages = teamCompositionService.getImportedAverages(1);
+
+        assertEquals(Map.of(10, 12.5, 11, 8.0), averages);
+    }
+
+    @Test
+    void composeShouldGiveTheRequiredWomenToEachTeamFirst() {
+        List<Student> students = List.of(student(1, Gender.MAN), student(2, Gender.WOMAN), student(3, Gender.MAN), student(4, Gender.WOMAN));
+        Map<Integer, Double> averages = Map.of(1, 10.0, 2, 12.0, 3, 14.0, 4, 16.0);
+
+        List<List<Student>> composition = teamCompositionService.compose(students, averages, 2, 1, false);
+
+        assertEquals(List.of(4, 1), ids(composition.get(0)));
+        assertEquals(List.of(2, 3), ids(composition.get(1)));
+    }
+
+    @Test
+    void composeShouldGiveTheBestRemainingStudentToTheWeakestTeam() {
+        List<Student> students = new ArrayList<>();
+        Map<Integer, Double> averages = new HashMap<>();
+        for (int i = 1; i <= 6; i++) {
+            students.add(student(i, Gender.MAN));
+            averages.put(i, (double) i);
+        }
+
+        List<List<Student>> composition = teamCompositionService.compose(students, averages, 2, 0, true);
+
+        // Round 1: 6 -> team 0, 5 -> team 1; round 2: 4 -> team 1 (5.0), 3 -> team 0 (6.0); round 3: 2 -> team 0 (4.5), 1 -> team 1 (4.5)
+        assertEquals(List.of(6, 3, 2), ids(composition.get(0)));
+        assertEquals(List.of(5, 4, 1), ids(composition.get(1)));
+    }
+
+    @Test
+    void composeShouldDealBachelorsLastAndStudentsWithoutAverage() {
+        Student bachelor = student(1, Gender.MAN);
+        bachelor.bachelor(true);
+        List<Student> students = List.of(bachelor, student(2, null), student(3, Gender.MAN));
+
+        List<List<Student>> composition = teamCompositionService.compose(students, Map.of(1, 18.0, 3, 9.0), 3, 0, true);
+
+        assertEquals(List.of(3), ids(composition.get(0)));
+        assertEquals(List.of(2), ids(composition.get(1)));
+        assertEquals(List.of(1), ids(composition.get(2)));
+    }
+
+    @Test
+    void composeShouldReturnEmptyTeamsWhenThereIsNoStudent() {
+        List<List<Student>> composition = teamCompositionService.compose(List.of(), Map.of(), 3, 1, false);
+
+        assertEquals(3, composition.size());
+        assertTrue(composition.stream().allMatch(List::isEmpty));
+    }
+
+    @Test
+    void saveCompositionShouldAssignTheTeamsAndAddTheMissingRolesInBatch() {
+        Team team1 = new Team().id(1);
+        Team team2 = new Team().id(2);
+        Student student1 = student(10, Gender.MAN);
+        Student student2 = student(11, Gender.WOMAN);
+        Student student3 = student(12, Gender.MAN);
+
+        when(roleRepository.findStudentIdsByTypeAndProject(RoleType.TEAM_MEMBER, 1)).thenReturn(List.of(11));
+
+        teamCompositionService.saveComposition(1, List.of(team1, team2), List.of(List.of(student1, student2), List.of(student3)));
+
+        verify(studentRepository, times(1)).assignTeams(Map.of(10, 1, 11, 1, 12, 2));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Role>> roles = ArgumentCaptor.forClass(List.class);
+        verify(roleRepository, times(1)).insertAll(roles.capture());
+        assertEquals(List.of(student1, student3), roles.getValue().stream().map(Role::user).toList());
+        assertTrue(roles.getValue().stream().allMatch(role -> role.type() == RoleType.TEAM_MEMBER));
+        verify(studentRepository, never()).save(any(Student.class));
+        verify(roleRepository, never()).save(any(Role.class));
+        // Only the students who got the role read their roles again at their next refresh
+        verify(refreshTokenService, times(1)).forgetRoles(List.of(10, 12));
+    }
+
+    private static Student student(int id, Gender gender) {
+        Student student = new Student();
+        student.id(id);
+        student.gender(gender);
+        return student;
+    }
+
+    private static List<Integer> ids(List<Student> students) {
+        return students.stream().map(Student::id).toList();
+    }
+
+}
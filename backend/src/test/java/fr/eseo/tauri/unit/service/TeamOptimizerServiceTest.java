@@ -0,0 +1,100 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.TeamGenerationResult;
+import fr.eseo.tauri.model.enumeration.Gender;
+import fr.eseo.tauri.service.TeamOptimizerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Nested
+class TeamOptimizerServiceTest {
+
+    private TeamOptimizerService teamOptimizerService;
+
+    @BeforeEach
+    void setUp() {
+        teamOptimizerService = new TeamOptimizerService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        teamOptimizerService.shutdown();
+    }
+
+    @Test
+    void requiredWomenPerTeamShouldSpreadTheWomenWithAnAutomaticRatio() {
+        List<Student> students = List.of(student(1, Gender.WOMAN, false), student(2, Gender.WOMAN, false),
+                student(3, Gender.WOMAN, false), student(4, Gender.MAN, false));
+
+        assertEquals(1, teamOptimizerService.requiredWomenPerTeam(students, 2, 0, true));
+        assertEquals(2, teamOptimizerService.requiredWomenPerTeam(students, 2, 2, false));
+    }
+
+    @Test
+    void evaluateShouldReportTheVarianceAndTheMissingCriteria() {
+        Student woman = student(1, Gender.WOMAN, true);
+        Student man = student(2, Gender.MAN, false);
+        List<List<Student>> composition = List.of(List.of(woman), List.of(man));
+
+        TeamGenerationResult result = teamOptimizerService.evaluate(composition, Map.of(1, 10.0, 2, 14.0), 1);
+
+        assertEquals(4.0, result.score(), 1e-9);
+        assertFalse(result.constraintsSatisfied());
+        assertEquals(1, result.teamsMissingWomen());
+        assertEquals(1, result.teamsMissingBachelors());
+    }
+
+    @Test
+    void optimizeShouldSatisfyTheCriteriaAndBalanceTheTeams() {
+        Student woman1 = student(1, Gender.WOMAN, false);
+        Student woman2 = student(2, Gender.WOMAN, false);
+        Student bachelor1 = student(3, Gender.MAN, true);
+        Student bachelor2 = student(4, Gender.MAN, true);
+        Student man1 = student(5, Gender.MAN, false);
+        Student man2 = student(6, Gender.MAN, false);
+        Map<Integer, Double> averages = Map.of(1, 16.0, 2, 15.0, 3, 14.0, 4, 8.0, 5, 7.0, 6, 6.0);
+        List<List<Student>> composition = List.of(List.of(woman1, woman2, bachelor1), List.of(bachelor2, man1, man2));
+
+        List<List<Student>> optimized = teamOptimizerService.optimize(composition, averages, 1, 200);
+        TeamGenerationResult before = teamOptimizerService.evaluate(composition, averages, 1);
+        TeamGenerationResult after = teamOptimizerService.evaluate(optimized, averages, 1);
+
+        assertFalse(before.constraintsSatisfied());
+        assertTrue(after.constraintsSatisfied());
+        assertTrue(after.score() < before.score());
+        assertEquals(3, optimized.get(0).size());
+        assertEquals(3, optimized.get(1).size());
+    }
+
+    @Test
+    void optimizeShouldReturnTheCompositionWhenNoSwapIsPossible() {
+        List<List<Student>> composition = List.of(List.of(student(1, Gender.MAN, false)), List.of());
+
+        assertSame(composition, teamOptimizerService.optimize(composition, Map.of(), 0, 50));
+    }
+
+    @Test
+    void optimizeShouldThrowIllegalArgumentExceptionWhenTheTimeBudgetIsOutOfRange() {
+        List<List<Student>> composition = List.of(List.of(), List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> teamOptimizerService.optimize(composition, Map.of(), 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> teamOptimizerService.optimize(composition, Map.of(), 0, TeamOptimizerService.MAX_TIME_BUDGET_MS + 1));
+    }
+
+    private static Student student(int id, Gender gender, boolean bachelor) {
+        Student student = new Student();
+        student.id(id);
+        student.gender(gender);
+        student.bachelor(bachelor);
+        return student;
+    }
+
+}
@@ -0,0 +1,88 @@
+package fr.eseo.tauri.unit.service;
+
+import fr.eseo.tauri.model.Student;
+import fr.eseo.tauri.model.TeamPreview;
+import fr.eseo.tauri.service.TeamPreviewService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Nested
+class TeamPreviewServiceTest {
+
+    private TeamPreviewService teamPreviewService;
+
+    @BeforeEach
+    void setUp() {
+        teamPreviewService = new TeamPreviewService();
+    }
+
+    @Test
+    void storeShouldGiveATokenAndAnExpirationDate() {
+        TeamPreview preview = teamPreviewService.store(1, 2, 1, List.of(List.of(new Student()), List.of()), new TeamPreview(null, null, null, List.of()));
+
+        assertNotNull(preview.token());
+        assertTrue(preview.expiresAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void takeShouldReturnThePreviewOnlyOnce() {
+        List<List<Student>> composition = List.of(List.of(new Student()));
+        TeamPreview preview = teamPreviewService.store(1, 1, 0, composition, new TeamPreview(null, null, null, List.of()));
+
+        TeamPreviewService.StoredPreview stored = teamPreviewService.take(1, preview.token());
+
+        assertEquals(composition, stored.composition());
+        assertEquals(1, stored.nbTeams());
+        assertThrows(IllegalArgumentException.class, () -> teamPreviewService.take(1, preview.token()));
+    }
+
+    @Test
+    void takeShouldThrowIllegalArgumentExceptionWhenThePreviewBelongsToAnotherProject() {
+        TeamPreview preview = teamPreviewService.store(1, 1, 0, List.of(List.of()), new TeamPreview(null, null, null, List.of()));
+
+        assertThrows(IllegalArgumentException.class, () -> teamPreviewService.take(2, preview.token()));
+        assertNotNull(teamPreviewService.take(1, preview.token()));
+    }
+
+    @Test
+    void takeShouldKeepThePreviewUntilTheTransactionCommits() {
+        TeamPreview preview = teamPreviewService.store(1, 1, 0, List.of(List.of()), new TeamPreview(null, null, null, List.of()));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            teamPreviewService.take(1, preview.token());
+            // The preview cannot be committed twice at once
+            assertThrows(IllegalArgumentException.class, () -> teamPreviewService.take(1, preview.token()));
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+            // After a rollback the same preview can be committed again, and after a commit it is gone
+            teamPreviewService.take(1, preview.token());
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThrows(IllegalArgumentException.class, () -> teamPreviewService.take(1, preview.token()));
+    }
+
+    @Test
+    void takeShouldThrowIllegalArgumentExceptionWhenTheTokenIsUnknown() {
+        assertThrows(IllegalArgumentException.class, () -> teamPreviewService.take(1, "unknown"));
+        assertThrows(IllegalArgumentException.class, () -> teamPreviewService.take(1, null));
+    }
+
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+}
@@ -3,17 +3,19 @@ package fr.eseo.tauri.unit.service;
 import fr.eseo.tauri.exception.ResourceNotFoundException;
 import fr.eseo.tauri.model.*;
 import fr.eseo.tauri.model.enumeration.Gender;
-import fr.eseo.tauri.model.enumeration.GradeTypeName;
 import fr.eseo.tauri.repository.*;
 import fr.eseo.tauri.service.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -34,13 +36,13 @@ class TeamServiceTest {
     private CommentRepository commentRepository;
 
     @Mock
-    private GradeTypeRepository gradeTypeRepository;
+    private TeamCompositionService teamCompositionService;
 
     @Mock
-    private GradeRepository gradeRepository;
+    private TeamOptimizerService teamOptimizerService;
 
     @Mock
-    private RoleRepository roleRepository;
+    private TeamPreviewService teamPreviewService;
 
     @Mock
     private SprintService sprintService;
@@ -51,12 +53,22 @@ class TeamServiceTest {
     @Mock
     private StudentService studentService;
 
+    @Mock
+    private SprintGradeService sprintGradeService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     @InjectMocks
     private TeamService teamService;
 
     @BeforeEach
     void init_mocks() {
         MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
         teamService = spy(teamService);
     }
 
@@ -223,6 +235,28 @@ class TeamServiceTest {
         assertEquals(1, actualCriteria.nbBachelors());
         assertTrue(actualCriteria.validCriteriaWoman());
         assertTrue(actualCriteria.validCriteriaBachelor());
+        verify(teamRepository, times(1)).findById(id);
+        verify(teamRepository, times(1)).countWomenInTeam(id);
+        verify(teamRepository, times(1)).countBachelorInTeam(id);
+    }
+
+    @Test
+    void getCriteriaByProjectShouldMapTheCriteriaOfEveryTeamFromOneQuery() {
+        Integer projectId = 1;
+        Project project = new Project();
+        project.nbWomen(1);
+
+        when(projectService.getProjectById(projectId)).thenReturn(project);
+        when(teamRepository.findCriteriaByProject(projectId)).thenReturn(List.of(
+                new Object[]{1, "Équipe 1", 5L, 2L, 1L, 12.3456},
+                new Object[]{2, "Équipe 2", 0L, 0L, 0L, null}));
+
+        List<TeamCriteria> criteria = teamService.getCriteriaByProject(projectId);
+
+        assertEquals(new TeamCriteria(1, "Équipe 1", 5, 2, 1, 12.35, true, true), criteria.get(0));
+        assertEquals(new TeamCriteria(2, "Équipe 2", 0, 0, 0, null, false, false), criteria.get(1));
+        verify(teamRepository, never()).countWomenInTeam(anyInt());
+        verify(teamRepository, never()).findById(anyInt());
     }
 
 
@@ -267,16 +301,12 @@ class TeamServiceTest {
     void getTeamTotalGradeShouldReturnAverageWhenAuthorizedAndTeamExists() {
         Integer teamId = 1;
         Integer sprintId = 1;
-        Double expectedAvg = 90.0;
-        List<GradeType> gradeTypes = Arrays.asList(new GradeType(), new GradeType());
 
-        when(gradeTypeRepository.findTeacherGradedTeamGradeTypes()).thenReturn(gradeTypes);
-        when(gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, gradeTypes.get(0).name())).thenReturn(80.0);
-        when(gradeRepository.findAverageByGradeTypeForTeam(teamId, sprintId, gradeTypes.get(1).name())).thenReturn(90.0);
+        when(sprintGradeService.getTeamTotalGrade(teamId, sprintId)).thenReturn(85.666);
 
         Double actualAvg = teamService.getTeamTotalGrade(teamId, sprintId);
 
-        assertEquals(expectedAvg, actualAvg);
+        assertEquals(85.67, actualAvg);
     }
 
 
@@ -360,318 +390,235 @@ class TeamServiceTest {
 
     @Test
     void getIndividualTotalGradesShouldThrowResourceNotFoundExceptionWhenTeamDoesNotExist() {
-        when(teamRepository.findById(anyInt())).thenReturn(Optional.empty());
+        when(sprintGradeService.getTeamSprintGrades(1, 1)).thenThrow(new ResourceNotFoundException("team", 1));
 
         assertThrows(ResourceNotFoundException.class, () -> teamService.getIndividualTotalGrades(1, 1));
     }
 
     @Test
     void getSprintGradesShouldThrowResourceNotFoundExceptionWhenTeamDoesNotExist() {
-        when(teamRepository.findById(anyInt())).thenReturn(Optional.empty());
+        when(sprintGradeService.getTeamSprintGrades(1, 1)).thenThrow(new ResourceNotFoundException("team", 1));
 
         assertThrows(ResourceNotFoundException.class, () -> teamService.getSprintGrades(1, 1));
     }
 
     @Test
     void getAverageSprintGradesShouldReturnAverageGradesWhenTeamsExist() {
+        Integer projectId = 1;
         Integer sprintId = 1;
-        Team team = new Team();
-        team.id(1);
-        Project project = new Project();
-        project.id(1);
-        team.project(project);
-        Team team2 = new Team();
-        team2.project(project);
-        team2.id(2);
-        List<Team> teams = Arrays.asList(team, team2);
-        List<Double> sprintGradesTeam1 = Arrays.asList(15.0, 16.0, 17.0);
-        List<Double> sprintGradesTeam2 = Arrays.asList(18.0, 19.0, 20.0);
+        List<TeamSprintGrades> grades = List.of(
+                new TeamSprintGrades(1, List.of(1, 2, 3), 15.0, List.of(), List.of(15.0, 16.0, 17.0)),
+                new TeamSprintGrades(2, List.of(4, 5, 6), 18.0, List.of(), List.of(18.0, 19.0, 20.0)));
 
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
-        when(teamRepository.findById(2)).thenReturn(Optional.of(team2));
-        when(teamRepository.findAll()).thenReturn(teams);
-        when(teamService.getSprintGrades(teams.get(0).id(), sprintId)).thenReturn(sprintGradesTeam1);
-        when(teamService.getSprintGrades(teams.get(1).id(), sprintId)).thenReturn(sprintGradesTeam2);
+        when(sprintGradeService.getProjectSprintGrades(projectId, sprintId)).thenReturn(grades);
 
-        List<Double> result = teamService.getAverageSprintGrades(sprintId);
+        List<Double> result = teamService.getAverageSprintGrades(projectId, sprintId);
 
         assertEquals(2, result.size());
         assertEquals(16.0, result.get(0));
         assertEquals(19.0, result.get(1));
+        verify(teamRepository, never()).findAll();
     }
 
     @Test
     void getAverageSprintGradesShouldReturnEmptyListWhenNoTeamsExist() {
+        Integer projectId = 1;
         Integer sprintId = 1;
-        List<Team> teams = Collections.emptyList();
 
-        when(teamRepository.findAll()).thenReturn(teams);
+        when(sprintGradeService.getProjectSprintGrades(projectId, sprintId)).thenReturn(Collections.emptyList());
 
-        List<Double> result = teamService.getAverageSprintGrades(sprintId);
+        List<Double> result = teamService.getAverageSprintGrades(projectId, sprintId);
 
         assertTrue(result.isEmpty());
     }
 
     @Test
     void getAverageSprintGradesShouldReturnListWithNegativeOneWhenNoSprintGradesExist() {
+        Integer projectId = 1;
         Integer sprintId = 1;
-        Team team = new Team();
-        team.id(1);
-        Project project = new Project();
-        project.id(1);
-        team.project(project);
-        List<Team> teams = Collections.singletonList(team);
-        List<Double> sprintGradesTeam1 = Collections.singletonList(-1.0);
+        List<TeamSprintGrades> grades = List.of(new TeamSprintGrades(1, List.of(), Double.NaN, List.of(), List.of()));
 
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
-        when(teamRepository.findAll()).thenReturn(teams);
-        when(teamService.getSprintGrades(teams.get(0).id(), sprintId)).thenReturn(sprintGradesTeam1);
+        when(sprintGradeService.getProjectSprintGrades(projectId, sprintId)).thenReturn(grades);
 
-        List<Double> result = teamService.getAverageSprintGrades(sprintId);
+        List<Double> result = teamService.getAverageSprintGrades(projectId, sprintId);
 
         assertEquals(1, result.size());
         assertEquals(-1.0, result.get(0));
     }
 
     @Test
-    void getIndividualTotalGradesShouldReturnCorrectGradesWhenBothTeamAndIndividualGradesExist() {
-        Integer id = 1;
-        Integer sprintId = 1;
-        Student student1 = new Student();
-        student1.id(1);
-        Student student2 = new Student();
-        student2.id(2);
-        Team team = new Team();
-        team.id(1);
-        List<Student> students = Arrays.asList(student1, student2);
-        Double teamGrade = 15.0;
-        Double individualGrade1 = 16.0;
-        Double individualGrade2 = 17.0;
-
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
-        when(studentRepository.findByTeam(id)).thenReturn(students);
-        when(gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName())).thenReturn(teamGrade);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(0).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(individualGrade1);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(1).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(individualGrade2);
-
-        List<Double> result = teamService.getIndividualTotalGrades(id, sprintId);
-
-        assertEquals(2, result.size());
-        assertEquals(15.67, result.get(0));
-        assertEquals(16.33, result.get(1));
-    }
-
-    @Test
-    void getIndividualTotalGradesShouldReturnTeamGradesWhenIndividualGradesDoNotExist() {
+    void getIndividualTotalGradesShouldReturnRoundedGradesOfTheTeam() {
         Integer id = 1;
         Integer sprintId = 1;
-        Student student1 = new Student();
-        student1.id(1);
-        Student student2 = new Student();
-        student2.id(2);
-        Team team = new Team();
-        team.id(1);
-        List<Student> students = Arrays.asList(student1, student2);
-        Double teamGrade = 15.0;
+        TeamSprintGrades grades = new TeamSprintGrades(id, List.of(1, 2), 15.0, List.of(15.666666, 16.333333), List.of(15.2, 15.4));
 
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
-        when(studentRepository.findByTeam(id)).thenReturn(students);
-        when(gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName())).thenReturn(teamGrade);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(0).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(null);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(1).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(null);
+        when(sprintGradeService.getTeamSprintGrades(id, sprintId)).thenReturn(grades);
 
         List<Double> result = teamService.getIndividualTotalGrades(id, sprintId);
 
-        assertEquals(2, result.size());
-        assertEquals(teamGrade, result.get(0));
-        assertEquals(teamGrade, result.get(1));
+        assertEquals(List.of(15.67, 16.33), result);
     }
 
     @Test
-    void getIndividualTotalGradesShouldReturnIndividualGradesWhenTeamGradesDoNotExist() {
-        Integer id = 1;
-        Integer sprintId = 1;
-        Student student1 = new Student();
-        student1.id(1);
-        Student student2 = new Student();
-        student2.id(2);
-        Team team = new Team();
-        team.id(1);
-        List<Student> students = Arrays.asList(student1, student2);
-        Double individualGrade1 = 16.0;
-        Double individualGrade2 = 17.0;
-
-        when(teamRepository.findById(1)).thenReturn(Optional.of(team));
-        when(studentRepository.findByTeam(id)).thenReturn(students);
-        when(gradeRepository.findAverageByGradeTypeForTeam(id, sprintId, GradeTypeName.GLOBAL_TEAM_PERFORMANCE.displayName())).thenReturn(null);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(0).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(individualGrade1);
-        when(gradeRepository.findAverageByGradeTypeForStudent(students.get(1).id(), sprintId, GradeTypeName.INDIVIDUAL_PERFORMANCE.displayName())).thenReturn(individualGrade2);
-
-        List<Double> result = teamService.getIndividualTotalGrades(id, sprintId);
-
-        assertEquals(2, result.size());
-        assertEquals(individualGrade1, result.get(0));
-        assertEquals(individualGrade2, result.get(1));
-    }
-
-    @Test
-    void assignWomenPerTeamShouldAssignWomenAndMenToTeams() {
+    void generateTeamsShouldComposeTheTeamsInMemoryAndSaveThemOnce() {
+        Integer projectId = 1;
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(2);
+        projectDetails.nbWomen(1);
         List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
-        Integer womenPerTeam = 1;
-
-        teamService.assignWomenPerTeam(teams, women, men, womenPerTeam);
-
-        verify(roleRepository, times(2)).save(any(Role.class));
-        verify(studentRepository, times(2)).save(any(Student.class));
-    }
+        List<Student> students = Arrays.asList(student(1), student(2), student(3));
+        Map<Integer, Double> averages = Map.of(1, 12.0);
+        List<List<Student>> composition = List.of(List.of(students.get(0), students.get(2)), List.of(students.get(1)));
 
-    @Test
-    void assignWomenPerTeamShouldAssignOnlyWomenToTeamsWhenNoMen() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Collections.emptyList();
-        Integer womenPerTeam = 1;
+        when(studentRepository.findAllByProject(projectId)).thenReturn(students);
+        when(teamCompositionService.getImportedAverages(projectId)).thenReturn(averages);
+        when(teamCompositionService.compose(students, averages, 2, 1, false)).thenReturn(composition);
+        when(teamOptimizerService.requiredWomenPerTeam(students, 2, 1, false)).thenReturn(1);
+        when(teamOptimizerService.evaluate(composition, averages, 1)).thenReturn(new TeamGenerationResult(false, 1.0, true, 0, 0, null));
+        doReturn(teams).when(teamService).createTeams(projectId, 2);
 
-        teamService.assignWomenPerTeam(teams, women, men, womenPerTeam);
+        TeamGenerationResult result = teamService.generateTeams(projectId, projectDetails, false, null);
 
-        verify(roleRepository, times(2)).save(any(Role.class));
-        verify(studentRepository, times(2)).save(any(Student.class));
-    }
-
-    @Test
-    void assignWomenPerTeamShouldNotAssignAnyStudentWhenNoTeams() {
-        List<Team> teams = Collections.emptyList();
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
-        Integer womenPerTeam = 1;
-
-        teamService.assignWomenPerTeam(teams, women, men, womenPerTeam);
-
-        verify(roleRepository, times(0)).save(any(Role.class));
-        verify(studentRepository, times(0)).save(any(Student.class));
-    }
-
-    @Test
-    void assignWomenPerTeamShouldNotAssignAnyStudentWhenNoStudents() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Collections.emptyList();
-        List<Student> men = Collections.emptyList();
-        Integer womenPerTeam = 1;
-
-        teamService.assignWomenPerTeam(teams, women, men, womenPerTeam);
-
-        verify(roleRepository, times(0)).save(any(Role.class));
-        verify(studentRepository, times(0)).save(any(Student.class));
+        assertFalse(result.optimized());
+        assertNotNull(result.durationMs());
+        verify(projectService, times(1)).updateProject(projectId, projectDetails);
+        verify(teamCompositionService, times(1)).saveComposition(projectId, teams, composition);
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+        verify(teamOptimizerService, never()).optimize(anyList(), anyMap(), anyInt(), anyLong());
+        verify(studentRepository, never()).save(any(Student.class));
+        verify(teamRepository, never()).findAllOrderByAvgGradeOrderByAsc(anyInt());
     }
 
     @Test
-    void assignStudentsEvenlyShouldAssignStudentsToTeams() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
+    void generateTeamsShouldOptimizeTheCompositionBeforeTheTransaction() {
         Integer projectId = 1;
-        int index = 0;
-
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
-
-        teamService.assignStudentsEvenly(women, men, projectId, index, teams);
-
-        verify(roleRepository, times(4)).save(any(Role.class));
-        verify(studentRepository, times(4)).save(any(Student.class));
-    }
-
-    @Test
-    void assignStudentsEvenlyShouldAssignOnlyWomenToTeamsWhenNoMen() {
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(2);
+        projectDetails.nbWomen(0);
         List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Collections.emptyList();
-        Integer projectId = 1;
-        int index = 0;
+        List<Student> students = Arrays.asList(student(1), student(2));
+        Map<Integer, Double> averages = Map.of();
+        List<List<Student>> greedy = List.of(List.of(students.get(0), students.get(1)), List.of());
+        List<List<Student>> optimized = List.of(List.of(students.get(0)), List.of(students.get(1)));
 
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
+        when(studentRepository.findAllByProject(projectId)).thenReturn(students);
+        when(teamCompositionService.getImportedAverages(projectId)).thenReturn(averages);
+        when(teamCompositionService.compose(students, averages, 2, 0, true)).thenReturn(greedy);
+        when(teamOptimizerService.requiredWomenPerTeam(students, 2, 0, true)).thenReturn(0);
+        when(teamOptimizerService.optimize(greedy, averages, 0, 500L)).thenReturn(optimized);
+        when(teamOptimizerService.evaluate(optimized, averages, 0)).thenReturn(new TeamGenerationResult(false, 0.0, true, 0, 0, null));
+        doReturn(teams).when(teamService).createTeams(projectId, 2);
 
-        teamService.assignStudentsEvenly(women, men, projectId, index, teams);
+        TeamGenerationResult result = teamService.generateTeams(projectId, projectDetails, true, 500L);
 
-        verify(roleRepository, times(2)).save(any(Role.class));
-        verify(studentRepository, times(2)).save(any(Student.class));
+        assertTrue(result.optimized());
+        InOrder inOrder = inOrder(teamOptimizerService, transactionTemplate);
+        inOrder.verify(teamOptimizerService).optimize(greedy, averages, 0, 500L);
+        inOrder.verify(transactionTemplate).executeWithoutResult(any());
+        verify(teamCompositionService, times(1)).saveComposition(projectId, teams, optimized);
     }
 
     @Test
-    void assignStudentsEvenlyShouldNotAssignAnyStudentWhenNoStudents() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Collections.emptyList();
-        List<Student> men = Collections.emptyList();
-        Integer projectId = 1;
-        int index = 0;
-
-        teamService.assignStudentsEvenly(women, men, projectId, index, teams);
+    void generateTeamsShouldRejectAnInvalidTimeBudgetBeforeWritingAnything() {
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(2);
+        projectDetails.nbWomen(0);
 
-        verify(roleRepository, times(0)).save(any(Role.class));
-        verify(studentRepository, times(0)).save(any(Student.class));
+        assertThrows(IllegalArgumentException.class, () -> teamService.generateTeams(1, projectDetails, false, TeamOptimizerService.MAX_TIME_BUDGET_MS + 1));
+        verifyNoInteractions(studentRepository, projectService, teamRepository, transactionTemplate);
     }
 
     @Test
-    void fillTeamsShouldAssignStudentsToTeams() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
-        Integer womenPerTeam = 1;
+    void generateTeamsShouldNotSaveTheTeamsWhenTheStudentsChangedDuringTheComposition() {
         Integer projectId = 1;
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(1);
+        projectDetails.nbWomen(0);
+        List<Student> students = List.of(student(1));
+        List<List<Student>> composition = List.of(students);
 
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
-
-        teamService.fillTeams(teams, women, men, womenPerTeam, false, projectId);
+        when(studentRepository.findAllByProject(projectId)).thenReturn(students, List.of(student(1), student(2)));
+        when(teamCompositionService.compose(eq(students), any(), eq(1), eq(0), eq(false))).thenReturn(composition);
 
-        verify(roleRepository, times(4)).save(any(Role.class));
-        verify(studentRepository, times(4)).save(any(Student.class));
+        assertThrows(IllegalArgumentException.class, () -> teamService.generateTeams(projectId, projectDetails, false, null));
+        verify(projectService, never()).updateProject(anyInt(), any(Project.class));
+        verify(teamCompositionService, never()).saveComposition(anyInt(), anyList(), anyList());
     }
 
     @Test
-    void fillTeamsShouldAssignOnlyWomenToTeamsWhenNoMen() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Collections.emptyList();
-        Integer womenPerTeam = 1;
+    void previewTeamsShouldComputeTheTeamsWithoutWritingAnything() {
         Integer projectId = 1;
-
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
-
-        teamService.fillTeams(teams, women, men, womenPerTeam, false, projectId);
-
-        verify(roleRepository, times(2)).save(any(Role.class));
-        verify(studentRepository, times(2)).save(any(Student.class));
-    }
-
-    @Test
-    void fillTeamsShouldNotAssignAnyStudentWhenNoStudents() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Collections.emptyList();
-        List<Student> men = Collections.emptyList();
-        Integer womenPerTeam = 1;
+        Project projectDetails = new Project();
+        projectDetails.nbTeams(2);
+        projectDetails.nbWomen(1);
+        Student woman = new Student();
+        woman.id(1);
+        woman.gender(Gender.WOMAN);
+        Student bachelor = new Student();
+        bachelor.id(2);
+        bachelor.bachelor(true);
+        List<Student> students = List.of(woman, bachelor);
+        Map<Integer, Double> averages = Map.of(1, 12.0, 2, 15.0);
+        List<List<Student>> composition = List.of(List.of(woman), List.of(bachelor));
+
+        when(studentRepository.findAllByProject(projectId)).thenReturn(students);
+        when(teamCompositionService.getImportedAverages(projectId)).thenReturn(averages);
+        when(teamCompositionService.compose(students, averages, 2, 1, false)).thenReturn(composition);
+        when(teamOptimizerService.requiredWomenPerTeam(students, 2, 1, false)).thenReturn(1);
+        when(teamOptimizerService.evaluate(composition, averages, 1)).thenReturn(new TeamGenerationResult(false, 2.25, false, 1, 1, null));
+        when(teamPreviewService.store(eq(projectId), eq(2), eq(1), eq(composition), any(TeamPreview.class))).thenAnswer(invocation -> invocation.getArgument(4));
+
+        TeamPreview preview = teamService.previewTeams(projectId, projectDetails, false, null);
+
+        assertEquals(2, preview.teams().size());
+        TeamProposal first = preview.teams().get(0);
+        assertEquals("Équipe 1", first.name());
+        assertEquals(List.of(1), first.studentIds());
+        assertEquals(12.0, first.average());
+        assertTrue(first.validCriteriaWoman());
+        assertFalse(first.validCriteriaBachelor());
+        assertFalse(preview.teams().get(1).validCriteriaWoman());
+        assertTrue(preview.teams().get(1).validCriteriaBachelor());
+        verify(teamCompositionService, never()).saveComposition(anyInt(), anyList(), anyList());
+        verify(teamRepository, never()).save(any(Team.class));
+        verify(teamRepository, never()).deleteAllByProject(anyInt());
+        verify(projectService, never()).updateProject(anyInt(), any(Project.class));
+    }
+
+    @Test
+    void commitTeamPreviewShouldSaveTheStoredComposition() {
         Integer projectId = 1;
+        Student student = new Student();
+        student.id(1);
+        List<List<Student>> composition = List.of(List.of(student), List.of());
+        TeamGenerationResult result = new TeamGenerationResult(true, 0.0, true, 0, 0, 5L);
+        TeamPreview preview = new TeamPreview("token", null, result, List.of());
+        List<Team> createdTeams = List.of(new Team(), new Team());
 
-        teamService.fillTeams(teams, women, men, womenPerTeam, false, projectId);
+        when(teamPreviewService.take(projectId, "token")).thenReturn(new TeamPreviewService.StoredPreview(projectId, 2, 0, composition, preview));
+        when(studentRepository.findAllByProject(projectId)).thenReturn(List.of(student));
+        doReturn(createdTeams).when(teamService).createTeams(projectId, 2);
 
-        verify(roleRepository, times(0)).save(any(Role.class));
-        verify(studentRepository, times(0)).save(any(Student.class));
+        assertEquals(result, teamService.commitTeamPreview(projectId, "token"));
+        verify(projectService, times(1)).updateProject(eq(projectId), any(Project.class));
+        verify(teamCompositionService, times(1)).saveComposition(projectId, createdTeams, composition);
+        verify(teamCompositionService, never()).compose(anyList(), anyMap(), anyInt(), anyInt(), anyBoolean());
     }
 
     @Test
-    void fillTeamsShouldAssignStudentsEvenlyWhenAutoWomenRatioIsTrue() {
-        List<Team> teams = Arrays.asList(new Team(), new Team());
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
-        Integer womenPerTeam = 1;
+    void commitTeamPreviewShouldThrowIllegalArgumentExceptionWhenTheStudentsHaveChanged() {
         Integer projectId = 1;
+        Student student = new Student();
+        student.id(1);
+        Student newStudent = new Student();
+        newStudent.id(2);
+        TeamPreview preview = new TeamPreview("token", null, null, List.of());
 
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(projectId)).thenReturn(teams);
+        when(teamPreviewService.take(projectId, "token")).thenReturn(new TeamPreviewService.StoredPreview(projectId, 1, 0, List.of(List.of(student)), preview));
+        when(studentRepository.findAllByProject(projectId)).thenReturn(List.of(student, newStudent));
 
-        teamService.fillTeams(teams, women, men, womenPerTeam, true, projectId);
-
-        verify(roleRepository, times(4)).save(any(Role.class));
-        verify(studentRepository, times(4)).save(any(Student.class));
+        assertThrows(IllegalArgumentException.class, () -> teamService.commitTeamPreview(projectId, "token"));
+        verify(teamCompositionService, never()).saveComposition(anyInt(), anyList(), anyList());
     }
 
     @Test
@@ -682,13 +629,12 @@ class TeamServiceTest {
         projectDetails.nbWomen(2);
         boolean autoWomenRatio = false;
 
-        List<Student> women = Arrays.asList(new Student(), new Student());
-        List<Student> men = Arrays.asList(new Student(), new Student());
+        List<Student> students = Arrays.asList(new Student(), new Student(), new Student(), new Student());
 
-        when(studentRepository.findByGenderAndProjectId(Gender.WOMAN, projectId)).thenReturn(women);
-        when(studentRepository.findByGenderOrderByBachelorAndImportedAvgDesc(Gender.MAN, projectId)).thenReturn(men);
+        when(studentRepository.findAllByProject(projectId)).thenReturn(students);
 
-        assertThrows(IllegalArgumentException.class, () -> teamService.generateTeams(projectId, projectDetails, autoWomenRatio));
+        assertThrows(IllegalArgumentException.class, () -> teamService.generateTeams(projectId, projectDetails, autoWomenRatio, null));
+        verifyNoInteractions(teamCompositionService);
     }
 
     @Test
@@ -771,77 +717,26 @@ class TeamServiceTest {
         assertEquals(2, result.get(1).id());
     }
 
-    @Test
-    void testGenerateTeamsWithSufficientStudents() {
-        Integer projectId = 1;
-        Project projectDetails = new Project();
-        projectDetails.nbTeams(2);
-        projectDetails.nbWomen(1);
-
-        List<Student> women = List.of(new Student(), new Student());
-        List<Student> men = List.of(new Student(), new Student(), new Student(), new Student());
-
-        when(studentRepository.findByGenderAndProjectId(Gender.WOMAN, projectId)).thenReturn(women);
-        when(studentRepository.findByGenderOrderByBachelorAndImportedAvgDesc(Gender.MAN, projectId)).thenReturn(men);
-
-        List<Team> createdTeams = List.of(new Team(), new Team());
-        when(teamRepository.save(any(Team.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(teamRepository.findAllOrderByAvgGradeOrderByAsc(anyInt())).thenReturn(createdTeams);
-
-        doNothing().when(projectService).updateProject(eq(projectId), any(Project.class));
-        doReturn(createdTeams).when(teamService).createTeams(anyInt(), anyInt());
-        doNothing().when(teamService).fillTeams(anyList(), anyList(), anyList(), anyInt(), anyBoolean(), anyInt());
-
-        teamService.generateTeams(projectId, projectDetails, false);
-
-        verify(studentRepository, times(1)).findByGenderAndProjectId(Gender.WOMAN, projectId);
-        verify(studentRepository, times(1)).findByGenderOrderByBachelorAndImportedAvgDesc(Gender.MAN, projectId);
-        verify(projectService, times(1)).updateProject(projectId, projectDetails);
-        verify(teamService, times(1)).createTeams(projectId, projectDetails.nbTeams());
-        verify(teamService, times(1)).fillTeams(createdTeams, women, men, projectDetails.nbWomen(), false, projectId);
-    }
-
     @Test
     void testGetSprintGradesWithStudentsAndBonuses() {
         int teamId = 1;
         int sprintId = 1;
+        TeamSprintGrades grades = new TeamSprintGrades(teamId, List.of(1, 2), 15.0, List.of(14.0, 16.0), List.of(18.2, 18.804));
 
-        double teamGrade = 15.0;
-        when(teamRepository.findAvgGradeByTeam(any(Team.class))).thenReturn(teamGrade);
-
-        Team team = new Team();
-        team.id(teamId);
-        when(teamRepository.findById(teamId)).thenReturn(Optional.of(team));
-
-        List<Student> students = List.of(new Student(), new Student());
-        when(studentRepository.findByTeam(teamId)).thenReturn(students);
-        Bonus bonus1 = new Bonus();
-        bonus1.value(5.0F);
-        Bonus bonus2 = new Bonus();
-        bonus2.value(3.0F);
-
-        List<Bonus> bonuses = List.of(bonus1, bonus2);
-        when(studentService.getStudentBonuses(anyInt(), anyInt())).thenReturn(bonuses);
-
-        List<Double> individualGrades = List.of(14.0, 16.0);
-        doReturn(individualGrades).when(teamService).getIndividualTotalGrades(teamId, sprintId);
+        when(sprintGradeService.getTeamSprintGrades(teamId, sprintId)).thenReturn(grades);
 
         List<Double> sprintGrades = teamService.getSprintGrades(teamId, sprintId);
 
-        assertEquals(2, sprintGrades.size());
+        assertEquals(List.of(18.2, 18.8), sprintGrades);
     }
 
     @Test
     void testGetSprintGradesWithoutStudents() {
         int teamId = 1;
         int sprintId = 1;
-        Team team = new Team();
-        team.id(teamId);
+        TeamSprintGrades grades = new TeamSprintGrades(teamId, List.of(), Double.NaN, List.of(), List.of());
 
-        double teamGrade = 15.0;
-        when(teamRepository.findAvgGradeByTeam(any(Team.class))).thenReturn(teamGrade);
-        when(teamRepository.findById(teamId)).thenReturn(Optional.of(team));
-        when(studentRepository.findByTeam(teamId)).thenReturn(Collections.emptyList());
+        when(sprintGradeService.getTeamSprintGrades(teamId, sprintId)).thenReturn(grades);
 
         List<Double> sprintGrades = teamService.getSprintGrades(teamId, sprintId);
 
@@ -849,4 +744,10 @@ class TeamServiceTest {
         assertEquals(-1.0, sprintGrades.get(0));
     }
 
+    private static Student student(int id) {
+        Student student = new Student();
+        student.id(id);
+        return student;
+    }
+
 }
@@ -1,7 +1,6 @@
 package fr.eseo.tauri.unit.service;
 
 import fr.eseo.tauri.exception.ResourceNotFoundException;
-import fr.eseo.tauri.model.Permission;
 import fr.eseo.tauri.model.Team;
 import fr.eseo.tauri.model.User;
 import fr.eseo.tauri.model.enumeration.PermissionType;
@@ -9,6 +8,8 @@ import fr.eseo.tauri.model.enumeration.RoleType;
 import fr.eseo.tauri.repository.RoleRepository;
 import fr.eseo.tauri.repository.TeamRepository;
 import fr.eseo.tauri.repository.UserRepository;
+import fr.eseo.tauri.security.TokenPermissions;
+import fr.eseo.tauri.service.AuthService;
 import fr.eseo.tauri.service.PermissionService;
 import fr.eseo.tauri.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,7 +18,10 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.time.Instant;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -41,6 +45,9 @@ class UserServiceTest {
     @Mock
     RoleRepository roleRepository;
 
+    @Mock
+    AuthService authService;
+
     @BeforeEach
     public void init() {
         MockitoAnnotations.openMocks(this);
@@ -104,6 +111,7 @@ class UserServiceTest {
         userService.deleteAllUsers();
 
         verify(userRepository, times(1)).deleteAll();
+        verify(authService, times(1)).forgetAllUsers();
     }
 
     @Test
@@ -120,6 +128,7 @@ class UserServiceTest {
                 user.email().equals(updatedUser.email()) &&
                 user.password().equals(updatedUser.password()) &&
                 user.privateKey().equals(updatedUser.privateKey())));
+        verify(authService, times(1)).forgetUser(id);
     }
 
     @Test
@@ -179,6 +188,7 @@ class UserServiceTest {
 
         verify(teamRepository, times(0)).save(any(Team.class));
         verify(userRepository, times(1)).deleteById(id);
+        verify(authService, times(1)).forgetUser(id);
     }
 
     @Test
@@ -188,6 +198,7 @@ class UserServiceTest {
         when(userRepository.findById(id)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> userService.deleteUserById(id));
+        verifyNoInteractions(authService);
     }
 
     @Test
@@ -291,6 +302,60 @@ class UserServiceTest {
         assertFalse(result);
     }
 
+    @Test
+    void hasPermissionShouldCheckTheRolesOfTheUserWithoutLoadingTheUser() {
+        Integer id = 1;
+
+        when(roleRepository.findByUserId(id)).thenReturn(List.of(RoleType.TEAM_MEMBER, RoleType.OPTION_STUDENT));
+        when(permissionService.hasPermission(RoleType.OPTION_STUDENT, PermissionType.VIEW_TEAMS)).thenReturn(true);
+
+        assertTrue(userService.hasPermission(id, PermissionType.VIEW_TEAMS));
+        verify(userRepository, never()).findById(id);
+    }
+
+    @Test
+    void hasPermissionShouldReadThePermissionsOfTheTokenOfTheUser() {
+        Integer id = 1;
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(new User(), null, List.of());
+        authentication.setDetails(new TokenPermissions(id, EnumSet.of(RoleType.TEAM_MEMBER), EnumSet.of(PermissionType.VIEW_TEAMS), 1L, Instant.now(), Instant.now().plusSeconds(60)));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        try {
+            assertTrue(userService.hasPermission(id, PermissionType.VIEW_TEAMS));
+            assertFalse(userService.hasPermission(id, PermissionType.DELETE_PROJECT));
+            assertEquals(List.of(PermissionType.VIEW_TEAMS), userService.getPermissionsByUser(id));
+            verifyNoInteractions(userRepository, roleRepository);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    void hasPermissionShouldReadTheRolesWhenTheyChangedSinceTheTokenWasIssued() {
+        Integer id = 1;
+        Instant issuedAt = Instant.now().minusSeconds(60);
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(new User(), null, List.of());
+        authentication.setDetails(new TokenPermissions(id, EnumSet.of(RoleType.TEAM_MEMBER), EnumSet.of(PermissionType.VIEW_TEAMS), 1L, issuedAt, issuedAt.plusSeconds(60)));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        when(permissionService.haveRolesChangedSince(id, issuedAt)).thenReturn(true);
+        when(roleRepository.findByUserId(id)).thenReturn(List.of(RoleType.OPTION_STUDENT));
+        try {
+            assertFalse(userService.hasPermission(id, PermissionType.VIEW_TEAMS));
+            verify(roleRepository, times(1)).findByUserId(id);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    void hasPermissionShouldThrowResourceNotFoundExceptionWhenUserDoesNotExist() {
+        Integer id = 1;
+
+        when(roleRepository.findByUserId(id)).thenReturn(List.of());
+        when(userRepository.findById(id)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> userService.hasPermission(id, PermissionType.VIEW_TEAMS));
+    }
+
     @Test
     void getUserByNameReturnsUserWhenUserExists() {
         String name = "John Doe";
@@ -325,8 +390,7 @@ class UserServiceTest {
         PermissionType permission2 = PermissionType.DELETE_PROJECT;
         when(userRepository.findById(userId)).thenReturn(java.util.Optional.of(user));
         when(roleRepository.findByUser(user)).thenReturn(List.of(role1, role2));
-        when(permissionService.getAllPermissionsByRole(role1)).thenReturn(List.of(new Permission().type(permission1)));
-        when(permissionService.getAllPermissionsByRole(role2)).thenReturn(List.of(new Permission().type(permission2)));
+        when(permissionService.getPermissionTypesByRoles(List.of(role1, role2))).thenReturn(EnumSet.of(permission1, permission2));
 
         // Act
         List<PermissionType> permissions = userService.getPermissionsByUser(userId);
@@ -20,6 +20,7 @@ export const login = async(login: string, password: string) => {
 	}
 	Cookies.setUserId(response.data.id)
 	Cookies.setToken(response.data.accessToken)
+	Cookies.setRefreshToken(response.data.refreshToken)
 	Cookies.setProjectId(response.data.idProject)
 
 	const roles = await getAllRoles(response.data.id)
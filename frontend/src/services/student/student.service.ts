@@ -1,6 +1,7 @@
-import { type CreateStudent, type Student, type UpdateStudent } from "@/types/student"
-import { StudentSchema } from "@/types/student"
+import { type CreateStudent, type Student, type StudentImportJob, type UpdateStudent } from "@/types/student"
+import { StudentImportJobSchema, StudentSchema } from "@/types/student"
 import { mutateAndValidate, queryAndValidate } from "@/utils/api"
+import { wait } from "@/utils/time"
 import { z } from "zod"
 import { Cookies } from "@/utils/cookie"
 
@@ -45,6 +46,9 @@ export const getStudentsByTeamId = async(teamId: number, ordered: boolean): Prom
 	return response.data
 }
 
+const IMPORT_POLLING_INTERVAL_MS = 1000
+const IMPORT_MAX_WAIT_MS = 5 * 60 * 1000
+
 export const importStudentFile = async(file: File): Promise<void> => {
 	const formData = new FormData()
 	formData.append("file-upload", file)
@@ -54,12 +58,46 @@ export const importStudentFile = async(file: File): Promise<void> => {
 		route: "students/upload",
 		body: formData,
 		bodySchema: z.instanceof(FormData),
-		jsonContent: false
+		jsonContent: false,
+		responseSchema: StudentImportJobSchema
+	})
+
+	if (response.status === "error") {
+		throw new Error(response.error)
+	}
+	if (!response.data) {
+		throw new Error("The import of the students has not been started")
+	}
+
+	// The students are imported in the background, the import is over when the job started by the upload is
+	const jobId = response.data.jobId
+	const deadline = Date.now() + IMPORT_MAX_WAIT_MS
+	let job = response.data
+	while (job.status === "PENDING" || job.status === "RUNNING") {
+		if (Date.now() >= deadline) {
+			throw new Error("The import of the students is taking too long, check the list of the students later")
+		}
+		await wait(IMPORT_POLLING_INTERVAL_MS)
+		job = await getStudentImportStatus(jobId)
+	}
+
+	if (job.status === "FAILED") {
+		throw new Error(job.errors.join(", "))
+	}
+}
+
+export const getStudentImportStatus = async(jobId?: string): Promise<StudentImportJob> => {
+	const response = await queryAndValidate({
+		responseSchema: StudentImportJobSchema,
+		route: "students/upload/status",
+		params: jobId ? { jobId } : undefined
 	})
 
 	if (response.status === "error") {
 		throw new Error(response.error)
 	}
+
+	return response.data
 }
 
 export const deleteAllStudents = async(): Promise<void> => {
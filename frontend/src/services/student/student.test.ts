@@ -9,17 +9,24 @@ import { getAllStudents,
 import * as apiUtils from "@/utils/api"
 import { fakeStudent1 } from "@/factories/student.factory"
 import { fakeResponse200, fakeResponse500 } from "@/factories/response"
-import type { UpdateStudent } from "@/types/student"
+import type { StudentImportJobStatus, UpdateStudent } from "@/types/student"
 import { StudentSchema } from "@/types/student"
 import { Cookies } from "@/utils/cookie"
 import { fakeTeam } from "@/factories/team.factory"
 
+// The polling of the imports does not wait between two requests
+vi.mock("@/utils/time", () => ({ wait: vi.fn() }))
+
 global.fetch = vi.fn()
 vi.spyOn(Cookies, "getProjectId").mockReturnValue(1)
 vi.spyOn(Cookies, "getToken").mockReturnValue("token")
 vi.spyOn(apiUtils, "queryAndValidate")
 vi.spyOn(apiUtils, "mutateAndValidate")
 
+const fakeImportJob = (status: StudentImportJobStatus, errors: string[] = []) => ({
+	jobId: "job", projectId: 1, status, processedRows: 2, errors, elapsedMs: 10
+})
+
 describe("getAllStudents", () => {
 	it("should call queryAndValidate with correct arguments", async() => {
 		const team = fakeTeam()
@@ -123,9 +130,9 @@ describe("importStudentFile", () => {
 		// Setup mock file
 		const file = new File(["content"], "test.csv", { type: "text/csv" })
 
-		// Setup mock response
-		const mockResponse = fakeResponse200("")
-		vi.mocked(fetch).mockResolvedValueOnce(mockResponse)
+		// Setup mock responses, the upload then the status of the import
+		vi.mocked(fetch).mockResolvedValueOnce(fakeResponse200(JSON.stringify(fakeImportJob("PENDING"))))
+		vi.mocked(fetch).mockResolvedValueOnce(fakeResponse200(JSON.stringify(fakeImportJob("SUCCEEDED"))))
 
 		// Call the function
 		await importStudentFile(file)
@@ -136,7 +143,13 @@ describe("importStudentFile", () => {
 			route: "students/upload",
 			body: expect.any(FormData),
 			bodySchema: expect.any(Object),
-			jsonContent: false
+			jsonContent: false,
+			responseSchema: expect.any(Object)
+		})
+		expect(apiUtils.queryAndValidate).toHaveBeenCalledWith({
+			route: "students/upload/status",
+			params: { jobId: "job" },
+			responseSchema: expect.any(Object)
 		})
 	})
 
@@ -154,6 +167,39 @@ describe("importStudentFile", () => {
 		// Assertions
 		await expect(promise).rejects.toThrow("Failed to fetch POST students/upload: 500 Internal Server Error")
 	})
+
+	it("should throw the errors of the import if it has failed", async() => {
+		// Setup mock file
+		const file = new File(["content"], "test.csv", { type: "text/csv" })
+
+		// Setup mock responses
+		vi.mocked(fetch).mockResolvedValueOnce(fakeResponse200(JSON.stringify(fakeImportJob("RUNNING"))))
+		vi.mocked(fetch).mockResolvedValueOnce(fakeResponse200(JSON.stringify(fakeImportJob("FAILED", ["Line 3 has more grades than grade types"]))))
+
+		// Call the function
+		const promise = importStudentFile(file)
+
+		// Assertions
+		await expect(promise).rejects.toThrow("Line 3 has more grades than grade types")
+	})
+
+	it("should stop waiting for the import after the maximum wait time", async() => {
+		// Setup mock file
+		const file = new File(["content"], "test.csv", { type: "text/csv" })
+
+		// Setup mock response, the import is still running once the maximum wait time has passed
+		vi.mocked(fetch).mockClear()
+		vi.mocked(fetch).mockResolvedValueOnce(fakeResponse200(JSON.stringify(fakeImportJob("RUNNING"))))
+		const now = vi.spyOn(Date, "now").mockReturnValueOnce(0).mockReturnValue(10 * 60 * 1000)
+
+		// Call the function
+		const promise = importStudentFile(file)
+
+		// Assertions
+		await expect(promise).rejects.toThrow("The import of the students is taking too long")
+		expect(fetch).toHaveBeenCalledTimes(1)
+		now.mockRestore()
+	})
 })
 
 describe("deleteAllStudents", () => {
@@ -32,4 +32,22 @@ export const CreateStudentSchema = StudentSchema.omit({
 export type CreateStudent = z.infer<typeof CreateStudentSchema>
 
 export const UpdateStudentSchema = CreateStudentSchema.partial()
-export type UpdateStudent = z.infer<typeof UpdateStudentSchema>
\ No newline at end of file
+export type UpdateStudent = z.infer<typeof UpdateStudentSchema>
+
+export const StudentImportJobStatusSchema = z.enum([
+	"PENDING",
+	"RUNNING",
+	"SUCCEEDED",
+	"FAILED"
+])
+export type StudentImportJobStatus = z.infer<typeof StudentImportJobStatusSchema>
+
+export const StudentImportJobSchema = z.object({
+	jobId: z.string(),
+	projectId: z.number(),
+	status: StudentImportJobStatusSchema,
+	processedRows: z.number(),
+	errors: z.string().array(),
+	elapsedMs: z.number()
+})
+export type StudentImportJob = z.infer<typeof StudentImportJobSchema>
@@ -0,0 +1,79 @@
+import { describe, it, expect, vi, beforeEach } from "vitest"
+import { z } from "zod"
+import { queryAndValidate } from "./api.util"
+import { Cookies } from "@/utils/cookie"
+import { redirect } from "@/utils/router"
+import { fakeResponse, fakeResponse200 } from "@/factories/response"
+
+vi.mock("@/utils/router", () => ({ redirect: vi.fn(), refresh: vi.fn() }))
+vi.stubEnv("VITE_TAURI_API_URL", "http://localhost:8882/api/")
+
+global.fetch = vi.fn()
+
+const fakeResponse401 = (): Response => fakeResponse({ ok: false, status: 401, statusText: "Unauthorized" })
+const fakeAuthResponse = (accessToken: string, refreshToken: string) => fakeResponse200(JSON.stringify({
+	id: 1, accessToken, refreshToken, idProject: 1
+}))
+
+const isRefresh = (url: string) => url.endsWith("auth/refresh")
+const authorization = (init?: RequestInit) => (init?.headers as Record<string, string>)["Authorization"]
+
+let accessToken = ""
+
+beforeEach(() => {
+	vi.mocked(fetch).mockReset()
+	vi.mocked(redirect).mockReset()
+	accessToken = "expired"
+	vi.spyOn(Cookies, "getProjectId").mockReturnValue(1)
+	vi.spyOn(Cookies, "getToken").mockImplementation(() => accessToken)
+	vi.spyOn(Cookies, "setToken").mockImplementation((token: string) => {
+		accessToken = token
+	})
+	vi.spyOn(Cookies, "getRefreshToken").mockReturnValue("refresh")
+	vi.spyOn(Cookies, "setRefreshToken").mockImplementation(() => {})
+})
+
+describe("queryAndValidate with an expired access token", () => {
+	it("should refresh the tokens and retry the request", async() => {
+		vi.mocked(fetch).mockImplementation((url, init) => Promise.resolve(
+			isRefresh(url as string) ? fakeAuthResponse("fresh", "newRefresh")
+				: authorization(init) === "Bearer fresh" ? fakeResponse200("[1]") : fakeResponse401()
+		))
+
+		const response = await queryAndValidate({ route: "roles", responseSchema: z.array(z.number()) })
+
+		expect(response).toEqual({ status: "success", data: [1] })
+		expect(fetch).toHaveBeenCalledTimes(3)
+		expect(Cookies.setToken).toHaveBeenCalledWith("fresh")
+		expect(Cookies.setRefreshToken).toHaveBeenCalledWith("newRefresh")
+		expect(redirect).not.toHaveBeenCalled()
+	})
+
+	it("should refresh the tokens only once for concurrent requests", async() => {
+		vi.mocked(fetch).mockImplementation((url, init) => Promise.resolve(
+			isRefresh(url as string) ? fakeAuthResponse("fresh", "newRefresh")
+				: authorization(init) === "Bearer fresh" ? fakeResponse200("[1]") : fakeResponse401()
+		))
+
+		const responses = await Promise.all([
+			queryAndValidate({ route: "roles", responseSchema: z.array(z.number()) }),
+			queryAndValidate({ route: "teams", responseSchema: z.array(z.number()) })
+		])
+
+		expect(responses.every(response => response.status === "success")).toBe(true)
+		const refreshCalls = vi.mocked(fetch).mock.calls.filter(([url]) => isRefresh(url as string))
+		expect(refreshCalls).toHaveLength(1)
+	})
+
+	it("should redirect to the login page when the refresh fails", async() => {
+		vi.mocked(fetch).mockImplementation(() => Promise.resolve(fakeResponse401()))
+
+		const response = await queryAndValidate({ route: "roles", responseSchema: z.array(z.number()) })
+
+		expect(response.status).toBe("error")
+		expect(redirect).toHaveBeenCalledWith("/login")
+		// The request is not sent again without new tokens
+		expect(fetch).toHaveBeenCalledTimes(2)
+		expect(Cookies.setToken).not.toHaveBeenCalled()
+	})
+})
@@ -6,6 +6,7 @@ import type {
 import { wait } from "@/utils/time"
 import type { SafeParseReturnType } from "zod"
 import { redirect } from "@/utils/router"
+import { AuthResponseSchema } from "@/types/auth-response"
 
 const getApiUrl = () => {
 	let url = import.meta.env.VITE_TAURI_API_URL
@@ -48,6 +49,52 @@ const getHeaders = (jsonContent: boolean = true) => {
 	}
 }
 
+let pendingRefresh: Promise<boolean> | null = null
+
+/**
+ * Exchanges the refresh token for a new access token and a new refresh token.
+ * The requests failing at the same time share the same refresh, as a refresh token can only be used once.
+ * @returns true if the tokens have been refreshed
+ */
+const refreshTokens = (): Promise<boolean> => {
+	if (pendingRefresh) return pendingRefresh
+
+	pendingRefresh = (async() => {
+		const response = await fetch(buildUrl("auth/refresh"), {
+			method: "POST",
+			body: JSON.stringify({ refreshToken: Cookies.getRefreshToken() }),
+			headers: { "Content-Type": "application/json" }
+		})
+		if (!response.ok) return false
+
+		const parsedResponse = AuthResponseSchema.safeParse(JSON.parse(await response.text()))
+		if (!parsedResponse.success) return false
+
+		Cookies.setToken(parsedResponse.data.accessToken)
+		Cookies.setRefreshToken(parsedResponse.data.refreshToken)
+		return true
+	})().catch(() => false).finally(() => {
+		pendingRefresh = null
+	})
+
+	return pendingRefresh
+}
+
+/**
+ * Fetches the API with the access token, and once the access token has expired, refreshes it and fetches again.
+ * The user is redirected to the login page if the tokens cannot be refreshed.
+ */
+const fetchWithRefresh = async(url: string, init: RequestInit, jsonContent: boolean): Promise<Response> => {
+	const response = await fetch(url, { ...init, headers: getHeaders(jsonContent) })
+	if (response.status !== 401) return response
+
+	if (!await refreshTokens()) {
+		redirect("/login")
+		return response
+	}
+	return fetch(url, { ...init, headers: getHeaders(jsonContent) })
+}
+
 /**
  * Fetches data from the API and validates it against a Zod schema.
  * @param route API route to fetch, without the base URL defined in .env (example: "roles" for "{VITE_TAURI_API_URL}/roles")
@@ -64,9 +111,7 @@ export const queryAndValidate = async <T>({
 
 	const currentProjectId = Cookies.getProjectId()
 
-	const response = await fetch(buildUrl(route, { ...params, projectId: currentProjectId?.toString() ?? "" }), {
-		headers: getHeaders(jsonContent)
-	})
+	const response = await fetchWithRefresh(buildUrl(route, { ...params, projectId: currentProjectId?.toString() ?? "" }), {}, jsonContent)
 	if (!response.ok) {
 		if (response.status === 401) redirect("/login")
 		console.error(`Failed to fetch GET ${route}: ${response.status} ${response.statusText}`)
@@ -107,11 +152,12 @@ export const queryAndValidate = async <T>({
  * @param delay Delay before fetching in ms (useful for testing loading states)
  * @param body Data to send in the request body
  * @param bodySchema Zod schema to validate the body
- * @returns An object with the status of the request and an error message if it failed
+ * @param responseSchema Zod schema to validate the response, when the response is needed
+ * @returns An object with the status of the request, an error message if it failed and the data if it succeeded with a response schema
  */
-export const mutateAndValidate = async <T>({
-	method, route, params, jsonContent = true, delay, body, bodySchema
-}: MutateAndValidateRequest<T>): Promise<MutateAndValidateResponse> => {
+export const mutateAndValidate = async <T, R = undefined>({
+	method, route, params, jsonContent = true, delay, body, bodySchema, responseSchema
+}: MutateAndValidateRequest<T, R>): Promise<MutateAndValidateResponse<R>> => {
 	if (delay) await wait(delay)
 	if (body && !bodySchema) {
 		console.error("Body schema is required when body is provided")
@@ -139,11 +185,10 @@ export const mutateAndValidate = async <T>({
 
 	const currentProjectId = Cookies.getProjectId()
 
-	const response = await fetch(buildUrl(route, { ...params, projectId: currentProjectId?.toString() ?? "" }), {
+	const response = await fetchWithRefresh(buildUrl(route, { ...params, projectId: currentProjectId?.toString() ?? "" }), {
 		method,
-		body: bodyData,
-		headers: getHeaders(jsonContent)
-	})
+		body: bodyData
+	}, jsonContent)
 	if (!response.ok) {
 		if (response.status === 401) redirect("/login")
 		console.error(`Failed to fetch ${method} ${route}: ${response.status} ${response.statusText}`)
@@ -153,9 +198,28 @@ export const mutateAndValidate = async <T>({
 		}
 	}
 
-	return {
+	if (!responseSchema) return {
 		status: "success"
 	}
+
+	let data: unknown = await response.text()
+	try {
+		data = JSON.parse(data as string)
+	} catch (error) { /* Do nothing */ }
+
+	const parsedResponse = responseSchema.safeParse(data)
+	if (!parsedResponse.success) {
+		console.error(`Failed to validate ${method} ${route}: ${parsedResponse.error.message}`)
+		return {
+			status: "error",
+			error: `Failed to validate ${method} ${route}: ${parsedResponse.error.message}`
+		}
+	}
+
+	return {
+		status: "success",
+		data: parsedResponse.data
+	}
 }
 
 